@@ -547,6 +547,10 @@ static vector<string> GetArgumentArray(
     // being "null" to set the programmatic default in the server.
     result.push_back("--digest_function=" + globals->options->digest_function);
   }
+  if (!globals->options->unix_digest_hash_attribute_name.empty()) {
+    result.push_back("--unix_digest_hash_attribute_name=" +
+                     globals->options->unix_digest_hash_attribute_name);
+  }
   if (globals->options->idle_server_tasks) {
     result.push_back("--idle_server_tasks");
   } else {
@@ -95,6 +95,7 @@ StartupOptions::StartupOptions(const string &product_name,
           "com.google.devtools.build.lib.util.SingleLineFormatter"),
       expand_configs_in_place(true),
       digest_function(),
+      unix_digest_hash_attribute_name(),
       idle_server_tasks(true),
       original_startup_options_(std::vector<RcStartupFlag>()),
 #if defined(__APPLE__)
@@ -160,6 +161,7 @@ StartupOptions::StartupOptions(const string &product_name,
   RegisterUnaryStartupFlag("output_base");
   RegisterUnaryStartupFlag("output_user_root");
   RegisterUnaryStartupFlag("server_jvm_out");
+  RegisterUnaryStartupFlag("unix_digest_hash_attribute_name");
 }
 
 StartupOptions::~StartupOptions() {}
@@ -395,6 +397,11 @@ blaze_exit_code::ExitCode StartupOptions::ProcessArg(
              NULL) {
     digest_function = value;
     option_sources["digest_function"] = rcfile;
+  } else if ((value = GetUnaryOption(arg, next_arg,
+                                     "--unix_digest_hash_attribute_name")) !=
+             NULL) {
+    unix_digest_hash_attribute_name = value;
+    option_sources["unix_digest_hash_attribute_name"] = rcfile;
   } else if ((value = GetUnaryOption(arg, next_arg, "--command_port")) !=
              NULL) {
     if (!blaze_util::safe_strto32(value, &command_port) ||
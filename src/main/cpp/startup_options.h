@@ -305,6 +305,10 @@ class StartupOptions {
   // The hash function to use when computing file digests.
   std::string digest_function;
 
+  // The name of an extended attribute that holds the digest of a file, as
+  // precomputed by the file system, in the hash function above.
+  std::string unix_digest_hash_attribute_name;
+
   bool idle_server_tasks;
 
   // The startup options as received from the user and rc files, tagged with
@@ -29,6 +29,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Helper utility to create ActionInput instances.
@@ -210,6 +211,32 @@ public final class ActionInputHelper {
     return result;
   }
 
+  /**
+   * Expands middleman and tree artifacts in a sequence of {@link ActionInput}s like {@link
+   * #expandArtifacts(Iterable, ArtifactExpander)}, but passes the result to {@code consumer}
+   * instead of collecting it. The inputs are visited once and in their own order, so inputs that
+   * are not artifacts are not moved ahead of the artifacts.
+   */
+  public static void expandArtifacts(
+      Iterable<? extends ActionInput> inputs,
+      ArtifactExpander artifactExpander,
+      Consumer<? super ActionInput> consumer) {
+    List<Artifact> expanded = new ArrayList<>();
+    inputs.forEach(
+        input -> {
+          if (input instanceof Artifact) {
+            Artifact artifact = (Artifact) input;
+            if (artifact.isMiddlemanArtifact() || artifact.isTreeArtifact()) {
+              artifactExpander.expand(artifact, expanded);
+              expanded.forEach(consumer);
+              expanded.clear();
+              return;
+            }
+          }
+          consumer.accept(input);
+        });
+  }
+
   /** Formatter for execPath String output. Public because {@link Artifact} uses it directly. */
   public static final Function<ActionInput, String> EXEC_PATH_STRING_FORMATTER =
       ActionInput::getExecPathString;
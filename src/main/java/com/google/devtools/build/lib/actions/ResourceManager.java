@@ -23,12 +23,18 @@ import com.google.devtools.build.lib.profiler.AutoProfiler;
 import com.google.devtools.build.lib.profiler.ProfilerTask;
 import com.google.devtools.build.lib.unix.ProcMeminfoParser;
 import com.google.devtools.build.lib.util.OS;
-import com.google.devtools.build.lib.util.Pair;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 import java.util.concurrent.CountDownLatch;
+import java.util.function.DoubleSupplier;
+import javax.annotation.Nullable;
 
 /**
  * Used to keep track of resources consumed by the Blaze action execution threads and throttle them
@@ -57,6 +63,10 @@ import java.util.concurrent.CountDownLatch;
  * guarantees that at least one thread will always be able to acquire any amount of requested
  * resources (even if it is greater than amount of available resources). Therefore, assuming that
  * threads correctly release acquired resources, Blaze will never be fully blocked.
+ *
+ * <p>Requests that cannot be satisfied immediately are queued and reconsidered whenever resources
+ * are released. The order in which they are reconsidered is determined by the {@link
+ * SchedulingPolicy} set through {@link #setSchedulingPolicy}.
  */
 @ThreadSafe
 public class ResourceManager {
@@ -86,6 +96,60 @@ public class ResourceManager {
     }
   }
 
+  /** Order in which waiting requests are considered when resources become available. */
+  public enum SchedulingPolicy {
+    /** Requests are considered in the order in which they were made. */
+    FIFO,
+    /** Requests asking for the least CPU (then RAM) are considered first. */
+    SMALLEST_FIRST,
+    /** Requests asking for the most CPU (then RAM) are considered first. */
+    LARGEST_FIRST,
+    /**
+     * Requests from action mnemonics that currently hold the fewest resource grants are considered
+     * first, so that a flood of actions of one kind cannot starve all the others.
+     */
+    MNEMONIC_FAIR;
+
+    private Comparator<WaitingRequest> comparator() {
+      switch (this) {
+        case SMALLEST_FIRST:
+          return BY_SIZE.thenComparing(BY_ARRIVAL);
+        case LARGEST_FIRST:
+          return BY_SIZE.reversed().thenComparing(BY_ARRIVAL);
+        case FIFO:
+        case MNEMONIC_FAIR:
+          // Fairness is computed from the grants at the time the queue is processed, so the
+          // queue itself is kept in arrival order.
+          return BY_ARRIVAL;
+      }
+      throw new IllegalStateException(this.toString());
+    }
+  }
+
+  private static final Comparator<WaitingRequest> BY_ARRIVAL =
+      Comparator.comparingLong(r -> r.sequenceNumber);
+
+  private static final Comparator<WaitingRequest> BY_SIZE =
+      Comparator.<WaitingRequest>comparingDouble(r -> r.resources.getCpuUsage())
+          .thenComparingDouble(r -> r.resources.getMemoryMb())
+          .thenComparingInt(r -> r.resources.getLocalTestCount());
+
+  /** A blocked call to {@link #acquireResources}. */
+  private static final class WaitingRequest {
+    final ResourceSet resources;
+    // Always initialized to 1, counted down when the request is granted or cancelled.
+    final CountDownLatch latch = new CountDownLatch(1);
+    final long sequenceNumber;
+    // Only set when the scheduling policy needs it.
+    @Nullable final String mnemonic;
+
+    WaitingRequest(ResourceSet resources, long sequenceNumber, @Nullable String mnemonic) {
+      this.resources = resources;
+      this.sequenceNumber = sequenceNumber;
+      this.mnemonic = mnemonic;
+    }
+  }
+
   private final ThreadLocal<Boolean> threadLocked = new ThreadLocal<Boolean>() {
     @Override
     protected Boolean initialValue() {
@@ -117,9 +181,16 @@ public class ResourceManager {
   private static final double MIN_NECESSARY_CPU_RATIO = 0.6;
   private static final double MIN_NECESSARY_RAM_RATIO = 1.0;
 
-  // List of blocked threads. Associated CountDownLatch object will always
-  // be initialized to 1 during creation in the acquire() method.
-  private final List<Pair<ResourceSet, CountDownLatch>> requestList;
+  private SchedulingPolicy schedulingPolicy = SchedulingPolicy.FIFO;
+
+  // Blocked threads, ordered according to the scheduling policy.
+  private NavigableSet<WaitingRequest> requestList;
+
+  // Used to break ties between waiting requests.
+  private long nextSequenceNumber;
+
+  // Number of granted requests per mnemonic. Only maintained for SchedulingPolicy.MNEMONIC_FAIR.
+  private final Map<String, Integer> grantsPerMnemonic = new HashMap<>();
 
   // The total amount of resources on the local host. Must be set by
   // an explicit call to setAvailableResources(), often using
@@ -148,7 +219,7 @@ public class ResourceManager {
   private boolean localMemoryEstimate = false;
 
   private ResourceManager() {
-    requestList = new LinkedList<>();
+    requestList = new TreeSet<>(schedulingPolicy.comparator());
   }
 
   @VisibleForTesting public static ResourceManager instanceForTestingOnly() {
@@ -163,11 +234,28 @@ public class ResourceManager {
     usedCpu = 0;
     usedRam = 0;
     usedLocalTestCount = 0;
-    for (Pair<ResourceSet, CountDownLatch> request : requestList) {
+    for (WaitingRequest request : requestList) {
       // CountDownLatch can be set only to 0 or 1.
-      request.second.countDown();
+      request.latch.countDown();
     }
     requestList.clear();
+    grantsPerMnemonic.clear();
+  }
+
+  /**
+   * Sets the order in which waiting requests are considered when resources are released. Requests
+   * that are already waiting are reordered according to the new policy.
+   */
+  public synchronized void setSchedulingPolicy(SchedulingPolicy policy) {
+    Preconditions.checkNotNull(policy);
+    if (policy == schedulingPolicy) {
+      return;
+    }
+    schedulingPolicy = policy;
+    NavigableSet<WaitingRequest> reordered = new TreeSet<>(policy.comparator());
+    reordered.addAll(requestList);
+    requestList = reordered;
+    grantsPerMnemonic.clear();
   }
 
   /**
@@ -213,7 +301,7 @@ public class ResourceManager {
     AutoProfiler p = profiled(owner.describe(), ProfilerTask.ACTION_LOCK);
     CountDownLatch latch = null;
     try {
-      latch = acquire(resources);
+      latch = acquire(owner, resources);
       if (latch != null) {
         latch.await();
       }
@@ -223,7 +311,7 @@ public class ResourceManager {
         if (latch.getCount() == 0) {
           // Resources already acquired by other side. Release them, but not inside this
           // synchronized block to avoid deadlock.
-          release(resources);
+          release(owner, resources);
         } else {
           // Inform other side that resources shouldn't be acquired.
           latch.countDown();
@@ -257,8 +345,8 @@ public class ResourceManager {
     boolean acquired = false;
 
     synchronized (this) {
-      if (areResourcesAvailable(resources)) {
-        incrementResources(resources);
+      if (areResourcesAvailable(resources, this::getRemainingRam)) {
+        incrementResources(mnemonicForScheduling(owner), resources);
         acquired = true;
       }
     }
@@ -271,10 +359,19 @@ public class ResourceManager {
     return null;
   }
 
-  private void incrementResources(ResourceSet resources) {
+  private void incrementResources(@Nullable String mnemonic, ResourceSet resources) {
     usedCpu += resources.getCpuUsage();
     usedRam += resources.getMemoryMb();
     usedLocalTestCount += resources.getLocalTestCount();
+    if (mnemonic != null) {
+      grantsPerMnemonic.merge(mnemonic, 1, Integer::sum);
+    }
+  }
+
+  /** Returns the mnemonic of the owner if the scheduling policy takes it into account. */
+  @Nullable
+  private String mnemonicForScheduling(ActionExecutionMetadata owner) {
+    return schedulingPolicy == SchedulingPolicy.MNEMONIC_FAIR ? owner.getMnemonic() : null;
   }
 
   /**
@@ -307,7 +404,7 @@ public class ResourceManager {
     boolean isConflict = false;
     AutoProfiler p = profiled(owner.describe(), ProfilerTask.ACTION_RELEASE);
     try {
-      isConflict = release(resources);
+      isConflict = release(owner, resources);
     } finally {
       threadLocked.set(false);
 
@@ -318,21 +415,26 @@ public class ResourceManager {
     }
   }
 
-  private synchronized CountDownLatch acquire(ResourceSet resources) {
-    if (areResourcesAvailable(resources)) {
-      incrementResources(resources);
+  private synchronized CountDownLatch acquire(
+      ActionExecutionMetadata owner, ResourceSet resources) {
+    String mnemonic = mnemonicForScheduling(owner);
+    if (areResourcesAvailable(resources, this::getRemainingRam)) {
+      incrementResources(mnemonic, resources);
       return null;
     }
-    Pair<ResourceSet, CountDownLatch> request =
-      new Pair<>(resources, new CountDownLatch(1));
+    WaitingRequest request = new WaitingRequest(resources, nextSequenceNumber++, mnemonic);
     requestList.add(request);
-    return request.second;
+    return request.latch;
   }
 
-  private synchronized boolean release(ResourceSet resources) {
+  private synchronized boolean release(ActionExecutionMetadata owner, ResourceSet resources) {
     usedCpu -= resources.getCpuUsage();
     usedRam -= resources.getMemoryMb();
     usedLocalTestCount -= resources.getLocalTestCount();
+    String mnemonic = mnemonicForScheduling(owner);
+    if (mnemonic != null) {
+      grantsPerMnemonic.computeIfPresent(mnemonic, (k, v) -> v > 1 ? v - 1 : null);
+    }
 
     // TODO(bazel-team): (2010) rounding error can accumulate and value below can end up being
     // e.g. 1E-15. So if it is small enough, we set it to 0. But maybe there is a better solution.
@@ -354,44 +456,79 @@ public class ResourceManager {
    * Tries to unblock one or more waiting threads if there are sufficient resources available.
    */
   private synchronized void processWaitingThreads() {
-    Iterator<Pair<ResourceSet, CountDownLatch>> iterator = requestList.iterator();
-    while (iterator.hasNext()) {
-      Pair<ResourceSet, CountDownLatch> request = iterator.next();
-      if (request.second.getCount() != 0) {
-        if (areResourcesAvailable(request.first)) {
-          incrementResources(request.first);
-          request.second.countDown();
+    DoubleSupplier remainingRam = new RemainingRamInPass();
+    if (schedulingPolicy != SchedulingPolicy.MNEMONIC_FAIR) {
+      // The set is already in scheduling order.
+      Iterator<WaitingRequest> iterator = requestList.iterator();
+      while (iterator.hasNext()) {
+        WaitingRequest request = iterator.next();
+        if (maybeGrant(request, remainingRam)) {
           iterator.remove();
         }
-      } else {
-        // Cancelled by other side.
-        iterator.remove();
+      }
+      return;
+    }
+    // The order depends on how many grants each mnemonic has, which changes as this pass hands
+    // out resources, so it is taken from a snapshot sorted once per pass. Stable sort, so requests
+    // of equally served mnemonics stay in arrival order.
+    List<WaitingRequest> requests = new ArrayList<>(requestList);
+    requests.sort(Comparator.comparingInt(r -> grantsPerMnemonic.getOrDefault(r.mnemonic, 0)));
+    for (WaitingRequest request : requests) {
+      if (maybeGrant(request, remainingRam)) {
+        requestList.remove(request);
       }
     }
   }
 
-  // Method will return true if all requested resources are considered to be available.
-  private boolean areResourcesAvailable(ResourceSet resources) {
-    Preconditions.checkNotNull(availableResources);
-    // Comparison below is robust, since any calculation errors will be fixed
-    // by the release() method.
-    if (usedCpu == 0.0 && usedRam == 0.0 && usedLocalTestCount == 0) {
-      return true;
+  /**
+   * The RAM that remains for the requests of one {@link #processWaitingThreads} pass.
+   *
+   * <p>It is computed at most once per pass, and only if some request needs it, which keeps
+   * /proc/meminfo reads for the online memory estimate out of the per-request loop. From then on it
+   * is reduced by what the pass hands out. Grants made before it was computed are already part of
+   * {@link #usedRam} at that point, so they are not subtracted again.
+   */
+  private final class RemainingRamInPass implements DoubleSupplier {
+    private boolean computed;
+    private double remainingRamWhenComputed;
+    private double usedRamWhenComputed;
+
+    @Override
+    public double getAsDouble() {
+      if (!computed) {
+        remainingRamWhenComputed = getRemainingRam();
+        usedRamWhenComputed = usedRam;
+        computed = true;
+      }
+      return remainingRamWhenComputed - (usedRam - usedRamWhenComputed);
     }
-    // Use only MIN_NECESSARY_???_RATIO of the resource value to check for
-    // allocation. This is necessary to account for the fact that most of the
-    // requested resource sets use pessimistic estimations. Note that this
-    // ratio is used only during comparison - for tracking we will actually
-    // mark whole requested amount as used.
-    double cpu = resources.getCpuUsage() * MIN_NECESSARY_CPU_RATIO;
-    double ram = resources.getMemoryMb() * MIN_NECESSARY_RAM_RATIO;
-    int localTestCount = resources.getLocalTestCount();
+  }
 
-    double availableCpu = availableResources.getCpuUsage();
-    double availableRam = availableResources.getMemoryMb();
-    int availableLocalTestCount = availableResources.getLocalTestCount();
+  /**
+   * Hands the requested resources to a waiting request if they are available.
+   *
+   * @return whether the request is done waiting, either because it was granted or cancelled
+   */
+  private boolean maybeGrant(WaitingRequest request, DoubleSupplier remainingRam) {
+    if (request.latch.getCount() == 0) {
+      // Cancelled by other side.
+      return true;
+    }
+    if (areResourcesAvailable(request.resources, remainingRam)) {
+      incrementResources(request.mnemonic, request.resources);
+      request.latch.countDown();
+      return true;
+    }
+    return false;
+  }
 
-    double remainingRam = availableRam - usedRam;
+  /**
+   * Returns how much RAM (in MB) can still be handed out, either from the bookkeeping of this
+   * class or from the online memory estimate.
+   */
+  private double getRemainingRam() {
+    Preconditions.checkNotNull(availableResources);
+    double remainingRam = availableResources.getMemoryMb() - usedRam;
 
     if (localMemoryEstimate && OS.getCurrent() == OS.LINUX) {
       try {
@@ -415,6 +552,28 @@ public class ResourceManager {
         // behavior.
       }
     }
+    return remainingRam;
+  }
+
+  // Method will return true if all requested resources are considered to be available.
+  private boolean areResourcesAvailable(ResourceSet resources, DoubleSupplier remainingRam) {
+    Preconditions.checkNotNull(availableResources);
+    // Comparison below is robust, since any calculation errors will be fixed
+    // by the release() method.
+    if (usedCpu == 0.0 && usedRam == 0.0 && usedLocalTestCount == 0) {
+      return true;
+    }
+    // Use only MIN_NECESSARY_???_RATIO of the resource value to check for
+    // allocation. This is necessary to account for the fact that most of the
+    // requested resource sets use pessimistic estimations. Note that this
+    // ratio is used only during comparison - for tracking we will actually
+    // mark whole requested amount as used.
+    double cpu = resources.getCpuUsage() * MIN_NECESSARY_CPU_RATIO;
+    double ram = resources.getMemoryMb() * MIN_NECESSARY_RAM_RATIO;
+    int localTestCount = resources.getLocalTestCount();
+
+    double availableCpu = availableResources.getCpuUsage();
+    int availableLocalTestCount = availableResources.getLocalTestCount();
 
     // Resources are considered available if any one of the conditions below is true:
     // 1) If resource is not requested at all, it is available.
@@ -424,7 +583,7 @@ public class ResourceManager {
     // resources even if it requests more than available.
     // 3) If used resource amount is less than total available resource amount.
     boolean cpuIsAvailable = cpu == 0.0 || usedCpu == 0.0 || usedCpu + cpu <= availableCpu;
-    boolean ramIsAvailable = ram == 0.0 || usedRam == 0.0 || ram <= remainingRam;
+    boolean ramIsAvailable = ram == 0.0 || usedRam == 0.0 || ram <= remainingRam.getAsDouble();
     boolean localTestCountIsAvailable = localTestCount == 0 || usedLocalTestCount == 0
         || usedLocalTestCount + localTestCount <= availableLocalTestCount;
     return cpuIsAvailable && ramIsAvailable && localTestCountIsAvailable;
@@ -437,6 +596,7 @@ public class ResourceManager {
 
   @VisibleForTesting
   synchronized boolean isAvailable(double ram, double cpu, int localTestCount) {
-    return areResourcesAvailable(ResourceSet.create(ram, cpu, localTestCount));
+    return areResourcesAvailable(
+        ResourceSet.create(ram, cpu, localTestCount), this::getRemainingRam);
   }
 }
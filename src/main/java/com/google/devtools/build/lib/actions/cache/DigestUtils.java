@@ -32,6 +32,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -53,10 +55,16 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class DigestUtils {
 
-  // Object to synchronize on when serializing large file reads.
-  private static final Object DIGEST_LOCK = new Object();
   private static final AtomicBoolean MULTI_THREADED_DIGEST = new AtomicBoolean(false);
 
+  // Maximum number of large files that are read concurrently from the same device.
+  private static volatile int largeFileDigestParallelism = 1;
+
+  // Permits for reading large files, by device ID. Replaced wholesale when the parallelism changes,
+  // so that digests in flight release their permits to the semaphore they acquired them from.
+  private static volatile ConcurrentHashMap<Long, Semaphore> devicePermits =
+      new ConcurrentHashMap<>();
+
   // Files of this size or less are assumed to be readable in one seek.
   // (This is the default readahead window on Linux.)
   @VisibleForTesting // the unittest is in a different package!
@@ -143,17 +151,22 @@ public class DigestUtils {
   private DigestUtils() {}
 
   /**
-   * Obtain file's MD5 metadata using synchronized method, ensuring that system
-   * is not overloaded in case when multiple threads are requesting MD5
-   * calculations and underlying file system cannot provide it via extended
-   * attribute.
+   * Obtain file's digest while holding one of the permits of the device that holds it, ensuring
+   * that a device is not overloaded in case multiple threads are requesting digest calculations
+   * and the underlying file system cannot provide them via extended attribute. Files on different
+   * devices are read in parallel.
    */
-  private static byte[] getDigestInExclusiveMode(Path path)
-      throws IOException {
+  private static byte[] getDigestWithDevicePermit(Path path) throws IOException {
+    Semaphore permits =
+        devicePermits.computeIfAbsent(
+            path.stat().getDeviceId(), device -> new Semaphore(largeFileDigestParallelism));
     long startTime = BlazeClock.nanoTime();
-    synchronized (DIGEST_LOCK) {
+    permits.acquireUninterruptibly();
+    try {
       Profiler.instance().logSimpleTask(startTime, ProfilerTask.WAIT, path.getPathString());
       return getDigestInternal(path);
+    } finally {
+      permits.release();
     }
   }
 
@@ -211,14 +224,27 @@ public class DigestUtils {
     DigestUtils.MULTI_THREADED_DIGEST.set(multiThreadedDigest);
   }
 
+  /**
+   * Sets how many files larger than {@link #MULTI_THREADED_DIGEST_MAX_FILE_SIZE} may be read
+   * concurrently from the same device, unless multi-threaded digesting is enabled. The default of 1
+   * suits rotating drives; SSDs and RAID arrays can sustain more.
+   */
+  public static void setLargeFileDigestParallelism(int parallelism) {
+    Preconditions.checkArgument(parallelism > 0, "parallelism must be positive: %s", parallelism);
+    if (parallelism != largeFileDigestParallelism) {
+      largeFileDigestParallelism = parallelism;
+      devicePermits = new ConcurrentHashMap<>();
+    }
+  }
+
   /**
    * Get the digest of {@code path}, using a constant-time xattr call if the filesystem supports
    * it, and calculating the digest manually otherwise.
    *
    * @param path Path of the file.
    * @param fileSize size of the file. Used to determine if digest calculation should be done
-   * serially or in parallel. Files larger than a certain threshold will be read serially, in order
-   * to avoid excessive disk seeks.
+   * serially or in parallel. Files larger than a certain threshold will be read with limited
+   * parallelism per device, in order to avoid excessive disk seeks.
    */
   public static byte[] getDigestOrFail(Path path, long fileSize)
       throws IOException {
@@ -241,10 +267,10 @@ public class DigestUtils {
     // Compute digest from the file contents.
     if (fileSize > MULTI_THREADED_DIGEST_MAX_FILE_SIZE && !MULTI_THREADED_DIGEST.get()) {
       // We'll have to read file content in order to calculate the digest.
-      // We avoid overlapping this process for multiple large files, as
-      // seeking back and forth between them will result in an overall loss of
-      // throughput.
-      digest = getDigestInExclusiveMode(path);
+      // We limit how much this process overlaps for multiple large files on
+      // the same device, as seeking back and forth between them will result in
+      // an overall loss of throughput.
+      digest = getDigestWithDevicePermit(path);
     } else {
       digest = getDigestInternal(path);
     }
@@ -374,18 +374,13 @@ public final class CustomCommandLine extends CommandLine {
             hasMapEach ? (CommandLineItem.MapFn<Object>) arguments.get(argi++) : null;
         if (isNestedSet) {
           NestedSet<Object> values = (NestedSet<Object>) arguments.get(argi++);
-          Collection<Object> collection = values.toCollection();
-          mutatedValues = new ArrayList<>(collection.size());
-          if (mapFn != null) {
-            Consumer<String> args = mutatedValues::add; // Hoist out of loop to reduce GC
-            for (Object object : collection) {
-              mapFn.expandToCommandLine(object, args);
-            }
-          } else {
-            for (Object object : collection) {
-              mutatedValues.add(CommandLineItem.expandToCommandLine(object));
-            }
+          if (!hasFormatEach && !hasBeforeEach && !hasJoinWith) {
+            // Stream the elements straight into the command line, without flattening the set.
+            expandNestedSet(values, mapFn, builder::add);
+            return argi;
           }
+          mutatedValues = new ArrayList<>();
+          expandNestedSet(values, mapFn, mutatedValues::add);
         } else {
           int count = (Integer) arguments.get(argi++);
           mutatedValues = new ArrayList<>(count);
@@ -424,6 +419,17 @@ public final class CustomCommandLine extends CommandLine {
         return argi;
       }
 
+      private static void expandNestedSet(
+          NestedSet<Object> values,
+          @Nullable CommandLineItem.MapFn<Object> mapFn,
+          Consumer<String> args) {
+        if (mapFn != null) {
+          values.forEach(object -> mapFn.expandToCommandLine(object, args));
+        } else {
+          values.forEach(object -> args.accept(CommandLineItem.expandToCommandLine(object)));
+        }
+      }
+
       @SuppressWarnings("unchecked")
       @Override
       public int addToFingerprint(
@@ -24,6 +24,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Ordering;
 import com.google.common.hash.Hashing;
 import com.google.devtools.build.lib.actions.Artifact;
@@ -188,6 +189,7 @@ public final class SkylarkRuleContext implements SkylarkRuleContextApi {
       }
 
       ImmutableMap.Builder<Artifact, Label> artifactLabelMapBuilder = ImmutableMap.builder();
+      ListMultimap<String, OutputFile> outputFileMap = ruleContext.getRule().getOutputFileMap();
       for (Attribute a : attributes) {
         String attrName = a.getName();
         Type<?> type = a.getType();
@@ -195,7 +197,7 @@ public final class SkylarkRuleContext implements SkylarkRuleContextApi {
           continue;
         }
         ImmutableList.Builder<Artifact> artifactsBuilder = ImmutableList.builder();
-        for (OutputFile outputFile : ruleContext.getRule().getOutputFileMap().get(attrName)) {
+        for (OutputFile outputFile : outputFileMap.get(attrName)) {
           Artifact artifact = ruleContext.createOutputArtifact(outputFile);
           artifactsBuilder.add(artifact);
           artifactLabelMapBuilder.put(artifact, outputFile.getLabel());
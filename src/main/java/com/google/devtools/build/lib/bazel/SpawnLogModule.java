@@ -15,6 +15,7 @@ package com.google.devtools.build.lib.bazel;
 
 import com.google.devtools.build.lib.buildtool.BuildRequest;
 import com.google.devtools.build.lib.events.Event;
+import com.google.devtools.build.lib.exec.CompactSpawnLogContext;
 import com.google.devtools.build.lib.exec.ExecutionOptions;
 import com.google.devtools.build.lib.exec.ExecutorBuilder;
 import com.google.devtools.build.lib.exec.SpawnLogContext;
@@ -35,13 +36,33 @@ public final class SpawnLogModule extends BlazeModule {
   public void executorInit(CommandEnvironment env, BuildRequest request, ExecutorBuilder builder) {
     env.getEventBus().register(this);
     ExecutionOptions executionOptions = env.getOptions().getOptions(ExecutionOptions.class);
-    if (executionOptions != null
-        && executionOptions.executionLogFile != null
-        && !executionOptions.executionLogFile.isEmpty()) {
+    boolean logFull =
+        executionOptions != null
+            && executionOptions.executionLogFile != null
+            && !executionOptions.executionLogFile.isEmpty();
+    boolean logCompact =
+        executionOptions != null
+            && executionOptions.executionLogCompactFile != null
+            && !executionOptions.executionLogCompactFile.isEmpty();
+    if (logFull && logCompact) {
+      env.getBlazeModuleEnvironment()
+          .exit(
+              new AbruptExitException(
+                  "--experimental_execution_log_file and "
+                      + "--experimental_execution_log_compact_file cannot be used together",
+                  ExitCode.COMMAND_LINE_ERROR));
+      spawnLogContext = null;
+    } else if (logFull || logCompact) {
       try {
-        spawnLogContext = new SpawnLogContext(
-            env.getExecRoot(),
-            new AsynchronousFileOutputStream(executionOptions.executionLogFile));
+        // The asynchronous stream serializes and writes the entries on its own thread.
+        spawnLogContext =
+            logCompact
+                ? new CompactSpawnLogContext(
+                    env.getExecRoot(),
+                    new AsynchronousFileOutputStream(executionOptions.executionLogCompactFile))
+                : new SpawnLogContext(
+                    env.getExecRoot(),
+                    new AsynchronousFileOutputStream(executionOptions.executionLogFile));
       } catch (IOException e) {
         env.getReporter().handle(Event.error(e.getMessage()));
         env.getBlazeModuleEnvironment().exit(new AbruptExitException(
@@ -22,11 +22,13 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.Subscribe;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.devtools.build.lib.authandtls.AuthAndTLSOptions;
+import com.google.devtools.build.lib.buildeventservice.BuildEventServiceUploader.UploadStatistics;
 import com.google.devtools.build.lib.buildeventservice.client.BuildEventServiceClient;
 import com.google.devtools.build.lib.buildeventstream.AnnounceBuildEventTransportsEvent;
 import com.google.devtools.build.lib.buildeventstream.BuildEventArtifactUploader;
@@ -38,8 +40,10 @@ import com.google.devtools.build.lib.buildeventstream.BuildEventTransportClosedE
 import com.google.devtools.build.lib.buildeventstream.LocalFilesArtifactUploader;
 import com.google.devtools.build.lib.buildeventstream.transports.BinaryFormatFileTransport;
 import com.google.devtools.build.lib.buildeventstream.transports.BuildEventStreamOptions;
+import com.google.devtools.build.lib.buildeventstream.transports.FileTransport;
 import com.google.devtools.build.lib.buildeventstream.transports.JsonFormatFileTransport;
 import com.google.devtools.build.lib.buildeventstream.transports.TextFormatFileTransport;
+import com.google.devtools.build.lib.buildtool.buildevent.BuildCompleteEvent;
 import com.google.devtools.build.lib.events.Event;
 import com.google.devtools.build.lib.events.EventHandler;
 import com.google.devtools.build.lib.events.Reporter;
@@ -59,8 +63,7 @@ import com.google.devtools.common.options.OptionsParsingException;
 import com.google.devtools.common.options.OptionsParsingResult;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Set;
@@ -194,6 +197,7 @@ public abstract class BuildEventServiceModule<BESOptionsT extends BuildEventServ
             .build();
 
     cmdEnv.getEventBus().register(streamer);
+    cmdEnv.getEventBus().register(this);
     registerOutAndErrOutputStreams();
 
     // This event should probably be posted in a more general place (e.g. {@link BuildTool};
@@ -419,8 +423,8 @@ public abstract class BuildEventServiceModule<BESOptionsT extends BuildEventServ
     if (!Strings.isNullOrEmpty(besStreamOptions.buildEventTextFile)) {
       try {
         BufferedOutputStream bepTextOutputStream =
-            new BufferedOutputStream(
-                Files.newOutputStream(Paths.get(besStreamOptions.buildEventTextFile)));
+            FileTransport.newOutputStream(
+                besStreamOptions.buildEventTextFile, besStreamOptions.buildEventFileGzip);
 
         BuildEventArtifactUploader localFileUploader =
             besStreamOptions.buildEventTextFilePathConversion
@@ -450,8 +454,8 @@ public abstract class BuildEventServiceModule<BESOptionsT extends BuildEventServ
     if (!Strings.isNullOrEmpty(besStreamOptions.buildEventBinaryFile)) {
       try {
         BufferedOutputStream bepBinaryOutputStream =
-            new BufferedOutputStream(
-                Files.newOutputStream(Paths.get(besStreamOptions.buildEventBinaryFile)));
+            FileTransport.newOutputStream(
+                besStreamOptions.buildEventBinaryFile, besStreamOptions.buildEventFileGzip);
 
         BuildEventArtifactUploader localFileUploader =
             besStreamOptions.buildEventBinaryFilePathConversion
@@ -481,8 +485,8 @@ public abstract class BuildEventServiceModule<BESOptionsT extends BuildEventServ
     if (!Strings.isNullOrEmpty(besStreamOptions.buildEventJsonFile)) {
       try {
         BufferedOutputStream bepJsonOutputStream =
-            new BufferedOutputStream(
-                Files.newOutputStream(Paths.get(besStreamOptions.buildEventJsonFile)));
+            FileTransport.newOutputStream(
+                besStreamOptions.buildEventJsonFile, besStreamOptions.buildEventFileGzip);
         BuildEventArtifactUploader localFileUploader =
             besStreamOptions.buildEventJsonFilePathConversion
                 ? uploaderSupplier.get()
@@ -519,6 +523,59 @@ public abstract class BuildEventServiceModule<BESOptionsT extends BuildEventServ
     return bepTransportsBuilder.build();
   }
 
+  /**
+   * Reports the file transports' statistics. The build tool logs are collected when the build
+   * completes, before the last events are written, so the numbers do not include those events.
+   */
+  @Subscribe
+  public void buildComplete(BuildCompleteEvent event) {
+    if (bepTransports == null) {
+      return;
+    }
+    for (BuildEventTransport transport : bepTransports) {
+      if (transport instanceof FileTransport) {
+        FileTransport fileTransport = (FileTransport) transport;
+        event
+            .getResult()
+            .getBuildToolLogCollection()
+            .addDirectValue(
+                fileTransport.name() + " bytes written before build completion",
+                Long.toString(fileTransport.getBytesWritten()).getBytes(StandardCharsets.UTF_8))
+            .addDirectValue(
+                fileTransport.name() + " max queue depth",
+                Integer.toString(fileTransport.getMaxQueueDepth())
+                    .getBytes(StandardCharsets.UTF_8));
+      } else if (transport instanceof BuildEventServiceTransport) {
+        // The upload usually continues after the build completed, so these are the statistics
+        // of the events that were uploaded until then.
+        BuildEventServiceTransport besTransport = (BuildEventServiceTransport) transport;
+        UploadStatistics statistics = besTransport.getBesUploader().getUploadStatistics();
+        event
+            .getResult()
+            .getBuildToolLogCollection()
+            .addDirectValue(
+                besTransport.name() + " acks received before build completion",
+                Integer.toString(statistics.getAcksReceived()).getBytes(StandardCharsets.UTF_8))
+            .addDirectValue(
+                besTransport.name() + " average ack latency millis",
+                Long.toString(statistics.getAverageAckLatencyMillis())
+                    .getBytes(StandardCharsets.UTF_8))
+            .addDirectValue(
+                besTransport.name() + " max ack latency millis",
+                Long.toString(statistics.getMaxAckLatencyMillis())
+                    .getBytes(StandardCharsets.UTF_8))
+            .addDirectValue(
+                besTransport.name() + " max event queue size",
+                Integer.toString(statistics.getMaxEventQueueSize())
+                    .getBytes(StandardCharsets.UTF_8))
+            .addDirectValue(
+                besTransport.name() + " max ack queue size",
+                Integer.toString(statistics.getMaxAckQueueSize())
+                    .getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
   protected abstract Class<BESOptionsT> optionsClass();
 
   protected abstract BuildEventServiceClient getBesClient(
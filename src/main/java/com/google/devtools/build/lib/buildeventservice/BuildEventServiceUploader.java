@@ -150,6 +150,9 @@ public final class BuildEventServiceUploader implements Runnable {
 
   private StreamContext streamContext;
 
+  /** Only accessed by the upload thread while the upload is running. */
+  private final UploadStatistics statistics = new UploadStatistics();
+
   private BuildEventServiceUploader(
       BuildEventServiceClient besClient,
       BuildEventArtifactUploader localFileUploader,
@@ -394,6 +397,7 @@ public final class BuildEventServiceUploader implements Runnable {
       // decide to re-send every build event for which an ACK has not been received. If so, it
       // adds an OPEN_STREAM event.
       while (true) {
+        statistics.recordEventQueueSize(eventQueue.size());
         EventLoopCommand event = eventQueue.takeFirst();
         switch (event.type()) {
           case OPEN_STREAM:
@@ -416,6 +420,7 @@ public final class BuildEventServiceUploader implements Runnable {
               // Invariant: the eventQueue may contain events of any type
               SendRegularBuildEventCommand buildEvent = (SendRegularBuildEventCommand) event;
               ackQueue.addLast(buildEvent);
+              statistics.recordAckQueueSize(ackQueue.size());
 
               PathConverter pathConverter = waitForLocalFileUploads(buildEvent);
 
@@ -437,6 +442,7 @@ public final class BuildEventServiceUploader implements Runnable {
               // Invariant: the eventQueue may contain events of any type
               SendBuildEventCommand lastEvent = (SendLastBuildEventCommand) event;
               ackQueue.addLast(lastEvent);
+              statistics.recordAckQueueSize(ackQueue.size());
               lastEventSent = true;
               PublishBuildToolEventStreamRequest request =
                   besProtoUtil.streamFinished(
@@ -455,6 +461,8 @@ public final class BuildEventServiceUploader implements Runnable {
                 long actualSeqNum = ackEvent.getSequenceNumber();
                 if (expected.getSequenceNumber() == actualSeqNum) {
                   acksReceived++;
+                  statistics.recordAck(
+                      clock.currentTimeMillis() - Timestamps.toMillis(expected.getCreationTime()));
                 } else {
                   ackQueue.addFirst(expected);
                   String message =
@@ -484,7 +492,7 @@ public final class BuildEventServiceUploader implements Runnable {
               Status streamStatus = completeEvent.status();
               if (streamStatus.isOk()) {
                 if (lastEventSent && ackQueue.isEmpty()) {
-                  logger.info("publishBuildEvents was successful");
+                  logger.info("publishBuildEvents was successful: " + statistics);
                   // Upload successful. Break out from the while(true) loop.
                   return;
                 } else {
@@ -746,6 +754,82 @@ public final class BuildEventServiceUploader implements Runnable {
     }
   }
 
+  /**
+   * Returns the statistics of the upload. They are final once the future returned by {@link
+   * #close()} completed, but may also be read while the upload is still running.
+   */
+  UploadStatistics getUploadStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Statistics about the upload of build events that are logged on completion and reported in the
+   * build tool logs. The ACK latency of an event is the time between it being enqueued and its ACK
+   * being received.
+   */
+  static final class UploadStatistics {
+    @GuardedBy("this")
+    private int acksReceived;
+
+    @GuardedBy("this")
+    private long totalAckLatencyMillis;
+
+    @GuardedBy("this")
+    private long maxAckLatencyMillis;
+
+    @GuardedBy("this")
+    private int maxEventQueueSize;
+
+    @GuardedBy("this")
+    private int maxAckQueueSize;
+
+    private synchronized void recordAck(long ackLatencyMillis) {
+      acksReceived++;
+      totalAckLatencyMillis += ackLatencyMillis;
+      maxAckLatencyMillis = Math.max(maxAckLatencyMillis, ackLatencyMillis);
+    }
+
+    private synchronized void recordEventQueueSize(int size) {
+      maxEventQueueSize = Math.max(maxEventQueueSize, size);
+    }
+
+    private synchronized void recordAckQueueSize(int size) {
+      maxAckQueueSize = Math.max(maxAckQueueSize, size);
+    }
+
+    synchronized int getAcksReceived() {
+      return acksReceived;
+    }
+
+    synchronized long getAverageAckLatencyMillis() {
+      return acksReceived == 0 ? 0 : totalAckLatencyMillis / acksReceived;
+    }
+
+    synchronized long getMaxAckLatencyMillis() {
+      return maxAckLatencyMillis;
+    }
+
+    synchronized int getMaxEventQueueSize() {
+      return maxEventQueueSize;
+    }
+
+    synchronized int getMaxAckQueueSize() {
+      return maxAckQueueSize;
+    }
+
+    @Override
+    public synchronized String toString() {
+      return String.format(
+          "acks=%d, avgAckLatencyMillis=%d, maxAckLatencyMillis=%d, maxEventQueueSize=%d, "
+              + "maxAckQueueSize=%d",
+          acksReceived,
+          getAverageAckLatencyMillis(),
+          maxAckLatencyMillis,
+          maxEventQueueSize,
+          maxAckQueueSize);
+    }
+  }
+
   /** Thrown when encountered problems while uploading build event artifacts. */
   private class LocalFileUploadException extends Exception {
     LocalFileUploadException(Throwable cause) {
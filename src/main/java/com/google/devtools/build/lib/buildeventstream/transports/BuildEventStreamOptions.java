@@ -117,6 +117,17 @@ public class BuildEventStreamOptions extends OptionsBase {
               + "hash function.")
   public int maxNamedSetEntries;
 
+  @Option(
+      name = "experimental_build_event_file_gzip",
+      defaultValue = "false",
+      documentationCategory = OptionDocumentationCategory.LOGGING,
+      effectTags = {OptionEffectTag.AFFECTS_OUTPUTS},
+      help =
+          "If enabled, compress the files written for --build_event_text_file, "
+              + "--build_event_binary_file and --build_event_json_file with gzip. The files are "
+              + "flushed as they are written, so they can still be read while the build runs.")
+  public boolean buildEventFileGzip;
+
   // TODO(ruperts): Remove these public getter methods for consistency with other options classes?
   public String getBuildEventTextFile() {
     return buildEventTextFile;
@@ -39,19 +39,26 @@ import com.google.devtools.build.lib.vfs.Path;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
@@ -59,10 +66,16 @@ import javax.annotation.concurrent.ThreadSafe;
  *
  * <p>Implementors of this class need to implement {@code #sendBuildEvent(BuildEvent)} which
  * serializes the build event and writes it to a file.
+ *
+ * <p>Events are serialized and written on a dedicated writer thread. The queue of events waiting
+ * to be written is bounded: senders block when it is full, rather than buffering an unbounded
+ * number of events in memory when the disk cannot keep up.
  */
-abstract class FileTransport implements BuildEventTransport {
+public abstract class FileTransport implements BuildEventTransport {
   private static final Logger logger = Logger.getLogger(FileTransport.class.getName());
 
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
   private final BuildEventProtocolOptions options;
   private final BuildEventArtifactUploader uploader;
   @VisibleForTesting final SequentialWriter writer;
@@ -81,6 +94,20 @@ abstract class FileTransport implements BuildEventTransport {
     this.namer = namer;
   }
 
+  /**
+   * Opens the file at {@code path} for a file transport. If {@code gzip} is true, the file is
+   * compressed with gzip; the compressor is flushed whenever the transport flushes, so the file can
+   * be read while it grows.
+   */
+  public static BufferedOutputStream newOutputStream(String path, boolean gzip)
+      throws IOException {
+    OutputStream out = Files.newOutputStream(Paths.get(path));
+    if (gzip) {
+      out = new GZIPOutputStream(out, GZIP_BUFFER_SIZE, /*syncFlush=*/ true);
+    }
+    return new BufferedOutputStream(out);
+  }
+
   @ThreadSafe
   @VisibleForTesting
   static final class SequentialWriter implements Runnable {
@@ -91,6 +118,10 @@ abstract class FileTransport implements BuildEventTransport {
     private final Thread writerThread;
     @VisibleForTesting OutputStream out;
     @VisibleForTesting static final Duration FLUSH_INTERVAL = Duration.ofMillis(250);
+    /** The maximum number of events waiting to be written before senders block. */
+    @VisibleForTesting static final int MAX_PENDING_WRITES = 10_000;
+    /** The maximum number of events the writer takes off the queue at once. */
+    private static final int MAX_BATCH_SIZE = 1_000;
     private final Function<BuildEventStreamProtos.BuildEvent, byte[]> serializeFunc;
     /** A callback function to notify the main thread about errors in the writer */
     private final Consumer<AbruptExitException> abruptExitCallback;
@@ -99,10 +130,14 @@ abstract class FileTransport implements BuildEventTransport {
 
     @VisibleForTesting
     final BlockingQueue<ListenableFuture<BuildEventStreamProtos.BuildEvent>> pendingWrites =
-        new LinkedBlockingDeque<>();
+        new LinkedBlockingDeque<>(MAX_PENDING_WRITES);
 
     private final SettableFuture<Void> closeFuture = SettableFuture.create();
 
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
     SequentialWriter(
         BufferedOutputStream outputStream,
         Function<BuildEventStreamProtos.BuildEvent, byte[]> serializeFunc,
@@ -123,18 +158,32 @@ abstract class FileTransport implements BuildEventTransport {
 
     @Override
     public void run() {
-      ListenableFuture<BuildEventStreamProtos.BuildEvent> buildEventF;
+      List<ListenableFuture<BuildEventStreamProtos.BuildEvent>> batch = new ArrayList<>();
       try {
         Instant prevFlush = Instant.now();
-        while ((buildEventF = pendingWrites.poll(FLUSH_INTERVAL.toMillis(), TimeUnit.MILLISECONDS))
-            != CLOSE) {
+        boolean closed = false;
+        while (!closed) {
+          ListenableFuture<BuildEventStreamProtos.BuildEvent> buildEventF =
+              pendingWrites.poll(FLUSH_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
           if (buildEventF != null) {
-            BuildEventStreamProtos.BuildEvent buildEvent = buildEventF.get();
-            byte[] serialized = serializeFunc.apply(buildEvent);
-            out.write(serialized);
+            // Take everything else that is pending at once, to contend less with the senders.
+            batch.add(buildEventF);
+            pendingWrites.drainTo(batch, MAX_BATCH_SIZE - 1);
+            for (ListenableFuture<BuildEventStreamProtos.BuildEvent> pending : batch) {
+              if (pending == CLOSE) {
+                closed = true;
+                break;
+              }
+              byte[] serialized = serializeFunc.apply(pending.get());
+              out.write(serialized);
+              bytesWritten.addAndGet(serialized.length);
+            }
+            batch.clear();
           }
           Instant now = Instant.now();
-          if (buildEventF == null || now.compareTo(prevFlush.plus(FLUSH_INTERVAL)) > 0) {
+          // The stream is flushed anyway when it is closed.
+          if (!closed
+              && (buildEventF == null || now.compareTo(prevFlush.plus(FLUSH_INTERVAL)) > 0)) {
             // Some users, e.g. Tulsi, expect prompt BEP stream flushes for interactive use.
             out.flush();
             prevFlush = now;
@@ -155,8 +204,12 @@ abstract class FileTransport implements BuildEventTransport {
           }
         } catch (IOException e) {
           logger.log(Level.SEVERE, "Failed to close BEP file output stream.", e);
+        } finally {
+          // Nothing takes events off the queue anymore, also if the writer failed with an unchecked
+          // exception. Senders that wait for room give up once the close future is done.
+          pendingWrites.clear();
+          closeFuture.set(null);
         }
-        closeFuture.set(null);
       }
     }
 
@@ -170,6 +223,35 @@ abstract class FileTransport implements BuildEventTransport {
       logger.log(Level.SEVERE, "Failed to write BEP events to file.", e);
     }
 
+    /**
+     * Adds a pending event to the write queue, blocking while the queue is full. An interrupt does
+     * not drop the event; it is restored once the event is queued. The event is dropped if the
+     * writer stops, e.g. because it failed, while the queue is full.
+     */
+    void enqueue(ListenableFuture<BuildEventStreamProtos.BuildEvent> buildEvent) {
+      boolean interrupted = false;
+      try {
+        while (true) {
+          try {
+            if (pendingWrites.offer(
+                buildEvent, FLUSH_INTERVAL.toMillis(), TimeUnit.MILLISECONDS)) {
+              break;
+            }
+            if (closeFuture.isDone()) {
+              return;
+            }
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+        maxQueueDepth.accumulateAndGet(pendingWrites.size(), Math::max);
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
     void closeNow() {
       if (closeFuture.isDone()) {
         return;
@@ -202,9 +284,17 @@ abstract class FileTransport implements BuildEventTransport {
     if (writer.closeFuture.isDone()) {
       return;
     }
-    if (!writer.pendingWrites.add(asStreamProto(event, namer))) {
-      logger.log(Level.SEVERE, "Failed to add BEP event to the write queue");
-    }
+    writer.enqueue(asStreamProto(event, namer));
+  }
+
+  /** Returns the number of bytes of serialized events written so far, before any compression. */
+  public long getBytesWritten() {
+    return writer.bytesWritten.get();
+  }
+
+  /** Returns the largest number of events that were waiting to be written at the same time. */
+  public int getMaxQueueDepth() {
+    return writer.maxQueueDepth.get();
   }
 
   protected abstract byte[] serializeEvent(BuildEventStreamProtos.BuildEvent buildEvent);
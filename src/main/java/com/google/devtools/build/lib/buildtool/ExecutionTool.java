@@ -662,6 +662,7 @@ public class ExecutionTool {
       resourceMgr.setRamUtilizationPercentage(100);
     }
     resourceMgr.setUseLocalMemoryEstimate(options.localMemoryEstimate);
+    resourceMgr.setSchedulingPolicy(options.localResourceSchedulingPolicy);
 
     resourceMgr.setAvailableResources(ResourceSet.create(
         resources.getMemoryMb(),
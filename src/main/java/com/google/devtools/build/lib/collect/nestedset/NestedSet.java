@@ -37,6 +37,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 
 /**
@@ -409,23 +410,93 @@ public final class NestedSet<E> implements Iterable<E> {
     return toCollection().iterator();
   }
 
+  /**
+   * Performs the given action for each element of this set, in the same order as {@link #toList}.
+   *
+   * <p>Unlike iterating over the set, this does not allocate a list of all elements, except for
+   * {@link Order#LINK_ORDER} sets, which are traversed backwards. Prefer it to {@link #toList} when
+   * the elements are only streamed somewhere else, e.g. into a fingerprint or a command line.
+   */
+  @Override
+  public void forEach(Consumer<? super E> action) {
+    Preconditions.checkNotNull(action);
+    if (isSingleton()) {
+      action.accept((E) children);
+      return;
+    }
+    if (isEmpty()) {
+      return;
+    }
+    if (getOrder() == Order.LINK_ORDER) {
+      toList().forEach(action);
+      return;
+    }
+    Object[] children = (Object[]) this.getChildren();
+    // This value is only set in the constructor, so safe to test here with no lock.
+    if (memo == LEAF_MEMO) {
+      for (Object child : children) {
+        action.accept((E) child);
+      }
+      return;
+    }
+    NestedSetFlattenCache flattenCache = NestedSetFlattenCache.get();
+    if (flattenCache != null) {
+      ImmutableList<E> cached = flattenCache.getIfPresent(children);
+      if (cached != null) {
+        cached.forEach(action);
+        return;
+      }
+    }
+    CompactHashSet<E> members = lockedExpand();
+    if (members != null) {
+      members.forEach(action);
+      return;
+    }
+    replay(action, children, memo, 0);
+  }
+
   /**
    * Implementation of {@link #toList}. Uses one of three strategies based on the value of {@code
    * this.memo}: wrap our direct items in a list, call {@link #lockedExpand} to perform the initial
    * {@link #walk}, or call {@link #replay} if we have a nontrivial memo.
+   *
+   * <p>If the {@link NestedSetFlattenCache} is enabled, it is consulted first, and large results
+   * are added to it. Very large sets that have not been expanded before are flattened in parallel
+   * by the cache instead of being walked.
    */
   private ImmutableList<E> expand(boolean handleInterruptedException) throws InterruptedException {
     // This value is only set in the constructor, so safe to test here with no lock.
     if (memo == LEAF_MEMO) {
       return ImmutableList.copyOf(new ArraySharingCollection<>((Object[]) children));
     }
+    NestedSetFlattenCache flattenCache = NestedSetFlattenCache.get();
+    if (flattenCache == null) {
+      return expandWithMemo(handleInterruptedException);
+    }
+    Object[] children = (Object[]) this.getChildren(handleInterruptedException);
+    ImmutableList<E> cached = flattenCache.getIfPresent(children);
+    if (cached != null) {
+      return cached;
+    }
+    // Reading memo without the lock may miss a concurrent expansion, which is merely wasteful.
+    if (memo == null && flattenCache.shouldFlattenInParallel(children)) {
+      return flattenCache.flattenInParallel(children);
+    }
+    ImmutableList<E> result = expandWithMemo(handleInterruptedException);
+    flattenCache.maybePut(children, result);
+    return result;
+  }
+
+  /** Expands this set by walking it the first time and replaying the walk afterwards. */
+  private ImmutableList<E> expandWithMemo(boolean handleInterruptedException)
+      throws InterruptedException {
     CompactHashSet<E> members = lockedExpand();
     if (members != null) {
       return ImmutableList.copyOf(members);
     }
     Object[] children = (Object[]) this.getChildren(handleInterruptedException);
     ImmutableList.Builder<E> output = ImmutableList.builderWithExpectedSize(orderAndSize >> 2);
-    replay(output, children, memo, 0);
+    NestedSet.<E>replay(output::add, children, memo, 0);
     return output.build();
   }
 
@@ -517,16 +588,16 @@ public final class NestedSet<E> implements Iterable<E> {
 
   /**
    * Repeat a previous traversal of {@code children} performed by {@link #walk} and recorded in
-   * {@code memo}, appending leaves to {@code output}.
+   * {@code memo}, passing leaves to {@code output}.
    */
   private static <E> int replay(
-      ImmutableList.Builder<E> output, Object[] children, byte[] memo, int pos) {
+      Consumer<? super E> output, Object[] children, byte[] memo, int pos) {
     for (Object child : children) {
       if ((memo[pos >> 3] & (1 << (pos & 7))) != 0) {
         if (child instanceof Object[]) {
           pos = replay(output, (Object[]) child, memo, pos + 1);
         } else {
-          output.add((E) child);
+          output.accept((E) child);
           ++pos;
         }
       } else {
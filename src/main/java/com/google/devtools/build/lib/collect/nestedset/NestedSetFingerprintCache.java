@@ -59,9 +59,7 @@ public class NestedSetFingerprintCache {
 
   private <T> void addNestedSetToFingerprintSlow(
       MapFn<? super T> mapFn, Fingerprint fingerprint, NestedSet<T> nestedSet) {
-    for (T object : nestedSet) {
-      mapFn.expandToCommandLine(object, fingerprint);
-    }
+    nestedSet.forEach(object -> mapFn.expandToCommandLine(object, fingerprint));
   }
 
   public void clear() {
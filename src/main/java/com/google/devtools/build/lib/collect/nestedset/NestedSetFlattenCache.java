@@ -0,0 +1,220 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.collect.nestedset;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.build.lib.collect.compacthashset.CompactHashSet;
+import com.google.devtools.build.lib.concurrent.NamedForkJoinPool;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import javax.annotation.Nullable;
+
+/**
+ * An opt-in, process-wide cache of the flattened contents of large {@link NestedSet}s.
+ *
+ * <p>Entries are keyed by the identity of the internal children array, which is shared by every
+ * {@link NestedSet} that wraps it and by every larger set that includes it, and are only held as
+ * long as that array is reachable. The cache is bounded by the total number of elements of the
+ * cached lists. When a set misses the cache, the flattened contents of its large subsets are
+ * reused from the cache, and very large sets are flattened in parallel, one task per subset, before
+ * the results are merged in the order a sequential traversal would produce.
+ *
+ * <p>The cache is disabled by default; see {@link #configure}.
+ */
+@SuppressWarnings("unchecked")
+public final class NestedSetFlattenCache {
+
+  /**
+   * Minimum estimated size of a set (see {@link #estimateSize}) for it to be flattened in parallel.
+   */
+  private static final int DEFAULT_PARALLEL_FLATTEN_THRESHOLD = 1 << 14;
+
+  @Nullable private static volatile NestedSetFlattenCache instance;
+
+  private final Cache<Object[], ImmutableList<Object>> cache;
+  private final int minimumSize;
+  @Nullable private final ForkJoinPool pool;
+  private final int parallelFlattenThreshold;
+
+  private NestedSetFlattenCache(
+      long maximumElements, int minimumSize, int parallelism, int parallelFlattenThreshold) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumWeight(maximumElements)
+            .<Object[], ImmutableList<Object>>weigher((children, elements) -> elements.size())
+            .recordStats()
+            .build();
+    this.minimumSize = minimumSize;
+    this.pool =
+        parallelism > 1 ? NamedForkJoinPool.newNamedPool("nested-set-flatten", parallelism) : null;
+    this.parallelFlattenThreshold = parallelFlattenThreshold;
+  }
+
+  /**
+   * Enables or disables the cache of flattened nested sets.
+   *
+   * @param maximumElements the total number of elements of all cached lists; 0 disables the cache
+   * @param minimumSize the number of elements a flattened set needs to have to be cached
+   * @param parallelism the number of threads used to flatten very large sets; 1 flattens every
+   *     set on the calling thread
+   */
+  public static synchronized void configure(
+      long maximumElements, int minimumSize, int parallelism) {
+    configure(maximumElements, minimumSize, parallelism, DEFAULT_PARALLEL_FLATTEN_THRESHOLD);
+  }
+
+  @VisibleForTesting
+  static synchronized void configure(
+      long maximumElements, int minimumSize, int parallelism, int parallelFlattenThreshold) {
+    Preconditions.checkArgument(maximumElements >= 0, maximumElements);
+    Preconditions.checkArgument(minimumSize >= 0, minimumSize);
+    Preconditions.checkArgument(parallelism > 0, parallelism);
+    NestedSetFlattenCache previous = instance;
+    instance =
+        maximumElements == 0
+            ? null
+            : new NestedSetFlattenCache(
+                maximumElements, minimumSize, parallelism, parallelFlattenThreshold);
+    if (previous != null && previous.pool != null) {
+      previous.pool.shutdown();
+    }
+  }
+
+  /**
+   * Obtains cache statistics, or null if the cache is disabled.
+   *
+   * @return an immutable snapshot of the cache statistics
+   */
+  @Nullable
+  public static CacheStats getCacheStats() {
+    NestedSetFlattenCache flattenCache = instance;
+    return flattenCache == null ? null : flattenCache.cache.stats();
+  }
+
+  /** Returns the cache, or null if it is disabled. */
+  @Nullable
+  static NestedSetFlattenCache get() {
+    return instance;
+  }
+
+  /** Returns the cached flattened contents of the set with the given children, if present. */
+  @Nullable
+  <E> ImmutableList<E> getIfPresent(Object[] children) {
+    return (ImmutableList<E>) (ImmutableList<?>) cache.getIfPresent(children);
+  }
+
+  /** Caches {@code elements} as the flattened contents of {@code children} if it is large. */
+  void maybePut(Object[] children, ImmutableList<?> elements) {
+    if (elements.size() >= minimumSize) {
+      cache.put(children, (ImmutableList<Object>) elements);
+    }
+  }
+
+  /** Returns true if the set with the given children should be flattened in parallel. */
+  boolean shouldFlattenInParallel(Object[] children) {
+    return pool != null && estimateSize(children) >= parallelFlattenThreshold;
+  }
+
+  /**
+   * Estimates the size of a set from its direct members and subsets without traversing it. Subsets
+   * that are in the cache contribute their size and others their number of children; this is meant
+   * to tell apart sets that are worth flattening in parallel, not to be precise.
+   */
+  private long estimateSize(Object[] children) {
+    int subsets = 0;
+    long size = 0;
+    for (Object child : children) {
+      if (child instanceof Object[]) {
+        subsets++;
+        ImmutableList<Object> cached = cache.getIfPresent(child);
+        size += cached != null ? cached.size() : ((Object[]) child).length;
+      } else {
+        size++;
+      }
+    }
+    return subsets > 1 ? size : 0;
+  }
+
+  /**
+   * Flattens the set with the given children by flattening each of its subsets in a separate task,
+   * and caches the result. The subsets' contents are merged in the order of {@code children}, which
+   * yields the same order as a sequential depth-first traversal: every element is placed where it
+   * is first reached.
+   */
+  <E> ImmutableList<E> flattenInParallel(Object[] children) {
+    List<ForkJoinTask<ImmutableList<Object>>> tasks = new ArrayList<>(children.length);
+    for (Object child : children) {
+      if (child instanceof Object[]) {
+        tasks.add(pool.submit(() -> flatten((Object[]) child)));
+      }
+    }
+    CompactHashSet<Object> members = CompactHashSet.createWithExpectedSize(128);
+    int task = 0;
+    for (Object child : children) {
+      if (child instanceof Object[]) {
+        members.addAll(tasks.get(task++).join());
+      } else {
+        members.add(child);
+      }
+    }
+    ImmutableList<Object> result = ImmutableList.copyOf(members);
+    maybePut(children, result);
+    return (ImmutableList<E>) (ImmutableList<?>) result;
+  }
+
+  /** Flattens the set with the given children sequentially, using and filling the cache. */
+  private ImmutableList<Object> flatten(Object[] children) {
+    ImmutableList<Object> cached = cache.getIfPresent(children);
+    if (cached != null) {
+      return cached;
+    }
+    CompactHashSet<Object> members = CompactHashSet.createWithExpectedSize(128);
+    CompactHashSet<Object> sets = CompactHashSet.createWithExpectedSize(128);
+    sets.add(children);
+    walk(sets, members, children);
+    ImmutableList<Object> result = ImmutableList.copyOf(members);
+    maybePut(children, result);
+    return result;
+  }
+
+  /**
+   * Performs a depth-first traversal of {@code children} like {@link NestedSet}'s own, except that
+   * the contents of cached subsets are added without traversing them.
+   */
+  private void walk(
+      CompactHashSet<Object> sets, CompactHashSet<Object> members, Object[] children) {
+    for (Object child : children) {
+      if (child instanceof Object[]) {
+        if (sets.add(child)) {
+          ImmutableList<Object> cached = cache.getIfPresent(child);
+          if (cached != null) {
+            members.addAll(cached);
+          } else {
+            walk(sets, members, (Object[]) child);
+          }
+        }
+      } else {
+        members.add(child);
+      }
+    }
+  }
+}
@@ -0,0 +1,189 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.dynamic;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.devtools.build.lib.actions.ActionInput;
+import com.google.devtools.build.lib.actions.Spawn;
+import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
+import com.google.devtools.build.lib.dynamic.DynamicSpawnStrategy.StrategyIdentifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nullable;
+
+/**
+ * Remembers which side of dynamic execution won for previously executed spawns, so that {@link
+ * DynamicSpawnStrategy} can stop racing spawns whose outcome is predictable.
+ *
+ * <p>Wins are counted per mnemonic and per action, where an action is identified by the exec path
+ * of its primary output. An instance lives as long as the {@link DynamicExecutionModule}, so the
+ * statistics carry over from one build to the next in the same server.
+ */
+@ThreadSafe
+final class DynamicExecutionHistory {
+
+  /** What to do with a spawn that may run both locally and remotely. */
+  enum Decision {
+    /** Start both sides at the same time. */
+    RACE,
+    /** Start the local side only after a delay, because remote usually wins. */
+    DELAY_LOCAL,
+    /** Start the remote side only after a delay, because local usually wins. */
+    DELAY_REMOTE,
+    /** Do not start the remote side, because local almost always wins. */
+    LOCAL_ONLY,
+    /** Do not start the local side, because remote almost always wins. */
+    REMOTE_ONLY
+  }
+
+  /** A {@link Decision} together with a human-readable explanation of how it was reached. */
+  @AutoValue
+  abstract static class Prediction {
+    static Prediction create(Decision decision, String reason) {
+      return new AutoValue_DynamicExecutionHistory_Prediction(decision, reason);
+    }
+
+    abstract Decision decision();
+
+    abstract String reason();
+  }
+
+  /** Weight kept by older results each time a new result is recorded. */
+  private static final double DECAY = 0.95;
+
+  /**
+   * The largest usable number of minimum samples. Because of the decay, the recorded totals
+   * approach {@code 1 / (1 - DECAY)} but never reach it, so a larger minimum would never be met.
+   */
+  static final int MAX_MIN_SAMPLES = (int) Math.ceil(1 / (1 - DECAY)) - 1;
+
+  /**
+   * The smallest usable skip percentage. Below 50 percent, both sides could be considered to win
+   * often enough to skip the other one.
+   */
+  static final int MIN_SKIP_PERCENTAGE = 50;
+
+  /**
+   * Even when one side is expected to lose, every so often both sides are raced again, so that the
+   * history notices when the balance shifts.
+   */
+  private static final int RACE_EVERY_NTH_SKIPPED_SPAWN = 20;
+
+  private static final long MAX_TRACKED_ACTIONS = 100_000;
+
+  private final ConcurrentMap<String, WinCounts> winsByMnemonic = new ConcurrentHashMap<>();
+  private final Cache<String, WinCounts> winsByAction =
+      CacheBuilder.newBuilder().maximumSize(MAX_TRACKED_ACTIONS).build();
+
+  /**
+   * Returns how the given spawn should be scheduled, based on the wins recorded so far.
+   *
+   * @param minSamples how many (decayed) results are needed before a prediction is made
+   * @param skipPercentage how often (in percent) one side must have won for the other side to be
+   *     skipped altogether
+   */
+  Prediction predict(Spawn spawn, int minSamples, int skipPercentage) {
+    WinCounts counts = null;
+    String source = null;
+    String actionKey = actionKey(spawn);
+    if (actionKey != null) {
+      counts = winsByAction.getIfPresent(actionKey);
+      source = "action " + actionKey;
+    }
+    if (counts == null || counts.total() < minSamples) {
+      counts = winsByMnemonic.get(spawn.getMnemonic());
+      source = "mnemonic " + spawn.getMnemonic();
+    }
+    if (counts == null || counts.total() < minSamples) {
+      return Prediction.create(Decision.RACE, "not enough history for " + spawn.getMnemonic());
+    }
+    return counts.decide(source, skipPercentage / 100.0);
+  }
+
+  /** Records which side won the race for the given spawn. */
+  void recordWinner(Spawn spawn, StrategyIdentifier winner) {
+    if (winner != StrategyIdentifier.LOCAL && winner != StrategyIdentifier.REMOTE) {
+      return;
+    }
+    winsByMnemonic.computeIfAbsent(spawn.getMnemonic(), k -> new WinCounts()).record(winner);
+    String actionKey = actionKey(spawn);
+    if (actionKey != null) {
+      try {
+        winsByAction.get(actionKey, WinCounts::new).record(winner);
+      } catch (ExecutionException e) {
+        // WinCounts::new cannot throw.
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  void clear() {
+    winsByMnemonic.clear();
+    winsByAction.invalidateAll();
+  }
+
+  @Nullable
+  private static String actionKey(Spawn spawn) {
+    ActionInput primaryOutput = spawn.getResourceOwner().getPrimaryOutput();
+    return primaryOutput == null ? null : primaryOutput.getExecPathString();
+  }
+
+  /** Exponentially decayed win counts for one mnemonic or action. */
+  private static final class WinCounts {
+    private double localWins;
+    private double remoteWins;
+    private int skippedSinceLastRace;
+
+    synchronized void record(StrategyIdentifier winner) {
+      localWins *= DECAY;
+      remoteWins *= DECAY;
+      if (winner == StrategyIdentifier.LOCAL) {
+        localWins += 1;
+      } else {
+        remoteWins += 1;
+      }
+    }
+
+    synchronized double total() {
+      return localWins + remoteWins;
+    }
+
+    synchronized Prediction decide(String source, double skipRatio) {
+      double localRatio = localWins / (localWins + remoteWins);
+      String stats =
+          String.format(
+              "local won %.0f%% of the recent races for %s", localRatio * 100, source);
+      if (localRatio >= skipRatio || 1 - localRatio >= skipRatio) {
+        if (++skippedSinceLastRace >= RACE_EVERY_NTH_SKIPPED_SPAWN) {
+          skippedSinceLastRace = 0;
+          return Prediction.create(Decision.RACE, stats + "; racing again to refresh the history");
+        }
+        return localRatio >= skipRatio
+            ? Prediction.create(Decision.LOCAL_ONLY, stats)
+            : Prediction.create(Decision.REMOTE_ONLY, stats);
+      }
+      if (localRatio > 0.5) {
+        return Prediction.create(Decision.DELAY_REMOTE, stats);
+      } else if (localRatio < 0.5) {
+        return Prediction.create(Decision.DELAY_LOCAL, stats);
+      }
+      return Prediction.create(Decision.RACE, stats);
+    }
+  }
+}
@@ -40,6 +40,9 @@ import java.util.concurrent.Executors;
 public class DynamicExecutionModule extends BlazeModule {
   private ExecutorService executorService;
 
+  // Outlives individual commands, so that dynamic execution can learn across builds.
+  private final DynamicExecutionHistory history = new DynamicExecutionHistory();
+
   @Override
   public Iterable<Class<? extends OptionsBase>> getCommandOptions(Command command) {
     return "build".equals(command.name())
@@ -82,8 +85,11 @@ public class DynamicExecutionModule extends BlazeModule {
       throws ExecutorInitException {
     DynamicExecutionOptions options = env.getOptions().getOptions(DynamicExecutionOptions.class);
     if (options.internalSpawnScheduler) {
+      if (options.learnWinners) {
+        checkLearningOptions(options);
+      }
       builder.addActionContext(
-          new DynamicSpawnStrategy(executorService, options, this::getExecutionPolicy));
+          new DynamicSpawnStrategy(executorService, options, this::getExecutionPolicy, history));
       builder.addStrategyByContext(SpawnActionContext.class, "dynamic");
       addBackingStrategy(builder, options.dynamicLocalStrategy, "--dynamic_local_strategy");
       addBackingStrategy(builder, options.dynamicRemoteStrategy, "--dynamic_remote_strategy");
@@ -91,6 +97,29 @@ public class DynamicExecutionModule extends BlazeModule {
     }
   }
 
+  /**
+   * Rejects values of the options of {@code --experimental_dynamic_learn_winners} with which the
+   * history would silently never act.
+   *
+   * @throws ExecutorInitException if an option is out of range
+   */
+  private static void checkLearningOptions(DynamicExecutionOptions options)
+      throws ExecutorInitException {
+    if (options.learnMinSamples < 1
+        || options.learnMinSamples > DynamicExecutionHistory.MAX_MIN_SAMPLES) {
+      throw new ExecutorInitException(
+          String.format(
+              "--experimental_dynamic_learn_min_samples must be between 1 and %d, was %d",
+              DynamicExecutionHistory.MAX_MIN_SAMPLES, options.learnMinSamples));
+    }
+    if (options.skipLoserPercentage < DynamicExecutionHistory.MIN_SKIP_PERCENTAGE) {
+      throw new ExecutorInitException(
+          String.format(
+              "--experimental_dynamic_skip_loser_percentage must be at least %d, was %d",
+              DynamicExecutionHistory.MIN_SKIP_PERCENTAGE, options.skipLoserPercentage));
+    }
+  }
+
   /**
    * Use the {@link Spawn} metadata to determine if it can be executed locally, remotely, or both.
    * @param spawn the {@link Spawn} action
@@ -88,6 +88,40 @@ public class DynamicExecutionOptions extends OptionsBase {
   )
   public int localExecutionDelay;
 
+  @Option(
+      name = "experimental_dynamic_learn_winners",
+      documentationCategory = OptionDocumentationCategory.EXECUTION_STRATEGY,
+      effectTags = {OptionEffectTag.EXECUTION},
+      defaultValue = "false",
+      help =
+          "If set, dynamic execution remembers which side won for each mnemonic and action, "
+              + "across builds in the same server, and uses that to delay or skip the side that "
+              + "usually loses. The delay is --experimental_local_execution_delay. The reasoning "
+              + "is visible in the profile and with --experimental_debug_spawn_scheduler.")
+  public boolean learnWinners;
+
+  @Option(
+      name = "experimental_dynamic_learn_min_samples",
+      documentationCategory = OptionDocumentationCategory.EXECUTION_STRATEGY,
+      effectTags = {OptionEffectTag.EXECUTION},
+      defaultValue = "10",
+      help =
+          "How many races must have been recorded for a mnemonic or action before "
+              + "--experimental_dynamic_learn_winners acts on them. Older races count less than "
+              + "recent ones, so this must be between 1 and 19.")
+  public int learnMinSamples;
+
+  @Option(
+      name = "experimental_dynamic_skip_loser_percentage",
+      documentationCategory = OptionDocumentationCategory.EXECUTION_STRATEGY,
+      effectTags = {OptionEffectTag.EXECUTION},
+      defaultValue = "95",
+      help =
+          "With --experimental_dynamic_learn_winners, the side that won less than (100 - this "
+              + "value) percent of the recent races is not started at all. Must be at least 50. "
+              + "Values above 100 disable skipping, so the losing side is only delayed.")
+  public int skipLoserPercentage;
+
   @Option(
     name = "experimental_debug_spawn_scheduler",
     documentationCategory = OptionDocumentationCategory.UNDOCUMENTED,
@@ -30,8 +30,12 @@ import com.google.devtools.build.lib.actions.SpawnActionContext;
 import com.google.devtools.build.lib.actions.SpawnResult;
 import com.google.devtools.build.lib.actions.Spawns;
 import com.google.devtools.build.lib.actions.UserExecException;
+import com.google.devtools.build.lib.dynamic.DynamicExecutionHistory.Decision;
+import com.google.devtools.build.lib.dynamic.DynamicExecutionHistory.Prediction;
 import com.google.devtools.build.lib.events.Event;
 import com.google.devtools.build.lib.exec.ExecutionPolicy;
+import com.google.devtools.build.lib.profiler.Profiler;
+import com.google.devtools.build.lib.profiler.SilentCloseable;
 import com.google.devtools.build.lib.util.io.FileOutErr;
 import com.google.devtools.build.lib.vfs.Path;
 import java.io.IOException;
@@ -60,6 +64,9 @@ import javax.annotation.Nullable;
  * executors over the network is way too high - there is no point in executing an action locally and
  * save 0.5s of time, when it then takes us 5 seconds to upload the results to remote executors for
  * another action that's scheduled to run there.
+ *
+ * <p>With {@code --experimental_dynamic_learn_winners}, the strategy consults a {@link
+ * DynamicExecutionHistory} of earlier races and delays or skips the side that is expected to lose.
  */
 @ExecutionStrategy(
     name = {"dynamic", "dynamic_worker"},
@@ -118,6 +125,7 @@ public class DynamicSpawnStrategy implements SpawnActionContext {
   private final DynamicExecutionOptions options;
   private final Function<Spawn, ExecutionPolicy> getExecutionPolicy;
   private final AtomicBoolean delayLocalExecution = new AtomicBoolean(false);
+  private final DynamicExecutionHistory history;
 
   private @Nullable SandboxedSpawnActionContext remoteStrategy;
   private @Nullable SandboxedSpawnActionContext localStrategy;
@@ -132,9 +140,22 @@ public class DynamicSpawnStrategy implements SpawnActionContext {
       ExecutorService executorService,
       DynamicExecutionOptions options,
       Function<Spawn, ExecutionPolicy> getExecutionPolicy) {
+    this(executorService, options, getExecutionPolicy, new DynamicExecutionHistory());
+  }
+
+  /**
+   * Constructs a {@code DynamicSpawnStrategy} that learns from, and records into, the given
+   * history of earlier races.
+   */
+  DynamicSpawnStrategy(
+      ExecutorService executorService,
+      DynamicExecutionOptions options,
+      Function<Spawn, ExecutionPolicy> getExecutionPolicy,
+      DynamicExecutionHistory history) {
     this.executorService = executorService;
     this.options = options;
     this.getExecutionPolicy = getExecutionPolicy;
+    this.history = history;
   }
 
   /**
@@ -187,6 +208,30 @@ public class DynamicSpawnStrategy implements SpawnActionContext {
       return runRemotely(spawn, actionExecutionContext, null);
     }
 
+    final Prediction prediction =
+        options.learnWinners
+            ? history.predict(spawn, options.learnMinSamples, options.skipLoserPercentage)
+            : null;
+    final String description =
+        prediction == null
+            ? "dynamic execution: race " + spawn.getMnemonic()
+            : describePrediction(spawn, prediction);
+    if (prediction != null) {
+      if (options.debugSpawnScheduler) {
+        actionExecutionContext.getEventHandler().handle(Event.info(description));
+      }
+      if (prediction.decision() == Decision.LOCAL_ONLY) {
+        try (SilentCloseable c = Profiler.instance().profile(description)) {
+          return runLocally(spawn, actionExecutionContext, null);
+        }
+      }
+      if (prediction.decision() == Decision.REMOTE_ONLY) {
+        try (SilentCloseable c = Profiler.instance().profile(description)) {
+          return runRemotely(spawn, actionExecutionContext, null);
+        }
+      }
+    }
+
     // At this point we have a Spawn that can run locally and can run remotely. Run it in parallel
     // using both the remote and the local strategy.
     ExecException exceptionDuringExecution = null;
@@ -208,7 +253,7 @@ public class DynamicSpawnStrategy implements SpawnActionContext {
     // nullifies the gains from the faster spawn.
     Phaser bothTasksFinished = new Phaser(/*parties=*/ 1);
 
-    try {
+    try (SilentCloseable c = Profiler.instance().profile(description)) {
       final AtomicReference<Class<? extends SpawnActionContext>> outputsHaveBeenWritten =
           new AtomicReference<>(null);
       dynamicExecutionResult =
@@ -227,7 +272,9 @@ public class DynamicSpawnStrategy implements SpawnActionContext {
                       // be to establish a reporting mechanism from strategies back to here, where
                       // we delay starting locally until the remote strategy tells us that the
                       // action isn't a cache hit.
-                      if (delayLocalExecution.get()) {
+                      if (prediction == null
+                          ? delayLocalExecution.get()
+                          : prediction.decision() == Decision.DELAY_LOCAL) {
                         Thread.sleep(options.localExecutionDelay);
                       }
                       return runLocally(
@@ -242,6 +289,9 @@ public class DynamicSpawnStrategy implements SpawnActionContext {
                       actionExecutionContext.getFileOutErr()) {
                     @Override
                     public List<SpawnResult> callImpl() throws InterruptedException, ExecException {
+                      if (prediction != null && prediction.decision() == Decision.DELAY_REMOTE) {
+                        Thread.sleep(options.localExecutionDelay);
+                      }
                       List<SpawnResult> spawnResults =
                           runRemotely(
                               spawn,
@@ -299,6 +349,10 @@ public class DynamicSpawnStrategy implements SpawnActionContext {
       throw exceptionDuringExecution;
     }
 
+    if (prediction != null && isFairResult(prediction.decision(), winningStrategy)) {
+      history.recordWinner(spawn, winningStrategy);
+    }
+
     if (options.debugSpawnScheduler) {
       actionExecutionContext
           .getEventHandler()
@@ -316,6 +370,29 @@ public class DynamicSpawnStrategy implements SpawnActionContext {
     return dynamicExecutionResult.spawnResults();
   }
 
+  /**
+   * Returns whether the outcome of a race says something about which side is faster. A side that
+   * was started late and lost might have won if it had started on time, so recording its loss would
+   * only confirm the decision to delay it. A delayed side that still won, or a race in which both
+   * sides started at the same time, is recorded.
+   */
+  private static boolean isFairResult(Decision decision, StrategyIdentifier winner) {
+    switch (decision) {
+      case DELAY_LOCAL:
+        return winner == StrategyIdentifier.LOCAL;
+      case DELAY_REMOTE:
+        return winner == StrategyIdentifier.REMOTE;
+      default:
+        return true;
+    }
+  }
+
+  private static String describePrediction(Spawn spawn, Prediction prediction) {
+    return String.format(
+        "dynamic execution: %s %s (%s)",
+        prediction.decision().name().toLowerCase(), spawn.getMnemonic(), prediction.reason());
+  }
+
   @Override
   public boolean canExec(Spawn spawn) {
     return remoteStrategy.canExec(spawn)
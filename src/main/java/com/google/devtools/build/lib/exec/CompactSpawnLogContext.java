@@ -0,0 +1,282 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.exec;
+
+import com.google.devtools.build.lib.actions.ActionInput;
+import com.google.devtools.build.lib.actions.Artifact;
+import com.google.devtools.build.lib.actions.ExecutionStrategy;
+import com.google.devtools.build.lib.actions.MetadataProvider;
+import com.google.devtools.build.lib.actions.Spawn;
+import com.google.devtools.build.lib.actions.SpawnResult;
+import com.google.devtools.build.lib.actions.Spawns;
+import com.google.devtools.build.lib.analysis.platform.PlatformInfo;
+import com.google.devtools.build.lib.collect.nestedset.NestedSet;
+import com.google.devtools.build.lib.collect.nestedset.NestedSetView;
+import com.google.devtools.build.lib.exec.Protos.ExecLogEntry;
+import com.google.devtools.build.lib.exec.Protos.File;
+import com.google.devtools.build.lib.util.io.MessageOutputStream;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.PathFragment;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * A {@link SpawnLogContext} that writes the compact execution log format described by {@link
+ * ExecLogEntry}.
+ *
+ * <p>Every input file and directory is logged once, the first time a spawn uses it, and the
+ * structure of the spawn's input {@link NestedSet} is preserved, so that a nested set shared by
+ * many spawns is only logged once as well. The structure is only known for spawns whose {@link
+ * Spawn#getInputFiles} is a {@link NestedSet}, like those of a {@link
+ * com.google.devtools.build.lib.actions.BaseSpawn}; the inputs of other spawns are logged as one
+ * input set per spawn, and only the individual inputs are shared.
+ */
+@ExecutionStrategy(
+    name = {"compact-spawn-log"},
+    contextType = SpawnLogContext.class)
+public class CompactSpawnLogContext extends SpawnLogContext {
+
+  private static final Logger logger = Logger.getLogger(CompactSpawnLogContext.class.getName());
+
+  // Ids of the inputs logged so far, keyed by exec path. An id is only published here once the
+  // corresponding entry has been handed to the output stream, so that entries referring to it are
+  // always written after it.
+  private final Map<String, Integer> inputIds = new ConcurrentHashMap<>();
+
+  // Ids of the input sets logged so far, keyed by the identifier of the nested set node. The keys
+  // are arrays compared by identity, and are held weakly so that the log does not keep nested sets
+  // alive.
+  private final Map<Object, Integer> inputSetIds =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  // The identifiers of the logged nested set nodes that contain a middleman, directly or
+  // transitively. Populated before the node's id is published in inputSetIds.
+  private final Set<Object> inputSetsWithMiddlemen =
+      Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<>()));
+
+  @GuardedBy("this")
+  private int nextId = 1;
+
+  public CompactSpawnLogContext(Path execRoot, MessageOutputStream executionLog) {
+    super(execRoot, executionLog);
+  }
+
+  @Override
+  public void logSpawn(
+      Spawn spawn,
+      MetadataProvider metadataProvider,
+      SortedMap<PathFragment, ActionInput> inputMap,
+      Duration timeout,
+      SpawnResult result)
+      throws IOException {
+    ExecLogEntry.Spawn.Builder builder = ExecLogEntry.Spawn.newBuilder();
+    builder.addAllCommandArgs(spawn.getArguments());
+
+    Map<String, String> env = spawn.getEnvironment();
+    // Sorting the environment pairs by variable name.
+    for (String var : new TreeSet<>(env.keySet())) {
+      builder.addEnvironmentVariablesBuilder().setName(var).setValue(env.get(var));
+    }
+
+    builder.setInputSetId(logInputs(spawn, inputMap, metadataProvider));
+
+    List<String> outputPaths = new ArrayList<>();
+    for (ActionInput output : spawn.getOutputFiles()) {
+      outputPaths.add(output.getExecPathString());
+    }
+    Collections.sort(outputPaths);
+    builder.addAllListedOutputs(outputPaths);
+    for (Map.Entry<Path, ActionInput> e : listExistingOutputs(spawn).entrySet()) {
+      Path path = e.getKey();
+      if (path.isDirectory()) {
+        listDirectoryContents(path, builder::addActualOutputs, metadataProvider);
+      } else {
+        File.Builder outputBuilder = builder.addActualOutputsBuilder();
+        outputBuilder.setPath(path.relativeTo(execRoot).toString());
+        try {
+          outputBuilder.setDigest(computeDigest(e.getValue(), path, metadataProvider));
+        } catch (IOException ex) {
+          logger.log(Level.WARNING, "Error computing spawn event output properties", ex);
+        }
+      }
+    }
+    builder.setRemotable(Spawns.mayBeExecutedRemotely(spawn));
+
+    PlatformInfo execPlatform = spawn.getExecutionPlatform();
+    if (execPlatform != null && execPlatform.remoteExecutionProperties() != null) {
+      builder.setPlatform(
+          buildPlatform(execPlatform.label(), execPlatform.remoteExecutionProperties()));
+    }
+    if (result.status() != SpawnResult.Status.SUCCESS) {
+      builder.setStatus(result.status().toString());
+    }
+    if (!timeout.isZero()) {
+      builder.setTimeoutMillis(timeout.toMillis());
+    }
+    builder.setCacheable(Spawns.mayBeCached(spawn));
+    builder.setExitCode(result.exitCode());
+    builder.setRemoteCacheHit(result.isCacheHit());
+    builder.setRunner(result.getRunnerName());
+    String progressMessage = spawn.getResourceOwner().getProgressMessage();
+    if (progressMessage != null) {
+      builder.setProgressMessage(progressMessage);
+    }
+    builder.setMnemonic(spawn.getMnemonic());
+    // All entries this spawn refers to have already been written.
+    executionLog.write(ExecLogEntry.newBuilder().setSpawn(builder).build());
+  }
+
+  /**
+   * Logs the inputs of the spawn that have not been logged before and returns the id of an input
+   * set containing all of them, or 0 if there are none.
+   */
+  private int logInputs(
+      Spawn spawn, SortedMap<PathFragment, ActionInput> inputMap, MetadataProvider metadataProvider)
+      throws IOException {
+    List<Integer> directIds = new ArrayList<>();
+    List<Integer> transitiveIds = new ArrayList<>();
+    boolean hasNestedSet = false;
+    boolean hasMiddlemen = false;
+    Iterable<? extends ActionInput> inputFiles = spawn.getInputFiles();
+    if (inputFiles instanceof NestedSet) {
+      @SuppressWarnings("unchecked")
+      NestedSet<ActionInput> inputSet = (NestedSet<ActionInput>) inputFiles;
+      if (!inputSet.isEmpty()) {
+        NestedSetView<ActionInput> view = new NestedSetView<>(inputSet);
+        transitiveIds.add(logInputSet(view, metadataProvider));
+        hasNestedSet = true;
+        hasMiddlemen = inputSetsWithMiddlemen.contains(view.identifier());
+      }
+    }
+    // Inputs that are not part of the nested set: runfiles, filesets and the expansion of tree
+    // artifacts and middlemen. Rather than flattening the nested set to find them, an input mapped
+    // to its own exec path is assumed to come from the nested set, unless it is a file of a tree
+    // artifact, or the nested set contains middlemen whose expansion cannot be told apart from
+    // the other inputs. Logging an input of the nested set again costs one id, as the reader
+    // merges inputs by path.
+    for (Map.Entry<PathFragment, ActionInput> entry : inputMap.entrySet()) {
+      ActionInput input = entry.getValue();
+      boolean covered =
+          hasNestedSet
+              && !hasMiddlemen
+              && entry.getKey().equals(input.getExecPath())
+              && !(input instanceof Artifact && ((Artifact) input).hasParent());
+      if (!covered) {
+        directIds.add(logInput(input, metadataProvider));
+      }
+    }
+    if (directIds.isEmpty() && transitiveIds.size() <= 1) {
+      return transitiveIds.isEmpty() ? 0 : transitiveIds.get(0);
+    }
+    synchronized (this) {
+      int id = nextId++;
+      executionLog.write(
+          ExecLogEntry.newBuilder()
+              .setId(id)
+              .setInputSet(
+                  ExecLogEntry.InputSet.newBuilder()
+                      .addAllDirectEntryIds(directIds)
+                      .addAllTransitiveSetIds(transitiveIds))
+              .build());
+      return id;
+    }
+  }
+
+  private int logInputSet(NestedSetView<ActionInput> view, MetadataProvider metadataProvider)
+      throws IOException {
+    Integer id = inputSetIds.get(view.identifier());
+    if (id != null) {
+      return id;
+    }
+    ExecLogEntry.InputSet.Builder builder = ExecLogEntry.InputSet.newBuilder();
+    boolean hasMiddlemen = false;
+    for (NestedSetView<ActionInput> transitive : view.transitives()) {
+      builder.addTransitiveSetIds(logInputSet(transitive, metadataProvider));
+      hasMiddlemen |= inputSetsWithMiddlemen.contains(transitive.identifier());
+    }
+    for (ActionInput input : view.directs()) {
+      if (input instanceof Artifact) {
+        Artifact artifact = (Artifact) input;
+        // Middlemen and tree artifacts are expanded into the input mapping, and logged from there,
+        // so that each file of a tree artifact is logged once.
+        if (artifact.isMiddlemanArtifact()) {
+          hasMiddlemen = true;
+          continue;
+        }
+        if (artifact.isTreeArtifact()) {
+          continue;
+        }
+      }
+      builder.addDirectEntryIds(logInput(input, metadataProvider));
+    }
+    synchronized (this) {
+      id = inputSetIds.get(view.identifier());
+      if (id == null) {
+        id = nextId++;
+        executionLog.write(ExecLogEntry.newBuilder().setId(id).setInputSet(builder).build());
+        if (hasMiddlemen) {
+          inputSetsWithMiddlemen.add(view.identifier());
+        }
+        inputSetIds.put(view.identifier(), id);
+      }
+      return id;
+    }
+  }
+
+  private int logInput(ActionInput input, MetadataProvider metadataProvider)
+      throws IOException {
+    String execPath = input.getExecPathString();
+    Integer id = inputIds.get(execPath);
+    if (id != null) {
+      return id;
+    }
+    // Digests are computed outside of the lock. Two spawns racing on the same input may both
+    // compute it, but only one of them writes it.
+    ExecLogEntry.Builder entry = ExecLogEntry.newBuilder();
+    Path inputPath = execRoot.getRelative(execPath);
+    if (inputPath.isDirectory()) {
+      ExecLogEntry.Directory.Builder directory = entry.getDirectoryBuilder().setPath(execPath);
+      listDirectoryContents(inputPath, directory::addFiles, metadataProvider);
+    } else {
+      ExecLogEntry.File.Builder file = entry.getFileBuilder().setPath(execPath);
+      try {
+        file.setDigest(computeDigest(input, null, metadataProvider));
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Error computing spawn input properties", e);
+      }
+    }
+    synchronized (this) {
+      id = inputIds.get(execPath);
+      if (id == null) {
+        id = nextId++;
+        executionLog.write(entry.setId(id).build());
+        inputIds.put(execPath, id);
+      }
+      return id;
+    }
+  }
+}
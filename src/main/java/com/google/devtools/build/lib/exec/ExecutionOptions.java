@@ -17,6 +17,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.devtools.build.lib.actions.ActionExecutionContext.ShowSubcommands;
 import com.google.devtools.build.lib.actions.LocalHostCapacity;
+import com.google.devtools.build.lib.actions.ResourceManager;
 import com.google.devtools.build.lib.actions.ResourceSet;
 import com.google.devtools.build.lib.analysis.config.PerLabelOptions;
 import com.google.devtools.build.lib.util.OptionsUtils;
@@ -26,6 +27,7 @@ import com.google.devtools.build.lib.vfs.PathFragment;
 import com.google.devtools.common.options.BoolOrEnumConverter;
 import com.google.devtools.common.options.Converters.AssignmentToListOfValuesConverter;
 import com.google.devtools.common.options.Converters.CommaSeparatedNonEmptyOptionListConverter;
+import com.google.devtools.common.options.EnumConverter;
 import com.google.devtools.common.options.Option;
 import com.google.devtools.common.options.OptionDocumentationCategory;
 import com.google.devtools.common.options.OptionEffectTag;
@@ -359,6 +361,19 @@ public class ExecutionOptions extends OptionsBase {
   )
   public boolean localMemoryEstimate;
 
+  @Option(
+      name = "experimental_local_resource_scheduling_policy",
+      defaultValue = "fifo",
+      documentationCategory = OptionDocumentationCategory.EXECUTION_STRATEGY,
+      effectTags = {OptionEffectTag.EXECUTION},
+      converter = SchedulingPolicyConverter.class,
+      help =
+          "The order in which actions waiting for local resources are considered when resources "
+              + "are freed. 'fifo' considers them in arrival order, 'smallest_first' and "
+              + "'largest_first' by the amount of CPU and RAM they request, and 'mnemonic_fair' "
+              + "prefers action mnemonics that currently hold the fewest resources.")
+  public ResourceManager.SchedulingPolicy localResourceSchedulingPolicy;
+
   @Option(
       name = "local_test_jobs",
       defaultValue = "auto",
@@ -431,6 +446,19 @@ public class ExecutionOptions extends OptionsBase {
   )
   public String executionLogFile;
 
+  @Option(
+      name = "experimental_execution_log_compact_file",
+      defaultValue = "",
+      category = "verbosity",
+      documentationCategory = OptionDocumentationCategory.LOGGING,
+      effectTags = {OptionEffectTag.UNKNOWN},
+      help =
+          "Log the executed spawns into this file in a compact format, as delimited ExecLogEntry "
+              + "protos. Input files and input sets shared between spawns are logged only once. "
+              + "Use the execlog parser with --compact to turn it into the same output as for "
+              + "--experimental_execution_log_file. Cannot be combined with that flag.")
+  public String executionLogCompactFile;
+
   @Option(
       name = "experimental_split_xml_generation",
       defaultValue = "true",
@@ -507,6 +535,14 @@ public class ExecutionOptions extends OptionsBase {
     }
   }
 
+  /** Converter for --experimental_local_resource_scheduling_policy. */
+  public static class SchedulingPolicyConverter
+      extends EnumConverter<ResourceManager.SchedulingPolicy> {
+    public SchedulingPolicyConverter() {
+      super(ResourceManager.SchedulingPolicy.class, "local resource scheduling policy");
+    }
+  }
+
   /** Converter for --subcommands */
   public static class ShowSubcommandsConverter extends BoolOrEnumConverter<ShowSubcommands> {
     public ShowSubcommandsConverter() {
@@ -178,11 +178,18 @@ public class SpawnInputExpander {
 
   private void addInputs(
       Map<PathFragment, ActionInput> inputMap, Spawn spawn, ArtifactExpander artifactExpander) {
-    List<ActionInput> inputs =
-        ActionInputHelper.expandArtifacts(spawn.getInputFiles(), artifactExpander);
-    for (ActionInput input : inputs) {
-      addMapping(inputMap, input.getExecPath(), input);
-    }
+    ActionInputHelper.expandArtifacts(
+        spawn.getInputFiles(),
+        artifactExpander,
+        input -> {
+          // An input that is not an artifact takes precedence over artifacts with the same exec
+          // path, wherever it appears in the inputs.
+          PathFragment execPath = input.getExecPath();
+          if (!(input instanceof Artifact) && inputMap.get(execPath) instanceof Artifact) {
+            inputMap.remove(execPath);
+          }
+          addMapping(inputMap, execPath, input);
+        });
   }
 
   /**
@@ -64,8 +64,8 @@ import javax.annotation.Nullable;
 public class SpawnLogContext implements ActionContext {
 
   private static final Logger logger = Logger.getLogger(SpawnLogContext.class.getName());
-  private final Path execRoot;
-  private final MessageOutputStream executionLog;
+  protected final Path execRoot;
+  protected final MessageOutputStream executionLog;
 
   public SpawnLogContext(Path execRoot, MessageOutputStream executionLog) {
     this.execRoot = execRoot;
@@ -154,7 +154,8 @@ public class SpawnLogContext implements ActionContext {
     executionLog.close();
   }
 
-  private static Platform buildPlatform(Label platformLabel, @Nullable String platformDescription) {
+  protected static Platform buildPlatform(
+      Label platformLabel, @Nullable String platformDescription) {
     Platform.Builder platformBuilder = Platform.newBuilder();
     try {
       if (platformDescription != null) {
@@ -169,7 +170,7 @@ public class SpawnLogContext implements ActionContext {
     return platformBuilder.build();
   }
 
-  private SortedMap<Path, ActionInput> listExistingOutputs(Spawn spawn) {
+  protected SortedMap<Path, ActionInput> listExistingOutputs(Spawn spawn) {
     TreeMap<Path, ActionInput> result = new TreeMap<>();
     for (ActionInput output : spawn.getOutputFiles()) {
       Path outputPath = execRoot.getRelative(output.getExecPathString());
@@ -181,7 +182,7 @@ public class SpawnLogContext implements ActionContext {
     return result;
   }
 
-  private void listDirectoryContents(
+  protected void listDirectoryContents(
       Path path, Consumer<File> addFile, MetadataProvider metadataProvider) {
     try {
       // TODO(olaola): once symlink API proposal is implemented, report symlinks here.
@@ -209,7 +210,7 @@ public class SpawnLogContext implements ActionContext {
    * Computes the digest of the given ActionInput or corresponding path. Will try to access the
    * Metadata cache first, if it is available, and fall back to digesting the contents manually.
    */
-  private Digest computeDigest(
+  protected Digest computeDigest(
       @Nullable ActionInput input, @Nullable Path path, MetadataProvider metadataProvider)
       throws IOException {
     Preconditions.checkArgument(input != null || path != null);
@@ -0,0 +1,55 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.packages;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.devtools.build.lib.concurrent.BlazeInterners;
+import java.util.List;
+
+/**
+ * Shares equal attribute values between the rules of a package while it is being built.
+ *
+ * <p>It is common for multiple rule instances in the same package to have the same value for some
+ * attributes. As a concrete example, consider a package having many rules generated by the same
+ * macro, each with the same {@code tags}, {@code visibility} or {@code copts}. Strings are shared
+ * both as values and as list elements, so that different lists with common elements still share
+ * them. The interner lives only as long as its {@link Package.Builder}.
+ */
+final class AttributeValueInterner {
+
+  private final Interner<Object> interner = BlazeInterners.newStrongInterner();
+
+  /**
+   * Returns a value equal to the given converted attribute value, which is shared with the other
+   * rules of the package if possible. Lists are returned as {@link ImmutableList}s.
+   *
+   * <p>Dicts are not shared, because equal maps may differ in iteration order.
+   */
+  Object intern(Object value) {
+    if (value instanceof String) {
+      return interner.intern(value);
+    }
+    if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      ImmutableList.Builder<Object> builder = ImmutableList.builderWithExpectedSize(list.size());
+      for (Object element : list) {
+        builder.add(element instanceof String ? interner.intern(element) : element);
+      }
+      return interner.intern(builder.build());
+    }
+    return value;
+  }
+}
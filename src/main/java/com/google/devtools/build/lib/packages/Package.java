@@ -20,7 +20,6 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
-import com.google.common.collect.Interner;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.devtools.build.lib.cmdline.Label;
@@ -30,7 +29,6 @@ import com.google.devtools.build.lib.cmdline.PackageIdentifier;
 import com.google.devtools.build.lib.cmdline.RepositoryName;
 import com.google.devtools.build.lib.collect.CollectionUtils;
 import com.google.devtools.build.lib.collect.ImmutableSortedKeyMap;
-import com.google.devtools.build.lib.concurrent.BlazeInterners;
 import com.google.devtools.build.lib.events.Event;
 import com.google.devtools.build.lib.events.EventHandler;
 import com.google.devtools.build.lib.events.ExtendedEventHandler.Postable;
@@ -55,6 +53,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -705,6 +705,161 @@ public class Package {
     return registeredToolchains;
   }
 
+  /**
+   * Returns true if this package and {@code other} were loaded from the same BUILD file and
+   * declare the same targets with the same attribute values, locations and package defaults, so
+   * that {@code other} can be used in place of this package.
+   *
+   * <p>The check is conservative: values that cannot be compared, such as those of rule classes
+   * that were defined again or of {@code select()} expressions, make the packages differ.
+   */
+  public boolean isEquivalentTo(Package other) {
+    if (this == other) {
+      return true;
+    }
+    if (!getClass().equals(other.getClass())
+        || containsErrors
+        || other.containsErrors
+        || !packageIdentifier.equals(other.packageIdentifier)
+        || !Objects.equals(filename, other.filename)
+        || !Objects.equals(packageDirectory, other.packageDirectory)
+        || !Objects.equals(workspaceName, other.workspaceName)
+        || !Objects.equals(sourceRoot, other.sourceRoot)
+        || !Objects.equals(makeEnv, other.makeEnv)
+        || !defaultVisibility
+            .getDeclaredLabels()
+            .equals(other.defaultVisibility.getDeclaredLabels())
+        || defaultVisibilitySet != other.defaultVisibilitySet
+        || defaultTestOnly != other.defaultTestOnly
+        || !Objects.equals(defaultDeprecation, other.defaultDeprecation)
+        || !Objects.equals(defaultHdrsCheck, other.defaultHdrsCheck)
+        || !Objects.equals(defaultCopts, other.defaultCopts)
+        || !Objects.equals(skylarkFileDependencies, other.skylarkFileDependencies)
+        || !Objects.equals(defaultLicense, other.defaultLicense)
+        || !Objects.equals(defaultDistributionSet, other.defaultDistributionSet)
+        || !Objects.equals(
+            externalPackageRepositoryMappings, other.externalPackageRepositoryMappings)
+        || !Objects.equals(repositoryMapping, other.repositoryMapping)
+        || !Objects.equals(defaultCompatibleWith, other.defaultCompatibleWith)
+        || !Objects.equals(defaultRestrictedTo, other.defaultRestrictedTo)
+        || !Objects.equals(features, other.features)
+        || !Objects.equals(events, other.events)
+        || !Objects.equals(registeredExecutionPlatforms, other.registeredExecutionPlatforms)
+        || !Objects.equals(registeredToolchains, other.registeredToolchains)
+        || targets.size() != other.targets.size()) {
+      return false;
+    }
+    for (Target target : targets.values()) {
+      Target otherTarget = other.targets.get(target.getName());
+      if (otherTarget == null || !isEquivalentTarget(target, otherTarget)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isEquivalentTarget(Target target, Target other) {
+    if (!target.getClass().equals(other.getClass())
+        || !isEquivalentLocation(target.getLocation(), other.getLocation())) {
+      return false;
+    }
+    if (target instanceof Rule) {
+      return isEquivalentRule((Rule) target, (Rule) other);
+    }
+    if (target instanceof OutputFile) {
+      // The generating rules are compared on their own.
+      return ((OutputFile) target).getKind() == ((OutputFile) other).getKind()
+          && ((OutputFile) target)
+              .getGeneratingRule()
+              .getName()
+              .equals(((OutputFile) other).getGeneratingRule().getName());
+    }
+    if (target instanceof InputFile) {
+      InputFile file = (InputFile) target;
+      InputFile otherFile = (InputFile) other;
+      return file.isVisibilitySpecified() == otherFile.isVisibilitySpecified()
+          && file.getVisibility()
+              .getDeclaredLabels()
+              .equals(otherFile.getVisibility().getDeclaredLabels())
+          && file.isLicenseSpecified() == otherFile.isLicenseSpecified()
+          && file.getLicense().equals(otherFile.getLicense());
+    }
+    if (target instanceof PackageGroup) {
+      PackageGroup group = (PackageGroup) target;
+      PackageGroup otherGroup = (PackageGroup) other;
+      return group.containsErrors() == otherGroup.containsErrors()
+          && group.getContainedPackages().equals(otherGroup.getContainedPackages())
+          && group.getIncludes().equals(otherGroup.getIncludes());
+    }
+    if (target instanceof EnvironmentGroup) {
+      return ((EnvironmentGroup) target)
+          .getEnvironmentLabels()
+          .equals(((EnvironmentGroup) other).getEnvironmentLabels());
+    }
+    return false;
+  }
+
+  /**
+   * Compares the positions that locations refer to. Unlike {@link Location#equals}, this ignores
+   * the rest of the file, which may have been edited elsewhere.
+   */
+  private static boolean isEquivalentLocation(
+      @Nullable Location location, @Nullable Location other) {
+    if (location == null || other == null) {
+      return location == other;
+    }
+    return location.getStartOffset() == other.getStartOffset()
+        && location.getEndOffset() == other.getEndOffset()
+        && Objects.equals(location.getPath(), other.getPath())
+        && Objects.equals(location.getStartLineAndColumn(), other.getStartLineAndColumn())
+        && Objects.equals(location.getEndLineAndColumn(), other.getEndLineAndColumn());
+  }
+
+  /**
+   * Compares attribute values like {@link Objects#equals}, except that dicts must also have their
+   * entries in the same order, since the order in the BUILD file is preserved.
+   */
+  private static boolean isEquivalentAttributeValue(
+      @Nullable Object value, @Nullable Object other) {
+    if (value instanceof Map && other instanceof Map) {
+      return ImmutableList.copyOf(((Map<?, ?>) value).entrySet())
+          .equals(ImmutableList.copyOf(((Map<?, ?>) other).entrySet()));
+    }
+    return Objects.equals(value, other);
+  }
+
+  private static boolean isEquivalentRule(Rule rule, Rule other) {
+    if (rule.getRuleClassObject() != other.getRuleClassObject()
+        || rule.containsErrors()
+        || other.containsErrors()) {
+      return false;
+    }
+    AttributeContainer attributes = rule.getAttributeContainer();
+    AttributeContainer otherAttributes = other.getAttributeContainer();
+    for (Attribute attr : rule.getAttributes()) {
+      String name = attr.getName();
+      if (attributes.isAttributeValueExplicitlySpecified(attr)
+              != otherAttributes.isAttributeValueExplicitlySpecified(attr)
+          || !isEquivalentAttributeValue(attributes.getAttr(name), otherAttributes.getAttr(name))
+          || !isEquivalentLocation(
+              attributes.getAttributeLocation(name), otherAttributes.getAttributeLocation(name))) {
+        return false;
+      }
+    }
+    Collection<OutputFile> outputs = rule.getOutputFiles();
+    Collection<OutputFile> otherOutputs = other.getOutputFiles();
+    if (outputs.size() != otherOutputs.size()) {
+      return false;
+    }
+    Iterator<OutputFile> otherOutputIterator = otherOutputs.iterator();
+    for (OutputFile output : outputs) {
+      if (!output.getLabel().equals(otherOutputIterator.next().getLabel())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   public String toString() {
     return "Package(" + name + ")="
@@ -730,6 +885,8 @@ public class Package {
       }
     }
 
+    dumpAttributeValueSharing(out);
+
     // Files:
     out.println("    Files");
     for (FileTarget file : getTargets(FileTarget.class)) {
@@ -742,6 +899,31 @@ public class Package {
     }
   }
 
+  /**
+   * Prints how many of the string and list values of explicitly set attributes in this package are
+   * distinct objects. The difference between the two counts is the number of values that are
+   * shared between rules instead of being stored once per rule.
+   */
+  private void dumpAttributeValueSharing(PrintStream out) {
+    int values = 0;
+    Set<Object> distinctValues = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Rule rule : getTargets(Rule.class)) {
+      AttributeContainer container = rule.getAttributeContainer();
+      for (Attribute attr : rule.getAttributes()) {
+        if (!container.isAttributeValueExplicitlySpecified(attr)) {
+          continue;
+        }
+        Object value = container.getAttr(attr.getName());
+        if (value instanceof String || value instanceof List) {
+          values++;
+          distinctValues.add(value);
+        }
+      }
+    }
+    out.println(
+        "    Attribute values: " + values + " (" + distinctValues.size() + " distinct objects)");
+  }
+
   public static Builder newExternalPackageBuilder(
       Builder.Helper helper, RootedPath workspacePath, String runfilesPrefix) {
     Builder b =
@@ -857,7 +1039,7 @@ public class Package {
      */
     private Map<String, OutputFile> outputFilePrefixes = new HashMap<>();
 
-    private final Interner<ImmutableList<?>> listInterner = BlazeInterners.newStrongInterner();
+    private final AttributeValueInterner attributeValueInterner = new AttributeValueInterner();
 
     private boolean alreadyBuilt = false;
 
@@ -941,8 +1123,8 @@ public class Package {
       return this.repositoryMapping;
     }
 
-    Interner<ImmutableList<?>> getListInterner() {
-      return listInterner;
+    AttributeValueInterner getAttributeValueInterner() {
+      return attributeValueInterner;
     }
 
     /** Sets the name of this package's BUILD file. */
@@ -36,7 +36,9 @@ import com.google.devtools.build.lib.packages.License.DistributionType;
 import com.google.devtools.build.lib.syntax.EvalException;
 import com.google.devtools.build.lib.syntax.Type;
 import com.google.devtools.build.lib.util.BinaryPredicate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -80,7 +82,6 @@ public final class Rule implements Target, DependencyFilter.AttributeInfoProvide
 
   // Initialized in the call to populateOutputFiles.
   private List<OutputFile> outputFiles;
-  private ListMultimap<String, OutputFile> outputFileMap;
 
   Rule(
       Package pkg,
@@ -250,9 +251,37 @@ public final class Rule implements Target, DependencyFilter.AttributeInfoProvide
   /**
    * Returns an (unmodifiable, ordered) map containing the list of output files for every
    * output type attribute.
+   *
+   * <p>The map is computed from {@link #getOutputFiles} on each call rather than kept for the
+   * lifetime of the rule, since it is rarely needed and large packages contain many rules with
+   * explicit outputs.
    */
   public ListMultimap<String, OutputFile> getOutputFileMap() {
-    return outputFileMap;
+    // The explicit outputs are the last elements of outputFiles, in the order of the attributes
+    // (see populateExplicitOutputFiles).
+    List<String> attributeNames = new ArrayList<>();
+    NonconfigurableAttributeMapper nonConfigurableAttributes =
+        NonconfigurableAttributeMapper.of(this);
+    for (Attribute attribute : ruleClass.getAttributes()) {
+      String name = attribute.getName();
+      Type<?> type = attribute.getType();
+      if (type == BuildType.OUTPUT) {
+        if (nonConfigurableAttributes.get(name, BuildType.OUTPUT) != null) {
+          attributeNames.add(name);
+        }
+      } else if (type == BuildType.OUTPUT_LIST) {
+        attributeNames.addAll(
+            Collections.nCopies(
+                nonConfigurableAttributes.get(name, BuildType.OUTPUT_LIST).size(), name));
+      }
+    }
+    ImmutableListMultimap.Builder<String, OutputFile> outputFileMap =
+        ImmutableListMultimap.builder();
+    int firstExplicitOutput = outputFiles.size() - attributeNames.size();
+    for (int i = 0; i < attributeNames.size(); i++) {
+      outputFileMap.put(attributeNames.get(i), outputFiles.get(firstExplicitOutput + i));
+    }
+    return outputFileMap.build();
   }
 
   @Override
@@ -470,20 +499,15 @@ public final class Rule implements Target, DependencyFilter.AttributeInfoProvide
     Preconditions.checkState(outputFiles == null);
     // Order is important here: implicit before explicit
     ImmutableList.Builder<OutputFile> outputFilesBuilder = ImmutableList.builder();
-    ImmutableListMultimap.Builder<String, OutputFile> outputFileMapBuilder =
-        ImmutableListMultimap.builder();
     populateImplicitOutputFiles(eventHandler, pkgBuilder, outputFilesBuilder, performChecks);
-    populateExplicitOutputFiles(
-        eventHandler, outputFilesBuilder, outputFileMapBuilder, performChecks);
+    populateExplicitOutputFiles(eventHandler, outputFilesBuilder, performChecks);
     outputFiles = outputFilesBuilder.build();
-    outputFileMap = outputFileMapBuilder.build();
   }
 
   // Explicit output files are user-specified attributes of type OUTPUT.
   private void populateExplicitOutputFiles(
       EventHandler eventHandler,
       ImmutableList.Builder<OutputFile> outputFilesBuilder,
-      ImmutableListMultimap.Builder<String, OutputFile> outputFileMapBuilder,
       boolean performChecks)
       throws LabelSyntaxException {
     NonconfigurableAttributeMapper nonConfigurableAttributes =
@@ -494,23 +518,11 @@ public final class Rule implements Target, DependencyFilter.AttributeInfoProvide
       if (type == BuildType.OUTPUT) {
         Label outputLabel = nonConfigurableAttributes.get(name, BuildType.OUTPUT);
         if (outputLabel != null) {
-          addLabelOutput(
-              attribute,
-              outputLabel,
-              eventHandler,
-              outputFilesBuilder,
-              outputFileMapBuilder,
-              performChecks);
+          addLabelOutput(attribute, outputLabel, eventHandler, outputFilesBuilder, performChecks);
         }
       } else if (type == BuildType.OUTPUT_LIST) {
         for (Label label : nonConfigurableAttributes.get(name, BuildType.OUTPUT_LIST)) {
-          addLabelOutput(
-              attribute,
-              label,
-              eventHandler,
-              outputFilesBuilder,
-              outputFileMapBuilder,
-              performChecks);
+          addLabelOutput(attribute, label, eventHandler, outputFilesBuilder, performChecks);
         }
       }
     }
@@ -559,7 +571,6 @@ public final class Rule implements Target, DependencyFilter.AttributeInfoProvide
       Label label,
       EventHandler eventHandler,
       ImmutableList.Builder<OutputFile> outputFilesBuilder,
-      ImmutableListMultimap.Builder<String, OutputFile> outputFileMapBuilder,
       boolean performChecks)
       throws LabelSyntaxException {
     if (performChecks) {
@@ -573,11 +584,10 @@ public final class Rule implements Target, DependencyFilter.AttributeInfoProvide
         throw new LabelSyntaxException("output file name can't be equal '.'");
       }
     }
-    OutputFile outputFile = addOutputFile(label, eventHandler, outputFilesBuilder);
-    outputFileMapBuilder.put(attribute.getName(), outputFile);
+    addOutputFile(label, eventHandler, outputFilesBuilder);
   }
 
-  private OutputFile addOutputFile(
+  private void addOutputFile(
       Label label,
       EventHandler eventHandler,
       ImmutableList.Builder<OutputFile> outputFilesBuilder) {
@@ -587,9 +597,7 @@ public final class Rule implements Target, DependencyFilter.AttributeInfoProvide
       reportWarning("target '" + getName() + "' is both a rule and a file; please choose "
                     + "another name for the rule", eventHandler);
     }
-    OutputFile outputFile = new OutputFile(pkg, label, ruleClass.getOutputFileKind(), this);
-    outputFilesBuilder.add(outputFile);
-    return outputFile;
+    outputFilesBuilder.add(new OutputFile(pkg, label, ruleClass.getOutputFileKind(), this));
   }
 
   void reportError(String message, EventHandler eventHandler) {
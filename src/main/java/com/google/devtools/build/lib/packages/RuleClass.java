@@ -28,7 +28,6 @@ import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Interner;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
@@ -1945,7 +1944,7 @@ public class RuleClass {
             rule,
             pkgBuilder.getRepositoryMapping(),
             attributeValues,
-            pkgBuilder.getListInterner(),
+            pkgBuilder.getAttributeValueInterner(),
             eventHandler);
     populateDefaultRuleAttributeValues(rule, pkgBuilder, definedAttrIndices, eventHandler);
     // Now that all attributes are bound to values, collect and store configurable attribute keys.
@@ -1967,7 +1966,7 @@ public class RuleClass {
       Rule rule,
       ImmutableMap<RepositoryName, RepositoryName> repositoryMapping,
       AttributeValues<T> attributeValues,
-      Interner<ImmutableList<?>> listInterner,
+      AttributeValueInterner valueInterner,
       EventHandler eventHandler) {
     BitSet definedAttrIndices = new BitSet();
     for (T attributeAccessor : attributeValues.getAttributeAccessors()) {
@@ -1994,7 +1993,8 @@ public class RuleClass {
       if (attributeValues.valuesAreBuildLanguageTyped()) {
         try {
           nativeAttributeValue =
-              convertFromBuildLangType(rule, attr, attributeValue, repositoryMapping, listInterner);
+              convertFromBuildLangType(
+                  rule, attr, attributeValue, repositoryMapping, valueInterner);
         } catch (ConversionException e) {
           rule.reportError(String.format("%s: %s", rule.getLabel(), e.getMessage()), eventHandler);
           continue;
@@ -2290,7 +2290,8 @@ public class RuleClass {
   /**
    * Converts the build-language-typed {@code buildLangValue} to a native value via {@link
    * BuildType#selectableConvert}. Canonicalizes the value's order if it is a {@link List} type and
-   * {@code attr.isOrderIndependent()} returns {@code true}.
+   * {@code attr.isOrderIndependent()} returns {@code true}, and shares it with equal values of
+   * other rules in the package using {@code valueInterner}.
    *
    * <p>Throws {@link ConversionException} if the conversion fails, or if {@code buildLangValue} is
    * a selector expression but {@code attr.isConfigurable()} is {@code false}.
@@ -2300,7 +2301,7 @@ public class RuleClass {
       Attribute attr,
       Object buildLangValue,
       ImmutableMap<RepositoryName, RepositoryName> repositoryMapping,
-      Interner<ImmutableList<?>> listInterner)
+      AttributeValueInterner valueInterner)
       throws ConversionException {
     LabelConversionContext context = new LabelConversionContext(rule.getLabel(), repositoryMapping);
     Object converted =
@@ -2315,19 +2316,15 @@ public class RuleClass {
           String.format("attribute \"%s\" is not configurable", attr.getName()));
     }
 
-    if (converted instanceof List<?>) {
-      if (attr.isOrderIndependent()) {
-        @SuppressWarnings("unchecked")
-        List<? extends Comparable<?>> list = (List<? extends Comparable<?>>) converted;
-        converted = Ordering.natural().sortedCopy(list);
-      }
-      // It's common for multiple rule instances in the same package to have the same value for some
-      // attributes. As a concrete example, consider a package having several 'java_test' instances,
-      // each with the same exact 'tags' attribute value.
-      converted = listInterner.intern(ImmutableList.copyOf((List<?>) converted));
+    if (converted instanceof List<?> && attr.isOrderIndependent()) {
+      @SuppressWarnings("unchecked")
+      List<? extends Comparable<?>> list = (List<? extends Comparable<?>>) converted;
+      converted = Ordering.natural().sortedCopy(list);
     }
 
-    return converted;
+    // Share the value with equal values of other rules in the package. This also turns lists into
+    // immutable lists.
+    return valueInterner.intern(converted);
   }
 
   /**
@@ -80,6 +80,27 @@ public class PackageCacheOptions extends OptionsBase {
       help = "If enabled, causes Bazel to print \"Loading package:\" messages.")
   public boolean showLoadingProgress;
 
+  @Option(
+      name = "experimental_persistent_parse_cache",
+      defaultValue = "false",
+      documentationCategory = OptionDocumentationCategory.UNDOCUMENTED,
+      effectTags = {OptionEffectTag.LOADING_AND_ANALYSIS},
+      help =
+          "If enabled, the syntax trees of BUILD and .bzl files are kept in the output base, "
+              + "keyed by the digest of the file contents, so that a new server does not have "
+              + "to parse files again that did not change.")
+  public boolean persistentParseCache;
+
+  @Option(
+      name = "experimental_persistent_parse_cache_max_size_mb",
+      defaultValue = "256",
+      documentationCategory = OptionDocumentationCategory.UNDOCUMENTED,
+      effectTags = {OptionEffectTag.LOADING_AND_ANALYSIS},
+      help =
+          "The size in megabytes above which the least recently used entries of "
+              + "--experimental_persistent_parse_cache are deleted when a server starts using it.")
+  public int persistentParseCacheMaxSizeMb;
+
   @Option(
     name = "deleted_packages",
     defaultValue = "",
@@ -151,6 +172,18 @@ public class PackageCacheOptions extends OptionsBase {
   )
   public boolean checkOutputFiles;
 
+  @Option(
+    name = "experimental_batch_stat_output_files",
+    defaultValue = "false",
+    documentationCategory = OptionDocumentationCategory.UNDOCUMENTED,
+    effectTags = {OptionEffectTag.EXECUTION},
+    help =
+        "If true and the output service does not provide its own, the output files of a build "
+            + "are checked for modifications with batched native stat calls spread over a few "
+            + "threads."
+  )
+  public boolean batchStatOutputFiles;
+
   /**
    * A converter from strings containing comma-separated names of packages to lists of strings.
    */
@@ -0,0 +1,314 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.profiler.cpu;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
+import com.google.devtools.build.lib.events.Location;
+import com.google.devtools.build.lib.syntax.ASTNode;
+import com.google.devtools.build.lib.syntax.BaseFunction;
+import com.google.devtools.build.lib.syntax.Callstack;
+import com.google.perftools.profiles.ProfileProto.Function;
+import com.google.perftools.profiles.ProfileProto.Line;
+import com.google.perftools.profiles.ProfileProto.Profile;
+import com.google.perftools.profiles.ProfileProto.Sample;
+import com.google.perftools.profiles.ProfileProto.ValueType;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+
+/**
+ * A sampling CPU profiler for Skylark code.
+ *
+ * <p>While the profiler runs, a ticker thread calls {@link Callstack#tick} once per interval, and
+ * every thread that evaluates Skylark code reports its callstack when it next enters or leaves an
+ * expression or function, together with the CPU time it used since its previous report. The
+ * samples are aggregated by callstack, with the line of the innermost expression in each function,
+ * and can be written as a pprof-compatible profile.
+ */
+@ThreadSafe
+public final class StarlarkCpuProfiler implements Callstack.Sampler {
+
+  /** A function and the line in it that is being evaluated. */
+  private static final class Frame {
+    final String file;
+    final String function;
+    final long line;
+
+    Frame(String file, String function, long line) {
+      this.file = file;
+      this.function = function;
+      this.line = line;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Frame)) {
+        return false;
+      }
+      Frame that = (Frame) o;
+      return line == that.line && file.equals(that.file) && function.equals(that.function);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(file, function, line);
+    }
+  }
+
+  /** The number of samples of a callstack and the CPU time they account for. */
+  private static final class SampleValues {
+    final long count;
+    final long cpuTimeNanos;
+
+    SampleValues(long count, long cpuTimeNanos) {
+      this.count = count;
+      this.cpuTimeNanos = cpuTimeNanos;
+    }
+
+    SampleValues add(SampleValues other) {
+      return new SampleValues(count + other.count, cpuTimeNanos + other.cpuTimeNanos);
+    }
+  }
+
+  private final Duration interval;
+
+  /** Samples keyed by callstack, innermost frame first. */
+  private final Map<ImmutableList<Frame>, SampleValues> samples = new ConcurrentHashMap<>();
+
+  @Nullable private ScheduledExecutorService ticker;
+  @Nullable private Instant startTime;
+  @Nullable private Instant stopTime;
+
+  public StarlarkCpuProfiler(Duration interval) {
+    this.interval = interval;
+  }
+
+  /**
+   * Starts collecting samples. Must not be called while Skylark code is being evaluated, and at
+   * most one profiler may be running at a time.
+   */
+  public synchronized void start() {
+    Preconditions.checkState(ticker == null, "Profiler already started");
+    startTime = Instant.now();
+    Callstack.setSampler(this);
+    ticker =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("starlark-cpu-profiler")
+                .setDaemon(true)
+                .build());
+    ticker.scheduleAtFixedRate(
+        Callstack::tick, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  /** Stops collecting samples. */
+  public synchronized void stop() {
+    Preconditions.checkState(ticker != null, "Profiler not started");
+    ticker.shutdownNow();
+    ticker = null;
+    Callstack.setSampler(null);
+    stopTime = Instant.now();
+  }
+
+  @Override
+  public void sample(List<Object> callstack, long cpuTimeNanos) {
+    samples.merge(
+        toFrames(callstack),
+        new SampleValues(1, Math.max(cpuTimeNanos, 0)),
+        SampleValues::add);
+  }
+
+  /**
+   * Converts a callstack to one frame per function, innermost first. Each frame has the line of
+   * the innermost node that is evaluated in the function. Code outside of any function, like the
+   * top level of a BUILD or .bzl file, gets a frame of its own.
+   */
+  private static ImmutableList<Frame> toFrames(List<Object> callstack) {
+    ImmutableList.Builder<Frame> frames = ImmutableList.builder();
+    long line = -1;
+    String file = null;
+    for (int i = callstack.size() - 1; i >= 0; --i) {
+      Object object = callstack.get(i);
+      if (line == -1) {
+        Location location;
+        if (object instanceof ASTNode) {
+          location = ((ASTNode) object).getLocation();
+        } else if (object instanceof BaseFunction) {
+          location = ((BaseFunction) object).getLocation();
+        } else {
+          throw new IllegalStateException(
+              "Unknown node type: " + object.getClass().getSimpleName());
+        }
+        if (location != null) {
+          file = location.getPath() != null ? location.getPath().getPathString() : "<unknown>";
+          line = location.getStartLine() != null ? location.getStartLine() : -1;
+        } else {
+          file = "<native>";
+        }
+      }
+      if (object instanceof BaseFunction) {
+        frames.add(new Frame(file, ((BaseFunction) object).getName(), line));
+        line = -1;
+        file = null;
+      }
+    }
+    if (file != null) {
+      frames.add(new Frame(file, "<toplevel>", line));
+    }
+    return frames.build();
+  }
+
+  /** Writes the samples collected so far as a gzipped pprof profile. */
+  public void writeProfile(OutputStream out) throws IOException {
+    Profile profile = buildProfile();
+    try (GZIPOutputStream outputStream = new GZIPOutputStream(out)) {
+      profile.writeTo(outputStream);
+      outputStream.finish();
+    }
+  }
+
+  synchronized Profile buildProfile() {
+    Profile.Builder profile = Profile.newBuilder();
+    StringTable stringTable = new StringTable(profile);
+    FunctionTable functionTable = new FunctionTable(profile, stringTable);
+    LocationTable locationTable = new LocationTable(profile, functionTable);
+    profile.addSampleType(
+        ValueType.newBuilder()
+            .setType(stringTable.get("samples"))
+            .setUnit(stringTable.get("count"))
+            .build());
+    profile.addSampleType(
+        ValueType.newBuilder()
+            .setType(stringTable.get("cpu"))
+            .setUnit(stringTable.get("nanoseconds"))
+            .build());
+    profile.setPeriodType(
+        ValueType.newBuilder()
+            .setType(stringTable.get("cpu"))
+            .setUnit(stringTable.get("nanoseconds"))
+            .build());
+    profile.setPeriod(interval.toNanos());
+    for (Map.Entry<ImmutableList<Frame>, SampleValues> entry : samples.entrySet()) {
+      Sample.Builder sample =
+          Sample.newBuilder()
+              .addValue(entry.getValue().count)
+              .addValue(entry.getValue().cpuTimeNanos);
+      for (Frame frame : entry.getKey()) {
+        sample.addLocationId(locationTable.get(frame.file, frame.function, frame.line));
+      }
+      profile.addSample(sample.build());
+    }
+    if (startTime != null) {
+      profile.setTimeNanos(startTime.getEpochSecond() * 1000000000 + startTime.getNano());
+      Instant end = stopTime != null ? stopTime : Instant.now();
+      profile.setDurationNanos(Duration.between(startTime, end).toNanos());
+    }
+    return profile.build();
+  }
+
+  private static class StringTable {
+    final Profile.Builder profile;
+    final Map<String, Long> table = new HashMap<>();
+    long index = 0;
+
+    StringTable(Profile.Builder profile) {
+      this.profile = profile;
+      get(""); // 0 is reserved for the empty string
+    }
+
+    long get(String str) {
+      return table.computeIfAbsent(
+          str,
+          key -> {
+            profile.addStringTable(key);
+            return index++;
+          });
+    }
+  }
+
+  private static class FunctionTable {
+    final Profile.Builder profile;
+    final StringTable stringTable;
+    final Map<String, Long> table = new HashMap<>();
+    long index = 1; // 0 is reserved
+
+    FunctionTable(Profile.Builder profile, StringTable stringTable) {
+      this.profile = profile;
+      this.stringTable = stringTable;
+    }
+
+    long get(String file, String function) {
+      return table.computeIfAbsent(
+          file + "#" + function,
+          key -> {
+            Function fn =
+                Function.newBuilder()
+                    .setId(index)
+                    .setFilename(stringTable.get(file))
+                    .setName(stringTable.get(function))
+                    .build();
+            profile.addFunction(fn);
+            return index++;
+          });
+    }
+  }
+
+  private static class LocationTable {
+    final Profile.Builder profile;
+    final FunctionTable functionTable;
+    final Map<String, Long> table = new HashMap<>();
+    long index = 1; // 0 is reserved
+
+    LocationTable(Profile.Builder profile, FunctionTable functionTable) {
+      this.profile = profile;
+      this.functionTable = functionTable;
+    }
+
+    long get(String file, String function, long line) {
+      return table.computeIfAbsent(
+          file + "#" + function + "#" + line,
+          key -> {
+            com.google.perftools.profiles.ProfileProto.Location location =
+                com.google.perftools.profiles.ProfileProto.Location.newBuilder()
+                    .setId(index)
+                    .addLine(
+                        Line.newBuilder()
+                            .setFunctionId(functionTable.get(file, function))
+                            .setLine(line)
+                            .build())
+                    .build();
+            profile.addLocation(location);
+            return index++;
+          });
+    }
+  }
+}
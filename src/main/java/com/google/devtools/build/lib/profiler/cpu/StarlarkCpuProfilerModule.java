@@ -0,0 +1,91 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.profiler.cpu;
+
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.build.lib.events.Reporter;
+import com.google.devtools.build.lib.runtime.BlazeModule;
+import com.google.devtools.build.lib.runtime.CommandEnvironment;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.common.options.Option;
+import com.google.devtools.common.options.OptionDocumentationCategory;
+import com.google.devtools.common.options.OptionEffectTag;
+import com.google.devtools.common.options.OptionsBase;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+
+/**
+ * Samples the Skylark callstacks of the threads that load packages and analyze rules during a
+ * command, and writes a pprof-compatible CPU profile to the path given by --starlark_cpu_profile
+ * at the end of the command.
+ */
+public class StarlarkCpuProfilerModule extends BlazeModule {
+  private static final Duration SAMPLE_INTERVAL = Duration.ofMillis(10);
+
+  private StarlarkCpuProfiler profiler;
+  private Path outputPath;
+  private Reporter reporter;
+
+  /** Options for {@link StarlarkCpuProfilerModule}. */
+  public static class StarlarkCpuProfilerOptions extends OptionsBase {
+    @Option(
+      name = "starlark_cpu_profile",
+      defaultValue = "",
+      documentationCategory = OptionDocumentationCategory.LOGGING,
+      effectTags = {OptionEffectTag.BAZEL_MONITORING},
+      help =
+          "Writes into the specified file a pprof profile of the CPU time spent evaluating "
+              + "Starlark code in BUILD and .bzl files, broken down by Starlark function and "
+              + "line. The profile is written at the end of the command."
+    )
+    public String starlarkCpuProfile;
+  }
+
+  @Override
+  public Iterable<Class<? extends OptionsBase>> getCommonCommandOptions() {
+    return ImmutableList.of(StarlarkCpuProfilerOptions.class);
+  }
+
+  @Override
+  public void beforeCommand(CommandEnvironment env) {
+    String profilePath =
+        env.getOptions().getOptions(StarlarkCpuProfilerOptions.class).starlarkCpuProfile;
+    if (profilePath.isEmpty()) {
+      return;
+    }
+    outputPath = env.getWorkingDirectory().getRelative(profilePath);
+    reporter = env.getReporter();
+    profiler = new StarlarkCpuProfiler(SAMPLE_INTERVAL);
+    profiler.start();
+  }
+
+  @Override
+  public void afterCommand() {
+    if (profiler == null) {
+      return;
+    }
+    profiler.stop();
+    try (OutputStream out = outputPath.getOutputStream()) {
+      profiler.writeProfile(out);
+    } catch (IOException e) {
+      reporter.error(null, "Error writing Starlark CPU profile", e);
+    } finally {
+      profiler = null;
+      outputPath = null;
+      reporter = null;
+    }
+  }
+}
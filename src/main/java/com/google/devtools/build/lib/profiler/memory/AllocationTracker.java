@@ -28,8 +28,12 @@ import com.google.devtools.build.lib.packages.RuleFunction;
 import com.google.devtools.build.lib.syntax.ASTNode;
 import com.google.devtools.build.lib.syntax.BaseFunction;
 import com.google.devtools.build.lib.syntax.Callstack;
+import com.google.devtools.build.lib.syntax.SkylarkDict;
+import com.google.devtools.build.lib.syntax.SkylarkList;
+import com.google.devtools.build.lib.syntax.SkylarkNestedSet;
 import com.google.monitoring.runtime.instrumentation.Sampler;
 import com.google.perftools.profiles.ProfileProto.Function;
+import com.google.perftools.profiles.ProfileProto.Label;
 import com.google.perftools.profiles.ProfileProto.Line;
 import com.google.perftools.profiles.ProfileProto.Profile;
 import com.google.perftools.profiles.ProfileProto.Sample;
@@ -41,10 +45,22 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.zip.GZIPOutputStream;
 import javax.annotation.Nullable;
 
-/** Tracks allocations for memory reporting. */
+/**
+ * Tracks allocations for memory reporting.
+ *
+ * <p>By default every allocation counts, and an allocation is sampled whenever the thread has
+ * allocated about {@code samplePeriod} bytes since its previous sample. With {@link
+ * #forStarlarkValues}, only allocations of Starlark strings, lists, dicts and depsets count, and
+ * every {@code samplePeriod}th of them is sampled. The memory profile then estimates the heap that
+ * is still retained by the sampled values, and the sample period is raised whenever taking samples
+ * costs more than the given fraction of the wall time.
+ */
 @ConditionallyThreadCompatible
 public class AllocationTracker implements Sampler {
 
@@ -53,24 +69,41 @@ public class AllocationTracker implements Sampler {
     @Nullable final AspectClass aspectClass; // Current aspect being analysed, if any
     final List<Object> callstack; // Skylark callstack, if any
     final long bytes;
+    final long objects; // Number of allocations this sample stands for
 
     AllocationSample(
         @Nullable RuleClass ruleClass,
         @Nullable AspectClass aspectClass,
         List<Object> callstack,
-        long bytes) {
+        long bytes,
+        long objects) {
       this.ruleClass = ruleClass;
       this.aspectClass = aspectClass;
       this.callstack = callstack;
       this.bytes = bytes;
+      this.objects = objects;
     }
   }
 
+  /** The length of the window over which the overhead of sampling is measured. */
+  private static final long OVERHEAD_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  /** The largest sample period the overhead budget may raise the initial one to. */
+  private static final int MAX_SAMPLE_PERIOD_FACTOR = 1 << 16;
+
   private final Map<Object, AllocationSample> allocations = new MapMaker().weakKeys().makeMap();
-  private final int samplePeriod;
+  private final int initialSamplePeriod;
+  private volatile int samplePeriod;
   private final int sampleVariance;
+  private final boolean starlarkValuesOnly;
+  private final double maxOverhead;
   private boolean enabled = true;
 
+  // Sampling cost in the current overhead window. Whichever thread ends the window resets it, so
+  // that the threads charging their costs never contend on a lock.
+  private final AtomicLong windowStartNanos;
+  private final LongAdder windowOverheadNanos = new LongAdder();
+
   /**
    * Cheap wrapper class for a long. Avoids having to do two thread-local lookups per allocation.
    */
@@ -83,8 +116,34 @@ public class AllocationTracker implements Sampler {
   private final Random random = new Random();
 
   AllocationTracker(int samplePeriod, int variance) {
+    this(samplePeriod, variance, /*starlarkValuesOnly=*/ false, /*maxOverhead=*/ 0);
+  }
+
+  private AllocationTracker(
+      int samplePeriod, int variance, boolean starlarkValuesOnly, double maxOverhead) {
+    this.initialSamplePeriod = samplePeriod;
     this.samplePeriod = samplePeriod;
     this.sampleVariance = variance;
+    this.starlarkValuesOnly = starlarkValuesOnly;
+    this.maxOverhead = maxOverhead;
+    this.windowStartNanos = new AtomicLong(System.nanoTime());
+  }
+
+  /**
+   * Returns a tracker that samples every {@code samplePeriod}th (give or take {@code variance})
+   * allocation of a Starlark string, list, dict or depset. If sampling takes more than {@code
+   * maxOverhead} of the wall time, e.g. 0.01 for 1%, the sample period is doubled until it does
+   * not.
+   */
+  static AllocationTracker forStarlarkValues(int samplePeriod, int variance, double maxOverhead) {
+    return new AllocationTracker(samplePeriod, variance, /*starlarkValuesOnly=*/ true, maxOverhead);
+  }
+
+  private static boolean isStarlarkValue(Object obj) {
+    return obj instanceof String
+        || obj instanceof SkylarkList
+        || obj instanceof SkylarkDict
+        || obj instanceof SkylarkNestedSet;
   }
 
   @Override
@@ -93,12 +152,27 @@ public class AllocationTracker implements Sampler {
     if (!enabled) {
       return;
     }
+    if (starlarkValuesOnly && !isStarlarkValue(newObj)) {
+      return;
+    }
+    if (maxOverhead <= 0) {
+      maybeSample(newObj, size);
+      return;
+    }
+    // The whole path is charged to the budget, including the allocations that are not sampled.
+    long startNanos = System.nanoTime();
+    boolean sampled = maybeSample(newObj, size);
+    chargeOverhead(startNanos, sampled);
+  }
+
+  /** Samples the allocation if the thread has reached its next sample, and returns whether so. */
+  private boolean maybeSample(Object newObj, long size) {
     List<Object> callstack = Callstack.get();
     RuleClass ruleClass = CurrentRuleTracker.getRule();
     AspectClass aspectClass = CurrentRuleTracker.getAspect();
     // Should we bother sampling?
     if (callstack.isEmpty() && ruleClass == null && aspectClass == null) {
-      return;
+      return false;
     }
     // If we start getting stack overflows here, it's because the memory sampling
     // implementation has changed to call back into the sampling method immediately on
@@ -106,16 +180,22 @@ public class AllocationTracker implements Sampler {
     // to infinite recursion. This method will then need to be rewritten to not
     // allocate, or at least not allocate to obtain its sample counters.
     LongValue bytesValue = currentSampleBytes.get();
-    long bytes = bytesValue.value + size;
+    // When only Starlark values are tracked, the sample period is a number of allocations.
+    long bytes = bytesValue.value + (starlarkValuesOnly ? 1 : size);
     if (bytes < nextSampleBytes.get()) {
       bytesValue.value = bytes;
-      return;
+      return false;
     }
     bytesValue.value = 0;
     nextSampleBytes.set(getNextSample());
-    allocations.put(
-        newObj,
-        new AllocationSample(ruleClass, aspectClass, ImmutableList.copyOf(callstack), bytes));
+    AllocationSample sample =
+        starlarkValuesOnly
+            ? new AllocationSample(
+                ruleClass, aspectClass, ImmutableList.copyOf(callstack), bytes * size, bytes)
+            : new AllocationSample(
+                ruleClass, aspectClass, ImmutableList.copyOf(callstack), bytes, 1);
+    allocations.put(newObj, sample);
+    return true;
   }
 
   private long getNextSample() {
@@ -123,6 +203,69 @@ public class AllocationTracker implements Sampler {
         + (sampleVariance > 0 ? (random.nextInt(sampleVariance * 2) - sampleVariance) : 0);
   }
 
+  /**
+   * Adds the cost of a call that was started at {@code startNanos} to the current overhead window.
+   * After a sample was taken, also doubles the sample period if the window is over budget. At the
+   * end of each window that stayed well under budget, the sample period is halved again, but never
+   * below the initial one.
+   */
+  private void chargeOverhead(long startNanos, boolean sampled) {
+    long now = System.nanoTime();
+    windowOverheadNanos.add(now - startNanos);
+    if (!sampled) {
+      return;
+    }
+    long windowStart = windowStartNanos.get();
+    long elapsed = now - windowStart;
+    long overhead = windowOverheadNanos.sum();
+    boolean overBudget = overhead > maxOverhead * Math.max(elapsed, OVERHEAD_WINDOW_NANOS);
+    if (!overBudget && elapsed < OVERHEAD_WINDOW_NANOS) {
+      return;
+    }
+    // Only the thread that ends the window adjusts the sample period. Costs charged concurrently
+    // with the reset may be lost, which only makes the budget slightly more lenient.
+    if (!windowStartNanos.compareAndSet(windowStart, now)) {
+      return;
+    }
+    windowOverheadNanos.reset();
+    if (overBudget) {
+      if (samplePeriod < initialSamplePeriod * (long) MAX_SAMPLE_PERIOD_FACTOR) {
+        samplePeriod *= 2;
+      }
+    } else if (overhead < maxOverhead * elapsed / 4 && samplePeriod > initialSamplePeriod) {
+      samplePeriod /= 2;
+    }
+  }
+
+  /** Returns the current sample period, which may have been raised to stay within budget. */
+  int getSamplePeriod() {
+    return samplePeriod;
+  }
+
+  /**
+   * Estimates the bytes that a sampled Starlark value retains now, including the arrays backing
+   * strings, lists and dicts, but not the elements. Falls back to the size of the object when it
+   * was allocated.
+   */
+  private static long estimateRetainedBytes(Object obj, long allocatedBytes) {
+    if (obj instanceof String) {
+      // The String object and its byte[], assuming compact (Latin-1) strings.
+      return 24 + align(16 + ((String) obj).length());
+    } else if (obj instanceof SkylarkList) {
+      // The list, its backing list and array of references.
+      return 16 + 24 + align(16 + 8L * ((SkylarkList<?>) obj).size());
+    } else if (obj instanceof SkylarkDict) {
+      // The dict, its LinkedHashMap, the hash table and one entry per key.
+      int size = ((SkylarkDict<?, ?>) obj).size();
+      return 24 + 56 + align(16 + 8L * (size * 4 / 3 + 1)) + 40L * size;
+    }
+    return allocatedBytes;
+  }
+
+  private static long align(long bytes) {
+    return (bytes + 7) & ~7L;
+  }
+
   /** A pair of rule/aspect name and the bytes it consumes. */
   public static class RuleBytes {
     private final String name;
@@ -237,17 +380,45 @@ public class AllocationTracker implements Sampler {
     StringTable stringTable = new StringTable(profile);
     FunctionTable functionTable = new FunctionTable(profile, stringTable);
     LocationTable locationTable = new LocationTable(profile, functionTable);
-    profile.addSampleType(
-        ValueType.newBuilder()
-            .setType(stringTable.get("memory"))
-            .setUnit(stringTable.get("bytes"))
-            .build());
-    for (AllocationSample allocationSample : allocations.values()) {
+    if (starlarkValuesOnly) {
+      profile.addSampleType(
+          ValueType.newBuilder()
+              .setType(stringTable.get("inuse_objects"))
+              .setUnit(stringTable.get("count"))
+              .build());
+      profile.addSampleType(
+          ValueType.newBuilder()
+              .setType(stringTable.get("inuse_space"))
+              .setUnit(stringTable.get("bytes"))
+              .build());
+    } else {
+      profile.addSampleType(
+          ValueType.newBuilder()
+              .setType(stringTable.get("memory"))
+              .setUnit(stringTable.get("bytes"))
+              .build());
+    }
+    for (Map.Entry<Object, AllocationSample> entry : allocations.entrySet()) {
+      AllocationSample allocationSample = entry.getValue();
       // Skip empty callstacks
       if (allocationSample.callstack.isEmpty()) {
         continue;
       }
-      Sample.Builder sample = Sample.newBuilder().addValue(allocationSample.bytes);
+      Sample.Builder sample = Sample.newBuilder();
+      if (starlarkValuesOnly) {
+        Object value = entry.getKey();
+        long allocatedBytes = allocationSample.bytes / allocationSample.objects;
+        sample
+            .addValue(allocationSample.objects)
+            .addValue(allocationSample.objects * estimateRetainedBytes(value, allocatedBytes))
+            .addLabel(
+                Label.newBuilder()
+                    .setKey(stringTable.get("type"))
+                    .setStr(stringTable.get(value.getClass().getSimpleName()))
+                    .build());
+      } else {
+        sample.addValue(allocationSample.bytes);
+      }
       int line = -1;
       String file = null;
       for (int i = allocationSample.callstack.size() - 1; i >= 0; --i) {
@@ -41,6 +41,11 @@ import java.util.UUID;
  *   <li>--host_jvm_args=-DRULE_MEMORY_TRACKER=1
  * </ol>
  *
+ * <p>With --host_jvm_args=-DRULE_MEMORY_TRACKER=starlark instead, only allocations of Starlark
+ * strings, lists, dicts and depsets are sampled, and the Starlark memory profile estimates the
+ * heap they retain. Sampling then backs off to stay within {@link #STARLARK_MAX_OVERHEAD} of the
+ * wall time, so this mode can be used for regular builds.
+ *
  * <p>The memory tracking information is accessible via blaze dump --rules and blaze dump
  * --skylark_memory=(path)
  */
@@ -54,6 +59,14 @@ public class AllocationTrackerModule extends BlazeModule {
    */
   private static final int VARIANCE = 100;
 
+  /** Sample every Nth allocation of a Starlark value when only those are tracked. */
+  private static final int STARLARK_SAMPLE_PERIOD = 64;
+
+  private static final int STARLARK_VARIANCE = 16;
+
+  /** The fraction of the wall time that sampling Starlark values may take. */
+  private static final double STARLARK_MAX_OVERHEAD = 0.02;
+
   private boolean enabled;
   private AllocationTracker tracker = null;
 
@@ -66,9 +79,14 @@ public class AllocationTrackerModule extends BlazeModule {
       ServerDirectories directories,
       Clock clock) {
     String memoryTrackerPropery = System.getProperty("RULE_MEMORY_TRACKER");
-    enabled = memoryTrackerPropery != null && memoryTrackerPropery.equals("1");
+    boolean starlarkValuesOnly = "starlark".equals(memoryTrackerPropery);
+    enabled = "1".equals(memoryTrackerPropery) || starlarkValuesOnly;
     if (enabled) {
-      tracker = new AllocationTracker(SAMPLE_SIZE, VARIANCE);
+      tracker =
+          starlarkValuesOnly
+              ? AllocationTracker.forStarlarkValues(
+                  STARLARK_SAMPLE_PERIOD, STARLARK_VARIANCE, STARLARK_MAX_OVERHEAD)
+              : new AllocationTracker(SAMPLE_SIZE, VARIANCE);
       Callstack.setEnabled(true);
       CurrentRuleTracker.setEnabled(true);
       AllocationTrackerInstaller.installAllocationTracker(tracker);
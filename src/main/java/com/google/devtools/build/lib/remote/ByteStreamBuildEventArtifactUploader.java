@@ -14,6 +14,7 @@
 package com.google.devtools.build.lib.remote;
 
 import build.bazel.remote.execution.v2.Digest;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSet;
@@ -21,30 +22,54 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.devtools.build.lib.buildeventstream.BuildEvent.LocalFile;
 import com.google.devtools.build.lib.buildeventstream.BuildEventArtifactUploader;
 import com.google.devtools.build.lib.buildeventstream.PathConverter;
 import com.google.devtools.build.lib.remote.util.DigestUtil;
 import com.google.devtools.build.lib.vfs.Path;
 import io.grpc.Context;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 
 /**
  * A {@link BuildEventArtifactUploader} backed by {@link ByteStreamUploader}.
+ *
+ * <p>The digests of the files referenced by a build event are looked up in the remote cache with
+ * the {@link MissingDigestsFinder} in batches, as they are computed, and only the files which are
+ * missing are uploaded. The upload of a file starts as soon as the lookup of its batch returned.
  */
 class ByteStreamBuildEventArtifactUploader implements BuildEventArtifactUploader {
+  private static final Logger logger =
+      Logger.getLogger(ByteStreamBuildEventArtifactUploader.class.getName());
+
+  // The maximum number of digests in a single lookup of missing blobs. Smaller batches let the
+  // uploads of the first files of a large event start before the last ones have been hashed.
+  @VisibleForTesting static final int MAX_DIGESTS_PER_LOOKUP = 100;
+
+  /** Finds the digests of the blobs that are missing from the remote cache. */
+  @FunctionalInterface
+  interface MissingDigestsFinder {
+    Set<Digest> findMissingDigests(Iterable<Digest> digests)
+        throws IOException, InterruptedException;
+  }
 
   private final ListeningExecutorService uploadExecutor;
   private final Context ctx;
   private final ByteStreamUploader uploader;
   private final String remoteServerInstanceName;
+  @Nullable private final MissingDigestsFinder missingDigestsFinder;
 
   private final AtomicBoolean shutdown = new AtomicBoolean();
 
@@ -54,6 +79,22 @@ class ByteStreamBuildEventArtifactUploader implements BuildEventArtifactUploader
       Context ctx,
       @Nullable String remoteInstanceName,
       int maxUploadThreads) {
+    this(
+        uploader,
+        remoteServerName,
+        ctx,
+        remoteInstanceName,
+        maxUploadThreads,
+        /* missingDigestsFinder= */ null);
+  }
+
+  ByteStreamBuildEventArtifactUploader(
+      ByteStreamUploader uploader,
+      String remoteServerName,
+      Context ctx,
+      @Nullable String remoteInstanceName,
+      int maxUploadThreads,
+      @Nullable MissingDigestsFinder missingDigestsFinder) {
     this.uploader = Preconditions.checkNotNull(uploader);
     String remoteServerInstanceName = Preconditions.checkNotNull(remoteServerName);
     if (!Strings.isNullOrEmpty(remoteInstanceName)) {
@@ -61,50 +102,148 @@ class ByteStreamBuildEventArtifactUploader implements BuildEventArtifactUploader
     }
     this.ctx = ctx;
     this.remoteServerInstanceName = remoteServerInstanceName;
+    this.missingDigestsFinder = missingDigestsFinder;
     // Limit the maximum threads number to 1000 (chosen arbitrarily)
     this.uploadExecutor =
         MoreExecutors.listeningDecorator(
             Executors.newFixedThreadPool(Math.min(maxUploadThreads, 1000)));
   }
 
+  /** Uploads the given files. Files with the same contents are uploaded once. */
   @Override
   public ListenableFuture<PathConverter> upload(Map<Path, LocalFile> files) {
     if (files.isEmpty()) {
       return Futures.immediateFuture(PathConverter.NO_CONVERSION);
     }
-    List<ListenableFuture<PathDigestPair>> uploads = new ArrayList<>(files.size());
-
-      for (Path file : files.keySet()) {
-      ListenableFuture<Boolean> isDirectoryFuture = uploadExecutor.submit(() -> file.isDirectory());
-      ListenableFuture<PathDigestPair> digestFuture =
-          Futures.transformAsync(
-              isDirectoryFuture,
-              isDirectory -> {
-                if (isDirectory) {
-                  return Futures.immediateFuture(new PathDigestPair(file, null));
+    MissingDigestsLookup lookup = new MissingDigestsLookup(files.size());
+    Map<Digest, ListenableFuture<Void>> uploads = new ConcurrentHashMap<>();
+    List<ListenableFuture<PathDigestPair>> uploadedFiles = new ArrayList<>(files.size());
+    for (Path file : files.keySet()) {
+      ListenableFuture<PathDigestPair> digest =
+          uploadExecutor.submit(
+              () -> {
+                if (file.isDirectory()) {
+                  return new PathDigestPair(file, null);
                 }
                 DigestUtil digestUtil = new DigestUtil(file.getFileSystem().getDigestFunction());
-                Digest digest = digestUtil.compute(file);
-                Chunker chunker = Chunker.builder(digestUtil).setInput(digest, file).build();
-                final ListenableFuture<Void> upload;
-                Context prevCtx = ctx.attach();
-                try {
-                  upload = uploader.uploadBlobAsync(chunker, /*forceUpload=*/ false);
-                } finally {
-                  ctx.detach(prevCtx);
-                }
-                return Futures.transform(
-                    upload, unused -> new PathDigestPair(file, digest), uploadExecutor);
-              },
+                return new PathDigestPair(file, digestUtil.compute(file));
+              });
+      // Files whose digest cannot be computed are added too, so that the last batch is looked up.
+      ListenableFuture<Boolean> missing =
+          Futures.transformAsync(
+              Futures.catching(
+                  digest, Throwable.class, t -> null, MoreExecutors.directExecutor()),
+              pair -> lookup.add(pair != null ? pair.getDigest() : null),
               MoreExecutors.directExecutor());
-      uploads.add(digestFuture);
-      }
+      uploadedFiles.add(
+          Futures.whenAllSucceed(digest, missing)
+              .callAsync(
+                  () -> {
+                    PathDigestPair pair = Futures.getDone(digest);
+                    if (!Futures.getDone(missing)) {
+                      return Futures.immediateFuture(pair);
+                    }
+                    return Futures.transform(
+                        uploads.computeIfAbsent(pair.getDigest(), unused -> startUpload(pair)),
+                        unused -> pair,
+                        MoreExecutors.directExecutor());
+                  },
+                  MoreExecutors.directExecutor()));
+    }
     return Futures.transform(
-        Futures.allAsList(uploads),
+        Futures.allAsList(uploadedFiles),
         pathDigestPairs -> new PathConverterImpl(remoteServerInstanceName, pathDigestPairs),
         MoreExecutors.directExecutor());
   }
 
+  private ListenableFuture<Void> startUpload(PathDigestPair pair) {
+    DigestUtil digestUtil = new DigestUtil(pair.getPath().getFileSystem().getDigestFunction());
+    Chunker chunker =
+        Chunker.builder(digestUtil).setInput(pair.getDigest(), pair.getPath()).build();
+    Context prevCtx = ctx.attach();
+    try {
+      return uploader.uploadBlobAsync(chunker, /*forceUpload=*/ false);
+    } finally {
+      ctx.detach(prevCtx);
+    }
+  }
+
+  /**
+   * Returns the subset of {@code digests} that is missing from the remote cache, or all of them if
+   * there is no {@link MissingDigestsFinder}. A single blob is uploaded without asking first, as
+   * the lookup would delay it by a round trip for little gain. If the lookup fails, all blobs are
+   * treated as missing.
+   */
+  private Set<Digest> findMissingDigests(Set<Digest> digests) throws Exception {
+    if (missingDigestsFinder == null || digests.size() <= 1) {
+      return digests;
+    }
+    try {
+      return ctx.call(() -> missingDigestsFinder.findMissingDigests(digests));
+    } catch (IOException e) {
+      logger.log(
+          Level.WARNING,
+          String.format(
+              "Failed to find missing blobs, uploading all %d of them: %s",
+              digests.size(), e.getMessage()),
+          e);
+      return digests;
+    }
+  }
+
+  /**
+   * Collects the digests of the files of one {@link #upload} call as they are computed, and looks
+   * them up in batches of at most {@link #MAX_DIGESTS_PER_LOOKUP}. The last batch is looked up once
+   * all files have been added.
+   */
+  private final class MissingDigestsLookup {
+    private final int numFiles;
+
+    @GuardedBy("this")
+    private int numFilesAdded;
+
+    @GuardedBy("this")
+    private Map<Digest, SettableFuture<Boolean>> batch = new HashMap<>();
+
+    MissingDigestsLookup(int numFiles) {
+      this.numFiles = numFiles;
+    }
+
+    /**
+     * Adds the digest of a file, or null if the file has no digest, and returns whether its blob is
+     * missing from the remote cache once the lookup of its batch returned. Must be called exactly
+     * once per file.
+     */
+    ListenableFuture<Boolean> add(@Nullable Digest digest) {
+      SettableFuture<Boolean> missing = null;
+      Map<Digest, SettableFuture<Boolean>> fullBatch = null;
+      synchronized (this) {
+        numFilesAdded++;
+        if (digest != null) {
+          missing = batch.computeIfAbsent(digest, unused -> SettableFuture.create());
+        }
+        if (batch.size() == MAX_DIGESTS_PER_LOOKUP || numFilesAdded == numFiles) {
+          fullBatch = batch;
+          batch = new HashMap<>();
+        }
+      }
+      if (fullBatch != null && !fullBatch.isEmpty()) {
+        Map<Digest, SettableFuture<Boolean>> lookedUpBatch = fullBatch;
+        uploadExecutor.execute(() -> lookUp(lookedUpBatch));
+      }
+      return missing != null ? missing : Futures.immediateFuture(false);
+    }
+
+    private void lookUp(Map<Digest, SettableFuture<Boolean>> batch) {
+      try {
+        Set<Digest> missingDigests = findMissingDigests(batch.keySet());
+        batch.forEach((digest, missing) -> missing.set(missingDigests.contains(digest)));
+      } catch (Exception e) {
+        batch.values().forEach(missing -> missing.setException(e));
+      }
+    }
+  }
+
   @Override
   public void shutdown() {
     if (shutdown.getAndSet(true)) {
@@ -14,6 +14,7 @@
 package com.google.devtools.build.lib.remote;
 
 import com.google.devtools.build.lib.buildeventstream.BuildEventArtifactUploader;
+import com.google.devtools.build.lib.remote.ByteStreamBuildEventArtifactUploader.MissingDigestsFinder;
 import com.google.devtools.build.lib.runtime.BuildEventArtifactUploaderFactory;
 import com.google.devtools.build.lib.runtime.CommandEnvironment;
 import io.grpc.Context;
@@ -29,14 +30,16 @@ class ByteStreamBuildEventArtifactUploaderFactory implements
   private final String remoteServerName;
   private final Context ctx;
   private final @Nullable String remoteInstanceName;
+  private final @Nullable MissingDigestsFinder missingDigestsFinder;
 
   ByteStreamBuildEventArtifactUploaderFactory(
       ByteStreamUploader uploader, String remoteServerName, Context ctx,
-      @Nullable String remoteInstanceName) {
+      @Nullable String remoteInstanceName, @Nullable MissingDigestsFinder missingDigestsFinder) {
     this.uploader = uploader;
     this.remoteServerName = remoteServerName;
     this.ctx = ctx;
     this.remoteInstanceName = remoteInstanceName;
+    this.missingDigestsFinder = missingDigestsFinder;
   }
 
   @Override
@@ -46,6 +49,7 @@ class ByteStreamBuildEventArtifactUploaderFactory implements
         remoteServerName,
         ctx,
         remoteInstanceName,
-        env.getOptions().getOptions(RemoteOptions.class).buildEventUploadMaxThreads);
+        env.getOptions().getOptions(RemoteOptions.class).buildEventUploadMaxThreads,
+        missingDigestsFinder);
   }
 }
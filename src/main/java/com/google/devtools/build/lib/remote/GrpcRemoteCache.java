@@ -162,7 +162,8 @@ public class GrpcRemoteCache extends AbstractRemoteActionCache {
     return retrier.executeAsync(() -> ctx.call(() -> casFutureStub().findMissingBlobs(request)));
   }
 
-  private ImmutableSet<Digest> getMissingDigests(Iterable<Digest> digests)
+  /** Returns the digests of the given blobs that are missing from the remote cache. */
+  ImmutableSet<Digest> getMissingDigests(Iterable<Digest> digests)
       throws IOException, InterruptedException {
     if (Iterables.isEmpty(digests)) {
       return ImmutableSet.of();
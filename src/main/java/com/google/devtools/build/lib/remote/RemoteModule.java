@@ -222,7 +222,7 @@ public final class RemoteModule extends BlazeModule {
                 remoteOptions.remoteTimeout,
                 rpcRetrier);
         cacheChannel.release();
-        cache =
+        GrpcRemoteCache grpcCache =
             new GrpcRemoteCache(
                 cacheChannel.retain(),
                 credentials,
@@ -230,6 +230,7 @@ public final class RemoteModule extends BlazeModule {
                 rpcRetrier,
                 digestUtil,
                 uploader.retain());
+        cache = grpcCache;
         uploader.release();
         Context requestContext =
             TracingMetadataUtils.contextWithMetadata(buildRequestId, invocationId, "bes-upload");
@@ -238,7 +239,8 @@ public final class RemoteModule extends BlazeModule {
                 uploader,
                 cacheChannel.authority(),
                 requestContext,
-                remoteOptions.remoteInstanceName));
+                remoteOptions.remoteInstanceName,
+                grpcCache::getMissingDigests));
       }
 
       if (enableBlobStoreCache) {
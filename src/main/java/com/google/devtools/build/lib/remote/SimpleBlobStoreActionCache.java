@@ -21,6 +21,7 @@ import build.bazel.remote.execution.v2.Digest;
 import build.bazel.remote.execution.v2.Directory;
 import build.bazel.remote.execution.v2.DirectoryNode;
 import build.bazel.remote.execution.v2.FileNode;
+import com.google.common.base.Preconditions;
 import com.google.common.hash.HashingOutputStream;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
@@ -29,6 +30,7 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import com.google.devtools.build.lib.actions.ExecException;
 import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
+import com.google.devtools.build.lib.remote.blobstore.OnDiskBlobStore;
 import com.google.devtools.build.lib.remote.blobstore.SimpleBlobStore;
 import com.google.devtools.build.lib.remote.util.DigestUtil;
 import com.google.devtools.build.lib.remote.util.DigestUtil.ActionKey;
@@ -221,6 +223,31 @@ public final class SimpleBlobStoreActionCache extends AbstractRemoteActionCache
     blobStore.close();
   }
 
+  /**
+   * Copies files that are in a local disk cache directly, instead of streaming them through {@link
+   * #downloadBlob}. Files that are not on disk (e.g. only in the remote part of a {@link
+   * com.google.devtools.build.lib.remote.blobstore.CombinedDiskHttpBlobStore}) are downloaded as
+   * usual.
+   */
+  @Override
+  public ListenableFuture<Void> downloadFile(Path path, Digest digest) throws IOException {
+    if (digest.getSizeBytes() == 0 || !(blobStore instanceof OnDiskBlobStore)) {
+      return super.downloadFile(path, digest);
+    }
+    Preconditions.checkNotNull(path.getParentDirectory()).createDirectoryAndParents();
+    try {
+      if (!((OnDiskBlobStore) blobStore).copyTo(digest.getHash(), path)) {
+        return super.downloadFile(path, digest);
+      }
+      if (options.remoteVerifyDownloads) {
+        verifyContents(digest.getHash(), digestUtil.compute(path).getHash());
+      }
+    } catch (IOException e) {
+      return Futures.immediateFailedFuture(e);
+    }
+    return Futures.immediateFuture(null);
+  }
+
   @Override
   protected ListenableFuture<Void> downloadBlob(Digest digest, OutputStream out) {
     SettableFuture<Void> outerF = SettableFuture.create();
@@ -56,6 +56,20 @@ public class OnDiskBlobStore implements SimpleBlobStore {
     return f;
   }
 
+  /**
+   * Copies the blob stored under {@code key} to {@code target} on the file system level, which
+   * avoids streaming the contents through the JVM and lets file systems with reflink support share
+   * the data between the cache and the output. Returns false if the blob is not in the store.
+   */
+  public boolean copyTo(String key, Path target) throws IOException {
+    Path p = toPath(key);
+    if (!p.exists()) {
+      return false;
+    }
+    p.copyContentsTo(target);
+    return true;
+  }
+
   @Override
   public boolean getActionResult(String key, OutputStream out)
       throws IOException, InterruptedException {
@@ -65,6 +65,29 @@ public class AggregatedCriticalPath {
             aggregatedSpawnMetrics.executionWallTime().toMillis() / 1000.0);
   }
 
+  /**
+   * Returns a one-line summary of the critical path of the actions completed so far, for display
+   * while the build is running. The time is broken down by phase over all the components, and the
+   * action that ends the path is named.
+   */
+  public String toStringLiveSummary() {
+    StringBuilder sb =
+        new StringBuilder(
+            String.format(
+                "Critical path so far %.2fs (queue %.2fs, upload %.2fs, setup %.2fs, "
+                    + "process %.2fs, fetch %.2fs)",
+                totalTime.toMillis() / 1000.0,
+                aggregatedSpawnMetrics.remoteQueueTime().toMillis() / 1000.0,
+                aggregatedSpawnMetrics.uploadTime().toMillis() / 1000.0,
+                aggregatedSpawnMetrics.setupTime().toMillis() / 1000.0,
+                aggregatedSpawnMetrics.executionWallTime().toMillis() / 1000.0,
+                aggregatedSpawnMetrics.fetchTime().toMillis() / 1000.0));
+    if (!criticalPathComponents.isEmpty()) {
+      sb.append(", ending with ").append(criticalPathComponents.get(0).prettyPrintAction());
+    }
+    return sb.toString();
+  }
+
   @Override
   public String toString() {
     return toString(false, true);
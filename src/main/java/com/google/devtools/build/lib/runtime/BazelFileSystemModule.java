@@ -71,7 +71,11 @@ public class BazelFileSystemModule extends BlazeModule {
           OS.getCurrent() == OS.WINDOWS ? new WindowsFileSystem() : new JavaIoFileSystem());
     }
     // The JNI-based UnixFileSystem is faster, but on Windows it is not available.
+    BlazeServerStartupOptions options =
+        Preconditions.checkNotNull(startupOptions.getOptions(BlazeServerStartupOptions.class));
     return ModuleFileSystem.create(
-        OS.getCurrent() == OS.WINDOWS ? new WindowsFileSystem() : new UnixFileSystem());
+        OS.getCurrent() == OS.WINDOWS
+            ? new WindowsFileSystem()
+            : new UnixFileSystem(options.unixDigestHashAttributeName));
   }
 }
@@ -428,6 +428,21 @@ public class BlazeServerStartupOptions extends OptionsBase {
       help = "The hash function to use when computing file digests.")
   public DigestHashFunction digestHashFunction;
 
+  @Option(
+      name = "unix_digest_hash_attribute_name",
+      defaultValue = "",
+      documentationCategory = OptionDocumentationCategory.UNDOCUMENTED,
+      effectTags = {
+        OptionEffectTag.LOSES_INCREMENTAL_STATE,
+        OptionEffectTag.BAZEL_INTERNAL_CONFIGURATION
+      },
+      metadataTags = OptionMetadataTag.EXPERIMENTAL,
+      help =
+          "The name of an extended attribute that file systems set to the digest of a file, in "
+              + "the hash function given by --digest_function. Where present, it is used instead "
+              + "of reading the file to compute its digest. Only supported on Unix.")
+  public String unixDigestHashAttributeName;
+
   @Deprecated
   @Option(
       name = "expand_configs_in_place",
@@ -83,7 +83,8 @@ public class BuildSummaryStatsModule extends BlazeModule {
     // TODO(ulfjack): Make sure to use the same clock as for commandStartMillis.
     executionStartMillis = BlazeClock.instance().currentTimeMillis();
     if (enabled) {
-      criticalPathComputer = new CriticalPathComputer(actionKeyContext, BlazeClock.instance());
+      criticalPathComputer =
+          new CriticalPathComputer(actionKeyContext, BlazeClock.instance(), eventBus);
       eventBus.register(criticalPathComputer);
     }
   }
@@ -19,6 +19,7 @@ import com.google.common.collect.Comparators;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import com.google.devtools.build.lib.actions.Action;
 import com.google.devtools.build.lib.actions.ActionAnalysisMetadata;
@@ -39,10 +40,13 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BinaryOperator;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
@@ -56,6 +60,8 @@ public class CriticalPathComputer {
   static final int SLOWEST_COMPONENTS_SIZE = 30;
   private static final int LARGEST_MEMORY_COMPONENTS_SIZE = 20;
   private static final int LARGEST_INPUT_SIZE_COMPONENTS_SIZE = 20;
+  /** Minimum time between two {@link CriticalPathUpdateEvent}s. */
+  private static final long UPDATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
 
   /** Selects and returns the longer of two components (the first may be {@code null}). */
   private static final BinaryOperator<CriticalPathComponent> SELECT_LONGER_COMPONENT =
@@ -74,10 +80,24 @@ public class CriticalPathComputer {
   private final AtomicReference<CriticalPathComponent> maxCriticalPath;
   private final Clock clock;
 
+  /** Receives {@link CriticalPathUpdateEvent}s while the build is running, if not null. */
+  @Nullable private final EventBus eventBus;
+  /** The maximum critical path component last posted in a {@link CriticalPathUpdateEvent}. */
+  private final AtomicReference<CriticalPathComponent> lastPostedCriticalPath =
+      new AtomicReference<>();
+  private final AtomicLong lastUpdateNanos;
+
   protected CriticalPathComputer(ActionKeyContext actionKeyContext, Clock clock) {
+    this(actionKeyContext, clock, /* eventBus= */ null);
+  }
+
+  protected CriticalPathComputer(
+      ActionKeyContext actionKeyContext, Clock clock, @Nullable EventBus eventBus) {
     this.actionKeyContext = actionKeyContext;
     this.clock = clock;
+    this.eventBus = eventBus;
     maxCriticalPath = new AtomicReference<>();
+    lastUpdateNanos = new AtomicLong(clock.nanoTime() - UPDATE_INTERVAL_NANOS);
   }
 
   /**
@@ -98,7 +118,10 @@ public class CriticalPathComputer {
    * avoiding the memory and cpu penalty for doing it for all the actions executed.
    */
   public AggregatedCriticalPath aggregate() {
-    CriticalPathComponent criticalPath = getMaxCriticalPath();
+    return aggregate(getMaxCriticalPath());
+  }
+
+  private static AggregatedCriticalPath aggregate(@Nullable CriticalPathComponent criticalPath) {
     Duration totalTime = Duration.ZERO;
     Duration parseTime = Duration.ZERO;
     Duration networkTime = Duration.ZERO;
@@ -332,8 +355,30 @@ public class CriticalPathComputer {
       addArtifactDependency(component, input);
     }
 
-    component.finishActionExecution(startTimeNanos, clock.nanoTime());
+    long finishNanos = clock.nanoTime();
+    component.finishActionExecution(startTimeNanos, finishNanos);
     maxCriticalPath.accumulateAndGet(component, SELECT_LONGER_COMPONENT);
+    maybePostUpdate(finishNanos);
+  }
+
+  /**
+   * Posts a {@link CriticalPathUpdateEvent} if the maximum critical path has changed since the last
+   * one, and at least {@link #UPDATE_INTERVAL_NANOS} have passed. This keeps the cost of walking
+   * the critical path independent of the number of actions.
+   */
+  private void maybePostUpdate(long nowNanos) {
+    if (eventBus == null) {
+      return;
+    }
+    CriticalPathComponent criticalPath = getMaxCriticalPath();
+    long lastUpdate = lastUpdateNanos.get();
+    if (criticalPath == lastPostedCriticalPath.get()
+        || nowNanos - lastUpdate < UPDATE_INTERVAL_NANOS
+        || !lastUpdateNanos.compareAndSet(lastUpdate, nowNanos)) {
+      return;
+    }
+    lastPostedCriticalPath.set(criticalPath);
+    eventBus.post(new CriticalPathUpdateEvent(aggregate(criticalPath)));
   }
 
   /**
@@ -0,0 +1,32 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.runtime;
+
+/**
+ * Event posted by the {@link CriticalPathComputer} while the build is running, when the critical
+ * path of the actions completed so far has grown.
+ */
+public final class CriticalPathUpdateEvent {
+  private final AggregatedCriticalPath criticalPath;
+
+  public CriticalPathUpdateEvent(AggregatedCriticalPath criticalPath) {
+    this.criticalPath = criticalPath;
+  }
+
+  /** The critical path of the actions completed so far. */
+  public AggregatedCriticalPath getCriticalPath() {
+    return criticalPath;
+  }
+}
@@ -789,6 +789,13 @@ public class ExperimentalEventHandler implements EventHandler {
     refreshSoon();
   }
 
+  @Subscribe
+  @AllowConcurrentEvents
+  public void criticalPathUpdate(CriticalPathUpdateEvent event) {
+    stateTracker.criticalPathUpdate(event);
+    refreshSoon();
+  }
+
   @Subscribe
   public void testFilteringComplete(TestFilteringCompleteEvent event) {
     stateTracker.testFilteringComplete(event);
@@ -117,6 +117,7 @@ class ExperimentalStateTracker {
   private int totalTests;
   private int completedTests;
   private TestSummary mostRecentTest;
+  private String criticalPathSummary;
   private int failedTests;
   private boolean ok;
   private boolean buildComplete;
@@ -616,6 +617,10 @@ class ExperimentalStateTracker {
     }
   }
 
+  synchronized void criticalPathUpdate(CriticalPathUpdateEvent event) {
+    criticalPathSummary = event.getCriticalPath().toStringLiveSummary();
+  }
+
   public synchronized void testSummary(TestSummary summary) {
     completedTests++;
     mostRecentTest = summary;
@@ -912,6 +917,11 @@ class ExperimentalStateTracker {
         sampleOldestActions(terminalWriter);
       }
     }
+    if (!shortVersion && criticalPathSummary != null) {
+      terminalWriter
+          .newline()
+          .append("    " + shortenedString(criticalPathSummary, targetWidth - 4));
+    }
     if (!shortVersion) {
       reportOnDownloads(terminalWriter);
       maybeReportBepTransports(terminalWriter);
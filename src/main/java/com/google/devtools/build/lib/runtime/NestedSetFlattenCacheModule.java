@@ -0,0 +1,118 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.runtime;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.build.lib.collect.nestedset.NestedSetFlattenCache;
+import com.google.devtools.common.options.Option;
+import com.google.devtools.common.options.OptionDocumentationCategory;
+import com.google.devtools.common.options.OptionEffectTag;
+import com.google.devtools.common.options.OptionsBase;
+import java.util.logging.Logger;
+
+/** Enables the caching of flattened nested sets in {@link NestedSetFlattenCache}. */
+public class NestedSetFlattenCacheModule extends BlazeModule {
+
+  private static final Logger logger =
+      Logger.getLogger(NestedSetFlattenCacheModule.class.getName());
+
+  /** Options that control the {@link NestedSetFlattenCache}. */
+  public static class Options extends OptionsBase {
+    @Option(
+      name = "experimental_nested_set_flatten_cache_size",
+      defaultValue = "0",
+      documentationCategory = OptionDocumentationCategory.BUILD_TIME_OPTIMIZATION,
+      effectTags = {OptionEffectTag.LOADING_AND_ANALYSIS, OptionEffectTag.EXECUTION},
+      help =
+          "The total number of elements of flattened nested sets to keep in memory, so that "
+              + "large sets which are flattened repeatedly are only traversed once. 0 disables "
+              + "the cache."
+    )
+    public long cacheSize;
+
+    @Option(
+      name = "experimental_nested_set_flatten_cache_min_set_size",
+      defaultValue = "1000",
+      documentationCategory = OptionDocumentationCategory.BUILD_TIME_OPTIMIZATION,
+      effectTags = {OptionEffectTag.LOADING_AND_ANALYSIS, OptionEffectTag.EXECUTION},
+      help = "The number of elements a flattened nested set needs to have to be cached."
+    )
+    public int minSetSize;
+
+    @Option(
+      name = "experimental_nested_set_flatten_parallelism",
+      defaultValue = "1",
+      documentationCategory = OptionDocumentationCategory.BUILD_TIME_OPTIMIZATION,
+      effectTags = {OptionEffectTag.LOADING_AND_ANALYSIS, OptionEffectTag.EXECUTION},
+      help =
+          "The number of threads used to flatten very large nested sets. Only has an effect "
+              + "if --experimental_nested_set_flatten_cache_size is positive."
+    )
+    public int parallelism;
+  }
+
+  /** Options applied last, to reconfigure the cache only when they change. */
+  private Options lastOptions;
+
+  /** Stats gathered at the beginning of a command, to compute deltas on completion. */
+  private CacheStats stats;
+
+  @Override
+  public Iterable<Class<? extends OptionsBase>> getCommonCommandOptions() {
+    return ImmutableList.<Class<? extends OptionsBase>>of(Options.class);
+  }
+
+  @Override
+  public void beforeCommand(CommandEnvironment env) {
+    Options options = env.getOptions().getOptions(Options.class);
+    if (lastOptions == null
+        || options.cacheSize != lastOptions.cacheSize
+        || options.minSetSize != lastOptions.minSetSize
+        || options.parallelism != lastOptions.parallelism) {
+      logger.info(
+          "Reconfiguring nested set flatten cache with size="
+              + options.cacheSize
+              + ", min set size="
+              + options.minSetSize
+              + ", parallelism="
+              + options.parallelism);
+      NestedSetFlattenCache.configure(
+          Math.max(0, options.cacheSize),
+          Math.max(0, options.minSetSize),
+          Math.max(1, options.parallelism));
+      lastOptions = options;
+    }
+    stats = NestedSetFlattenCache.getCacheStats();
+  }
+
+  @Override
+  public void afterCommand() {
+    if (stats != null) {
+      CacheStats newStats = NestedSetFlattenCache.getCacheStats();
+      if (newStats != null) {
+        CacheStats delta = newStats.minus(stats);
+        logger.info(
+            "Nested set flatten cache stats for finished command: hit count="
+                + delta.hitCount()
+                + ", miss count="
+                + delta.missCount()
+                + ", eviction count="
+                + delta.evictionCount());
+      }
+      stats = null;
+    }
+  }
+}
@@ -47,6 +47,7 @@ public abstract class AbstractContainerizingSandboxedSpawn implements SandboxedS
   private final Map<PathFragment, Path> inputs;
   private final SandboxOutputs outputs;
   private final Set<Path> writableDirs;
+  private final TreeDeleter treeDeleter;
 
   public AbstractContainerizingSandboxedSpawn(
       Path sandboxPath,
@@ -55,7 +56,8 @@ public abstract class AbstractContainerizingSandboxedSpawn implements SandboxedS
       Map<String, String> environment,
       Map<PathFragment, Path> inputs,
       SandboxOutputs outputs,
-      Set<Path> writableDirs) {
+      Set<Path> writableDirs,
+      TreeDeleter treeDeleter) {
     this.sandboxPath = sandboxPath;
     this.sandboxExecRoot = sandboxExecRoot;
     this.arguments = arguments;
@@ -63,6 +65,7 @@ public abstract class AbstractContainerizingSandboxedSpawn implements SandboxedS
     this.inputs = inputs;
     this.outputs = outputs;
     this.writableDirs = writableDirs;
+    this.treeDeleter = treeDeleter;
   }
 
   @Override
@@ -98,7 +101,23 @@ public abstract class AbstractContainerizingSandboxedSpawn implements SandboxedS
    * directories, too, because we'll get an IOException with EEXIST if inputs happen to be nested
    * once we start creating the symlinks for all inputs.
    */
-  private void createDirectories() throws IOException {
+  protected void createDirectories() throws IOException {
+    for (Path path : getDirectoriesToCreate()) {
+      path.createDirectory();
+    }
+
+    for (Path dir : writableDirs) {
+      if (dir.startsWith(sandboxExecRoot)) {
+        dir.createDirectoryAndParents();
+      }
+    }
+  }
+
+  /**
+   * Returns the directories below the sandbox exec root that have to exist before the inputs can
+   * be created, parents first.
+   */
+  protected Set<Path> getDirectoriesToCreate() {
     LinkedHashSet<Path> dirsToCreate = new LinkedHashSet<>();
 
     for (PathFragment path : Iterables.concat(inputs.keySet(), outputs.files(), outputs.dirs())) {
@@ -111,16 +130,7 @@ public abstract class AbstractContainerizingSandboxedSpawn implements SandboxedS
     for (PathFragment path : outputs.dirs()) {
       dirsToCreate.add(sandboxExecRoot.getRelative(path));
     }
-
-    for (Path path : dirsToCreate) {
-      path.createDirectory();
-    }
-
-    for (Path dir : writableDirs) {
-      if (dir.startsWith(sandboxExecRoot)) {
-        dir.createDirectoryAndParents();
-      }
-    }
+    return dirsToCreate;
   }
 
   protected void createInputs(Map<PathFragment, Path> inputs) throws IOException {
@@ -189,7 +199,7 @@ public abstract class AbstractContainerizingSandboxedSpawn implements SandboxedS
   @Override
   public void delete() {
     try {
-      sandboxPath.deleteTree();
+      treeDeleter.deleteTree(sandboxPath);
     } catch (IOException e) {
       // This usually means that the Spawn itself exited, but still has children running that
       // we couldn't wait for, which now block deletion of the sandbox directory. On Linux this
@@ -43,9 +43,15 @@ import com.google.devtools.build.lib.vfs.Path;
 import java.io.IOException;
 import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
 
 /** Abstract common ancestor for sandbox spawn runners implementing the common parts. */
 abstract class AbstractSandboxSpawnRunner implements SpawnRunner {
+  private static final Logger logger = Logger.getLogger(AbstractSandboxSpawnRunner.class.getName());
+
+  private static final AtomicBoolean warnedAboutFallbackSandboxBase = new AtomicBoolean(false);
+
   private static final int LOCAL_EXEC_ERROR = -1;
   private static final int POSIX_TIMEOUT_EXIT_CODE = /*SIGNAL_BASE=*/128 + /*SIGALRM=*/14;
 
@@ -55,6 +61,7 @@ abstract class AbstractSandboxSpawnRunner implements SpawnRunner {
   private final SandboxOptions sandboxOptions;
   private final boolean verboseFailures;
   private final ImmutableSet<Path> inaccessiblePaths;
+  private final Path fallbackSandboxBase;
   protected final BinTools binTools;
 
   public AbstractSandboxSpawnRunner(CommandEnvironment cmdEnv) {
@@ -62,6 +69,7 @@ abstract class AbstractSandboxSpawnRunner implements SpawnRunner {
     this.verboseFailures = cmdEnv.getOptions().getOptions(ExecutionOptions.class).verboseFailures;
     this.inaccessiblePaths =
         sandboxOptions.getInaccessiblePaths(cmdEnv.getRuntime().getFileSystem());
+    this.fallbackSandboxBase = SandboxModule.getFallbackSandboxBase(cmdEnv);
     this.binTools = cmdEnv.getBlazeWorkspace().getBinTools();
   }
 
@@ -90,6 +98,41 @@ abstract class AbstractSandboxSpawnRunner implements SpawnRunner {
   protected abstract SpawnResult actuallyExec(Spawn spawn, SpawnExecutionContext context)
       throws ExecException, InterruptedException, IOException;
 
+  /**
+   * Creates the directory for the sandbox of a spawn underneath the given sandbox base.
+   *
+   * <p>If the sandbox base was moved with --experimental_sandbox_base, e.g. onto a tmpfs, and that
+   * file system is running out of space, the directory is created underneath the output base
+   * instead.
+   */
+  protected Path createSandboxPath(Path sandboxBase, SpawnExecutionContext context)
+      throws IOException {
+    long minFreeBytes = sandboxOptions.sandboxBaseMinFreeMb * 1024L * 1024L;
+    if (minFreeBytes > 0
+        && !sandboxBase.equals(fallbackSandboxBase)
+        && sandboxBase.getPathFile().getUsableSpace() < minFreeBytes) {
+      if (warnedAboutFallbackSandboxBase.compareAndSet(false, true)) {
+        logger.warning(
+            "Less than "
+                + sandboxOptions.sandboxBaseMinFreeMb
+                + "MB free in the sandbox base "
+                + sandboxBase
+                + "; creating sandboxes underneath "
+                + fallbackSandboxBase
+                + " until space becomes available again");
+      }
+      sandboxBase = fallbackSandboxBase;
+    }
+    // Each invocation of "exec" gets its own sandbox base.
+    // Note that the value returned by context.getId() is only unique inside one given SpawnRunner,
+    // so we have to prefix our name to turn it into a globally unique value.
+    Path sandboxPath =
+        sandboxBase.getRelative(getName()).getRelative(Integer.toString(context.getId()));
+    sandboxPath.getParentDirectory().createDirectoryAndParents();
+    sandboxPath.createDirectory();
+    return sandboxPath;
+  }
+
   protected SpawnResult runSpawn(
       Spawn originalSpawn,
       SandboxedSpawn sandbox,
@@ -112,6 +155,9 @@ abstract class AbstractSandboxSpawnRunner implements SpawnRunner {
       } catch (IOException e) {
         throw new IOException("Could not move output artifacts from sandboxed execution", e);
       }
+      if (result.status() == Status.SUCCESS) {
+        sandbox.markSuccessful();
+      }
       return result;
     } finally {
       if (!sandboxOptions.sandboxDebug) {
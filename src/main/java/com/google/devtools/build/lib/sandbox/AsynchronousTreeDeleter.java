@@ -0,0 +1,97 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.sandbox;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
+import com.google.devtools.build.lib.vfs.Path;
+import java.io.IOException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * A {@link TreeDeleter} that deletes trees in the background, so that removing a sandbox does not
+ * delay the completion of its spawn.
+ *
+ * <p>Trees are first renamed into a trash directory, which is cheap and frees up their path right
+ * away, and then deleted by a bounded pool of threads. Trees that cannot be renamed, e.g. because
+ * they are on a different file system than the trash directory, are deleted in place.
+ */
+@ThreadSafe
+class AsynchronousTreeDeleter implements TreeDeleter {
+
+  private static final Logger logger = Logger.getLogger(AsynchronousTreeDeleter.class.getName());
+
+  private final Path trashBase;
+  private final AtomicInteger trashCount = new AtomicInteger();
+  private final ThreadPoolExecutor service;
+
+  /**
+   * Creates a new deleter.
+   *
+   * @param trashBase the directory to move trees into before deleting them; must exist
+   * @param threads the maximum number of threads deleting trees at the same time
+   */
+  AsynchronousTreeDeleter(Path trashBase, int threads) {
+    this.trashBase = trashBase;
+    this.service =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            10,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("tree-deleter-%d").setDaemon(true).build());
+    service.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  public void deleteTree(Path path) throws IOException {
+    Path trashPath = trashBase.getRelative(Integer.toString(trashCount.getAndIncrement()));
+    try {
+      path.renameTo(trashPath);
+    } catch (IOException e) {
+      trashPath = path;
+    }
+    Path toDelete = trashPath;
+    service.execute(
+        () -> {
+          try {
+            toDelete.deleteTree();
+          } catch (IOException e) {
+            // The SandboxModule deletes the whole sandbox base, trash included, once the command
+            // is done, so there is another chance to get rid of this tree.
+            logger.warning("Failed to delete tree " + toDelete + ": " + e);
+          }
+        });
+  }
+
+  @Override
+  public void shutdown() {
+    service.shutdown();
+    try {
+      while (!service.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS)) {
+        // Keep waiting.
+      }
+    } catch (InterruptedException e) {
+      // Leave the remaining trees to the cleanup of the sandbox base.
+      service.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -37,8 +37,17 @@ public class CopyingSandboxedSpawn extends AbstractContainerizingSandboxedSpawn
       Map<String, String> environment,
       Map<PathFragment, Path> inputs,
       SandboxOutputs outputs,
-      Set<Path> writableDirs) {
-    super(sandboxPath, sandboxExecRoot, arguments, environment, inputs, outputs, writableDirs);
+      Set<Path> writableDirs,
+      TreeDeleter treeDeleter) {
+    super(
+        sandboxPath,
+        sandboxExecRoot,
+        arguments,
+        environment,
+        inputs,
+        outputs,
+        writableDirs,
+        treeDeleter);
   }
 
   @Override
@@ -113,6 +113,7 @@ final class DarwinSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
   private final Duration timeoutKillDelay;
   private final @Nullable SandboxfsProcess sandboxfsProcess;
   private final boolean sandboxfsMapSymlinkTargets;
+  private final TreeDeleter treeDeleter;
 
   /**
    * The set of directories that always should be writable, independent of the Spawn itself.
@@ -132,13 +133,15 @@ final class DarwinSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
    * @param sandboxfsProcess instance of the sandboxfs process to use; may be null for none, in
    *     which case the runner uses a symlinked sandbox
    * @param sandboxfsMapSymlinkTargets map the targets of symlinks within the sandbox if true
+   * @param treeDeleter the deleter to use for the sandbox directories of finished spawns
    */
   DarwinSandboxedSpawnRunner(
       CommandEnvironment cmdEnv,
       Path sandboxBase,
       Duration timeoutKillDelay,
       @Nullable SandboxfsProcess sandboxfsProcess,
-      boolean sandboxfsMapSymlinkTargets)
+      boolean sandboxfsMapSymlinkTargets,
+      TreeDeleter treeDeleter)
       throws IOException {
     super(cmdEnv);
     this.execRoot = cmdEnv.getExecRoot();
@@ -150,6 +153,7 @@ final class DarwinSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
     this.timeoutKillDelay = timeoutKillDelay;
     this.sandboxfsProcess = sandboxfsProcess;
     this.sandboxfsMapSymlinkTargets = sandboxfsMapSymlinkTargets;
+    this.treeDeleter = treeDeleter;
   }
 
   private static void addPathToSetIfExists(FileSystem fs, Set<Path> paths, String path)
@@ -212,13 +216,7 @@ final class DarwinSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
   @Override
   protected SpawnResult actuallyExec(Spawn spawn, SpawnExecutionContext context)
       throws IOException, InterruptedException {
-    // Each invocation of "exec" gets its own sandbox base.
-    // Note that the value returned by context.getId() is only unique inside one given SpawnRunner,
-    // so we have to prefix our name to turn it into a globally unique value.
-    Path sandboxPath =
-        sandboxBase.getRelative(getName()).getRelative(Integer.toString(context.getId()));
-    sandboxPath.getParentDirectory().createDirectory();
-    sandboxPath.createDirectory();
+    Path sandboxPath = createSandboxPath(sandboxBase, context);
 
     // b/64689608: The execroot of the sandboxed process must end with the workspace name, just like
     // the normal execroot does.
@@ -282,7 +280,8 @@ final class DarwinSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
               inputs,
               outputs,
               ImmutableSet.of(),
-              sandboxfsMapSymlinkTargets) {
+              sandboxfsMapSymlinkTargets,
+              treeDeleter) {
             @Override
             public void createFileSystem() throws IOException {
               super.createFileSystem();
@@ -303,7 +302,8 @@ final class DarwinSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
               environment,
               inputs,
               outputs,
-              writableDirs) {
+              writableDirs,
+              treeDeleter) {
             @Override
             public void createFileSystem() throws IOException {
               super.createFileSystem();
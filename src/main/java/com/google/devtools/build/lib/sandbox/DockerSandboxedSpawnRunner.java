@@ -150,6 +150,7 @@ final class DockerSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
   private final int gid;
   private final List<UUID> containersToCleanup;
   private final CommandEnvironment cmdEnv;
+  private final TreeDeleter treeDeleter;
 
   /**
    * Creates a sandboxed spawn runner that uses the {@code linux-sandbox} tool.
@@ -160,6 +161,7 @@ final class DockerSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
    * @param defaultImage the Docker image to use if the platform doesn't specify one
    * @param timeoutKillDelay an additional grace period before killing timing out commands
    * @param useCustomizedImages whether to use customized images for execution
+   * @param treeDeleter the deleter to use for the sandbox directories of finished spawns
    */
   DockerSandboxedSpawnRunner(
       CommandEnvironment cmdEnv,
@@ -167,7 +169,8 @@ final class DockerSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
       Path sandboxBase,
       String defaultImage,
       Duration timeoutKillDelay,
-      boolean useCustomizedImages) {
+      boolean useCustomizedImages,
+      TreeDeleter treeDeleter) {
     super(cmdEnv);
     this.execRoot = cmdEnv.getExecRoot();
     this.allowNetwork = SandboxHelpers.shouldAllowNetwork(cmdEnv.getOptions());
@@ -181,6 +184,7 @@ final class DockerSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
     this.reporter = cmdEnv.getReporter();
     this.useCustomizedImages = useCustomizedImages;
     this.cmdEnv = cmdEnv;
+    this.treeDeleter = treeDeleter;
     if (OS.getCurrent() == OS.LINUX) {
       this.uid = ProcessUtils.getuid();
       this.gid = ProcessUtils.getgid();
@@ -197,10 +201,7 @@ final class DockerSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
   protected SpawnResult actuallyExec(Spawn spawn, SpawnExecutionContext context)
       throws IOException, ExecException, InterruptedException {
     // Each invocation of "exec" gets its own sandbox base, execroot and temporary directory.
-    Path sandboxPath =
-        sandboxBase.getRelative(getName()).getRelative(Integer.toString(context.getId()));
-    sandboxPath.getParentDirectory().createDirectory();
-    sandboxPath.createDirectory();
+    Path sandboxPath = createSandboxPath(sandboxBase, context);
 
     // b/64689608: The execroot of the sandboxed process must end with the workspace name, just like
     // the normal execroot does.
@@ -270,7 +271,8 @@ final class DockerSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
                 execRoot,
                 getSandboxOptions().symlinkedSandboxExpandsTreeArtifactsInRunfilesTree),
             outputs,
-            ImmutableSet.of());
+            ImmutableSet.of(),
+            treeDeleter);
 
     try {
       return runSpawn(spawn, sandbox, context, execRoot, timeout, null);
@@ -97,6 +97,8 @@ final class LinuxSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
   private final Duration timeoutKillDelay;
   private final @Nullable SandboxfsProcess sandboxfsProcess;
   private final boolean sandboxfsMapSymlinkTargets;
+  private final @Nullable SandboxStash sandboxStash;
+  private final TreeDeleter treeDeleter;
 
   /**
    * Creates a sandboxed spawn runner that uses the {@code linux-sandbox} tool.
@@ -109,6 +111,9 @@ final class LinuxSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
    * @param sandboxfsProcess instance of the sandboxfs process to use; may be null for none, in
    *     which case the runner uses a symlinked sandbox
    * @param sandboxfsMapSymlinkTargets map the targets of symlinks within the sandbox if true
+   * @param sandboxStash the stash of sandbox directories to reuse for symlinked sandboxes; may be
+   *     null, in which case every spawn gets a new sandbox directory
+   * @param treeDeleter the deleter to use for the sandbox directories of finished spawns
    */
   LinuxSandboxedSpawnRunner(
       CommandEnvironment cmdEnv,
@@ -117,7 +122,9 @@ final class LinuxSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
       Path inaccessibleHelperDir,
       Duration timeoutKillDelay,
       @Nullable SandboxfsProcess sandboxfsProcess,
-      boolean sandboxfsMapSymlinkTargets) {
+      boolean sandboxfsMapSymlinkTargets,
+      @Nullable SandboxStash sandboxStash,
+      TreeDeleter treeDeleter) {
     super(cmdEnv);
     this.fileSystem = cmdEnv.getRuntime().getFileSystem();
     this.blazeDirs = cmdEnv.getDirectories();
@@ -130,19 +137,22 @@ final class LinuxSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
     this.timeoutKillDelay = timeoutKillDelay;
     this.sandboxfsProcess = sandboxfsProcess;
     this.sandboxfsMapSymlinkTargets = sandboxfsMapSymlinkTargets;
+    this.sandboxStash = sandboxStash;
+    this.treeDeleter = treeDeleter;
     this.localEnvProvider = new PosixLocalEnvProvider(cmdEnv.getClientEnv());
   }
 
   @Override
   protected SpawnResult actuallyExec(Spawn spawn, SpawnExecutionContext context)
       throws IOException, ExecException, InterruptedException {
-    // Each invocation of "exec" gets its own sandbox base.
-    // Note that the value returned by context.getId() is only unique inside one given SpawnRunner,
-    // so we have to prefix our name to turn it into a globally unique value.
-    Path sandboxPath =
-        sandboxBase.getRelative(getName()).getRelative(Integer.toString(context.getId()));
-    sandboxPath.getParentDirectory().createDirectory();
-    sandboxPath.createDirectory();
+    boolean reuseSandbox = sandboxfsProcess == null && sandboxStash != null;
+    Path sandboxPath;
+    if (reuseSandbox) {
+      // Reuse the sandbox base of an earlier invocation of "exec" with the same mnemonic.
+      sandboxPath = sandboxStash.take(spawn.getMnemonic());
+    } else {
+      sandboxPath = createSandboxPath(sandboxBase, context);
+    }
 
     // b/64689608: The execroot of the sandboxed process must end with the workspace name, just like
     // the normal execroot does.
@@ -201,7 +211,25 @@ final class LinuxSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
                   getSandboxOptions().symlinkedSandboxExpandsTreeArtifactsInRunfilesTree),
               outputs,
               ImmutableSet.of(),
-              sandboxfsMapSymlinkTargets);
+              sandboxfsMapSymlinkTargets,
+              treeDeleter);
+    } else if (reuseSandbox) {
+      sandbox =
+          new ReusedSymlinkedSandboxedSpawn(
+              sandboxPath,
+              sandboxExecRoot,
+              commandLineBuilder.build(),
+              environment,
+              SandboxHelpers.processInputFiles(
+                  spawn,
+                  context,
+                  execRoot,
+                  getSandboxOptions().symlinkedSandboxExpandsTreeArtifactsInRunfilesTree),
+              outputs,
+              writableDirs,
+              treeDeleter,
+              sandboxStash,
+              spawn.getMnemonic());
     } else {
       sandbox =
           new SymlinkedSandboxedSpawn(
@@ -215,7 +243,8 @@ final class LinuxSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
                   execRoot,
                   getSandboxOptions().symlinkedSandboxExpandsTreeArtifactsInRunfilesTree),
               outputs,
-              writableDirs);
+              writableDirs,
+              treeDeleter);
     }
 
     return runSpawn(spawn, sandbox, context, execRoot, timeout, statisticsPath);
@@ -50,13 +50,17 @@ public final class LinuxSandboxedStrategy extends AbstractSpawnStrategy {
    * @param sandboxfsProcess instance of the sandboxfs process to use; may be null for none, in
    *     which case the runner uses a symlinked sandbox
    * @param sandboxfsMapSymlinkTargets map the targets of symlinks within the sandbox if true
+   * @param sandboxStash the stash of sandbox directories to reuse; may be null for none
+   * @param treeDeleter the deleter to use for the sandbox directories of finished spawns
    */
   static LinuxSandboxedSpawnRunner create(
       CommandEnvironment cmdEnv,
       Path sandboxBase,
       Duration timeoutKillDelay,
       @Nullable SandboxfsProcess sandboxfsProcess,
-      boolean sandboxfsMapSymlinkTargets)
+      boolean sandboxfsMapSymlinkTargets,
+      @Nullable SandboxStash sandboxStash,
+      TreeDeleter treeDeleter)
       throws IOException {
     Path inaccessibleHelperFile = sandboxBase.getRelative("inaccessibleHelperFile");
     FileSystemUtils.touchFile(inaccessibleHelperFile);
@@ -77,6 +81,8 @@ public final class LinuxSandboxedStrategy extends AbstractSpawnStrategy {
         inaccessibleHelperDir,
         timeoutKillDelay,
         sandboxfsProcess,
-        sandboxfsMapSymlinkTargets);
+        sandboxfsMapSymlinkTargets,
+        sandboxStash,
+        treeDeleter);
   }
 }
@@ -0,0 +1,124 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.sandbox;
+
+import com.google.devtools.build.lib.sandbox.SandboxHelpers.SandboxOutputs;
+import com.google.devtools.build.lib.vfs.Dirent;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.PathFragment;
+import com.google.devtools.build.lib.vfs.Symlinks;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link SymlinkedSandboxedSpawn} that runs in a sandbox directory taken from a {@link
+ * SandboxStash}. Instead of creating the execRoot from scratch, it only removes what does not
+ * belong to this spawn and adds the symlinks that are missing, and after a successful run it
+ * returns the directory to the stash instead of deleting it.
+ */
+public class ReusedSymlinkedSandboxedSpawn extends SymlinkedSandboxedSpawn {
+
+  private final Path sandboxPath;
+  private final Path sandboxExecRoot;
+  private final Map<PathFragment, Path> inputs;
+  private final SandboxStash stash;
+  private final String mnemonic;
+  private boolean successful;
+
+  ReusedSymlinkedSandboxedSpawn(
+      Path sandboxPath,
+      Path sandboxExecRoot,
+      List<String> arguments,
+      Map<String, String> environment,
+      Map<PathFragment, Path> inputs,
+      SandboxOutputs outputs,
+      Set<Path> writableDirs,
+      TreeDeleter treeDeleter,
+      SandboxStash stash,
+      String mnemonic) {
+    super(
+        sandboxPath,
+        sandboxExecRoot,
+        arguments,
+        environment,
+        inputs,
+        outputs,
+        writableDirs,
+        treeDeleter);
+    this.sandboxPath = sandboxPath;
+    this.sandboxExecRoot = sandboxExecRoot;
+    this.inputs = inputs;
+    this.stash = stash;
+    this.mnemonic = mnemonic;
+  }
+
+  @Override
+  public void createFileSystem() throws IOException {
+    Set<Path> dirsToKeep = new HashSet<>(getDirectoriesToCreate());
+    for (Path dir = sandboxExecRoot; dir.startsWith(sandboxPath); dir = dir.getParentDirectory()) {
+      dirsToKeep.add(dir);
+    }
+    Map<PathFragment, Path> inputsToCreate = new HashMap<>(inputs);
+    cleanExistingSandbox(sandboxPath, dirsToKeep, inputsToCreate);
+    createDirectories();
+    createInputs(inputsToCreate);
+  }
+
+  /**
+   * Deletes everything below {@code dir} that the previous user of the sandbox left behind and that
+   * this spawn does not need. Symlinks that already point to the right input are kept and removed
+   * from {@code inputsToCreate}.
+   */
+  private void cleanExistingSandbox(
+      Path dir, Set<Path> dirsToKeep, Map<PathFragment, Path> inputsToCreate) throws IOException {
+    for (Dirent dirent : dir.readdir(Symlinks.NOFOLLOW)) {
+      Path path = dir.getChild(dirent.getName());
+      if (dirent.getType() == Dirent.Type.DIRECTORY && dirsToKeep.contains(path)) {
+        cleanExistingSandbox(path, dirsToKeep, inputsToCreate);
+        continue;
+      }
+      if (dirent.getType() == Dirent.Type.SYMLINK && path.startsWith(sandboxExecRoot)) {
+        PathFragment execPath = path.relativeTo(sandboxExecRoot);
+        Path target = inputsToCreate.get(execPath);
+        if (target != null && path.readSymbolicLink().equals(target.asFragment())) {
+          inputsToCreate.remove(execPath);
+          continue;
+        }
+      }
+      path.deleteTree();
+    }
+  }
+
+  @Override
+  public void markSuccessful() {
+    successful = true;
+  }
+
+  @Override
+  public void delete() {
+    if (!successful) {
+      // A failed, timed out or interrupted spawn may have left processes or files behind that the
+      // next spawn should not have to deal with.
+      super.delete();
+      return;
+    }
+    // Whatever this spawn left behind is cleaned up by the next spawn that takes the directory.
+    stash.putBack(mnemonic, sandboxPath);
+  }
+}
@@ -65,6 +65,15 @@ public final class SandboxModule extends BlazeModule {
   /** Instance of the sandboxfs process in use, if enabled. */
   private @Nullable SandboxfsProcess sandboxfsProcess;
 
+  /**
+   * Sandbox directories kept for reuse, if enabled. They survive across commands, as long as the
+   * sandbox base does not change.
+   */
+  private @Nullable SandboxStash sandboxStash;
+
+  /** Deleter for the sandbox directories of finished spawns, for the duration of a command. */
+  private @Nullable TreeDeleter treeDeleter;
+
   /**
    * Whether to remove the sandbox worker directories after a build or not. Useful for debugging
    * to inspect the state of files on failures.
@@ -78,11 +87,19 @@ public final class SandboxModule extends BlazeModule {
         : ImmutableList.of();
   }
 
+  /**
+   * Returns the default location of the sandbox base, which is also where sandboxes are created
+   * when a sandbox base given with --experimental_sandbox_base runs out of space.
+   */
+  static Path getFallbackSandboxBase(CommandEnvironment env) {
+    return env.getOutputBase().getRelative("sandbox");
+  }
+
   /** Computes the path to the sandbox base tree for the given running command. */
   private static Path computeSandboxBase(SandboxOptions options, CommandEnvironment env)
       throws IOException {
     if (options.sandboxBase.isEmpty()) {
-      return env.getOutputBase().getRelative("sandbox");
+      return getFallbackSandboxBase(env);
     } else {
       String dirName =
           String.format(
@@ -128,6 +145,13 @@ public final class SandboxModule extends BlazeModule {
 
     Path mountPoint = sandboxBase.getRelative("sandboxfs");
 
+    Path stashBase = sandboxBase.getRelative("sandbox_stash");
+    if (!options.reuseSandboxDirectories) {
+      sandboxStash = null;
+    } else if (sandboxStash == null || !sandboxStash.getStashBase().equals(stashBase)) {
+      sandboxStash = new SandboxStash(stashBase);
+    }
+
     // Ensure that each build starts with a clean sandbox base directory. Otherwise using the `id`
     // that is provided by SpawnExecutionPolicy#getId to compute a base directory for a sandbox
     // might result in an already existing directory.
@@ -143,11 +167,23 @@ public final class SandboxModule extends BlazeModule {
       sandboxfsProcess.destroy();
       sandboxfsProcess = null;
     }
+    if (treeDeleter != null) {
+      // Left behind by a command that did not finish cleanly.
+      treeDeleter.shutdown();
+      treeDeleter = null;
+    }
     if (sandboxBase.exists()) {
-      sandboxBase.deleteTree();
+      deleteSandboxBase();
     }
 
     sandboxBase.createDirectoryAndParents();
+    if (options.asyncTreeDeleteThreads > 0) {
+      Path trashBase = sandboxBase.getRelative("_moved_trash_dir");
+      trashBase.createDirectory();
+      treeDeleter = new AsynchronousTreeDeleter(trashBase, options.asyncTreeDeleteThreads);
+    } else {
+      treeDeleter = new SynchronousTreeDeleter();
+    }
     if (options.useSandboxfs) {
       mountPoint.createDirectory();
       Path logFile = sandboxBase.getRelative("sandboxfs.log");
@@ -176,7 +212,11 @@ public final class SandboxModule extends BlazeModule {
           withFallback(
               cmdEnv,
               new ProcessWrapperSandboxedSpawnRunner(
-                  cmdEnv, sandboxBase, cmdEnv.getRuntime().getProductName(), timeoutKillDelay));
+                  cmdEnv,
+                  sandboxBase,
+                  cmdEnv.getRuntime().getProductName(),
+                  timeoutKillDelay,
+                  treeDeleter));
       builder.addActionContext(
           new ProcessWrapperSandboxedStrategy(cmdEnv.getExecRoot(), spawnRunner));
     }
@@ -199,7 +239,8 @@ public final class SandboxModule extends BlazeModule {
                     sandboxBase,
                     defaultImage,
                     timeoutKillDelay,
-                    useCustomizedImages));
+                    useCustomizedImages,
+                    treeDeleter));
         builder.addActionContext(
             new DockerSandboxedStrategy(cmdEnv.getExecRoot(), spawnRunner));
       }
@@ -219,7 +260,9 @@ public final class SandboxModule extends BlazeModule {
                   sandboxBase,
                   timeoutKillDelay,
                   sandboxfsProcess,
-                  options.sandboxfsMapSymlinkTargets));
+                  options.sandboxfsMapSymlinkTargets,
+                  sandboxStash,
+                  treeDeleter));
       builder.addActionContext(new LinuxSandboxedStrategy(cmdEnv.getExecRoot(), spawnRunner));
     }
 
@@ -233,7 +276,8 @@ public final class SandboxModule extends BlazeModule {
                   sandboxBase,
                   timeoutKillDelay,
                   sandboxfsProcess,
-                  options.sandboxfsMapSymlinkTargets));
+                  options.sandboxfsMapSymlinkTargets,
+                  treeDeleter));
       builder.addActionContext(new DarwinSandboxedStrategy(cmdEnv.getExecRoot(), spawnRunner));
     }
 
@@ -248,6 +292,26 @@ public final class SandboxModule extends BlazeModule {
     }
   }
 
+  /**
+   * Deletes the sandbox base, except for the stashed sandbox directories if they are being reused.
+   * Stale contents of those are cleaned up by the next spawn that uses them.
+   */
+  private void deleteSandboxBase() throws IOException {
+    Path fallbackSandboxBase = getFallbackSandboxBase(env);
+    if (!sandboxBase.equals(fallbackSandboxBase) && fallbackSandboxBase.exists()) {
+      fallbackSandboxBase.deleteTree();
+    }
+    if (sandboxStash == null) {
+      sandboxBase.deleteTree();
+      return;
+    }
+    for (Path entry : sandboxBase.getDirectoryEntries()) {
+      if (!entry.equals(sandboxStash.getStashBase())) {
+        entry.deleteTree();
+      }
+    }
+  }
+
   private static Path getPathToDockerClient(CommandEnvironment cmdEnv) {
     String path = cmdEnv.getClientEnv().getOrDefault("PATH", "");
 
@@ -365,9 +429,16 @@ public final class SandboxModule extends BlazeModule {
   public void afterCommand() {
     checkNotNull(env, "env not initialized; was beforeCommand called?");
 
+    if (treeDeleter != null) {
+      // Let pending deletions finish, so that they do not race with the deletion of the sandbox
+      // base below or in the next command.
+      treeDeleter.shutdown();
+      treeDeleter = null;
+    }
+
     if (shouldCleanupSandboxBase) {
       try {
-        sandboxBase.deleteTree();
+        deleteSandboxBase();
       } catch (IOException e) {
         env.getReporter().handle(Event.warn("Failed to delete sandbox base " + sandboxBase
             + ": " + e));
@@ -110,6 +110,30 @@ public class SandboxOptions extends OptionsBase {
   )
   public String sandboxBase;
 
+  @Option(
+      name = "experimental_sandbox_base_min_free_mb",
+      defaultValue = "256",
+      documentationCategory = OptionDocumentationCategory.EXECUTION_STRATEGY,
+      effectTags = {OptionEffectTag.EXECUTION},
+      help =
+          "When --experimental_sandbox_base is set and the file system it is on has less than "
+              + "this many megabytes of free space, new sandbox directories are created underneath "
+              + "the output base instead. This lets the sandbox base live on a size-limited tmpfs "
+              + "without failing actions when the tmpfs fills up. 0 disables the check.")
+  public int sandboxBaseMinFreeMb;
+
+  @Option(
+      name = "experimental_sandbox_async_tree_delete_threads",
+      defaultValue = "0",
+      documentationCategory = OptionDocumentationCategory.EXECUTION_STRATEGY,
+      effectTags = {OptionEffectTag.HOST_MACHINE_RESOURCE_OPTIMIZATIONS, OptionEffectTag.EXECUTION},
+      help =
+          "If greater than 0, sandbox directories are moved into a trash directory when their "
+              + "action finishes and deleted in the background by up to this many threads, "
+              + "instead of being deleted before the action completes. If 0, they are deleted "
+              + "right away.")
+  public int asyncTreeDeleteThreads;
+
   @Option(
     name = "sandbox_fake_hostname",
     defaultValue = "false",
@@ -309,4 +333,16 @@ public class SandboxOptions extends OptionsBase {
           "If enabled, the sandbox will expand tree artifacts in runfiles, thus the files that "
               + "are contained in the tree artifact will be symlinked as individual files.")
   public boolean symlinkedSandboxExpandsTreeArtifactsInRunfilesTree;
+
+  @Option(
+      name = "experimental_reuse_sandbox_directories",
+      defaultValue = "false",
+      documentationCategory = OptionDocumentationCategory.EXECUTION_STRATEGY,
+      effectTags = {OptionEffectTag.EXECUTION},
+      help =
+          "If enabled, the directories used by the linux-sandbox for symlinked sandboxes are kept "
+              + "after an action finishes and reused by later actions with the same mnemonic. "
+              + "Only the input symlinks that differ between the two actions are created or "
+              + "removed, which saves time for actions with many inputs.")
+  public boolean reuseSandboxDirectories;
 }
@@ -0,0 +1,78 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.sandbox;
+
+import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
+import com.google.devtools.build.lib.vfs.Path;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Keeps the directories of finished symlinked sandboxes around, so that later spawns with the same
+ * mnemonic can reuse them instead of building a new tree of symlinks from scratch.
+ *
+ * <p>Spawns with the same mnemonic tend to have largely the same inputs, so handing out a sandbox
+ * of the same mnemonic keeps the number of symlinks that have to change small. A directory is only
+ * ever used by one spawn at a time.
+ */
+@ThreadSafe
+final class SandboxStash {
+
+  private final Path stashBase;
+
+  @GuardedBy("this")
+  private final Map<String, Deque<Path>> stashesByMnemonic = new HashMap<>();
+
+  @GuardedBy("this")
+  private int nextId;
+
+  SandboxStash(Path stashBase) {
+    this.stashBase = stashBase;
+  }
+
+  /** Returns the directory below which all stashed sandboxes live. */
+  Path getStashBase() {
+    return stashBase;
+  }
+
+  /**
+   * Returns the directory of a finished sandbox of a spawn with the given mnemonic, or a new
+   * directory if there is none. The directory may contain anything the previous spawn left behind.
+   */
+  Path take(String mnemonic) throws IOException {
+    Path sandboxPath;
+    synchronized (this) {
+      Deque<Path> stashes = stashesByMnemonic.get(mnemonic);
+      if (stashes != null && !stashes.isEmpty()) {
+        sandboxPath = stashes.pop();
+      } else {
+        sandboxPath = stashBase.getRelative(Integer.toString(nextId++));
+      }
+    }
+    // The directory may have been removed since it was stashed, e.g. by a cleanup of the sandbox
+    // base.
+    sandboxPath.createDirectoryAndParents();
+    return sandboxPath;
+  }
+
+  /** Makes the directory of a finished sandbox available to later spawns with the same mnemonic. */
+  synchronized void putBack(String mnemonic, Path sandboxPath) {
+    stashesByMnemonic.computeIfAbsent(mnemonic, k -> new ArrayDeque<>()).push(sandboxPath);
+  }
+}
@@ -52,6 +52,12 @@ interface SandboxedSpawn {
    */
   void copyOutputs(Path execRoot) throws IOException;
 
+  /**
+   * Records that the subprocess ran to completion with a zero exit code and that its outputs were
+   * moved out, so that {@link #delete} may keep the sandbox directory for reuse.
+   */
+  default void markSuccessful() {}
+
   /**
    * Deletes the sandbox directory.
    */
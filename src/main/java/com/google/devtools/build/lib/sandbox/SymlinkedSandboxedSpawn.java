@@ -35,8 +35,17 @@ public class SymlinkedSandboxedSpawn extends AbstractContainerizingSandboxedSpaw
       Map<String, String> environment,
       Map<PathFragment, Path> inputs,
       SandboxOutputs outputs,
-      Set<Path> writableDirs) {
-    super(sandboxPath, sandboxExecRoot, arguments, environment, inputs, outputs, writableDirs);
+      Set<Path> writableDirs,
+      TreeDeleter treeDeleter) {
+    super(
+        sandboxPath,
+        sandboxExecRoot,
+        arguments,
+        environment,
+        inputs,
+        outputs,
+        writableDirs,
+        treeDeleter);
   }
 
   @Override
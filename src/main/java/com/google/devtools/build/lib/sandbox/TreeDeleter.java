@@ -0,0 +1,33 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.sandbox;
+
+import com.google.devtools.build.lib.vfs.Path;
+import java.io.IOException;
+
+/** Deletes the directory trees of sandboxes once they are no longer needed. */
+public interface TreeDeleter {
+
+  /**
+   * Deletes a tree of files and directories. The deletion may happen at a later time, but the path
+   * can be reused as soon as this method returns.
+   *
+   * @throws IOException if the tree could not be deleted or moved out of the way
+   */
+  void deleteTree(Path path) throws IOException;
+
+  /** Waits for all pending deletions to finish and releases the resources used to run them. */
+  void shutdown();
+}
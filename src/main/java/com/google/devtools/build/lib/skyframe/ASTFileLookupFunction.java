@@ -48,9 +48,16 @@ import javax.annotation.Nullable;
 public class ASTFileLookupFunction implements SkyFunction {
 
   private final RuleClassProvider ruleClassProvider;
+  @Nullable private final PersistentParseCache parseCache;
 
   public ASTFileLookupFunction(RuleClassProvider ruleClassProvider) {
+    this(ruleClassProvider, /*parseCache=*/ null);
+  }
+
+  public ASTFileLookupFunction(
+      RuleClassProvider ruleClassProvider, @Nullable PersistentParseCache parseCache) {
     this.ruleClassProvider = ruleClassProvider;
+    this.parseCache = parseCache;
   }
 
   @Override
@@ -128,9 +135,17 @@ public class ASTFileLookupFunction implements SkyFunction {
                 .setupDynamic(Runtime.PKG_NAME, Runtime.NONE)
                 .setupDynamic(Runtime.REPOSITORY_NAME, Runtime.NONE);
         byte[] bytes = FileSystemUtils.readWithKnownFileSize(path, astFileSize);
-        ast =
-            BuildFileAST.parseSkylarkFile(
-                bytes, path.getDigest(), path.asFragment(), env.getListener());
+        if (parseCache != null && parseCache.isEnabled()) {
+          ast =
+              BuildFileAST.createSkylarkFile(
+                  parseCache.parse(bytes, path.asFragment(), env.getListener()),
+                  path.getDigest(),
+                  env.getListener());
+        } else {
+          ast =
+              BuildFileAST.parseSkylarkFile(
+                  bytes, path.getDigest(), path.asFragment(), env.getListener());
+        }
         ast = ast.validate(validationEnv, env.getListener());
       }
     } catch (IOException e) {
@@ -58,6 +58,9 @@ public final class GlobFunction implements SkyFunction {
 
     // Note that the glob's package is assumed to exist which implies that the package's BUILD file
     // exists which implies that the package's directory exists.
+    //
+    // When the glob of the parent directory requested this glob, it already did the package
+    // lookup.
     PathFragment globSubdir = glob.getSubdir();
     if (!globSubdir.equals(PathFragment.EMPTY_FRAGMENT)) {
       PackageLookupValue globSubdirPkgLookupValue =
@@ -70,13 +73,10 @@ public final class GlobFunction implements SkyFunction {
       if (globSubdirPkgLookupValue == null) {
         return null;
       }
-      if (globSubdirPkgLookupValue.packageExists()) {
+      if (isOtherPackageOrRepository(globSubdirPkgLookupValue)) {
         // We crossed the package boundary, that is, pkg/subdir contains a BUILD file and thus
-        // defines another package, so glob expansion should not descend into that subdir.
-        return GlobValue.EMPTY;
-      } else if (globSubdirPkgLookupValue
-          instanceof PackageLookupValue.IncorrectRepositoryReferencePackageLookupValue) {
-        // We crossed a repository boundary, so glob expansion should not descend into that subdir.
+        // defines another package, or we crossed a repository boundary. Glob expansion should not
+        // descend into that subdir.
         return GlobValue.EMPTY;
       }
     }
@@ -155,14 +155,20 @@ public final class GlobFunction implements SkyFunction {
       // Now that we have the directory listing, we do three passes over it so as to maximize
       // skyframe batching:
       // (1) Process every dirent, keeping track of values we need to request if the dirent cannot
-      //     be processed with current information (symlink targets and subdirectory globs/package
-      //     lookups for some subdirectories).
-      // (2) Get those values and process the symlinks, keeping track of subdirectory globs/package
-      //     lookups we may need to request in case the symlink's target is a directory.
+      //     be processed with current information (symlink targets, and package lookups for
+      //     subdirectories).
+      // (2) Get those values and process the symlinks and package lookups, keeping track of the
+      //     subdirectory globs/package lookups we need to request for subdirectories that are not
+      //     packages and for symlinks whose target is a directory.
       // (3) Process the necessary subdirectories.
+      //
+      // The package lookup of a subdirectory that needs a glob of its own is done here, rather
+      // than by the subdirectory glob first thing. This saves each subdirectory glob a restart,
+      // and no glob is requested for subdirectories that are packages.
       int direntsSize = listingValue.getDirents().size();
       Map<SkyKey, Dirent> symlinkFileMap = Maps.newHashMapWithExpectedSize(direntsSize);
       Map<SkyKey, Dirent> subdirMap = Maps.newHashMapWithExpectedSize(direntsSize);
+      Map<SkyKey, Dirent> subdirPackageLookupMap = Maps.newHashMapWithExpectedSize(direntsSize);
       Map<Dirent, Object> sortedResultMap = Maps.newTreeMap();
       String subdirPattern = patternHeadIsStarStar ? glob.getPattern() : patternTail;
       // First pass: do normal files and collect SkyKeys to request for subdirectories and symlinks.
@@ -187,9 +193,13 @@ public final class GlobFunction implements SkyFunction {
         }
 
         if (direntType == Dirent.Type.DIRECTORY) {
-          SkyKey keyToRequest = getSkyKeyForSubdir(fileName, glob, subdirPattern);
-          if (keyToRequest != null) {
-            subdirMap.put(keyToRequest, dirent);
+          if (subdirPattern != null) {
+            subdirPackageLookupMap.put(getPackageLookupKeyForSubdir(fileName, glob), dirent);
+          } else {
+            SkyKey keyToRequest = getSkyKeyForSubdir(fileName, glob, subdirPattern);
+            if (keyToRequest != null) {
+              subdirMap.put(keyToRequest, dirent);
+            }
           }
         } else if (globMatchesBareFile) {
           sortedResultMap.put(dirent, glob.getSubdir().getRelative(fileName));
@@ -197,16 +207,24 @@ public final class GlobFunction implements SkyFunction {
       }
 
       Map<SkyKey, SkyValue> subdirAndSymlinksResult =
-          env.getValues(Sets.union(subdirMap.keySet(), symlinkFileMap.keySet()));
+          env.getValues(
+              Sets.union(
+                  Sets.union(subdirMap.keySet(), subdirPackageLookupMap.keySet()),
+                  symlinkFileMap.keySet()));
       if (env.valuesMissing()) {
         return null;
       }
-      Map<SkyKey, Dirent> symlinkSubdirMap = Maps.newHashMapWithExpectedSize(symlinkFileMap.size());
-      // Second pass: process the symlinks and subdirectories from the first pass, and maybe
-      // collect further SkyKeys if fully resolved symlink targets are themselves directories.
-      // Also process any known directories.
+      Map<SkyKey, Dirent> subdirGlobMap = Maps.newHashMapWithExpectedSize(direntsSize);
+      // Second pass: process the symlinks and subdirectories from the first pass, and collect the
+      // globs of subdirectories that are not packages, and further SkyKeys if fully resolved
+      // symlink targets are themselves directories. Also process any known directories.
       for (Map.Entry<SkyKey, SkyValue> lookedUpKeyAndValue : subdirAndSymlinksResult.entrySet()) {
-        if (symlinkFileMap.containsKey(lookedUpKeyAndValue.getKey())) {
+        Dirent subdir = subdirPackageLookupMap.get(lookedUpKeyAndValue.getKey());
+        if (subdir != null) {
+          if (!isOtherPackageOrRepository((PackageLookupValue) lookedUpKeyAndValue.getValue())) {
+            subdirGlobMap.put(getSkyKeyForSubdir(subdir.getName(), glob, subdirPattern), subdir);
+          }
+        } else if (symlinkFileMap.containsKey(lookedUpKeyAndValue.getKey())) {
           FileValue symlinkFileValue = (FileValue) lookedUpKeyAndValue.getValue();
           if (!symlinkFileValue.isSymlink()) {
             throw new GlobFunctionException(
@@ -224,7 +242,7 @@ public final class GlobFunction implements SkyFunction {
           if (symlinkFileValue.isDirectory()) {
             SkyKey keyToRequest = getSkyKeyForSubdir(fileName, glob, subdirPattern);
             if (keyToRequest != null) {
-              symlinkSubdirMap.put(keyToRequest, dirent);
+              subdirGlobMap.put(keyToRequest, dirent);
             }
           } else if (globMatchesBareFile) {
             sortedResultMap.put(dirent, glob.getSubdir().getRelative(fileName));
@@ -234,14 +252,14 @@ public final class GlobFunction implements SkyFunction {
         }
       }
 
-      Map<SkyKey, SkyValue> symlinkSubdirResult = env.getValues(symlinkSubdirMap.keySet());
+      Map<SkyKey, SkyValue> subdirGlobResult = env.getValues(subdirGlobMap.keySet());
       if (env.valuesMissing()) {
         return null;
       }
-      // Third pass: do needed subdirectories of symlinked directories discovered during the second
-      // pass.
-      for (Map.Entry<SkyKey, SkyValue> lookedUpKeyAndValue : symlinkSubdirResult.entrySet()) {
-        processSubdir(lookedUpKeyAndValue, symlinkSubdirMap, glob, sortedResultMap);
+      // Third pass: do needed subdirectories and subdirectories of symlinked directories
+      // discovered during the second pass.
+      for (Map.Entry<SkyKey, SkyValue> lookedUpKeyAndValue : subdirGlobResult.entrySet()) {
+        processSubdir(lookedUpKeyAndValue, subdirGlobMap, glob, sortedResultMap);
       }
       for (Map.Entry<Dirent, Object> fileMatches : sortedResultMap.entrySet()) {
         addToMatches(fileMatches.getValue(), matches);
@@ -328,13 +346,7 @@ public final class GlobFunction implements SkyFunction {
       if (glob.excludeDirs()) {
         return null;
       } else {
-        return PackageLookupValue.key(
-            PackageIdentifier.create(
-                glob.getPackageId().getRepository(),
-                glob.getPackageId()
-                    .getPackageFragment()
-                    .getRelative(glob.getSubdir())
-                    .getRelative(fileName)));
+        return getPackageLookupKeyForSubdir(fileName, glob);
       }
     } else {
       // There is some more pattern to match. Get the glob for the subdirectory. Note that this
@@ -349,6 +361,26 @@ public final class GlobFunction implements SkyFunction {
     }
   }
 
+  private static SkyKey getPackageLookupKeyForSubdir(String fileName, GlobDescriptor glob) {
+    return PackageLookupValue.key(
+        PackageIdentifier.create(
+            glob.getPackageId().getRepository(),
+            glob.getPackageId()
+                .getPackageFragment()
+                .getRelative(glob.getSubdir())
+                .getRelative(fileName)));
+  }
+
+  /**
+   * Returns whether the looked up directory is a separate package or belongs to a separate
+   * repository, so that globs must not descend into it.
+   */
+  private static boolean isOtherPackageOrRepository(PackageLookupValue packageLookupValue) {
+    return packageLookupValue.packageExists()
+        || packageLookupValue
+            instanceof PackageLookupValue.IncorrectRepositoryReferencePackageLookupValue;
+  }
+
   /**
    * Returns matches coming from the directory {@code fileName} if appropriate, either an individual
    * file or a nested set of files.
@@ -370,13 +402,8 @@ public final class GlobFunction implements SkyFunction {
           valueRequested,
           fileName,
           glob);
-      PackageLookupValue packageLookupValue = (PackageLookupValue) valueRequested;
-      if (packageLookupValue.packageExists()) {
-        // This is a separate package, so ignore it.
-        return null;
-      } else if (packageLookupValue
-          instanceof PackageLookupValue.IncorrectRepositoryReferencePackageLookupValue) {
-        // This is a separate repository, so ignore it.
+      if (isOtherPackageOrRepository((PackageLookupValue) valueRequested)) {
+        // This is a separate package or repository, so ignore it.
         return null;
       } else {
         return glob.getSubdir().getRelative(fileName);
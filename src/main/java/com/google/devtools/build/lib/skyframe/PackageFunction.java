@@ -17,6 +17,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -34,6 +35,7 @@ import com.google.devtools.build.lib.cmdline.LabelSyntaxException;
 import com.google.devtools.build.lib.cmdline.PackageIdentifier;
 import com.google.devtools.build.lib.cmdline.RepositoryName;
 import com.google.devtools.build.lib.collect.nestedset.NestedSet;
+import com.google.devtools.build.lib.concurrent.BlazeInterners;
 import com.google.devtools.build.lib.events.Event;
 import com.google.devtools.build.lib.events.ExtendedEventHandler.Postable;
 import com.google.devtools.build.lib.events.Location;
@@ -59,6 +61,7 @@ import com.google.devtools.build.lib.skyframe.SkylarkImportLookupFunction.Skylar
 import com.google.devtools.build.lib.syntax.BuildFileAST;
 import com.google.devtools.build.lib.syntax.Environment.Extension;
 import com.google.devtools.build.lib.syntax.EvalException;
+import com.google.devtools.build.lib.syntax.Parser.ParseResult;
 import com.google.devtools.build.lib.syntax.ParserInputSource;
 import com.google.devtools.build.lib.syntax.SkylarkImport;
 import com.google.devtools.build.lib.syntax.StarlarkSemantics;
@@ -98,6 +101,7 @@ public class PackageFunction implements SkyFunction {
   private final CachingPackageLocator packageLocator;
   private final Cache<PackageIdentifier, LoadedPackageCacheEntry> packageFunctionCache;
   private final Cache<PackageIdentifier, AstParseResult> astCache;
+  @Nullable private final PersistentParseCache parseCache;
   private final AtomicBoolean showLoadingProgress;
   private final AtomicInteger numPackagesLoaded;
   @Nullable private final PackageProgressReceiver packageProgress;
@@ -110,12 +114,24 @@ public class PackageFunction implements SkyFunction {
 
   private final IncrementalityIntent incrementalityIntent;
 
+  /**
+   * The packages most recently returned by this function. Values are weakly referenced: a package
+   * is only found here while Skyframe still holds it, typically as the value from the previous
+   * build of a node that is being re-evaluated.
+   */
+  private final Cache<PackageIdentifier, Package> previousPackages =
+      CacheBuilder.newBuilder()
+          .concurrencyLevel(BlazeInterners.concurrencyLevel())
+          .weakValues()
+          .build();
+
   public PackageFunction(
       PackageFactory packageFactory,
       CachingPackageLocator pkgLocator,
       AtomicBoolean showLoadingProgress,
       Cache<PackageIdentifier, LoadedPackageCacheEntry> packageFunctionCache,
       Cache<PackageIdentifier, AstParseResult> astCache,
+      @Nullable PersistentParseCache parseCache,
       AtomicInteger numPackagesLoaded,
       @Nullable SkylarkImportLookupFunction skylarkImportLookupFunctionForInlining,
       @Nullable PackageProgressReceiver packageProgress,
@@ -131,6 +147,7 @@ public class PackageFunction implements SkyFunction {
     this.showLoadingProgress = showLoadingProgress;
     this.packageFunctionCache = packageFunctionCache;
     this.astCache = astCache;
+    this.parseCache = parseCache;
     this.numPackagesLoaded = numPackagesLoaded;
     this.packageProgress = packageProgress;
     this.actionOnIOExceptionReadingBuildFile = actionOnIOExceptionReadingBuildFile;
@@ -152,6 +169,7 @@ public class PackageFunction implements SkyFunction {
         showLoadingProgress,
         packageFunctionCache,
         astCache,
+        /*parseCache=*/ null,
         numPackagesLoaded,
         skylarkImportLookupFunctionForInlining,
         /*packageProgress=*/ null,
@@ -491,7 +509,7 @@ public class PackageFunction implements SkyFunction {
     if (pkgBuilder.containsErrors() || packageShouldBeConsideredInErrorFromGlobDeps) {
       pkgBuilder.setContainsErrors();
     }
-    Package pkg = pkgBuilder.finishBuild();
+    Package pkg = maybeReusePreviousPackage(pkgBuilder.finishBuild());
 
     Event.replayEventsOn(env.getListener(), pkgBuilder.getEvents());
     for (Postable post : pkgBuilder.getPosts()) {
@@ -505,6 +523,23 @@ public class PackageFunction implements SkyFunction {
     return new PackageValue(pkg);
   }
 
+  /**
+   * Returns the package previously built for the same identifier if it is equivalent to {@code
+   * pkg}, so that the dependents of the package are not re-evaluated, and {@code pkg} otherwise.
+   */
+  private Package maybeReusePreviousPackage(Package pkg) {
+    if (incrementalityIntent != IncrementalityIntent.INCREMENTAL) {
+      return pkg;
+    }
+    PackageIdentifier packageId = pkg.getPackageIdentifier();
+    Package previousPackage = previousPackages.getIfPresent(packageId);
+    if (previousPackage != null && previousPackage.isEquivalentTo(pkg)) {
+      return previousPackage;
+    }
+    previousPackages.put(packageId, pkg);
+    return pkg;
+  }
+
   private static FileValue getBuildFileValue(Environment env, RootedPath buildFileRootedPath)
       throws InterruptedException {
     FileValue buildFileValue;
@@ -1075,7 +1110,6 @@ public class PackageFunction implements SkyFunction {
           if (showLoadingProgress.get()) {
             env.getListener().handle(Event.progress("Loading package: " + packageId));
           }
-          ParserInputSource input;
           Preconditions.checkNotNull(buildFileValue, packageId);
           byte[] buildFileBytes = null;
           try {
@@ -1097,13 +1131,29 @@ public class PackageFunction implements SkyFunction {
             // If control flow reaches here, we're in territory that is deliberately unsound.
             // See the javadoc for ActionOnIOExceptionReadingBuildFile.
           }
-          input =
-              ParserInputSource.create(
-                  FileSystemUtils.convertFromLatin1(buildFileBytes), inputFile.asFragment());
           StoredEventHandler astParsingEventHandler = new StoredEventHandler();
-          BuildFileAST ast =
-              PackageFactory.parseBuildFile(
-                  packageId, input, preludeStatements, repositoryMapping, astParsingEventHandler);
+          BuildFileAST ast;
+          if (parseCache != null && parseCache.isEnabled()) {
+            ParseResult parseResult;
+            try {
+              parseResult =
+                  parseCache.parse(buildFileBytes, inputFile.asFragment(), astParsingEventHandler);
+            } catch (IOException e) {
+              throw new PackageFunctionException(
+                  new BuildFileContainsErrorsException(packageId, e.getMessage(), e),
+                  Transience.TRANSIENT);
+            }
+            ast =
+                BuildFileAST.createBuildFile(
+                    parseResult, preludeStatements, repositoryMapping, astParsingEventHandler);
+          } else {
+            ParserInputSource input =
+                ParserInputSource.create(
+                    FileSystemUtils.convertFromLatin1(buildFileBytes), inputFile.asFragment());
+            ast =
+                PackageFactory.parseBuildFile(
+                    packageId, input, preludeStatements, repositoryMapping, astParsingEventHandler);
+          }
           astParseResult = new AstParseResult(ast, astParsingEventHandler);
           astCache.put(packageId, astParseResult);
         }
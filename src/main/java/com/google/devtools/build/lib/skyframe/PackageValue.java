@@ -23,17 +23,23 @@ import com.google.devtools.build.lib.packages.BuildFileContainsErrorsException;
 import com.google.devtools.build.lib.packages.Package;
 import com.google.devtools.build.lib.skyframe.serialization.autocodec.AutoCodec;
 import com.google.devtools.build.skyframe.AbstractSkyKey;
-import com.google.devtools.build.skyframe.NotComparableSkyValue;
 import com.google.devtools.build.skyframe.SkyFunctionName;
 import com.google.devtools.build.skyframe.SkyKey;
+import com.google.devtools.build.skyframe.SkyValue;
 import java.util.ArrayList;
 import java.util.List;
 
-/** A Skyframe value representing a package. */
+/**
+ * A Skyframe value representing a package.
+ *
+ * <p>Two values are equal only if they hold the same {@link Package} instance. {@link
+ * PackageFunction} returns the previous instance when a re-evaluated package turns out to be
+ * equivalent to it, which lets Skyframe prune the evaluation of everything depending on it.
+ */
 @AutoCodec(explicitlyAllowClass = Package.class)
 @Immutable
 @ThreadSafe
-public class PackageValue implements NotComparableSkyValue {
+public class PackageValue implements SkyValue {
   private final Package pkg;
 
   public PackageValue(Package pkg) {
@@ -50,6 +56,16 @@ public class PackageValue implements NotComparableSkyValue {
     return pkg;
   }
 
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof PackageValue && ((PackageValue) obj).pkg == pkg;
+  }
+
+  @Override
+  public int hashCode() {
+    return System.identityHashCode(pkg);
+  }
+
   @Override
   public String toString() {
     return "<PackageValue name=" + pkg.getName() + ">";
@@ -0,0 +1,209 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.skyframe;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
+import com.google.devtools.build.lib.events.EventHandler;
+import com.google.devtools.build.lib.syntax.ParseResultCodec;
+import com.google.devtools.build.lib.syntax.Parser;
+import com.google.devtools.build.lib.syntax.Parser.ParseResult;
+import com.google.devtools.build.lib.syntax.ParserInputSource;
+import com.google.devtools.build.lib.vfs.FileStatus;
+import com.google.devtools.build.lib.vfs.FileSystemUtils;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.PathFragment;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+
+/**
+ * Keeps the parse results of BUILD and .bzl files on disk, so that a new server does not have to
+ * lex and parse the files again.
+ *
+ * <p>Entries are keyed by the SHA-256 of the bytes that are parsed, not by the digest of the
+ * {@link com.google.devtools.build.lib.actions.FileValue}, which may be missing or may predate a
+ * concurrent edit. Only results without errors are stored. Entries are read when a file is loaded,
+ * so there is no cost for files that are not loaded.
+ *
+ * <p>The first time the cache is enabled in a server, it deletes the caches of other server
+ * binaries and the least recently used entries beyond its size limit. Reading an entry refreshes
+ * its modification time.
+ */
+@ThreadSafe
+public class PersistentParseCache {
+  private static final Logger logger = Logger.getLogger(PersistentParseCache.class.getName());
+
+  @Nullable private final Path directory;
+  private final AtomicLong tempFileCounter = new AtomicLong();
+  private volatile boolean enabled;
+  private boolean collected;
+
+  /**
+   * Creates a cache in the given directory, which should be specific to the version of the server
+   * binary. If {@code directory} is null, e.g. because the version is not known, the cache cannot
+   * be enabled.
+   */
+  public PersistentParseCache(@Nullable Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Enables or disables the cache. The first time it is enabled, entries beyond {@code
+   * maxSizeBytes} are deleted, least recently used first.
+   */
+  public synchronized void setEnabled(boolean enabled, long maxSizeBytes) {
+    this.enabled = enabled && directory != null;
+    if (this.enabled && !collected) {
+      collected = true;
+      collectGarbage(maxSizeBytes);
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Returns the result of parsing the given contents of the file at {@code path}, restored from
+   * the cache if possible. Errors are reported to {@code eventHandler}.
+   */
+  public ParseResult parse(byte[] bytes, PathFragment path, EventHandler eventHandler)
+      throws IOException {
+    if (!enabled) {
+      return Parser.parseFile(ParserInputSource.create(bytes, path), eventHandler);
+    }
+    Path entry = getEntry(bytes);
+    try {
+      ParseResult result = ParseResultCodec.decode(FileSystemUtils.readContent(entry), path);
+      touch(entry);
+      return result;
+    } catch (FileNotFoundException e) {
+      // Not cached yet.
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Ignoring unreadable parse cache entry " + entry, e);
+    }
+    ParseResult result = Parser.parseFile(ParserInputSource.create(bytes, path), eventHandler);
+    if (!result.containsErrors) {
+      store(entry, result);
+    }
+    return result;
+  }
+
+  private Path getEntry(byte[] bytes) {
+    String key = Hashing.sha256().hashBytes(bytes).toString();
+    // Spread the entries over subdirectories to keep the directories small.
+    return directory.getRelative(key.substring(0, 2)).getRelative(key);
+  }
+
+  private static void touch(Path entry) {
+    try {
+      entry.setLastModifiedTime(-1L);
+    } catch (IOException e) {
+      // The entry is only evicted earlier than it needs to be.
+    }
+  }
+
+  private void store(Path entry, ParseResult result) {
+    // Write to a temporary file first, so that concurrent readers never see partial entries.
+    Path tempFile =
+        entry.getParentDirectory()
+            .getRelative(entry.getBaseName() + ".tmp" + tempFileCounter.incrementAndGet());
+    try {
+      entry.getParentDirectory().createDirectoryAndParents();
+      try (OutputStream out = tempFile.getOutputStream()) {
+        out.write(ParseResultCodec.encode(result));
+      }
+      tempFile.renameTo(entry);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Failed to write parse cache entry " + entry, e);
+      try {
+        tempFile.delete();
+      } catch (IOException ignored) {
+        // A leftover temporary file is never read.
+      }
+    }
+  }
+
+  /**
+   * Deletes the caches of other server binaries, leftover temporary files, and the least recently
+   * modified entries until the remaining ones fit in {@code maxSizeBytes}.
+   */
+  @VisibleForTesting
+  void collectGarbage(long maxSizeBytes) {
+    try {
+      Path parent = directory.getParentDirectory();
+      if (parent.isDirectory()) {
+        for (Path sibling : parent.getDirectoryEntries()) {
+          if (!sibling.equals(directory)) {
+            sibling.deleteTree();
+          }
+        }
+      }
+      if (!directory.isDirectory()) {
+        return;
+      }
+      List<Path> entries = new ArrayList<>();
+      Map<Path, FileStatus> stats = new HashMap<>();
+      long totalSize = 0;
+      for (Path subdirectory : directory.getDirectoryEntries()) {
+        if (!subdirectory.isDirectory()) {
+          continue;
+        }
+        for (Path entry : subdirectory.getDirectoryEntries()) {
+          if (entry.getBaseName().contains(".tmp")) {
+            entry.delete();
+            continue;
+          }
+          FileStatus stat = entry.stat();
+          entries.add(entry);
+          stats.put(entry, stat);
+          totalSize += stat.getSize();
+        }
+      }
+      if (totalSize <= maxSizeBytes) {
+        return;
+      }
+      entries.sort(Comparator.comparingLong(entry -> getLastModifiedTime(stats.get(entry))));
+      for (Path entry : entries) {
+        if (totalSize <= maxSizeBytes) {
+          break;
+        }
+        entry.delete();
+        totalSize -= stats.get(entry).getSize();
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Failed to clean up parse cache " + directory, e);
+    }
+  }
+
+  private static long getLastModifiedTime(FileStatus stat) {
+    try {
+      return stat.getLastModifiedTime();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+}
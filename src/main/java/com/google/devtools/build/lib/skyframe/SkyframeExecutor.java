@@ -36,6 +36,7 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Range;
 import com.google.common.collect.Sets;
 import com.google.common.eventbus.EventBus;
+import com.google.common.hash.HashCode;
 import com.google.devtools.build.lib.actions.ActionAnalysisMetadata;
 import com.google.devtools.build.lib.actions.ActionCacheChecker;
 import com.google.devtools.build.lib.actions.ActionExecutionStatusReporter;
@@ -246,6 +247,7 @@ public abstract class SkyframeExecutor implements WalkableGraphFactory {
   private final Cache<PackageIdentifier, LoadedPackageCacheEntry>
       packageFunctionCache = newPkgFunctionCache();
   private final Cache<PackageIdentifier, AstParseResult> astCache = newAstCache();
+  private final PersistentParseCache parseCache;
 
   private final AtomicInteger numPackagesLoaded = new AtomicInteger(0);
   @Nullable private final PackageProgressReceiver packageProgress;
@@ -401,6 +403,17 @@ public abstract class SkyframeExecutor implements WalkableGraphFactory {
     this.resourceManager = ResourceManager.instance();
     this.fileSystem = fileSystem;
     this.directories = Preconditions.checkNotNull(directories);
+    // The parse results may change with the server binary, so each binary has its own cache. A
+    // binary without an install MD5 cannot be told apart from other versions, so it has none.
+    HashCode installMD5 = directories.getInstallMD5();
+    this.parseCache =
+        new PersistentParseCache(
+            installMD5 == null
+                ? null
+                : directories
+                    .getOutputBase()
+                    .getRelative("parse_cache")
+                    .getRelative(installMD5.toString()));
     this.actionKeyContext = Preconditions.checkNotNull(actionKeyContext);
     ImmutableMap.Builder<BuildInfoKey, BuildInfoFactory> factoryMapBuilder = ImmutableMap.builder();
     for (BuildInfoFactory factory : buildInfoFactories) {
@@ -461,7 +474,8 @@ public abstract class SkyframeExecutor implements WalkableGraphFactory {
         new PackageLookupFunction(
             deletedPackages, crossRepositoryLabelViolationStrategy, buildFilesByPriority));
     map.put(SkyFunctions.CONTAINING_PACKAGE_LOOKUP, new ContainingPackageLookupFunction());
-    map.put(SkyFunctions.AST_FILE_LOOKUP, new ASTFileLookupFunction(ruleClassProvider));
+    map.put(
+        SkyFunctions.AST_FILE_LOOKUP, new ASTFileLookupFunction(ruleClassProvider, parseCache));
     map.put(
         SkyFunctions.SKYLARK_IMPORTS_LOOKUP,
         newSkylarkImportLookupFunction(ruleClassProvider, pkgFactory));
@@ -500,6 +514,7 @@ public abstract class SkyframeExecutor implements WalkableGraphFactory {
             showLoadingProgress,
             packageFunctionCache,
             astCache,
+            parseCache,
             numPackagesLoaded,
             skylarkImportLookupFunctionForInlining,
             packageProgress,
@@ -1311,6 +1326,9 @@ public abstract class SkyframeExecutor implements WalkableGraphFactory {
     setCommandId(commandId);
     this.clientEnv.set(clientEnv);
     setShowLoadingProgress(packageCacheOptions.showLoadingProgress);
+    parseCache.setEnabled(
+        packageCacheOptions.persistentParseCache,
+        packageCacheOptions.persistentParseCacheMaxSizeMb * 1024L * 1024L);
     setDefaultVisibility(packageCacheOptions.defaultVisibility);
     setSkylarkSemantics(starlarkSemanticsOptions.toSkylarkSemantics());
     setPackageLocator(pkgLocator);
@@ -2515,8 +2533,16 @@ public abstract class SkyframeExecutor implements WalkableGraphFactory {
     this.statusReporterRef.set(statusReporter);
   }
 
+  /**
+   * Invalidates the actions whose outputs were modified since they were last checked.
+   *
+   * <p>If {@code batchStatExecRoot} is not null and the output service has no batch statter, the
+   * outputs under it are stat()ed in batches with native calls where the file system supports it.
+   */
   public abstract void detectModifiedOutputFiles(
-      ModifiedFileSet modifiedOutputFiles, @Nullable Range<Long> lastExecutionTimeRange)
+      ModifiedFileSet modifiedOutputFiles,
+      @Nullable Range<Long> lastExecutionTimeRange,
+      @Nullable Path batchStatExecRoot)
       throws AbruptExitException, InterruptedException;
 
   /**
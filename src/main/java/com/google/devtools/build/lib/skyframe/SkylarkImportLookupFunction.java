@@ -15,23 +15,29 @@ package com.google.devtools.build.lib.skyframe;
 
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicates;
+import com.google.common.base.Throwables;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.devtools.build.lib.actions.InconsistentFilesystemException;
 import com.google.devtools.build.lib.cmdline.Label;
 import com.google.devtools.build.lib.cmdline.PackageIdentifier;
 import com.google.devtools.build.lib.cmdline.RepositoryName;
 import com.google.devtools.build.lib.concurrent.BlazeInterners;
+import com.google.devtools.build.lib.concurrent.NamedForkJoinPool;
 import com.google.devtools.build.lib.events.Event;
 import com.google.devtools.build.lib.events.EventHandler;
+import com.google.devtools.build.lib.events.ExtendedEventHandler;
 import com.google.devtools.build.lib.events.ExtendedEventHandler.Postable;
 import com.google.devtools.build.lib.events.StoredEventHandler;
 import com.google.devtools.build.lib.packages.BuildFileNotFoundException;
@@ -62,11 +68,16 @@ import com.google.devtools.build.skyframe.SkyFunctionException.Transience;
 import com.google.devtools.build.skyframe.SkyKey;
 import com.google.devtools.build.skyframe.SkyValue;
 import com.google.devtools.build.skyframe.ValueOrException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
 
@@ -84,14 +95,37 @@ public class SkylarkImportLookupFunction implements SkyFunction {
   private final RuleClassProvider ruleClassProvider;
   private final PackageFactory packageFactory;
   private Cache<SkyKey, CachedSkylarkImportLookupValueAndDeps> skylarkImportLookupValueCache;
+  // Evaluates the files loaded by inlined imports, see computeWithInlineCalls.
+  private final Executor inlineEvaluationExecutor;
 
   private static final Logger logger =
       Logger.getLogger(SkylarkImportLookupFunction.class.getName());
 
   public SkylarkImportLookupFunction(
     RuleClassProvider ruleClassProvider, PackageFactory packageFactory) {
+    // The shared pool is only created when it is first used.
+    this(ruleClassProvider, packageFactory, command -> InlineEvaluationPool.POOL.execute(command));
+  }
+
+  @VisibleForTesting
+  SkylarkImportLookupFunction(
+      RuleClassProvider ruleClassProvider,
+      PackageFactory packageFactory,
+      Executor inlineEvaluationExecutor) {
     this.ruleClassProvider = ruleClassProvider;
     this.packageFactory = packageFactory;
+    this.inlineEvaluationExecutor = inlineEvaluationExecutor;
+  }
+
+  /**
+   * Holds the pool that evaluates inlined imports for all instances, so that functions that never
+   * inline do not start any threads. The workers are daemon threads that exit when they are idle,
+   * so the pool does not need to be shut down.
+   */
+  private static final class InlineEvaluationPool {
+    private static final ForkJoinPool POOL =
+        NamedForkJoinPool.newNamedPool(
+            "skylark-inline-import", Runtime.getRuntime().availableProcessors());
   }
 
   @Override
@@ -100,15 +134,7 @@ public class SkylarkImportLookupFunction implements SkyFunction {
       throws SkyFunctionException, InterruptedException {
     SkylarkImportLookupKey key = (SkylarkImportLookupKey) skyKey.argument();
     try {
-      return computeInternal(
-          key.importLabel,
-          key.inWorkspace,
-          key.workspaceChunk,
-          key.workspacePath,
-          env,
-          /*visitedNested=*/ null,
-          /*inlineCachedValueBuilder=*/ null,
-          /*visitedGlobalDeps=*/ null);
+      return computeInternal(key, env);
     } catch (InconsistentFilesystemException e) {
       throw new SkylarkImportLookupFunctionException(e, Transience.PERSISTENT);
     } catch (SkylarkImportFailedException e) {
@@ -116,6 +142,15 @@ public class SkylarkImportLookupFunction implements SkyFunction {
     }
   }
 
+  /**
+   * Computes the value for {@code skyKey} without creating Skyframe nodes for it and the files it
+   * transitively loads. The dependencies of all these files are registered on {@code env}.
+   *
+   * <p>This happens in two phases. First, the loaded files are visited serially on the calling
+   * thread, which requests all Skyframe values they need and detects import cycles. Then, if all
+   * the values are available, the files that are not cached yet are evaluated, each one as soon as
+   * the files it loads are, so that independent load() subtrees are evaluated in parallel.
+   */
   @Nullable
   SkylarkImportLookupValue computeWithInlineCalls(SkyKey skyKey, Environment env)
       throws InconsistentFilesystemException, SkylarkImportFailedException, InterruptedException {
@@ -123,24 +158,37 @@ public class SkylarkImportLookupFunction implements SkyFunction {
     // skylark file and the visitedGlobalDeps set to avoid re-registering previously seen
     // dependencies. Note that the visitedNested set must use insertion order to display the correct
     // error.
-    CachedSkylarkImportLookupValueAndDeps cachedSkylarkImportLookupValueAndDeps =
-        computeWithInlineCallsInternal(
+    List<InlineNode> nodesToEvaluate = new ArrayList<>();
+    InlineNode root =
+        prepareInlineNode(
             skyKey,
             env,
             /*visitedNested=*/ new LinkedHashSet<>(),
-            /*visitedGlobalDeps=*/ new HashSet<>());
-    if (cachedSkylarkImportLookupValueAndDeps == null) {
+            /*visitedGlobalDeps=*/ new HashSet<>(),
+            /*preparedNodes=*/ new HashMap<>(),
+            nodesToEvaluate);
+    if (root == null) {
       return null;
     }
-    return cachedSkylarkImportLookupValueAndDeps.getValue();
+    evaluateInlineNodes(root, nodesToEvaluate, env);
+    return root.cachedValue.getValue();
   }
 
+  /**
+   * Visits the file for {@code skyKey} and, recursively, the files it loads, requesting the values
+   * they need from {@code env}. Returns null if some of these values are missing.
+   *
+   * <p>Nodes that still have to be evaluated are added to {@code nodesToEvaluate} after the nodes
+   * of the files they load.
+   */
   @Nullable
-  private CachedSkylarkImportLookupValueAndDeps computeWithInlineCallsInternal(
+  private InlineNode prepareInlineNode(
       SkyKey skyKey,
       Environment env,
       Set<Label> visitedNested,
-      Set<CachedSkylarkImportLookupFunctionDeps> visitedGlobalDeps)
+      Set<CachedSkylarkImportLookupFunctionDeps> visitedGlobalDeps,
+      Map<SkyKey, InlineNode> preparedNodes,
+      List<InlineNode> nodesToEvaluate)
       throws InconsistentFilesystemException, SkylarkImportFailedException, InterruptedException {
     SkylarkImportLookupKey key = (SkylarkImportLookupKey) skyKey.argument();
     Label importLabel = key.importLabel;
@@ -153,7 +201,13 @@ public class SkylarkImportLookupFunction implements SkyFunction {
         skylarkImportLookupValueCache.getIfPresent(skyKey);
     if (cachedSkylarkImportLookupValueAndDeps != null) {
       cachedSkylarkImportLookupValueAndDeps.traverse(env::registerDependencies, visitedGlobalDeps);
-      return cachedSkylarkImportLookupValueAndDeps;
+      return new InlineNode(skyKey, cachedSkylarkImportLookupValueAndDeps);
+    }
+    // A file loaded along several paths is only evaluated once. Nodes are only added to this map
+    // once all their imports were visited, so this does not hide cycles.
+    InlineNode preparedNode = preparedNodes.get(skyKey);
+    if (preparedNode != null) {
+      return preparedNode;
     }
 
     if (!visitedNested.add(importLabel)) {
@@ -174,25 +228,128 @@ public class SkylarkImportLookupFunction implements SkyFunction {
             inlineCachedValueBuilder::addDep,
             inlineCachedValueBuilder::addDeps,
             inlineCachedValueBuilder::noteException);
-    SkylarkImportLookupValue value =
-        computeInternal(
-            importLabel,
-            key.inWorkspace,
-            key.workspaceChunk,
-            key.workspacePath,
-            recordingEnv,
-            Preconditions.checkNotNull(visitedNested, importLabel),
-            inlineCachedValueBuilder,
-            visitedGlobalDeps);
+    ImportPrerequisites prerequisites = loadPrerequisites(key, recordingEnv);
+    boolean valuesMissing = prerequisites == null;
+    ImmutableList.Builder<InlineNode> imports = ImmutableList.builder();
+    if (prerequisites != null) {
+      for (SkyKey importLookupKey : prerequisites.importLookupKeys) {
+        InlineNode importNode =
+            prepareInlineNode(
+                importLookupKey,
+                env,
+                visitedNested,
+                visitedGlobalDeps,
+                preparedNodes,
+                nodesToEvaluate);
+        if (importNode == null) {
+          Preconditions.checkState(
+              env.valuesMissing(), "no starlark import value for %s", importLookupKey);
+          // We continue making inline calls even if some requested values are missing, to maximize
+          // the number of dependent (non-inlined) SkyFunctions that are requested, thus avoiding a
+          // quadratic number of restarts.
+          valuesMissing = true;
+        } else {
+          imports.add(importNode);
+        }
+      }
+    }
     // All imports traversed, this key can no longer be part of a cycle.
     Preconditions.checkState(visitedNested.remove(importLabel), importLabel);
+    if (valuesMissing) {
+      return null;
+    }
 
-    if (value != null) {
-      inlineCachedValueBuilder.setValue(value);
-      cachedSkylarkImportLookupValueAndDeps = inlineCachedValueBuilder.build();
-      skylarkImportLookupValueCache.put(skyKey, cachedSkylarkImportLookupValueAndDeps);
+    InlineNode node =
+        new InlineNode(skyKey, prerequisites, inlineCachedValueBuilder, imports.build());
+    preparedNodes.put(skyKey, node);
+    nodesToEvaluate.add(node);
+    return node;
+  }
+
+  /**
+   * Evaluates the given nodes, which must be ordered such that every node comes after the nodes
+   * that it loads, and replays their events on {@code env} in that order.
+   *
+   * <p>The error and the events reported are the same as if the nodes were evaluated one after
+   * another in that order: the events of the nodes up to the first one that fails, and the error of
+   * that node.
+   */
+  private void evaluateInlineNodes(
+      InlineNode root, List<InlineNode> nodesToEvaluate, Environment env)
+      throws SkylarkImportFailedException, InterruptedException {
+    if (nodesToEvaluate.size() <= 1) {
+      // Nothing to parallelize.
+      for (InlineNode node : nodesToEvaluate) {
+        evaluateInlineNode(node, env.getListener());
+      }
+      return;
+    }
+
+    List<ListenableFuture<?>> futures = new ArrayList<>(nodesToEvaluate.size());
+    for (InlineNode node : nodesToEvaluate) {
+      List<ListenableFuture<?>> importFutures = new ArrayList<>(node.imports.size());
+      for (InlineNode importNode : node.imports) {
+        if (importNode.future != null) {
+          importFutures.add(importNode.future);
+        }
+      }
+      node.future =
+          Futures.whenAllSucceed(importFutures)
+              .call(
+                  () -> {
+                    evaluateInlineNode(node, node.events);
+                    return null;
+                  },
+                  inlineEvaluationExecutor);
+      futures.add(node.future);
+    }
+    try {
+      // Even after a failure, wait for the nodes that are still running, since one of them may
+      // come first in load order.
+      Futures.whenAllComplete(futures).call(() -> null, MoreExecutors.directExecutor()).get();
+    } catch (InterruptedException e) {
+      for (ListenableFuture<?> future : futures) {
+        future.cancel(/*mayInterruptIfRunning=*/ true);
+      }
+      throw e;
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e);
+    }
+    Preconditions.checkState(root.future.isDone(), root.key);
+    for (InlineNode node : nodesToEvaluate) {
+      if (!node.evaluated) {
+        // Skipped because a file it loads failed, which was reported already.
+        continue;
+      }
+      node.events.replayOn(env.getListener());
+      try {
+        Futures.getDone(node.future);
+      } catch (ExecutionException e) {
+        Throwables.propagateIfPossible(
+            e.getCause(), SkylarkImportFailedException.class, InterruptedException.class);
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+  }
+
+  private void evaluateInlineNode(InlineNode node, ExtendedEventHandler listener)
+      throws SkylarkImportFailedException, InterruptedException {
+    try {
+      Map<SkyKey, SkyValue> skylarkImportMap =
+          Maps.newHashMapWithExpectedSize(node.imports.size());
+      for (InlineNode importNode : node.imports) {
+        skylarkImportMap.put(importNode.key, importNode.cachedValue.getValue());
+        node.builder.addTransitiveDeps(importNode.cachedValue);
+      }
+      SkylarkImportLookupValue value =
+          createImportLookupValue(node.prerequisites, skylarkImportMap, listener);
+      node.builder.setValue(value);
+      CachedSkylarkImportLookupValueAndDeps cachedValue = node.builder.build();
+      skylarkImportLookupValueCache.put(node.key, cachedValue);
+      node.cachedValue = cachedValue;
+    } finally {
+      node.evaluated = true;
     }
-    return cachedSkylarkImportLookupValueAndDeps;
   }
 
   public void resetCache() {
@@ -213,16 +370,42 @@ public class SkylarkImportLookupFunction implements SkyFunction {
   // exception. We are allowed to wrap the thrown exception and rethrow it for any calling functions
   // to handle though.
   @Nullable
-  private SkylarkImportLookupValue computeInternal(
-      Label fileLabel,
-      boolean inWorkspace,
-      int workspaceChunk,
-      RootedPath workspacePath,
-      Environment env,
-      @Nullable Set<Label> visitedNested,
-      @Nullable CachedSkylarkImportLookupValueAndDeps.Builder inlineCachedValueBuilder,
-      @Nullable Set<CachedSkylarkImportLookupFunctionDeps> visitedGlobalDeps)
+  private SkylarkImportLookupValue computeInternal(SkylarkImportLookupKey key, Environment env)
       throws InconsistentFilesystemException, SkylarkImportFailedException, InterruptedException {
+    ImportPrerequisites prerequisites = loadPrerequisites(key, env);
+    if (prerequisites == null) {
+      return null;
+    }
+
+    // Look up and load the imports.
+    Map<SkyKey, ValueOrException<SkylarkImportFailedException>> values =
+        env.getValuesOrThrow(prerequisites.importLookupKeys, SkylarkImportFailedException.class);
+    Map<SkyKey, SkyValue> skylarkImportMap = Maps.newHashMapWithExpectedSize(values.size());
+    for (Map.Entry<SkyKey, ValueOrException<SkylarkImportFailedException>> entry :
+        values.entrySet()) {
+      try {
+        skylarkImportMap.put(entry.getKey(), entry.getValue().get());
+      } catch (SkylarkImportFailedException exn) {
+        throw new SkylarkImportFailedException(
+            "in " + prerequisites.ast.getLocation().getPath() + ": " + exn.getMessage());
+      }
+    }
+    if (env.valuesMissing()) {
+      // This means some imports are unavailable.
+      return null;
+    }
+
+    return createImportLookupValue(prerequisites, skylarkImportMap, env.getListener());
+  }
+
+  /**
+   * Requests the values needed to evaluate the file of {@code key}, except for the files that it
+   * loads. Returns null if some of them are missing.
+   */
+  @Nullable
+  private ImportPrerequisites loadPrerequisites(SkylarkImportLookupKey key, Environment env)
+      throws InconsistentFilesystemException, SkylarkImportFailedException, InterruptedException {
+    Label fileLabel = key.importLabel;
     PathFragment filePath = fileLabel.toPathFragment();
 
     StarlarkSemantics starlarkSemantics = PrecomputedValue.STARLARK_SEMANTICS.get(env);
@@ -283,113 +466,56 @@ public class SkylarkImportLookupFunction implements SkyFunction {
     // Process the load statements in the file.
     ImmutableList<SkylarkImport> unRemappedImports = ast.getImports();
     ImmutableMap<RepositoryName, RepositoryName> repositoryMapping =
-        getRepositoryMapping(workspaceChunk, workspacePath, fileLabel, env);
+        getRepositoryMapping(key.workspaceChunk, key.workspacePath, fileLabel, env);
 
     if (repositoryMapping == null) {
       return null;
     }
 
     ImmutableList<SkylarkImport> imports =
-        remapImports(unRemappedImports, workspaceChunk, repositoryMapping);
+        remapImports(unRemappedImports, key.workspaceChunk, repositoryMapping);
 
     ImmutableMap<String, Label> labelsForImports = getLabelsForLoadStatements(imports, fileLabel);
-    ImmutableCollection<Label> importLabels = labelsForImports.values();
-
-    // Look up and load the imports.
-    List<SkyKey> importLookupKeys =
-        Lists.newArrayListWithExpectedSize(labelsForImports.size());
-    for (Label importLabel : importLabels) {
-      if (inWorkspace) {
-        importLookupKeys.add(
-            SkylarkImportLookupValue.keyInWorkspace(importLabel, workspaceChunk, workspacePath));
-      } else {
-        importLookupKeys.add(SkylarkImportLookupValue.key(importLabel));
-      }
-    }
-    Map<SkyKey, SkyValue> skylarkImportMap;
-    boolean valuesMissing = false;
-    if (visitedNested == null) {
-      // Not inlining.
-
-      Map<SkyKey, ValueOrException<SkylarkImportFailedException>> values =
-          env.getValuesOrThrow(importLookupKeys, SkylarkImportFailedException.class);
-      skylarkImportMap = Maps.newHashMapWithExpectedSize(values.size());
-      for (Map.Entry<SkyKey, ValueOrException<SkylarkImportFailedException>> entry :
-          env.getValuesOrThrow(importLookupKeys, SkylarkImportFailedException.class).entrySet()) {
-        try {
-          skylarkImportMap.put(entry.getKey(), entry.getValue().get());
-        } catch (SkylarkImportFailedException exn) {
-          throw new SkylarkImportFailedException(
-              "in " + ast.getLocation().getPath() + ": " + exn.getMessage());
-        }
-      }
-      valuesMissing = env.valuesMissing();
-    } else {
-      Preconditions.checkNotNull(
-          inlineCachedValueBuilder,
-          "Expected inline cached value builder to be not-null when inlining.");
-      // Inlining calls to SkylarkImportLookupFunction.
-      skylarkImportMap = Maps.newHashMapWithExpectedSize(imports.size());
-
-      Preconditions.checkState(
-          env instanceof RecordingSkyFunctionEnvironment,
-          "Expected to be recording dep requests when inlining SkylarkImportLookupFunction: %s",
-          fileLabel);
-      Environment strippedEnv = ((RecordingSkyFunctionEnvironment) env).getDelegate();
-      for (SkyKey importLookupKey : importLookupKeys) {
-        CachedSkylarkImportLookupValueAndDeps cachedValue =
-            this.computeWithInlineCallsInternal(
-                importLookupKey, strippedEnv, visitedNested, visitedGlobalDeps);
-        if (cachedValue == null) {
-          Preconditions.checkState(
-              env.valuesMissing(), "no starlark import value for %s", importLookupKey);
-          // We continue making inline calls even if some requested values are missing, to maximize
-          // the number of dependent (non-inlined) SkyFunctions that are requested, thus avoiding a
-          // quadratic number of restarts.
-          valuesMissing = true;
-        } else {
-          SkyValue skyValue = cachedValue.getValue();
-          skylarkImportMap.put(importLookupKey, skyValue);
-          inlineCachedValueBuilder.addTransitiveDeps(cachedValue);
-        }
-      }
-    }
-    if (valuesMissing) {
-      // This means some imports are unavailable.
-      return null;
-    }
+    return new ImportPrerequisites(
+        key, starlarkSemantics, ast, repositoryMapping, labelsForImports);
+  }
 
+  /**
+   * Evaluates the file described by {@code prerequisites}, given the values of the files it loads.
+   * Events are reported to {@code listener}. This does not request any Skyframe values, so it can
+   * be called on any thread.
+   */
+  private SkylarkImportLookupValue createImportLookupValue(
+      ImportPrerequisites prerequisites,
+      Map<SkyKey, SkyValue> skylarkImportMap,
+      ExtendedEventHandler listener)
+      throws SkylarkImportFailedException, InterruptedException {
     // Process the loaded imports.
-    Map<String, Extension> extensionsForImports = Maps.newHashMapWithExpectedSize(imports.size());
+    ImmutableMap<String, Label> labelsForImports = prerequisites.labelsForImports;
+    Map<String, Extension> extensionsForImports =
+        Maps.newHashMapWithExpectedSize(labelsForImports.size());
     ImmutableList.Builder<SkylarkFileDependency> fileDependencies =
-        ImmutableList.builderWithExpectedSize(importLabels.size());
+        ImmutableList.builderWithExpectedSize(labelsForImports.size());
     for (Map.Entry<String, Label> importEntry : labelsForImports.entrySet()) {
       String importString = importEntry.getKey();
       Label importLabel = importEntry.getValue();
-      SkyKey keyForLabel;
-      if (inWorkspace) {
-        keyForLabel =
-            SkylarkImportLookupValue.keyInWorkspace(importLabel, workspaceChunk, workspacePath);
-      } else {
-        keyForLabel = SkylarkImportLookupValue.key(importLabel);
-      }
       SkylarkImportLookupValue importLookupValue =
-          (SkylarkImportLookupValue) skylarkImportMap.get(keyForLabel);
+          (SkylarkImportLookupValue)
+              skylarkImportMap.get(prerequisites.keyForImport(importLabel));
       extensionsForImports.put(importString, importLookupValue.getEnvironmentExtension());
       fileDependencies.add(importLookupValue.getDependency());
     }
 
-    // #createExtension does not request values from the Environment. It may post events to the
-    // Environment, but events do not matter when caching SkylarkImportLookupValues.
+    Label fileLabel = prerequisites.key.importLabel;
     Extension extension =
         createExtension(
-            ast,
+            prerequisites.ast,
             fileLabel,
             extensionsForImports,
-            starlarkSemantics,
-            env,
-            inWorkspace,
-            repositoryMapping);
+            prerequisites.starlarkSemantics,
+            listener,
+            prerequisites.key.inWorkspace,
+            prerequisites.repositoryMapping);
     SkylarkImportLookupValue result =
         new SkylarkImportLookupValue(
             extension, new SkylarkFileDependency(fileLabel, fileDependencies.build()));
@@ -505,7 +631,7 @@ public class SkylarkImportLookupFunction implements SkyFunction {
       Label extensionLabel,
       Map<String, Extension> importMap,
       StarlarkSemantics starlarkSemantics,
-      Environment env,
+      ExtendedEventHandler listener,
       boolean inWorkspace,
       ImmutableMap<RepositoryName, RepositoryName> repositoryMapping)
       throws SkylarkImportFailedException, InterruptedException {
@@ -528,9 +654,9 @@ public class SkylarkImportLookupFunction implements SkyFunction {
       extensionEnv.setupOverride("native", packageFactory.getNativeModule(inWorkspace));
       execAndExport(ast, extensionLabel, eventHandler, extensionEnv);
 
-      Event.replayEventsOn(env.getListener(), eventHandler.getEvents());
+      Event.replayEventsOn(listener, eventHandler.getEvents());
       for (Postable post : eventHandler.getPosts()) {
-        env.getListener().post(post);
+        listener.post(post);
       }
       if (eventHandler.hasErrors()) {
         throw SkylarkImportFailedException.errors(extensionFile);
@@ -577,6 +703,77 @@ public class SkylarkImportLookupFunction implements SkyFunction {
     return null;
   }
 
+  /** The values needed to evaluate a file, apart from the values of the files it loads. */
+  private static final class ImportPrerequisites {
+    private final SkylarkImportLookupKey key;
+    private final StarlarkSemantics starlarkSemantics;
+    private final BuildFileAST ast;
+    private final ImmutableMap<RepositoryName, RepositoryName> repositoryMapping;
+    private final ImmutableMap<String, Label> labelsForImports;
+    private final ImmutableList<SkyKey> importLookupKeys;
+
+    private ImportPrerequisites(
+        SkylarkImportLookupKey key,
+        StarlarkSemantics starlarkSemantics,
+        BuildFileAST ast,
+        ImmutableMap<RepositoryName, RepositoryName> repositoryMapping,
+        ImmutableMap<String, Label> labelsForImports) {
+      this.key = key;
+      this.starlarkSemantics = starlarkSemantics;
+      this.ast = ast;
+      this.repositoryMapping = repositoryMapping;
+      this.labelsForImports = labelsForImports;
+      ImmutableList.Builder<SkyKey> importLookupKeys =
+          ImmutableList.builderWithExpectedSize(labelsForImports.size());
+      for (Label importLabel : labelsForImports.values()) {
+        importLookupKeys.add(keyForImport(importLabel));
+      }
+      this.importLookupKeys = importLookupKeys.build();
+    }
+
+    private SkyKey keyForImport(Label importLabel) {
+      return key.inWorkspace
+          ? SkylarkImportLookupValue.keyInWorkspace(
+              importLabel, key.workspaceChunk, key.workspacePath)
+          : SkylarkImportLookupValue.key(importLabel);
+    }
+  }
+
+  /** A file visited by {@link #computeWithInlineCalls}. */
+  private static final class InlineNode {
+    private final SkyKey key;
+    // Null if the value was already cached.
+    @Nullable private final ImportPrerequisites prerequisites;
+    @Nullable private final CachedSkylarkImportLookupValueAndDeps.Builder builder;
+    private final ImmutableList<InlineNode> imports;
+    private final StoredEventHandler events = new StoredEventHandler();
+
+    // Set once the file is evaluated.
+    private volatile CachedSkylarkImportLookupValueAndDeps cachedValue;
+    private volatile boolean evaluated;
+    // Only set when the evaluation is parallelized.
+    @Nullable private ListenableFuture<?> future;
+
+    private InlineNode(SkyKey key, CachedSkylarkImportLookupValueAndDeps cachedValue) {
+      this.key = key;
+      this.prerequisites = null;
+      this.builder = null;
+      this.imports = ImmutableList.of();
+      this.cachedValue = cachedValue;
+    }
+
+    private InlineNode(
+        SkyKey key,
+        ImportPrerequisites prerequisites,
+        CachedSkylarkImportLookupValueAndDeps.Builder builder,
+        ImmutableList<InlineNode> imports) {
+      this.key = key;
+      this.prerequisites = prerequisites;
+      this.builder = builder;
+      this.imports = imports;
+    }
+  }
+
   static final class SkylarkImportFailedException extends Exception {
     private SkylarkImportFailedException(String errorMessage) {
       super(errorMessage);
@@ -443,6 +443,7 @@ public abstract class AbstractPackageLoader implements PackageLoader {
                 /*showLoadingProgress=*/ new AtomicBoolean(false),
                 packageFunctionCache,
                 astCache,
+                /*parseCache=*/ null,
                 /*numPackagesLoaded=*/ new AtomicInteger(0),
                 /*skylarkImportLookupFunctionForInlining=*/ null,
                 /*packageProgress=*/ null,
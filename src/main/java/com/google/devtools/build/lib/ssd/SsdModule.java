@@ -35,5 +35,7 @@ public final class SsdModule extends BlazeModule {
     if (options.experimentalMultiThreadedDigest) {
       DigestUtils.setMultiThreadedDigest(options.experimentalMultiThreadedDigest);
     }
+    DigestUtils.setLargeFileDigestParallelism(
+        Math.max(1, options.experimentalLargeFileDigestParallelism));
   }
 }
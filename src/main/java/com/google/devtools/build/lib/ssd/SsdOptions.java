@@ -33,4 +33,16 @@ public class SsdOptions extends OptionsBase {
             + "performance when using an SSD."
   )
   public boolean experimentalMultiThreadedDigest;
+
+  @Option(
+    name = "experimental_large_file_digest_parallelism",
+    defaultValue = "1",
+    documentationCategory = OptionDocumentationCategory.UNCATEGORIZED,
+    effectTags = {OptionEffectTag.UNKNOWN},
+    help =
+        "How many large files may be digested concurrently from the same device when "
+            + "--experimental_multi_threaded_digest is off. Files on different devices are "
+            + "always digested in parallel."
+  )
+  public int experimentalLargeFileDigestParallelism;
 }
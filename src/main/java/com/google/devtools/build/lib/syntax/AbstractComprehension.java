@@ -287,7 +287,11 @@ public abstract class AbstractComprehension extends Expression {
       LValue lvalue = clause.getLValue();
       if (lvalue != null) {
         for (Identifier ident : lvalue.boundIdentifiers()) {
-          env.removeLocalBinding(ident.getName());
+          if (ident.getSlot() >= 0) {
+            env.removeLocalBinding(ident.getSlot(), ident.getName());
+          } else {
+            env.removeLocalBinding(ident.getName());
+          }
         }
       }
     }
@@ -468,13 +468,14 @@ public abstract class BaseFunction implements StarlarkFunction {
     Preconditions.checkState(isConfigured(), "Function %s was not configured", getName());
     canonicalizeArguments(arguments, loc);
 
+    boolean pushed = Callstack.enabled;
     try {
-      if (Callstack.enabled) {
+      if (pushed) {
         Callstack.push(this);
       }
       return call(arguments, ast, env);
     } finally {
-      if (Callstack.enabled) {
+      if (pushed) {
         Callstack.pop();
       }
     }
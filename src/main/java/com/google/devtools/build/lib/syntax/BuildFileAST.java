@@ -293,7 +293,19 @@ public class BuildFileAST extends ASTNode {
       List<Statement> preludeStatements,
       ImmutableMap<RepositoryName, RepositoryName> repositoryMapping,
       EventHandler eventHandler) {
-    Parser.ParseResult result = Parser.parseFile(input, eventHandler);
+    return createBuildFile(
+        Parser.parseFile(input, eventHandler), preludeStatements, repositoryMapping, eventHandler);
+  }
+
+  /**
+   * Like {@link #parseBuildFile(ParserInputSource, List, ImmutableMap, EventHandler)}, but for a
+   * file that has already been parsed, e.g. a result restored by {@link ParseResultCodec}.
+   */
+  public static BuildFileAST createBuildFile(
+      ParseResult result,
+      List<Statement> preludeStatements,
+      ImmutableMap<RepositoryName, RepositoryName> repositoryMapping,
+      EventHandler eventHandler) {
     return create(
             preludeStatements, result, /* contentHashCode= */ null, repositoryMapping, eventHandler)
         .validateBuildFile(eventHandler);
@@ -335,7 +347,15 @@ public class BuildFileAST extends ASTNode {
       byte[] bytes, byte[] digest, PathFragment path, EventHandler eventHandler)
       throws IOException {
     ParserInputSource input = ParserInputSource.create(bytes, path);
-    Parser.ParseResult result = Parser.parseFile(input, eventHandler);
+    return createSkylarkFile(Parser.parseFile(input, eventHandler), digest, eventHandler);
+  }
+
+  /**
+   * Like {@link #parseSkylarkFile(byte[], byte[], PathFragment, EventHandler)}, but for a file
+   * that has already been parsed, e.g. a result restored by {@link ParseResultCodec}.
+   */
+  public static BuildFileAST createSkylarkFile(
+      ParseResult result, byte[] digest, EventHandler eventHandler) {
     return create(
         /* preludeStatements= */ ImmutableList.of(),
         result,
@@ -43,7 +43,7 @@ public class BuiltinCallable implements StarlarkFunction {
       Environment env)
       throws EvalException, InterruptedException {
     MethodDescriptor methodDescriptor =
-        FuncallExpression.getMethod(env.getSemantics(), obj.getClass(), methodName);
+        ast.getCallSiteMethod(env.getSemantics(), obj.getClass(), methodName);
 
     // TODO(cparsons): Profiling should be done at the MethodDescriptor level.
     try (SilentCloseable c =
@@ -16,8 +16,11 @@ package com.google.devtools.build.lib.syntax;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
 import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * Holds the Skylark callstack in thread-local storage. Contains all Expressions and BaseFunctions
@@ -25,39 +28,118 @@ import java.util.List;
  *
  * <p>This is needed for memory tracking, since the evaluator is not available in the context of
  * instrumentation. It should not be used by normal Skylark interpreter logic.
+ *
+ * <p>It is also used for CPU profiling: while a {@link Sampler} is set, each evaluating thread
+ * passes its own callstack to the sampler at its first push or pop after every {@link #tick}.
+ * Sampling on the evaluating thread itself means that the stacks never have to be read
+ * concurrently.
  */
 public class Callstack {
   // This field should be read, but not written, directly in order to avoid the overhead of a
-  // method call.
+  // method call. It may change while a frame is evaluated, so callers must remember whether they
+  // pushed and only pop in that case.
   static boolean enabled;
-  private static final ThreadLocal<List<Object>> callstack =
-      ThreadLocal.withInitial(ArrayList::new);
+
+  private static boolean enabledForTracking;
+  @Nullable private static volatile Sampler sampler;
+  private static volatile int ticks;
+
+  private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+  private static final ThreadLocal<ThreadCallstack> callstack =
+      ThreadLocal.withInitial(ThreadCallstack::new);
+
+  /** Receives the callstacks of evaluating threads, see {@link #setSampler}. */
+  public interface Sampler {
+    /**
+     * Called on an evaluating thread with its current callstack, and the CPU time in nanoseconds
+     * that the thread used since its previous sample or since it started evaluating, whichever is
+     * later. The callstack must not be kept beyond the call.
+     */
+    void sample(List<Object> callstack, long cpuTimeNanos);
+  }
+
+  private static final class ThreadCallstack {
+    final ArrayList<Object> frames = new ArrayList<>();
+    int seenTicks;
+    long lastCpuTimeNanos;
+  }
 
   public static void setEnabled(boolean enabled) {
-    Callstack.enabled = enabled;
+    enabledForTracking = enabled;
+    Callstack.enabled = enabledForTracking || sampler != null;
+  }
+
+  /**
+   * Sets the sampler that receives callstacks after each {@link #tick}, or removes it if {@code
+   * sampler} is null. Must not be called while Skylark code is being evaluated.
+   */
+  public static synchronized void setSampler(@Nullable Sampler sampler) {
+    Callstack.sampler = sampler;
+    enabled = enabledForTracking || sampler != null;
+  }
+
+  /** Asks every evaluating thread to pass its callstack to the {@link Sampler} once more. */
+  public static void tick() {
+    ticks++;
   }
 
   public static void push(ASTNode node) {
-    callstack.get().add(node);
+    pushFrame(node);
   }
 
   public static void push(BaseFunction function) {
-    callstack.get().add(function);
+    pushFrame(function);
+  }
+
+  private static void pushFrame(Object frame) {
+    ThreadCallstack threadStack = callstack.get();
+    threadStack.frames.add(frame);
+    Sampler currentSampler = sampler;
+    if (currentSampler == null) {
+      return;
+    }
+    if (threadStack.frames.size() == 1) {
+      // Time spent outside of Skylark is not attributed to the next sample.
+      threadStack.seenTicks = ticks;
+      threadStack.lastCpuTimeNanos = threadMXBean.getCurrentThreadCpuTime();
+    } else {
+      maybeSample(currentSampler, threadStack);
+    }
   }
 
   public static void pop() {
-    List<Object> threadStack = callstack.get();
-    threadStack.remove(threadStack.size() - 1);
+    ThreadCallstack threadStack = callstack.get();
+    Preconditions.checkState(!threadStack.frames.isEmpty(), "pop() on an empty callstack");
+    Sampler currentSampler = sampler;
+    if (currentSampler != null) {
+      // Also sampling before a frame is popped attributes the time spent in long-running leaves,
+      // like calls to native functions, to them rather than to the next frame that is pushed.
+      maybeSample(currentSampler, threadStack);
+    }
+    threadStack.frames.remove(threadStack.frames.size() - 1);
+  }
+
+  private static void maybeSample(Sampler currentSampler, ThreadCallstack threadStack) {
+    int currentTicks = ticks;
+    if (threadStack.seenTicks != currentTicks) {
+      threadStack.seenTicks = currentTicks;
+      long cpuTimeNanos = threadMXBean.getCurrentThreadCpuTime();
+      currentSampler.sample(threadStack.frames, cpuTimeNanos - threadStack.lastCpuTimeNanos);
+      threadStack.lastCpuTimeNanos = cpuTimeNanos;
+    }
   }
 
   public static List<Object> get() {
     Preconditions.checkState(enabled, "Must call Callstack#setEnabled before getting");
-    return callstack.get();
+    return callstack.get().frames;
   }
 
   @VisibleForTesting
   public static void resetStateForTest() {
+    enabledForTracking = false;
+    sampler = null;
     enabled = false;
-    callstack.get().clear();
+    callstack.get().frames.clear();
   }
 }
@@ -155,6 +155,11 @@ public final class Environment implements Freezable, Debuggable {
       Preconditions.checkState(!mutability.isFrozen());
       return new MutableLexicalFrame(mutability, /*initialCapacity=*/ numArgs);
     }
+
+    static LexicalFrame create(Mutability mutability, FrameLayout layout) {
+      Preconditions.checkState(!mutability.isFrozen());
+      return new SlottedLexicalFrame(mutability, layout);
+    }
   }
 
   private static final class ImmutableEmptyLexicalFrame implements LexicalFrame {
@@ -243,6 +248,85 @@ public final class Environment implements Freezable, Debuggable {
     }
   }
 
+  /**
+   * A {@link LexicalFrame} for a call of a function whose local variables have been assigned to
+   * slots by {@link ValidationEnvironment}. Resolved identifiers access their slot directly; the
+   * lookups by name are only used by code that has not been resolved, e.g. expressions evaluated
+   * by the debugger.
+   */
+  private static final class SlottedLexicalFrame implements LexicalFrame {
+    private final Mutability mutability;
+    private final FrameLayout layout;
+    private final Object[] slots;
+    /** Bindings of names that have no slot in the layout, created on first use. */
+    @Nullable private LinkedHashMap<String, Object> extraBindings;
+
+    private SlottedLexicalFrame(Mutability mutability, FrameLayout layout) {
+      this.mutability = mutability;
+      this.layout = layout;
+      this.slots = new Object[layout.size()];
+    }
+
+    @Override
+    public Mutability mutability() {
+      return mutability;
+    }
+
+    @Nullable
+    @Override
+    public Object get(String varname) {
+      int slot = layout.getSlot(varname);
+      if (slot >= 0) {
+        return slots[slot];
+      }
+      return extraBindings == null ? null : extraBindings.get(varname);
+    }
+
+    @Override
+    public void put(Environment env, String varname, Object value) throws MutabilityException {
+      Mutability.checkMutable(this, env.mutability());
+      int slot = layout.getSlot(varname);
+      if (slot >= 0) {
+        slots[slot] = value;
+        return;
+      }
+      if (extraBindings == null) {
+        extraBindings = new LinkedHashMap<>();
+      }
+      extraBindings.put(varname, value);
+    }
+
+    @Override
+    public void remove(Environment env, String varname) throws MutabilityException {
+      Mutability.checkMutable(this, env.mutability());
+      int slot = layout.getSlot(varname);
+      if (slot >= 0) {
+        slots[slot] = null;
+      } else if (extraBindings != null) {
+        extraBindings.remove(varname);
+      }
+    }
+
+    @Override
+    public Map<String, Object> getTransitiveBindings() {
+      LinkedHashMap<String, Object> bindings = new LinkedHashMap<>();
+      for (int i = 0; i < slots.length; i++) {
+        if (slots[i] != null) {
+          bindings.put(layout.getName(i), slots[i]);
+        }
+      }
+      if (extraBindings != null) {
+        bindings.putAll(extraBindings);
+      }
+      return bindings;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("<SlottedLexicalFrame%s>", mutability());
+    }
+  }
+
   /**
    * A {@link Frame} that represents the top-level definitions of a file. It contains the
    * module-scope variables and has a reference to the universe.
@@ -1063,6 +1147,18 @@ public final class Environment implements Freezable, Debuggable {
     }
   }
 
+  /**
+   * Removes the local variable that {@link ValidationEnvironment} assigned to the given slot. The
+   * name is only used if the current frame does not have slots.
+   */
+  void removeLocalBinding(int slot, String varname) {
+    if (lexicalFrame instanceof SlottedLexicalFrame) {
+      ((SlottedLexicalFrame) lexicalFrame).slots[slot] = null;
+    } else {
+      removeLocalBinding(varname);
+    }
+  }
+
   /** Modifies a binding in the current Frame. If it is the module Frame, also export it. */
   public Environment updateAndExport(String varname, Object value) throws EvalException {
     update(varname, value);
@@ -1098,6 +1194,27 @@ public final class Environment implements Freezable, Debuggable {
     return this;
   }
 
+  /**
+   * Modifies the local variable that {@link ValidationEnvironment} assigned to the given slot of
+   * the current function's frame, as would an {@link AssignmentStatement}. The name is only used if
+   * the current frame does not have slots.
+   */
+  void updateLocal(int slot, String varname, Object value) throws EvalException {
+    if (!(lexicalFrame instanceof SlottedLexicalFrame)) {
+      updateAndExport(varname, value);
+      return;
+    }
+    Preconditions.checkNotNull(value, "trying to assign null to '%s'", varname);
+    SlottedLexicalFrame frame = (SlottedLexicalFrame) lexicalFrame;
+    try {
+      Mutability.checkMutable(frame, mutability());
+    } catch (MutabilityException e) {
+      throw new AssertionError(
+          Printer.format("Can't update %s to %r in frozen environment", varname, value), e);
+    }
+    frame.slots[slot] = value;
+  }
+
   /**
    * Initializes a binding in this Environment. It is an error if the variable is already bound.
    * This is not for end-users, and will throw an AssertionError in case of conflict.
@@ -1137,6 +1254,18 @@ public final class Environment implements Freezable, Debuggable {
     return lexicalFrame.get(varname);
   }
 
+  /**
+   * Returns the value of a local variable that {@link ValidationEnvironment} assigned to the given
+   * slot of the current function's frame. The name is only used if the current frame does not have
+   * slots.
+   */
+  Object localLookup(int slot, String varname) {
+    if (lexicalFrame instanceof SlottedLexicalFrame) {
+      return ((SlottedLexicalFrame) lexicalFrame).slots[slot];
+    }
+    return lexicalFrame.get(varname);
+  }
+
   /**
    * Returns the value of a variable defined in the Module scope (e.g. global variables, functions).
    */
@@ -127,7 +127,8 @@ public class Eval {
             node.getIdentifier().getLocation(),
             FunctionSignature.WithValues.create(sig, defaultValues, /*types=*/ null),
             node.getStatements(),
-            env.getGlobals()));
+            env.getGlobals(),
+            node.getFrameLayout()));
   }
 
   void execIf(IfStatement node) throws EvalException, InterruptedException {
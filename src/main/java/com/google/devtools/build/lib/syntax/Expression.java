@@ -61,8 +61,9 @@ public abstract class Expression extends ASTNode {
    * @throws InterruptedException may be thrown in a sub class.
    */
   public final Object eval(Environment env) throws EvalException, InterruptedException {
+    boolean pushed = Callstack.enabled;
     try {
-      if (Callstack.enabled) {
+      if (pushed) {
         Callstack.push(this);
       }
       try {
@@ -71,7 +72,7 @@ public abstract class Expression extends ASTNode {
         throw maybeTransformException(ex);
       }
     } finally {
-      if (Callstack.enabled) {
+      if (pushed) {
         Callstack.pop();
       }
     }
@@ -0,0 +1,58 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.syntax;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.Collection;
+
+/**
+ * The slots of the local variables of a function, as assigned by {@link ValidationEnvironment}.
+ *
+ * <p>Each local variable, including the parameters and the loop variables of comprehensions in the
+ * function body, gets its own index into the {@code Object[]} frame that is created for every call
+ * of the function.
+ */
+final class FrameLayout {
+
+  private final ImmutableList<String> names;
+  private final ImmutableMap<String, Integer> slotsByName;
+
+  /** Creates a layout with one slot for each of the given distinct names, in iteration order. */
+  FrameLayout(Collection<String> names) {
+    this.names = ImmutableList.copyOf(names);
+    ImmutableMap.Builder<String, Integer> slotsByName = ImmutableMap.builder();
+    for (int i = 0; i < this.names.size(); i++) {
+      slotsByName.put(this.names.get(i), i);
+    }
+    this.slotsByName = slotsByName.build();
+  }
+
+  /** Returns the number of slots of a frame with this layout. */
+  int size() {
+    return names.size();
+  }
+
+  /** Returns the name of the variable that lives in the given slot. */
+  String getName(int slot) {
+    return names.get(slot);
+  }
+
+  /** Returns the slot of the local variable with the given name, or -1 if there is none. */
+  int getSlot(String name) {
+    Integer slot = slotsByName.get(name);
+    return slot == null ? -1 : slot;
+  }
+}
@@ -234,6 +234,33 @@ public final class FuncallExpression extends Expression {
 
   private final int numPositionalArgs;
 
+  /**
+   * An inline cache of the Java method that the last call through this node resolved to. Calls at
+   * a given site almost always have receivers of the same class, so this saves the lookups in
+   * {@link #methodCache}. The field is read and written without synchronization: entries are
+   * immutable, so a thread sees either a complete entry or an older one.
+   */
+  @Nullable private CallSiteMethod callSiteMethod;
+
+  /** The result of a method lookup for a call site, and the inputs of that lookup. */
+  private static final class CallSiteMethod {
+    private final Class<?> objClass;
+    private final StarlarkSemantics semantics;
+    private final String methodName;
+    @Nullable private final MethodDescriptor method;
+
+    private CallSiteMethod(
+        Class<?> objClass,
+        StarlarkSemantics semantics,
+        String methodName,
+        @Nullable MethodDescriptor method) {
+      this.objClass = objClass;
+      this.semantics = semantics;
+      this.methodName = methodName;
+      this.method = method;
+    }
+  }
+
   public FuncallExpression(Expression function, ImmutableList<Argument.Passed> arguments) {
     this.function = Preconditions.checkNotNull(function);
     this.arguments = Preconditions.checkNotNull(arguments);
@@ -373,6 +400,25 @@ public final class FuncallExpression extends Expression {
     }
   }
 
+  /**
+   * Like {@link #getMethod(StarlarkSemantics, Class, String)}, but remembers the result for this
+   * call site, so that repeated calls with receivers of the same class don't repeat the lookup.
+   */
+  @Nullable
+  MethodDescriptor getCallSiteMethod(
+      StarlarkSemantics semantics, Class<?> objClass, String methodName) {
+    CallSiteMethod cached = callSiteMethod;
+    if (cached != null
+        && cached.objClass == objClass
+        && cached.semantics == semantics
+        && cached.methodName.equals(methodName)) {
+      return cached.method;
+    }
+    MethodDescriptor method = getMethod(semantics, objClass, methodName);
+    callSiteMethod = new CallSiteMethod(objClass, semantics, methodName, method);
+    return method;
+  }
+
   /**
    * Returns a set of the Skylark name of all Skylark callable methods for object of type {@code
    * objClass}.
@@ -921,7 +967,7 @@ public final class FuncallExpression extends Expression {
     // java method 'bar()', this avoids evaluating 'foo.bar' in isolation (which would require
     // creating a throwaway function-like object).
     MethodDescriptor methodDescriptor =
-        FuncallExpression.getMethod(env.getSemantics(), objValue.getClass(), methodName);
+        getCallSiteMethod(env.getSemantics(), objValue.getClass(), methodName);
     if (methodDescriptor != null && !methodDescriptor.isStructField()) {
       Object[] javaArguments = convertStarlarkArgumentsToJavaMethodArguments(
           methodDescriptor, objValue.getClass(), posargs, kwargs, env);
@@ -964,7 +1010,8 @@ public final class FuncallExpression extends Expression {
     // to StringModule, and thus need to include the actual string as a 'self' parameter.
     posargs.add(0, objValue);
 
-    MethodDescriptor method = getMethod(env.getSemantics(), StringModule.class, methodName);
+    MethodDescriptor method =
+        getCallSiteMethod(env.getSemantics(), StringModule.class, methodName);
     if (method == null) {
       throw missingMethodException(StringModule.class, methodName);
     }
@@ -13,8 +13,10 @@
 // limitations under the License.
 package com.google.devtools.build.lib.syntax;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import java.io.IOException;
+import javax.annotation.Nullable;
 
 /** Syntax node for a function definition. */
 public final class FunctionDefStatement extends Statement {
@@ -23,6 +25,9 @@ public final class FunctionDefStatement extends Statement {
   private final FunctionSignature.WithValues<Expression, Expression> signature;
   private final ImmutableList<Statement> statements;
   private final ImmutableList<Parameter<Expression, Expression>> parameters;
+  // The slots of the local variables. The value is set when the AST has been analysed by
+  // ValidationEnvironment.
+  @Nullable private FrameLayout frameLayout;
 
   public FunctionDefStatement(Identifier identifier,
       Iterable<Parameter<Expression, Expression>> parameters,
@@ -71,6 +76,16 @@ public final class FunctionDefStatement extends Statement {
     return signature;
   }
 
+  @Nullable
+  FrameLayout getFrameLayout() {
+    return frameLayout;
+  }
+
+  void setFrameLayout(FrameLayout frameLayout) {
+    Preconditions.checkState(this.frameLayout == null);
+    this.frameLayout = frameLayout;
+  }
+
   @Override
   public void accept(SyntaxTreeVisitor visitor) {
     visitor.visit(this);
@@ -20,9 +20,6 @@ import java.io.IOException;
 import java.util.Set;
 import javax.annotation.Nullable;
 
-// TODO(bazel-team): For performance, avoid doing HashMap lookups at runtime, and compile local
-// variable access into array reference with a constant index. Variable lookups are currently a
-// speed bottleneck, as previously measured in an experiment.
 /**
  * Syntax node for an identifier.
  *
@@ -36,6 +33,9 @@ public final class Identifier extends Expression {
   // The scope of the variable. The value is set when the AST has been analysed by
   // ValidationEnvironment.
   @Nullable private ValidationEnvironment.Scope scope;
+  // The index of a local variable in the frame of its function, or -1 if the variable is not a
+  // local variable of a function. Also set by ValidationEnvironment.
+  private int slot = -1;
 
   public Identifier(String name) {
     this.name = name;
@@ -73,9 +73,18 @@ public final class Identifier extends Expression {
     return name.hashCode();
   }
 
-  void setScope(ValidationEnvironment.Scope scope) {
+  void setScope(ValidationEnvironment.Scope scope, int slot) {
     Preconditions.checkState(this.scope == null);
     this.scope = scope;
+    this.slot = slot;
+  }
+
+  /**
+   * Returns the index of this variable in the frame of the function that defines it, or -1 if it
+   * has not been resolved to a slot.
+   */
+  int getSlot() {
+    return slot;
   }
 
   @Override
@@ -92,7 +101,7 @@ public final class Identifier extends Expression {
 
     switch (scope) {
       case Local:
-        result = env.localLookup(name);
+        result = slot >= 0 ? env.localLookup(slot, name) : env.localLookup(name);
         break;
       case Module:
         result = env.moduleLookup(name);
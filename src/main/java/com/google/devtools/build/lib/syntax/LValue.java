@@ -89,7 +89,12 @@ public final class LValue extends ASTNode {
   /** Binds a variable to the given value in the environment. */
   private static void assignIdentifier(Identifier ident, Object value, Environment env)
       throws EvalException {
-    env.updateAndExport(ident.getName(), value);
+    int slot = ident.getSlot();
+    if (slot >= 0) {
+      env.updateLocal(slot, ident.getName(), value);
+    } else {
+      env.updateAndExport(ident.getName(), value);
+    }
   }
 
   /**
@@ -196,6 +196,10 @@ public final class Lexer {
       this.lineNumberTable = lineNumberTable;
     }
 
+    LineNumberTable getLineNumberTable() {
+      return lineNumberTable;
+    }
+
     @Override
     public PathFragment getPath() {
       return lineNumberTable.getPath(getStartOffset());
@@ -62,6 +62,15 @@ public class LineNumberTable implements Serializable {
     return new LineNumberTable(buffer, path);
   }
 
+  /** Returns the character offsets of the line starts, see {@link #computeLinestart}. */
+  int[] getLinestart() {
+    return linestart;
+  }
+
+  int getBufferLength() {
+    return bufferLength;
+  }
+
   private int getLineAt(int offset) {
     if (offset < 0) {
       throw new IllegalStateException("Illegal position: " + offset);
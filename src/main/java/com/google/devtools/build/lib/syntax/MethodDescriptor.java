@@ -15,12 +15,15 @@
 package com.google.devtools.build.lib.syntax;
 
 import com.google.common.base.Preconditions;
-import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.devtools.build.lib.events.Location;
 import com.google.devtools.build.lib.skylarkinterface.SkylarkCallable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Arrays;
 
 /**
@@ -29,10 +32,20 @@ import java.util.Arrays;
  *
  * <p>The annotation metadata is duplicated in this class to avoid usage of Java dynamic proxies
  * which are ~7X slower.
+ *
+ * <p>Calls go through a {@link MethodHandle} that is built once per method and takes the receiver
+ * and an {@code Object[]} of arguments, so the JIT can inline the call and the argument conversion
+ * instead of going through the checks and wrapping of {@link Method#invoke} on every call.
  */
 public final class MethodDescriptor {
+  private static final MethodType CALL_TYPE =
+      MethodType.methodType(Object.class, Object.class, Object[].class);
+
   private final Method method;
   private final SkylarkCallable annotation;
+  /** The method, adapted to {@link #CALL_TYPE}. */
+  private final MethodHandle methodHandle;
+  private final boolean returnsVoid;
 
   private final String name;
   private final String doc;
@@ -68,6 +81,8 @@ public final class MethodDescriptor {
       boolean useContext) {
     this.method = method;
     this.annotation = annotation;
+    this.methodHandle = createMethodHandle(method);
+    this.returnsVoid = method.getReturnType().equals(Void.TYPE);
     this.name = name;
     this.doc = doc;
     this.documented = documented;
@@ -116,6 +131,27 @@ public final class MethodDescriptor {
         annotation.useContext());
   }
 
+  /**
+   * Returns a handle that calls {@code method} with a receiver and an array of arguments, and
+   * returns its boxed result, or null for {@code void} methods.
+   */
+  private static MethodHandle createMethodHandle(Method method) {
+    MethodHandle handle;
+    try {
+      // Succeeds for non-public classes as well, since the method has been made accessible.
+      handle = MethodHandles.lookup().unreflect(method);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Cannot access Skylark method " + method, e);
+    }
+    if (Modifier.isStatic(method.getModifiers())) {
+      handle = MethodHandles.dropArguments(handle, 0, Object.class);
+    }
+    return handle
+        .asFixedArity()
+        .asSpreader(Object[].class, method.getParameterCount())
+        .asType(CALL_TYPE);
+  }
+
   /** @return The result of this method invocation on the {@code obj} as a target. */
   public Object invoke(Object obj) throws InvocationTargetException, IllegalAccessException {
     return method.invoke(obj);
@@ -130,46 +166,41 @@ public final class MethodDescriptor {
   public Object call(Object obj, Object[] args, Location loc, Environment env)
       throws EvalException, InterruptedException {
     Preconditions.checkNotNull(obj);
+    Object result;
     try {
-      Object result = method.invoke(obj, args);
-      if (method.getReturnType().equals(Void.TYPE)) {
+      result = methodHandle.invokeExact(obj, args);
+    } catch (FuncallExpression.FuncallException e) {
+      throw new EvalException(loc, e.getMessage());
+    } catch (InterruptedException e) {
+      throw e;
+    } catch (Throwable e) {
+      // Like Method#invoke would, this also covers arguments of the wrong type, which
+      // convertStarlarkArgumentsToJavaMethodArguments should have rejected.
+      throw new EvalException.EvalExceptionWithJavaCause(loc, e);
+    }
+    if (returnsVoid) {
+      return Runtime.NONE;
+    }
+    if (result == null) {
+      if (isAllowReturnNones()) {
         return Runtime.NONE;
-      }
-      if (result == null) {
-        if (isAllowReturnNones()) {
-          return Runtime.NONE;
-        } else {
-          throw new EvalException(
-              loc,
-              "method invocation returned None, please file a bug report: "
-                  + getName()
-                  + Printer.printAbbreviatedList(ImmutableList.copyOf(args), "(", ", ", ")", null));
-        }
-      }
-      // TODO(bazel-team): get rid of this, by having everyone use the Skylark data structures
-      result = SkylarkType.convertToSkylark(result, method, env);
-      if (result != null && !EvalUtils.isSkylarkAcceptable(result.getClass())) {
+      } else {
         throw new EvalException(
             loc,
-            Printer.format(
-                "method '%s' returns an object of invalid type %r", getName(), result.getClass()));
-      }
-      return result;
-    } catch (IllegalAccessException e) {
-      // TODO(bazel-team): Print a nice error message. Maybe the method exists
-      // and an argument is missing or has the wrong type.
-      throw new EvalException(loc, "Method invocation failed: " + e);
-    } catch (InvocationTargetException e) {
-      if (e.getCause() instanceof FuncallExpression.FuncallException) {
-        throw new EvalException(loc, e.getCause().getMessage());
-      } else if (e.getCause() != null) {
-        Throwables.throwIfInstanceOf(e.getCause(), InterruptedException.class);
-        throw new EvalException.EvalExceptionWithJavaCause(loc, e.getCause());
-      } else {
-        // This is unlikely to happen
-        throw new EvalException(loc, "method invocation failed: " + e);
+            "method invocation returned None, please file a bug report: "
+                + getName()
+                + Printer.printAbbreviatedList(ImmutableList.copyOf(args), "(", ", ", ")", null));
       }
     }
+    // TODO(bazel-team): get rid of this, by having everyone use the Skylark data structures
+    result = SkylarkType.convertToSkylark(result, method, env);
+    if (result != null && !EvalUtils.isSkylarkAcceptable(result.getClass())) {
+      throw new EvalException(
+          loc,
+          Printer.format(
+              "method '%s' returns an object of invalid type %r", getName(), result.getClass()));
+    }
+    return result;
   }
 
   /** @see SkylarkCallable#name() */
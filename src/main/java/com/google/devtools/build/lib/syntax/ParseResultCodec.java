@@ -0,0 +1,658 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.syntax;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.build.lib.events.Location;
+import com.google.devtools.build.lib.syntax.AbstractComprehension.Clause;
+import com.google.devtools.build.lib.syntax.AbstractComprehension.ForClause;
+import com.google.devtools.build.lib.syntax.AbstractComprehension.IfClause;
+import com.google.devtools.build.lib.syntax.DictionaryLiteral.DictionaryEntryLiteral;
+import com.google.devtools.build.lib.syntax.IfStatement.ConditionalStatements;
+import com.google.devtools.build.lib.syntax.Lexer.LexerLocation;
+import com.google.devtools.build.lib.syntax.Parser.ParseResult;
+import com.google.devtools.build.lib.vfs.PathFragment;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Converts the {@link ParseResult} of a file to a compact binary form and back, so that the
+ * syntax tree of a file whose contents did not change can be restored without lexing and parsing
+ * the file again.
+ *
+ * <p>Only results without errors can be encoded. Locations are stored as offsets into the file,
+ * together with the line starts of the file, and are restored for the path that the file is loaded
+ * from. Restored trees have not been validated yet.
+ */
+public final class ParseResultCodec {
+
+  /** Must be changed whenever the encoding or the syntax tree classes change. */
+  private static final int FORMAT_VERSION = 1;
+
+  private static final int NO_LOCATION = 0;
+  private static final int LEXER_LOCATION = 1;
+  private static final int PATH_LOCATION = 2;
+
+  private static final int POSITIONAL = 0;
+  private static final int KEYWORD = 1;
+  private static final int STAR = 2;
+  private static final int STAR_STAR = 3;
+  private static final int MANDATORY = 4;
+  private static final int OPTIONAL = 5;
+
+  private static final int LIST_COMPREHENSION = 0;
+  private static final int DICT_COMPREHENSION = 1;
+
+  private ParseResultCodec() {}
+
+  /**
+   * Returns the encoded form of the given result.
+   *
+   * @throws IllegalArgumentException if the result contains errors, or nodes that were not created
+   *     by the {@link Parser}
+   */
+  public static byte[] encode(ParseResult result) {
+    Preconditions.checkArgument(!result.containsErrors, "Cannot encode a result with errors");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      Writer writer = new Writer(CodedOutputStream.newInstance(bytes));
+      writer.writeResult(result);
+      writer.out.flush();
+    } catch (IOException e) {
+      throw new IllegalStateException("Writing to memory cannot fail", e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Restores a result from its encoded form, with locations in the file at {@code path}.
+   *
+   * @throws IOException if the data is malformed or was written by a different version of this
+   *     class
+   */
+  public static ParseResult decode(byte[] bytes, PathFragment path) throws IOException {
+    try {
+      return new Reader(CodedInputStream.newInstance(bytes), path).readResult();
+    } catch (RuntimeException e) {
+      throw new IOException("Malformed parse result: " + e.getMessage(), e);
+    }
+  }
+
+  private static final class Writer {
+    final CodedOutputStream out;
+    final Map<String, Integer> strings = new HashMap<>();
+    @Nullable LineNumberTable lineNumberTable;
+
+    Writer(CodedOutputStream out) {
+      this.out = out;
+    }
+
+    void writeResult(ParseResult result) throws IOException {
+      lineNumberTable = findLineNumberTable(result);
+      out.writeInt32NoTag(FORMAT_VERSION);
+      if (lineNumberTable == null) {
+        out.writeBoolNoTag(false);
+      } else {
+        out.writeBoolNoTag(true);
+        int[] linestart = lineNumberTable.getLinestart();
+        out.writeUInt32NoTag(linestart.length);
+        for (int start : linestart) {
+          out.writeUInt32NoTag(start);
+        }
+        out.writeUInt32NoTag(lineNumberTable.getBufferLength());
+      }
+      writeLocation(result.location);
+      writeStatements(result.statements);
+      out.writeUInt32NoTag(result.comments.size());
+      for (Comment comment : result.comments) {
+        writeString(comment.getValue());
+        writeLocation(comment.getLocation());
+      }
+    }
+
+    @Nullable
+    private static LineNumberTable findLineNumberTable(ParseResult result) {
+      if (result.location instanceof LexerLocation) {
+        return ((LexerLocation) result.location).getLineNumberTable();
+      }
+      for (Comment comment : result.comments) {
+        if (comment.getLocation() instanceof LexerLocation) {
+          return ((LexerLocation) comment.getLocation()).getLineNumberTable();
+        }
+      }
+      return null;
+    }
+
+    void writeString(String value) throws IOException {
+      Integer index = strings.get(value);
+      if (index != null) {
+        out.writeUInt32NoTag(index + 1);
+      } else {
+        strings.put(value, strings.size());
+        out.writeUInt32NoTag(0);
+        out.writeStringNoTag(value);
+      }
+    }
+
+    void writeLocation(@Nullable Location location) throws IOException {
+      if (location == null) {
+        out.writeUInt32NoTag(NO_LOCATION);
+      } else if (location instanceof LexerLocation) {
+        Preconditions.checkArgument(
+            ((LexerLocation) location).getLineNumberTable() == lineNumberTable,
+            "Locations of the result must all belong to the same file");
+        out.writeUInt32NoTag(LEXER_LOCATION);
+        out.writeUInt32NoTag(location.getStartOffset());
+        out.writeUInt32NoTag(location.getEndOffset());
+      } else if (location.getStartOffset() == 0
+          && location.getEndOffset() == 0
+          && location.getStartLineAndColumn() == null) {
+        // The location of an empty file.
+        out.writeUInt32NoTag(PATH_LOCATION);
+      } else {
+        throw new IllegalArgumentException("Unsupported location: " + location);
+      }
+    }
+
+    void writeStatements(List<Statement> statements) throws IOException {
+      out.writeUInt32NoTag(statements.size());
+      for (Statement statement : statements) {
+        writeStatement(statement);
+      }
+    }
+
+    void writeStatement(Statement statement) throws IOException {
+      out.writeUInt32NoTag(statement.kind().ordinal());
+      writeLocation(statement.getLocation());
+      switch (statement.kind()) {
+        case ASSIGNMENT:
+          AssignmentStatement assignment = (AssignmentStatement) statement;
+          writeExpression(assignment.getLValue().getExpression());
+          writeExpression(assignment.getExpression());
+          break;
+        case AUGMENTED_ASSIGNMENT:
+          AugmentedAssignmentStatement augmented = (AugmentedAssignmentStatement) statement;
+          out.writeUInt32NoTag(augmented.getOperator().ordinal());
+          writeExpression(augmented.getLValue().getExpression());
+          writeExpression(augmented.getExpression());
+          break;
+        case CONDITIONAL:
+          ConditionalStatements conditional = (ConditionalStatements) statement;
+          writeExpression(conditional.getCondition());
+          writeStatements(conditional.getStatements());
+          break;
+        case EXPRESSION:
+          writeExpression(((ExpressionStatement) statement).getExpression());
+          break;
+        case FLOW:
+          out.writeUInt32NoTag(((FlowStatement) statement).getKind().ordinal());
+          break;
+        case FOR:
+          ForStatement forStatement = (ForStatement) statement;
+          writeExpression(forStatement.getVariable().getExpression());
+          writeExpression(forStatement.getCollection());
+          writeStatements(forStatement.getBlock());
+          break;
+        case FUNCTION_DEF:
+          FunctionDefStatement def = (FunctionDefStatement) statement;
+          writeExpression(def.getIdentifier());
+          out.writeUInt32NoTag(def.getParameters().size());
+          for (Parameter<Expression, Expression> parameter : def.getParameters()) {
+            writeArgument(parameter);
+          }
+          writeStatements(def.getStatements());
+          break;
+        case IF:
+          IfStatement ifStatement = (IfStatement) statement;
+          writeStatements(ImmutableList.copyOf(ifStatement.getThenBlocks()));
+          writeStatements(ifStatement.getElseBlock());
+          break;
+        case LOAD:
+          LoadStatement load = (LoadStatement) statement;
+          writeExpression(load.getImport());
+          out.writeUInt32NoTag(load.getBindings().size());
+          for (LoadStatement.Binding binding : load.getBindings()) {
+            writeExpression(binding.getLocalName());
+            writeExpression(binding.getOriginalName());
+          }
+          break;
+        case PASS:
+          break;
+        case RETURN:
+          writeOptionalExpression(((ReturnStatement) statement).getReturnExpression());
+          break;
+      }
+    }
+
+    void writeArgument(Argument argument) throws IOException {
+      writeLocation(argument.getLocation());
+      if (argument instanceof Parameter) {
+        Parameter<?, ?> parameter = (Parameter<?, ?>) argument;
+        Preconditions.checkArgument(parameter.getType() == null, "Typed parameter: %s", parameter);
+        if (parameter.isMandatory()) {
+          out.writeUInt32NoTag(MANDATORY);
+        } else if (parameter.isOptional()) {
+          out.writeUInt32NoTag(OPTIONAL);
+          writeExpression((Expression) parameter.getDefaultValue());
+        } else if (parameter.isStar()) {
+          out.writeUInt32NoTag(STAR);
+        } else {
+          out.writeUInt32NoTag(STAR_STAR);
+        }
+        writeOptionalExpression(parameter.getIdentifier());
+        return;
+      }
+      Argument.Passed passed = (Argument.Passed) argument;
+      if (passed.isPositional()) {
+        out.writeUInt32NoTag(POSITIONAL);
+      } else if (passed.isKeyword()) {
+        out.writeUInt32NoTag(KEYWORD);
+        writeExpression(passed.getIdentifier());
+      } else if (passed.isStar()) {
+        out.writeUInt32NoTag(STAR);
+      } else {
+        out.writeUInt32NoTag(STAR_STAR);
+      }
+      writeExpression(passed.getValue());
+    }
+
+    void writeOptionalExpression(@Nullable Expression expression) throws IOException {
+      out.writeBoolNoTag(expression != null);
+      if (expression != null) {
+        writeExpression(expression);
+      }
+    }
+
+    void writeExpressions(List<Expression> expressions) throws IOException {
+      out.writeUInt32NoTag(expressions.size());
+      for (Expression expression : expressions) {
+        writeExpression(expression);
+      }
+    }
+
+    void writeExpression(Expression expression) throws IOException {
+      out.writeUInt32NoTag(expression.kind().ordinal());
+      writeLocation(expression.getLocation());
+      switch (expression.kind()) {
+        case BINARY_OPERATOR:
+          BinaryOperatorExpression binary = (BinaryOperatorExpression) expression;
+          out.writeUInt32NoTag(binary.getOperator().ordinal());
+          writeExpression(binary.getLhs());
+          writeExpression(binary.getRhs());
+          break;
+        case COMPREHENSION:
+          AbstractComprehension comprehension = (AbstractComprehension) expression;
+          out.writeUInt32NoTag(
+              comprehension instanceof DictComprehension ? DICT_COMPREHENSION : LIST_COMPREHENSION);
+          writeExpressions(comprehension.getOutputExpressions());
+          out.writeUInt32NoTag(comprehension.getClauses().size());
+          for (Clause clause : comprehension.getClauses()) {
+            out.writeUInt32NoTag(clause.getKind().ordinal());
+            if (clause.getLValue() != null) {
+              writeExpression(clause.getLValue().getExpression());
+            }
+            writeExpression(clause.getExpression());
+          }
+          break;
+        case CONDITIONAL:
+          ConditionalExpression conditional = (ConditionalExpression) expression;
+          writeExpression(conditional.getThenCase());
+          writeExpression(conditional.getCondition());
+          writeExpression(conditional.getElseCase());
+          break;
+        case DICTIONARY_LITERAL:
+          List<DictionaryEntryLiteral> entries = ((DictionaryLiteral) expression).getEntries();
+          out.writeUInt32NoTag(entries.size());
+          for (DictionaryEntryLiteral entry : entries) {
+            writeLocation(entry.getLocation());
+            writeExpression(entry.getKey());
+            writeExpression(entry.getValue());
+          }
+          break;
+        case DOT:
+          DotExpression dot = (DotExpression) expression;
+          writeExpression(dot.getObject());
+          writeExpression(dot.getField());
+          break;
+        case FUNCALL:
+          FuncallExpression call = (FuncallExpression) expression;
+          writeExpression(call.getFunction());
+          out.writeUInt32NoTag(call.getArguments().size());
+          for (Argument.Passed argument : call.getArguments()) {
+            writeArgument(argument);
+          }
+          break;
+        case IDENTIFIER:
+          writeString(((Identifier) expression).getName());
+          break;
+        case INDEX:
+          IndexExpression index = (IndexExpression) expression;
+          writeExpression(index.getObject());
+          writeExpression(index.getKey());
+          break;
+        case INTEGER_LITERAL:
+          out.writeInt32NoTag(((IntegerLiteral) expression).getValue());
+          break;
+        case LIST_LITERAL:
+          ListLiteral list = (ListLiteral) expression;
+          out.writeUInt32NoTag(list.getKind().ordinal());
+          writeExpressions(list.getElements());
+          break;
+        case SLICE:
+          SliceExpression slice = (SliceExpression) expression;
+          writeExpression(slice.getObject());
+          writeOptionalExpression(slice.getStart());
+          writeOptionalExpression(slice.getEnd());
+          writeOptionalExpression(slice.getStep());
+          break;
+        case STRING_LITERAL:
+          writeString(((StringLiteral) expression).getValue());
+          break;
+        case UNARY_OPERATOR:
+          UnaryOperatorExpression unary = (UnaryOperatorExpression) expression;
+          out.writeUInt32NoTag(unary.getOperator().ordinal());
+          writeExpression(unary.getOperand());
+          break;
+      }
+    }
+  }
+
+  private static final class Reader {
+    final CodedInputStream in;
+    final PathFragment path;
+    final List<String> strings = new ArrayList<>();
+    @Nullable LineNumberTable lineNumberTable;
+
+    Reader(CodedInputStream in, PathFragment path) {
+      this.in = in;
+      this.path = path;
+    }
+
+    ParseResult readResult() throws IOException {
+      int version = in.readInt32();
+      if (version != FORMAT_VERSION) {
+        throw new IOException("Unsupported format version " + version);
+      }
+      if (in.readBool()) {
+        int[] linestart = new int[in.readUInt32()];
+        for (int i = 0; i < linestart.length; i++) {
+          linestart[i] = in.readUInt32();
+        }
+        lineNumberTable = new LineNumberTable(linestart, path, in.readUInt32());
+      }
+      Location location = readLocation();
+      List<Statement> statements = readStatements();
+      int commentCount = in.readUInt32();
+      List<Comment> comments = new ArrayList<>(commentCount);
+      for (int i = 0; i < commentCount; i++) {
+        Comment comment = new Comment(readString());
+        comment.setLocation(readLocation());
+        comments.add(comment);
+      }
+      if (!in.isAtEnd()) {
+        throw new IOException("Trailing data after parse result");
+      }
+      return new ParseResult(statements, comments, location, /*containsErrors=*/ false);
+    }
+
+    String readString() throws IOException {
+      int index = in.readUInt32();
+      if (index > 0) {
+        return strings.get(index - 1);
+      }
+      String value = in.readString();
+      strings.add(value);
+      return value;
+    }
+
+    @Nullable
+    Location readLocation() throws IOException {
+      switch (in.readUInt32()) {
+        case NO_LOCATION:
+          return null;
+        case LEXER_LOCATION:
+          int start = in.readUInt32();
+          int end = in.readUInt32();
+          return new LexerLocation(Preconditions.checkNotNull(lineNumberTable), start, end);
+        case PATH_LOCATION:
+          return Location.fromPathFragment(path);
+        default:
+          throw new IOException("Unknown location type");
+      }
+    }
+
+    <NodeT extends ASTNode> NodeT withLocation(NodeT node, @Nullable Location location) {
+      node.setLocation(location);
+      return node;
+    }
+
+    List<Statement> readStatements() throws IOException {
+      int count = in.readUInt32();
+      List<Statement> statements = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        statements.add(readStatement());
+      }
+      return statements;
+    }
+
+    Statement readStatement() throws IOException {
+      Statement.Kind kind = Statement.Kind.values()[in.readUInt32()];
+      Location location = readLocation();
+      switch (kind) {
+        case ASSIGNMENT:
+          return withLocation(
+              new AssignmentStatement(new LValue(readExpression()), readExpression()), location);
+        case AUGMENTED_ASSIGNMENT:
+          Operator operator = Operator.values()[in.readUInt32()];
+          return withLocation(
+              new AugmentedAssignmentStatement(
+                  operator, new LValue(readExpression()), readExpression()),
+              location);
+        case CONDITIONAL:
+          return withLocation(
+              new ConditionalStatements(readExpression(), readStatements()), location);
+        case EXPRESSION:
+          return withLocation(new ExpressionStatement(readExpression()), location);
+        case FLOW:
+          return withLocation(
+              new FlowStatement(FlowStatement.Kind.values()[in.readUInt32()]), location);
+        case FOR:
+          return withLocation(
+              new ForStatement(new LValue(readExpression()), readExpression(), readStatements()),
+              location);
+        case FUNCTION_DEF:
+          Identifier identifier = (Identifier) readExpression();
+          int parameterCount = in.readUInt32();
+          List<Parameter<Expression, Expression>> parameters = new ArrayList<>(parameterCount);
+          for (int i = 0; i < parameterCount; i++) {
+            parameters.add(readParameter());
+          }
+          FunctionSignature.WithValues<Expression, Expression> signature;
+          try {
+            signature = FunctionSignature.WithValues.of(parameters);
+          } catch (FunctionSignature.SignatureException e) {
+            throw new IOException(e.getMessage(), e);
+          }
+          return withLocation(
+              new FunctionDefStatement(identifier, parameters, signature, readStatements()),
+              location);
+        case IF:
+          List<ConditionalStatements> thenBlocks = new ArrayList<>();
+          for (Statement thenBlock : readStatements()) {
+            thenBlocks.add((ConditionalStatements) thenBlock);
+          }
+          return withLocation(new IfStatement(thenBlocks, readStatements()), location);
+        case LOAD:
+          StringLiteral imp = (StringLiteral) readExpression();
+          int bindingCount = in.readUInt32();
+          List<LoadStatement.Binding> bindings = new ArrayList<>(bindingCount);
+          for (int i = 0; i < bindingCount; i++) {
+            bindings.add(
+                new LoadStatement.Binding(
+                    (Identifier) readExpression(), (Identifier) readExpression()));
+          }
+          return withLocation(new LoadStatement(imp, bindings), location);
+        case PASS:
+          return withLocation(new PassStatement(), location);
+        case RETURN:
+          return withLocation(new ReturnStatement(readOptionalExpression()), location);
+      }
+      throw new IllegalStateException(kind.toString());
+    }
+
+    Parameter<Expression, Expression> readParameter() throws IOException {
+      Location location = readLocation();
+      int type = in.readUInt32();
+      switch (type) {
+        case MANDATORY:
+          return withLocation(new Parameter.Mandatory<>(readIdentifier()), location);
+        case OPTIONAL:
+          Expression defaultValue = readExpression();
+          return withLocation(new Parameter.Optional<>(readIdentifier(), defaultValue), location);
+        case STAR:
+          return withLocation(new Parameter.Star<>(readIdentifier()), location);
+        case STAR_STAR:
+          return withLocation(new Parameter.StarStar<>(readIdentifier()), location);
+        default:
+          throw new IOException("Unknown parameter type " + type);
+      }
+    }
+
+    @Nullable
+    Identifier readIdentifier() throws IOException {
+      return (Identifier) readOptionalExpression();
+    }
+
+    Argument.Passed readArgument() throws IOException {
+      Location location = readLocation();
+      int type = in.readUInt32();
+      switch (type) {
+        case POSITIONAL:
+          return withLocation(new Argument.Positional(readExpression()), location);
+        case KEYWORD:
+          Identifier identifier = (Identifier) readExpression();
+          return withLocation(new Argument.Keyword(identifier, readExpression()), location);
+        case STAR:
+          return withLocation(new Argument.Star(readExpression()), location);
+        case STAR_STAR:
+          return withLocation(new Argument.StarStar(readExpression()), location);
+        default:
+          throw new IOException("Unknown argument type " + type);
+      }
+    }
+
+    @Nullable
+    Expression readOptionalExpression() throws IOException {
+      return in.readBool() ? readExpression() : null;
+    }
+
+    List<Expression> readExpressions() throws IOException {
+      int count = in.readUInt32();
+      List<Expression> expressions = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        expressions.add(readExpression());
+      }
+      return expressions;
+    }
+
+    Expression readExpression() throws IOException {
+      Expression.Kind kind = Expression.Kind.values()[in.readUInt32()];
+      Location location = readLocation();
+      switch (kind) {
+        case BINARY_OPERATOR:
+          Operator operator = Operator.values()[in.readUInt32()];
+          return withLocation(
+              new BinaryOperatorExpression(operator, readExpression(), readExpression()),
+              location);
+        case COMPREHENSION:
+          boolean isDict = in.readUInt32() == DICT_COMPREHENSION;
+          List<Expression> outputs = readExpressions();
+          int clauseCount = in.readUInt32();
+          List<Clause> clauses = new ArrayList<>(clauseCount);
+          for (int i = 0; i < clauseCount; i++) {
+            Clause.Kind clauseKind = Clause.Kind.values()[in.readUInt32()];
+            if (clauseKind == Clause.Kind.FOR) {
+              clauses.add(new ForClause(new LValue(readExpression()), readExpression()));
+            } else {
+              clauses.add(new IfClause(readExpression()));
+            }
+          }
+          return withLocation(
+              isDict
+                  ? new DictComprehension(clauses, outputs.get(0), outputs.get(1))
+                  : new ListComprehension(clauses, outputs.get(0)),
+              location);
+        case CONDITIONAL:
+          return withLocation(
+              new ConditionalExpression(readExpression(), readExpression(), readExpression()),
+              location);
+        case DICTIONARY_LITERAL:
+          int entryCount = in.readUInt32();
+          List<DictionaryEntryLiteral> entries = new ArrayList<>(entryCount);
+          for (int i = 0; i < entryCount; i++) {
+            Location entryLocation = readLocation();
+            entries.add(
+                withLocation(
+                    new DictionaryEntryLiteral(readExpression(), readExpression()),
+                    entryLocation));
+          }
+          return withLocation(new DictionaryLiteral(entries), location);
+        case DOT:
+          return withLocation(
+              new DotExpression(readExpression(), (Identifier) readExpression()), location);
+        case FUNCALL:
+          Expression function = readExpression();
+          int argumentCount = in.readUInt32();
+          ImmutableList.Builder<Argument.Passed> arguments = ImmutableList.builder();
+          for (int i = 0; i < argumentCount; i++) {
+            arguments.add(readArgument());
+          }
+          return withLocation(new FuncallExpression(function, arguments.build()), location);
+        case IDENTIFIER:
+          return withLocation(Identifier.of(readString()), location);
+        case INDEX:
+          return withLocation(new IndexExpression(readExpression(), readExpression()), location);
+        case INTEGER_LITERAL:
+          return withLocation(new IntegerLiteral(in.readInt32()), location);
+        case LIST_LITERAL:
+          ListLiteral.Kind listKind = ListLiteral.Kind.values()[in.readUInt32()];
+          return withLocation(new ListLiteral(listKind, readExpressions()), location);
+        case SLICE:
+          return withLocation(
+              new SliceExpression(
+                  readExpression(),
+                  readOptionalExpression(),
+                  readOptionalExpression(),
+                  readOptionalExpression()),
+              location);
+        case STRING_LITERAL:
+          return withLocation(new StringLiteral(readString()), location);
+        case UNARY_OPERATOR:
+          UnaryOperator unaryOperator = UnaryOperator.values()[in.readUInt32()];
+          return withLocation(
+              new UnaryOperatorExpression(unaryOperator, readExpression()), location);
+      }
+      throw new IllegalStateException(kind.toString());
+    }
+  }
+}
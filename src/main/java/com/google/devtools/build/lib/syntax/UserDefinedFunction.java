@@ -13,6 +13,7 @@
 // limitations under the License.
 package com.google.devtools.build.lib.syntax;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.devtools.build.lib.cmdline.Label;
 import com.google.devtools.build.lib.events.Location;
@@ -21,6 +22,7 @@ import com.google.devtools.build.lib.profiler.ProfilerTask;
 import com.google.devtools.build.lib.profiler.SilentCloseable;
 import com.google.devtools.build.lib.skylarkinterface.SkylarkPrinter;
 import com.google.devtools.build.lib.syntax.Environment.LexicalFrame;
+import javax.annotation.Nullable;
 
 /**
  * The actual function registered in the environment. This function is defined in the parsed code
@@ -33,15 +35,43 @@ public class UserDefinedFunction extends BaseFunction {
   // we close over the globals at the time of definition
   private final Environment.GlobalFrame definitionGlobals;
 
+  // The slots of the local variables, or null if the body has not been analysed by
+  // ValidationEnvironment, in which case the locals are kept by name.
+  @Nullable private final FrameLayout frameLayout;
+
+  // The slot of each parameter, in the order of the signature's names.
+  @Nullable private final int[] parameterSlots;
+
   public UserDefinedFunction(
       String name,
       Location location,
       FunctionSignature.WithValues<Object, SkylarkType> signature,
       ImmutableList<Statement> statements,
       Environment.GlobalFrame definitionGlobals) {
+    this(name, location, signature, statements, definitionGlobals, /*frameLayout=*/ null);
+  }
+
+  UserDefinedFunction(
+      String name,
+      Location location,
+      FunctionSignature.WithValues<Object, SkylarkType> signature,
+      ImmutableList<Statement> statements,
+      Environment.GlobalFrame definitionGlobals,
+      @Nullable FrameLayout frameLayout) {
     super(name, signature, location);
     this.statements = statements;
     this.definitionGlobals = definitionGlobals;
+    this.frameLayout = frameLayout;
+    if (frameLayout != null) {
+      ImmutableList<String> names = signature.getSignature().getNames();
+      parameterSlots = new int[names.size()];
+      for (int i = 0; i < names.size(); i++) {
+        parameterSlots[i] = frameLayout.getSlot(names.get(i));
+        Preconditions.checkState(parameterSlots[i] >= 0, "no slot for parameter %s", names.get(i));
+      }
+    } else {
+      parameterSlots = null;
+    }
   }
 
   public ImmutableList<Statement> getStatements() {
@@ -65,7 +95,10 @@ public class UserDefinedFunction extends BaseFunction {
     }
 
     ImmutableList<String> names = signature.getSignature().getNames();
-    LexicalFrame lexicalFrame = LexicalFrame.create(env.mutability(), /*numArgs=*/ names.size());
+    LexicalFrame lexicalFrame =
+        frameLayout != null
+            ? LexicalFrame.create(env.mutability(), frameLayout)
+            : LexicalFrame.create(env.mutability(), /*numArgs=*/ names.size());
     try (SilentCloseable c =
         Profiler.instance().profile(ProfilerTask.STARLARK_USER_FN, getName())) {
       env.enterScope(this, lexicalFrame, ast, definitionGlobals);
@@ -73,7 +106,11 @@ public class UserDefinedFunction extends BaseFunction {
       // Registering the functions's arguments as variables in the local Environment
       // foreach loop is not used to avoid iterator overhead
       for (int i = 0; i < names.size(); ++i) {
-        env.update(names.get(i), arguments[i]);
+        if (parameterSlots != null) {
+          env.updateLocal(parameterSlots[i], names.get(i), arguments[i]);
+        } else {
+          env.update(names.get(i), arguments[i]);
+        }
       }
 
       Eval eval = Eval.fromEnvironment(env);
@@ -19,7 +19,9 @@ import com.google.devtools.build.lib.events.Event;
 import com.google.devtools.build.lib.events.EventHandler;
 import com.google.devtools.build.lib.events.Location;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
 
@@ -32,6 +34,9 @@ import javax.annotation.Nullable;
  * <p>When a variable is defined, it is visible in the entire block. For example, a global variable
  * is visible in the entire file; a variable in a function is visible in the entire function block
  * (even on the lines before its first assignment).
+ *
+ * <p>Local variables of a function are also assigned to slots of a {@link FrameLayout}, so that
+ * calls of the function can keep them in an array instead of looking them up by name.
  */
 public final class ValidationEnvironment extends SyntaxTreeVisitor {
 
@@ -59,9 +64,16 @@ public final class ValidationEnvironment extends SyntaxTreeVisitor {
     private final Scope scope;
     @Nullable private final Block parent;
 
-    Block(Scope scope, @Nullable Block parent) {
+    /**
+     * The slot of each local variable of the function this block belongs to, shared with the blocks
+     * of comprehensions in the function body. Null outside of functions.
+     */
+    @Nullable private final Map<String, Integer> frameSlots;
+
+    Block(Scope scope, @Nullable Block parent, @Nullable Map<String, Integer> frameSlots) {
       this.scope = scope;
       this.parent = parent;
+      this.frameSlots = frameSlots;
     }
   }
 
@@ -93,7 +105,7 @@ public final class ValidationEnvironment extends SyntaxTreeVisitor {
   ValidationEnvironment(Environment env) {
     Preconditions.checkArgument(env.isGlobal());
     this.env = env;
-    block = new Block(Scope.Universe, null);
+    block = new Block(Scope.Universe, null, null);
     Set<String> builtinVariables = env.getVariableNames();
     block.variables.addAll(builtinVariables);
   }
@@ -160,7 +172,10 @@ public final class ValidationEnvironment extends SyntaxTreeVisitor {
       for (Expression e : ((ListLiteral) expr).getElements()) {
         validateLValue(loc, e);
       }
-    } else if (!(expr instanceof Identifier)) {
+    } else if (expr instanceof Identifier) {
+      // The variable was declared by collectDefinitions; this only resolves it.
+      visit((Identifier) expr);
+    } else {
       throw new ValidationException(loc, "cannot assign to '" + expr + "'");
     }
   }
@@ -178,7 +193,8 @@ public final class ValidationEnvironment extends SyntaxTreeVisitor {
       }
       throw new ValidationException(node.createInvalidIdentifierException(getAllSymbols()));
     }
-    node.setScope(b.scope);
+    Integer slot = b.frameSlots == null ? null : b.frameSlots.get(node.getName());
+    node.setScope(b.scope, slot == null ? -1 : slot);
   }
 
   @Override
@@ -232,7 +248,10 @@ public final class ValidationEnvironment extends SyntaxTreeVisitor {
 
   @Override
   public void visit(AbstractComprehension node) {
-    openBlock(Scope.Local);
+    // Inside a function, the loop variables live in the frame of the function. Like at runtime,
+    // where they are removed again afterwards, they share the slot of a local variable with the
+    // same name.
+    openBlock(Scope.Local, block.frameSlots);
     for (AbstractComprehension.Clause clause : node.getClauses()) {
       if (clause.getLValue() != null) {
         collectDefinitions(clause.getLValue());
@@ -249,7 +268,8 @@ public final class ValidationEnvironment extends SyntaxTreeVisitor {
         visit(param.getDefaultValue());
       }
     }
-    openBlock(Scope.Local);
+    Map<String, Integer> frameSlots = new LinkedHashMap<>();
+    openBlock(Scope.Local, frameSlots);
     for (Parameter<Expression, Expression> param : node.getParameters()) {
       if (param.hasName()) {
         declare(param.getName(), param.getLocation());
@@ -258,6 +278,7 @@ public final class ValidationEnvironment extends SyntaxTreeVisitor {
     collectDefinitions(node.getStatements());
     visitAll(node.getStatements());
     closeBlock();
+    node.setFrameLayout(new FrameLayout(frameSlots.keySet()));
   }
 
   @Override
@@ -291,6 +312,9 @@ public final class ValidationEnvironment extends SyntaxTreeVisitor {
           "https://bazel.build/versions/master/docs/skylark/errors/read-only-variable.html");
     }
     block.variables.add(varname);
+    if (block.frameSlots != null) {
+      block.frameSlots.putIfAbsent(varname, block.frameSlots.size());
+    }
   }
 
   /** Returns the nearest Block that defines a symbol. */
@@ -349,7 +373,7 @@ public final class ValidationEnvironment extends SyntaxTreeVisitor {
       checkLoadAfterStatement(statements);
     }
 
-    openBlock(Scope.Module);
+    openBlock(Scope.Module, null);
 
     // Add each variable defined by statements, not including definitions that appear in
     // sub-scopes of the given statements (function bodies and comprehensions).
@@ -384,9 +408,12 @@ public final class ValidationEnvironment extends SyntaxTreeVisitor {
     }
   }
 
-  /** Open a new lexical block that will contain the future declarations. */
-  private void openBlock(Scope scope) {
-    block = new Block(scope, block);
+  /**
+   * Open a new lexical block that will contain the future declarations. If {@code frameSlots} is
+   * not null, each variable declared in the block that has no slot yet gets the next one.
+   */
+  private void openBlock(Scope scope, @Nullable Map<String, Integer> frameSlots) {
+    block = new Block(scope, block, frameSlots);
   }
 
   /** Close a lexical block (and lose all declarations it contained). */
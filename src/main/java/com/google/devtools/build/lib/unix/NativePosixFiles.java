@@ -214,6 +214,21 @@ public final class NativePosixFiles {
    */
   public static native ErrnoFileStatus errnoLstat(String path);
 
+  /**
+   * Native wrapper around the POSIX stat(2) or lstat(2) syscall for many paths at once, which pays
+   * for the JNI transition once per batch instead of once per path. Large batches are split
+   * between up to {@code parallelism} native threads, which helps to hide the latency of network
+   * filesystems.
+   *
+   * @param paths the files to stat.
+   * @param followSymlinks whether to call stat(2) rather than lstat(2).
+   * @param parallelism the maximum number of threads to use.
+   * @return an ErrnoFileStatus instance for each path, in the same order. If there was an error,
+   *   its hasError() method will return true, and all stat information is undefined.
+   */
+  public static native ErrnoFileStatus[] errnoStatBatch(
+      String[] paths, boolean followSymlinks, int parallelism);
+
   /**
    * Native wrapper around POSIX utime(2) syscall.
    *
@@ -372,6 +387,19 @@ public final class NativePosixFiles {
   private static native Dirents readdir(String path, char typeCode)
       throws IOException;
 
+  /**
+   * Copies the contents of the file "from" to "to", which is created if it does not exist and
+   * truncated otherwise, without moving the data through user space. Uses a reflink (FICLONE) if
+   * the file system supports it and copy_file_range(2) otherwise.
+   *
+   * @param from the source file.
+   * @param to the destination file.
+   * @return false if no kernel-side copy is possible for these files, in which case "to" has been
+   *     created empty and the caller must copy the contents itself.
+   * @throws IOException if the copy failed for any other reason.
+   */
+  public static native boolean copyFileContents(String from, String to) throws IOException;
+
   /**
    * Native wrapper around POSIX rename(2) syscall.
    *
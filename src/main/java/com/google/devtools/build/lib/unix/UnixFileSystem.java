@@ -15,6 +15,7 @@ package com.google.devtools.build.lib.unix;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
 import com.google.devtools.build.lib.profiler.Profiler;
@@ -22,17 +23,21 @@ import com.google.devtools.build.lib.profiler.ProfilerTask;
 import com.google.devtools.build.lib.unix.NativePosixFiles.Dirents;
 import com.google.devtools.build.lib.unix.NativePosixFiles.ReadTypes;
 import com.google.devtools.build.lib.vfs.AbstractFileSystemWithCustomStat;
+import com.google.devtools.build.lib.vfs.BatchStat;
 import com.google.devtools.build.lib.vfs.DigestHashFunction;
 import com.google.devtools.build.lib.vfs.DigestHashFunction.DefaultHashFunctionNotSetException;
 import com.google.devtools.build.lib.vfs.Dirent;
 import com.google.devtools.build.lib.vfs.FileStatus;
+import com.google.devtools.build.lib.vfs.FileStatusWithDigestAdapter;
 import com.google.devtools.build.lib.vfs.Path;
 import com.google.devtools.build.lib.vfs.PathFragment;
 import com.google.devtools.build.lib.vfs.Symlinks;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * This class implements the FileSystem interface using direct calls to the UNIX filesystem.
@@ -40,10 +45,36 @@ import java.util.List;
 @ThreadSafe
 public class UnixFileSystem extends AbstractFileSystemWithCustomStat {
 
-  public UnixFileSystem() throws DefaultHashFunctionNotSetException {}
+  /** The maximum number of native threads used to stat a batch of paths. */
+  private static final int BATCH_STAT_PARALLELISM = 8;
+
+  /**
+   * The name of an extended attribute that holds the digest of a file, as computed by the file
+   * system, or null if digests are always computed from the file contents.
+   */
+  @Nullable private final String hashAttributeName;
+
+  public UnixFileSystem() throws DefaultHashFunctionNotSetException {
+    this.hashAttributeName = null;
+  }
 
   public UnixFileSystem(DigestHashFunction hashFunction) {
     super(hashFunction);
+    this.hashAttributeName = null;
+  }
+
+  /**
+   * Creates a file system that takes file digests from the extended attribute {@code
+   * hashAttributeName}, if set, instead of reading the files. The attribute must hold the raw bytes
+   * of the digest in this file system's hash function. An empty name disables the lookup.
+   */
+  public UnixFileSystem(String hashAttributeName) throws DefaultHashFunctionNotSetException {
+    this.hashAttributeName = Strings.emptyToNull(hashAttributeName);
+  }
+
+  public UnixFileSystem(DigestHashFunction hashFunction, String hashAttributeName) {
+    super(hashFunction);
+    this.hashAttributeName = Strings.emptyToNull(hashAttributeName);
   }
 
   /**
@@ -95,6 +126,11 @@ public class UnixFileSystem extends AbstractFileSystemWithCustomStat {
       return status.getInodeNumber();
     }
 
+    @Override
+    public long getDeviceId() {
+      return status.getDeviceNumber();
+    }
+
     int getPermissions() { return status.getPermissions(); }
 
     @Override
@@ -235,6 +271,57 @@ public class UnixFileSystem extends AbstractFileSystemWithCustomStat {
     }
   }
 
+  /**
+   * Like {@link Path#statIfFound}, but for many paths at once: returns the status of each of the
+   * given paths, in the same order, with null for paths that do not exist. All paths are stat()ed
+   * in a single native call.
+   */
+  public List<FileStatus> statIfFound(List<Path> paths, boolean followSymlinks)
+      throws IOException {
+    String[] names = new String[paths.size()];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = paths.get(i).getPathString();
+    }
+    ErrnoFileStatus[] stats;
+    long startTime = Profiler.nanoTimeMaybe();
+    try {
+      stats = NativePosixFiles.errnoStatBatch(names, followSymlinks, BATCH_STAT_PARALLELISM);
+    } finally {
+      profiler.logSimpleTask(
+          startTime, ProfilerTask.VFS_STAT, "batch of " + names.length + " paths");
+    }
+    List<FileStatus> result = new ArrayList<>(stats.length);
+    for (int i = 0; i < stats.length; i++) {
+      ErrnoFileStatus stat = stats[i];
+      if (!stat.hasError()) {
+        result.add(new UnixFileStatus(stat));
+      } else if (stat.getErrno() == ErrnoFileStatus.ENOENT
+          || stat.getErrno() == ErrnoFileStatus.ENOTDIR) {
+        result.add(null);
+      } else {
+        // Stat again to throw the proper exception, as in statIfFound(Path, boolean).
+        result.add(stat(paths.get(i), followSymlinks));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns a {@link BatchStat} that stats the paths relative to {@code execRoot} in a single
+   * native call. It does not compute digests.
+   */
+  public BatchStat getBatchStatter(Path execRoot) {
+    Preconditions.checkArgument(execRoot.getFileSystem() == this, execRoot);
+    return (includeDigest, includeLinks, execPaths) -> {
+      List<Path> paths = new ArrayList<>();
+      for (PathFragment execPath : execPaths) {
+        paths.add(execRoot.getRelative(execPath));
+      }
+      List<FileStatus> stats = statIfFound(paths, /*followSymlinks=*/ !includeLinks);
+      return Lists.transform(stats, FileStatusWithDigestAdapter::adapt);
+    };
+  }
+
   @Override
   protected boolean isReadable(Path path) throws IOException {
     return (statInternal(path, true).getPermissions() & 0400) != 0;
@@ -352,6 +439,24 @@ public class UnixFileSystem extends AbstractFileSystemWithCustomStat {
     NativePosixFiles.rename(sourcePath.toString(), targetPath.toString());
   }
 
+  /**
+   * Copies the contents inside the kernel, sharing the data blocks between both files on file
+   * systems that support reflinks. Falls back to {@link FileChannel#transferTo} when neither a
+   * reflink nor copy_file_range(2) applies, e.g. on older kernels or across devices.
+   */
+  @Override
+  protected void copyFileContents(Path sourcePath, Path targetPath) throws IOException {
+    String name = sourcePath.toString();
+    long startTime = Profiler.nanoTimeMaybe();
+    try {
+      if (!NativePosixFiles.copyFileContents(name, targetPath.toString())) {
+        transferFileContents(sourcePath, targetPath);
+      }
+    } finally {
+      profiler.logSimpleTask(startTime, ProfilerTask.VFS_READ, name);
+    }
+  }
+
   @Override
   protected long getFileSize(Path path, boolean followSymlinks) throws IOException {
     return stat(path, followSymlinks).getSize();
@@ -401,6 +506,23 @@ public class UnixFileSystem extends AbstractFileSystemWithCustomStat {
     }
   }
 
+  /**
+   * Returns the digest stored in the configured extended attribute, if any. Attributes whose
+   * length does not match the hash function are ignored, so that a file system storing another
+   * kind of digest does not break builds; the digest is then computed from the contents.
+   */
+  @Override
+  protected byte[] getFastDigest(Path path) throws IOException {
+    if (hashAttributeName == null) {
+      return null;
+    }
+    byte[] digest = getxattr(path, hashAttributeName, true);
+    if (digest != null && digest.length != getDigestFunction().getHashFunction().bits() / 8) {
+      return null;
+    }
+    return digest;
+  }
+
   @Override
   protected byte[] getDigest(Path path) throws IOException {
     String name = path.toString();
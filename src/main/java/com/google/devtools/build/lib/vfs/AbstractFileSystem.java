@@ -13,6 +13,7 @@
 // limitations under the License.
 package com.google.devtools.build.lib.vfs;
 
+import com.google.common.io.ByteStreams;
 import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
 import com.google.devtools.build.lib.profiler.Profiler;
 import com.google.devtools.build.lib.profiler.ProfilerTask;
@@ -23,6 +24,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 /** This class implements the FileSystem interface using direct calls to the UNIX filesystem. */
 @ThreadSafe
@@ -110,6 +112,31 @@ public abstract class AbstractFileSystem extends FileSystem {
     }
   }
 
+  /**
+   * Implements {@link #copyFileContents} for file systems whose paths name files on the local disk,
+   * using {@link FileChannel#transferTo} so that the JVM can use sendfile(2) or a mapped buffer
+   * instead of copying the data through the Java heap.
+   *
+   * <p>{@link FileChannel#transferTo} stops at the size the source reports, which is zero for files
+   * such as those in procfs and misses whatever is appended during the copy. The rest of the source
+   * is therefore read until EOF.
+   */
+  protected static void transferFileContents(Path sourcePath, Path targetPath)
+      throws IOException {
+    try (FileInputStream inStream = new FileInputStream(sourcePath.toString());
+        FileOutputStream outStream = new FileOutputStream(targetPath.toString())) {
+      FileChannel in = inStream.getChannel();
+      FileChannel out = outStream.getChannel();
+      long position = 0;
+      long transferred;
+      while ((transferred = in.transferTo(position, Long.MAX_VALUE - position, out)) > 0) {
+        position += transferred;
+      }
+      in.position(position);
+      ByteStreams.copy(inStream, outStream);
+    }
+  }
+
   private static final class ProfiledFileInputStream extends FileInputStream {
     private final String name;
 
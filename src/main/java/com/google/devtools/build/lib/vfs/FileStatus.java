@@ -85,4 +85,12 @@ public interface FileStatus {
    * ought to cause the node ID of b to change, but appending / modifying b should not.
    */
   long getNodeId() throws IOException;
+
+  /**
+   * Returns an identifier of the device that holds this file, or 0 if the file system does not
+   * know. Files on the same device compete for the same I/O bandwidth.
+   */
+  default long getDeviceId() throws IOException {
+    return 0;
+  }
 }
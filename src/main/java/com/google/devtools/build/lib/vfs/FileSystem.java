@@ -19,6 +19,7 @@ import static java.nio.charset.StandardCharsets.ISO_8859_1;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
 import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
 import com.google.devtools.build.lib.vfs.DigestHashFunction.DefaultHashFunctionNotSetException;
@@ -722,6 +723,20 @@ public abstract class FileSystem {
    */
   public abstract void renameTo(Path sourcePath, Path targetPath) throws IOException;
 
+  /**
+   * Copies the contents of the file denoted by "sourcePath" to "targetPath", which is created if it
+   * does not exist and truncated otherwise. See {@link Path#copyContentsTo} for specification.
+   *
+   * <p>The default implementation streams the contents through a buffer. File systems that can copy
+   * (or share) file data without reading it into the JVM should override this.
+   */
+  protected void copyFileContents(Path sourcePath, Path targetPath) throws IOException {
+    try (InputStream in = getInputStream(sourcePath);
+        OutputStream out = getOutputStream(targetPath)) {
+      ByteStreams.copy(in, out);
+    }
+  }
+
   /**
    * Create a new hard link file at "linkPath" for file at "originalPath".
    *
@@ -397,10 +397,7 @@ public class FileSystemUtils {
       throw new IOException("error copying file: "
           + "couldn't delete destination: " + e.getMessage());
     }
-    try (InputStream in = from.getInputStream();
-        OutputStream out = to.getOutputStream()) {
-      ByteStreams.copy(in, out);
-    }
+    from.copyContentsTo(to);
     to.setLastModifiedTime(from.getLastModifiedTime()); // Preserve mtime.
     if (!from.isWritable()) {
       to.setWritable(false); // Make file read-only if original was read-only.
@@ -446,10 +443,7 @@ public class FileSystemUtils {
       // Fallback to a copy.
       FileStatus stat = from.stat(Symlinks.NOFOLLOW);
       if (stat.isFile()) {
-        try (InputStream in = from.getInputStream();
-            OutputStream out = to.getOutputStream()) {
-          ByteStreams.copy(in, out);
-        }
+        from.copyContentsTo(to);
         to.setLastModifiedTime(stat.getLastModifiedTime()); // Preserve mtime.
         if (!from.isWritable()) {
           to.setWritable(false); // Make file read-only if original was read-only.
@@ -333,6 +333,11 @@ public class JavaIoFileSystem extends AbstractFileSystemWithCustomStat {
     }
   }
 
+  @Override
+  protected void copyFileContents(Path sourcePath, Path targetPath) throws IOException {
+    transferFileContents(sourcePath, targetPath);
+  }
+
   @Override
   protected long getFileSize(Path path, boolean followSymlinks) throws IOException {
     long startTime = Profiler.nanoTimeMaybe();
@@ -15,6 +15,7 @@ package com.google.devtools.build.lib.vfs;
 
 import com.google.common.base.Preconditions;
 import com.google.common.hash.Hasher;
+import com.google.common.io.ByteStreams;
 import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
 import com.google.devtools.build.lib.skyframe.serialization.autocodec.AutoCodec;
 import com.google.devtools.build.lib.skylarkinterface.SkylarkPrintable;
@@ -647,6 +648,24 @@ public class Path
     fileSystem.renameTo(this, target);
   }
 
+  /**
+   * Copies the contents of the file denoted by the current path to "target", which is created if it
+   * does not exist and truncated otherwise. Unlike {@link FileSystemUtils#copyFile}, no metadata is
+   * copied. The file system may share the data between both files instead of duplicating it.
+   *
+   * @throws IOException if the copy failed for any reason
+   */
+  public void copyContentsTo(Path target) throws IOException {
+    if (fileSystem == target.fileSystem) {
+      fileSystem.copyFileContents(this, target);
+    } else {
+      try (InputStream in = getInputStream();
+          OutputStream out = target.getOutputStream()) {
+        ByteStreams.copy(in, out);
+      }
+    }
+  }
+
   /**
    * Returns the size in bytes of the file denoted by the current path, following symbolic links.
    *
@@ -30,7 +30,12 @@
 #include <unistd.h>
 #include <utime.h>
 
+#include <algorithm>
+#include <atomic>
+#include <memory>
 #include <string>
+#include <system_error>
+#include <thread>
 #include <vector>
 
 #include "src/main/native/macros.h"
@@ -492,6 +497,91 @@ Java_com_google_devtools_build_lib_unix_NativePosixFiles_errnoLstat(JNIEnv *env,
   return ::StatCommon(env, path, portable_lstat, false);
 }
 
+// Batches smaller than this are stat()ed on the calling thread only.
+static const jsize kMinPathsPerStatThread = 64;
+
+/*
+ * Class:     com.google.devtools.build.lib.unix.NativePosixFiles
+ * Method:    errnoStatBatch
+ * Signature: ([Ljava/lang/String;ZI)[Lcom/google/devtools/build/lib/unix/ErrnoFileStatus;
+ */
+extern "C" JNIEXPORT jobjectArray JNICALL
+Java_com_google_devtools_build_lib_unix_NativePosixFiles_errnoStatBatch(
+    JNIEnv *env, jclass clazz, jobjectArray paths, jboolean follow_symlinks,
+    jint parallelism) {
+  jclass errno_file_status_class =
+      env->FindClass("com/google/devtools/build/lib/unix/ErrnoFileStatus");
+  if (errno_file_status_class == NULL) {
+    return NULL;
+  }
+  jsize count = env->GetArrayLength(paths);
+  std::vector<const char *> path_chars;
+  path_chars.reserve(count);
+  for (jsize i = 0; i < count; i++) {
+    jstring path = static_cast<jstring>(env->GetObjectArrayElement(paths, i));
+    const char *chars = GetStringLatin1Chars(env, path);
+    env->DeleteLocalRef(path);
+    if (chars == NULL) {
+      for (const char *c : path_chars) {
+        ::ReleaseStringLatin1Chars(c);
+      }
+      return NULL;
+    }
+    path_chars.push_back(chars);
+  }
+
+  // The worker threads only make syscalls; all JNI calls happen on this thread.
+  int (*stat_function)(const char *, portable_stat_struct *) =
+      follow_symlinks ? portable_stat : portable_lstat;
+  std::vector<portable_stat_struct> statbufs(count);
+  std::vector<int> errnos(count);
+  std::atomic<jsize> next_index(0);
+  auto stat_paths = [&]() {
+    jsize i;
+    while ((i = next_index.fetch_add(1)) < count) {
+      int r;
+      while ((r = stat_function(path_chars[i], &statbufs[i])) == -1 &&
+             errno == EINTR) {
+      }
+      errnos[i] = r == -1 ? errno : 0;
+    }
+  };
+  jsize num_threads = std::min<jsize>(parallelism, count / kMinPathsPerStatThread);
+  std::vector<std::thread> threads;
+  for (jsize i = 1; i < num_threads; i++) {
+    try {
+      threads.emplace_back(stat_paths);
+    } catch (const std::system_error &) {
+      // Out of threads: the paths left over are stat()ed by the threads that
+      // did start, including this one.
+      break;
+    }
+  }
+  stat_paths();
+  for (std::thread &thread : threads) {
+    thread.join();
+  }
+
+  jobjectArray result = env->NewObjectArray(count, errno_file_status_class, NULL);
+  for (jsize i = 0; result != NULL && i < count; i++) {
+    if (errnos[i] != 0 && PostRuntimeException(env, errnos[i], path_chars[i])) {
+      result = NULL;
+      break;
+    }
+    jobject status = NewErrnoFileStatus(env, errnos[i], statbufs[i]);
+    if (status == NULL) {
+      result = NULL;
+      break;
+    }
+    env->SetObjectArrayElement(result, i, status);
+    env->DeleteLocalRef(status);
+  }
+  for (const char *chars : path_chars) {
+    ::ReleaseStringLatin1Chars(chars);
+  }
+  return result;
+}
+
 /*
  * Class:     com.google.devtools.build.lib.unix.NativePosixFiles
  * Method:    utime
@@ -805,6 +895,47 @@ Java_com_google_devtools_build_lib_unix_NativePosixFiles_rename(JNIEnv *env,
   ReleaseStringLatin1Chars(newpath_chars);
 }
 
+/*
+ * Class:     com.google.devtools.build.lib.unix.NativePosixFiles
+ * Method:    copyFileContents
+ * Signature: (Ljava/lang/String;Ljava/lang/String;)Z
+ * Throws:    java.io.IOException
+ */
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_google_devtools_build_lib_unix_NativePosixFiles_copyFileContents(
+    JNIEnv *env, jclass clazz, jstring from, jstring to) {
+  const char *from_chars = GetStringLatin1Chars(env, from);
+  const char *to_chars = GetStringLatin1Chars(env, to);
+  bool copied = false;
+  int src_fd;
+  while ((src_fd = open(from_chars, O_RDONLY)) == -1 && errno == EINTR) { }
+  if (src_fd == -1) {
+    ::PostFileException(env, errno, from_chars);
+  } else {
+    int dst_fd;
+    while ((dst_fd = open(to_chars, O_WRONLY | O_CREAT | O_TRUNC, 0666)) == -1 &&
+           errno == EINTR) { }
+    if (dst_fd == -1) {
+      ::PostFileException(env, errno, to_chars);
+    } else {
+      if (portable_copy_file(src_fd, dst_fd) == 0) {
+        copied = true;
+      } else if (errno != ENOTSUP) {
+        std::string filename(std::string(from_chars) + " -> " + to_chars);
+        ::PostFileException(env, errno, filename.c_str());
+      }
+      if (close(dst_fd) == -1 && copied) {
+        copied = false;
+        ::PostFileException(env, errno, to_chars);
+      }
+    }
+    close(src_fd);
+  }
+  ReleaseStringLatin1Chars(from_chars);
+  ReleaseStringLatin1Chars(to_chars);
+  return copied;
+}
+
 static bool delete_common(JNIEnv *env,
                           jstring path,
                           int (*delete_function)(const char *),
@@ -1130,23 +1261,41 @@ Java_com_google_devtools_build_lib_unix_NativePosixFiles_lgetxattr(JNIEnv *env,
 }
 
 
+// Maximum size of the buffer used to read files for digesting. Large enough
+// that reading a big file takes few system calls; allocated on the heap since
+// the stack size of JNI threads is not known.
+static const size_t kDigestBufferSize = 256 * 1024;
+
 // Computes MD5 digest of "file", writes result in "result", which
 // must be of length Md5Digest::kDigestLength.  Returns zero on success, or
 // -1 (and sets errno) otherwise.
+//
+// The file is read rather than mapped: a concurrent truncation of a mapped
+// file raises SIGBUS, which would bring down the whole JVM.
 static int md5sumAsBytes(const char *file,
                          jbyte result[Md5Digest::kDigestLength]) {
   Md5Digest digest;
-  // OPT: Using a 32k buffer would give marginally better performance,
-  // but what is the stack size here?
-  jbyte buf[8192];
   int fd;
   while ((fd = open(file, O_RDONLY)) == -1 && errno == EINTR) { }
   if (fd == -1) {
     return -1;
   }
-  for (ssize_t len = read(fd, buf, arraysize(buf));
+#ifdef POSIX_FADV_SEQUENTIAL
+  // Ask for aggressive readahead. Failure is harmless.
+  posix_fadvise(fd, 0, 0, POSIX_FADV_SEQUENTIAL);
+#endif
+  // Small files get a buffer just large enough to also see EOF in one read.
+  // The buffer is not zero-filled.
+  size_t buf_size = kDigestBufferSize;
+  struct stat statbuf;
+  if (fstat(fd, &statbuf) == 0 && statbuf.st_size >= 0 &&
+      static_cast<size_t>(statbuf.st_size) < buf_size) {
+    buf_size = statbuf.st_size + 1;
+  }
+  std::unique_ptr<jbyte[]> buf(new jbyte[buf_size]);
+  for (ssize_t len = read(fd, buf.get(), buf_size);
        len != 0;
-       len = read(fd, buf, arraysize(buf))) {
+       len = read(fd, buf.get(), buf_size)) {
     if (len == -1) {
       if (errno == EINTR) {
         continue;
@@ -1157,7 +1306,7 @@ static int md5sumAsBytes(const char *file,
         return -1;
       }
     }
-    digest.Update(buf, len);
+    digest.Update(buf.get(), len);
   }
   if (close(fd) < 0 && errno != EINTR) {
     return -1;
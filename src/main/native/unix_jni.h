@@ -98,4 +98,12 @@ ssize_t portable_lgetxattr(const char *path, const char *name, void *value,
 // Run sysctlbyname(3), only available on darwin
 int portable_sysctlbyname(const char *name_chars, long *mibp, size_t *sizep);
 
+// Copies all of src_fd to dst_fd inside the kernel, sharing the underlying
+// extents (reflink) where the file system supports it. Both descriptors must
+// be positioned at offset zero and dst_fd must be empty. Returns 0 on
+// success. If no kernel-side copy mechanism applies to this pair of files,
+// returns -1 and sets errno to ENOTSUP without having written anything; for
+// all other errors, returns -1 and leaves errno set.
+int portable_copy_file(int src_fd, int dst_fd);
+
 #endif  // BAZEL_SRC_MAIN_NATIVE_UNIX_JNI_H__
@@ -17,8 +17,12 @@
 #include <errno.h>
 #include <stdlib.h>
 #include <string.h>
+#include <linux/fs.h>
+#include <sys/ioctl.h>
 #include <sys/stat.h>
+#include <sys/syscall.h>
 #include <sys/xattr.h>
+#include <unistd.h>
 
 #include <string>
 
@@ -91,3 +95,70 @@ int portable_sysctlbyname(const char *name_chars, long *mibp, size_t *sizep) {
   errno = ENOSYS;
   return -1;
 }
+
+// Whether errno, as set by a failed FICLONE or copy_file_range(2) on the first
+// attempt, means that the mechanism does not apply to this pair of files (as
+// opposed to a real I/O error).
+static bool IsCopyUnsupported(int error_number) {
+  return error_number == ENOTSUP || error_number == EOPNOTSUPP ||
+         error_number == ENOTTY || error_number == ENOSYS ||
+         error_number == EXDEV || error_number == EINVAL ||
+         error_number == EBADF;
+}
+
+// The number of bytes requested per copy_file_range(2) call. The kernel copies
+// less than 2 GiB per call anyway.
+static const size_t kCopyChunkSize = 1 << 30;
+
+int portable_copy_file(int src_fd, int dst_fd) {
+#ifdef FICLONE
+  if (ioctl(dst_fd, FICLONE, src_fd) == 0) {
+    return 0;
+  }
+  if (!IsCopyUnsupported(errno)) {
+    return -1;
+  }
+#endif
+#ifdef __NR_copy_file_range
+  portable_stat_struct statbuf;
+  if (fstat64(src_fd, &statbuf) == -1) {
+    return -1;
+  }
+  if (statbuf.st_size == 0) {
+    // Files in procfs and similar file systems report a size of zero but have
+    // contents; copy_file_range(2) copies nothing from them. Let the caller
+    // read the file until EOF instead.
+    errno = ENOTSUP;
+    return -1;
+  }
+  // Copy until EOF rather than st_size bytes, so that a source that grows
+  // while it is copied is not truncated.
+  bool copied_any = false;
+  while (true) {
+    ssize_t n = syscall(__NR_copy_file_range, src_fd, NULL, dst_fd, NULL,
+                        kCopyChunkSize, 0);
+    if (n == -1) {
+      if (errno == EINTR) {
+        continue;
+      }
+      if (!copied_any && IsCopyUnsupported(errno)) {
+        errno = ENOTSUP;
+      }
+      return -1;
+    }
+    if (n == 0) {
+      if (!copied_any) {
+        // Some file systems (e.g. procfs, sysfs) report a size but copy
+        // nothing; let the caller read the file instead.
+        errno = ENOTSUP;
+        return -1;
+      }
+      return 0;
+    }
+    copied_any = true;
+  }
+#else
+  errno = ENOTSUP;
+  return -1;
+#endif
+}
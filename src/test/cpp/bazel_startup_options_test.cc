@@ -110,6 +110,7 @@ TEST_F(BazelStartupOptionsTest, ValidStartupFlags) {
   ExpectIsUnaryOption(options, "max_idle_secs");
   ExpectIsUnaryOption(options, "output_base");
   ExpectIsUnaryOption(options, "output_user_root");
+  ExpectIsUnaryOption(options, "unix_digest_hash_attribute_name");
 }
 
 TEST_F(BazelStartupOptionsTest, BlazercFlagsAreNotAccepted) {
@@ -22,6 +22,7 @@ import com.google.devtools.build.lib.clock.BlazeClock;
 import com.google.devtools.build.lib.testutil.TestThread;
 import com.google.devtools.build.lib.testutil.TestUtils;
 import com.google.devtools.build.lib.vfs.DigestHashFunction;
+import com.google.devtools.build.lib.vfs.FileStatus;
 import com.google.devtools.build.lib.vfs.FileSystem;
 import com.google.devtools.build.lib.vfs.FileSystemUtils;
 import com.google.devtools.build.lib.vfs.Path;
@@ -46,6 +47,7 @@ public class DigestUtilsTest {
   @After
   public void tearDown() {
     DigestUtils.configureCache(0);
+    DigestUtils.setLargeFileDigestParallelism(1);
   }
 
   private static void assertDigestCalculationConcurrency(
@@ -55,6 +57,18 @@ public class DigestUtilsTest {
       final int fileSize2,
       DigestHashFunction hf)
       throws Exception {
+    assertDigestCalculationConcurrency(
+        expectConcurrent, fastDigest, fileSize1, fileSize2, hf, /*onSameDevice=*/ true);
+  }
+
+  private static void assertDigestCalculationConcurrency(
+      boolean expectConcurrent,
+      final boolean fastDigest,
+      final int fileSize1,
+      final int fileSize2,
+      DigestHashFunction hf,
+      final boolean onSameDevice)
+      throws Exception {
     final CountDownLatch barrierLatch = new CountDownLatch(2); // Used to block test threads.
     final CountDownLatch readyLatch = new CountDownLatch(1);   // Used to block main thread.
 
@@ -78,6 +92,58 @@ public class DigestUtilsTest {
           protected byte[] getFastDigest(Path path) throws IOException {
             return fastDigest ? super.getDigest(path) : null;
           }
+
+          @Override
+          public FileStatus stat(Path path, boolean followSymlinks) throws IOException {
+            FileStatus status = super.stat(path, followSymlinks);
+            long deviceId = onSameDevice ? 0 : path.getBaseName().hashCode();
+            return new FileStatus() {
+              @Override
+              public boolean isFile() {
+                return status.isFile();
+              }
+
+              @Override
+              public boolean isDirectory() {
+                return status.isDirectory();
+              }
+
+              @Override
+              public boolean isSymbolicLink() {
+                return status.isSymbolicLink();
+              }
+
+              @Override
+              public boolean isSpecialFile() {
+                return status.isSpecialFile();
+              }
+
+              @Override
+              public long getSize() throws IOException {
+                return status.getSize();
+              }
+
+              @Override
+              public long getLastModifiedTime() throws IOException {
+                return status.getLastModifiedTime();
+              }
+
+              @Override
+              public long getLastChangeTime() throws IOException {
+                return status.getLastChangeTime();
+              }
+
+              @Override
+              public long getNodeId() throws IOException {
+                return status.getNodeId();
+              }
+
+              @Override
+              public long getDeviceId() {
+                return deviceId;
+              }
+            };
+          }
         };
 
     final Path myFile1 = myfs.getPath("/f1.dat");
@@ -129,6 +195,20 @@ public class DigestUtilsTest {
     }
   }
 
+  @Test
+  public void testCalculationConcurrencyWithParallelism() throws Exception {
+    final int large = DigestUtils.MULTI_THREADED_DIGEST_MAX_FILE_SIZE + 1;
+    DigestUtils.setLargeFileDigestParallelism(2);
+    assertDigestCalculationConcurrency(true, false, large, large, DigestHashFunction.SHA256);
+  }
+
+  @Test
+  public void testCalculationConcurrencyAcrossDevices() throws Exception {
+    final int large = DigestUtils.MULTI_THREADED_DIGEST_MAX_FILE_SIZE + 1;
+    assertDigestCalculationConcurrency(
+        true, false, large, large, DigestHashFunction.SHA256, /*onSameDevice=*/ false);
+  }
+
   /** Helper class to assert the cache statistics. */
   private static class CacheStatsChecker {
     /** Cache statistics, grabbed at construction time. */
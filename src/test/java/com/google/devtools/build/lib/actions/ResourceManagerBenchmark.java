@@ -0,0 +1,86 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.actions;
+
+import com.google.caliper.AfterExperiment;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import com.google.devtools.build.lib.actions.ResourceManager.ResourceHandle;
+import com.google.devtools.build.lib.actions.util.ActionsTestUtil.NullAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Microbenchmarks for {@link ResourceManager} under many concurrent acquire/release calls, as seen
+ * with a high --jobs value on machines with many cores.
+ */
+public class ResourceManagerBenchmark {
+  @Param({"100", "2000"})
+  int threads;
+
+  @Param({"FIFO", "SMALLEST_FIRST", "MNEMONIC_FAIR"})
+  ResourceManager.SchedulingPolicy policy;
+
+  private final ActionExecutionMetadata owner = new NullAction();
+  private ResourceManager rm;
+  private ExecutorService executor;
+
+  @BeforeExperiment
+  void setUp() {
+    rm = ResourceManager.instanceForTestingOnly();
+    rm.setRamUtilizationPercentage(100);
+    rm.setAvailableResources(
+        ResourceSet.create(/*memoryMb=*/ 64000, /*cpuUsage=*/ 96, /* localTestCount= */ 96));
+    rm.setSchedulingPolicy(policy);
+    executor = Executors.newFixedThreadPool(threads);
+  }
+
+  @AfterExperiment
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  void acquireAndRelease(int reps) throws Exception {
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>(threads);
+    for (int t = 0; t < threads; t++) {
+      // Mix small and large requests so that some of them have to wait.
+      ResourceSet resources =
+          t % 10 == 0
+              ? ResourceSet.createWithRamCpu(4000, 8)
+              : ResourceSet.createWithRamCpu(250, 1);
+      futures.add(
+          executor.submit(
+              () -> {
+                start.await();
+                for (int i = 0; i < reps; i++) {
+                  try (ResourceHandle handle = rm.acquireResources(owner, resources)) {
+                    // Nothing to do, only the scheduling overhead is measured.
+                  }
+                }
+                return null;
+              }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get();
+    }
+  }
+}
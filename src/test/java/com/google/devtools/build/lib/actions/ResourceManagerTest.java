@@ -437,6 +437,108 @@ public class ResourceManagerTest {
     assertThat(rm.inUse()).isFalse();
   }
 
+  @Test
+  public void testSmallestFirstSchedulingPolicy() throws Exception {
+    rm.setSchedulingPolicy(ResourceManager.SchedulingPolicy.SMALLEST_FIRST);
+    assertThat(rm.inUse()).isFalse();
+
+    // Given all RAM is acquired:
+    acquire(1000, 0, 0);
+
+    TestThread largeRequest =
+        new TestThread() {
+          @Override
+          public void runTest() throws Exception {
+            acquire(800, 0, 0);
+            release(800, 0, 0);
+          }
+        };
+    TestThread smallRequest =
+        new TestThread() {
+          @Override
+          public void runTest() throws Exception {
+            acquire(300, 0, 0);
+            sync.await();
+            sync.await();
+            release(300, 0, 0);
+          }
+        };
+
+    // When a large request is made before a small one,
+    largeRequest.start();
+    while (rm.getWaitCount() < 1) {
+      Thread.yield();
+    }
+    smallRequest.start();
+    while (rm.getWaitCount() < 2) {
+      Thread.yield();
+    }
+
+    // And the RAM is released,
+    release(1000, 0, 0);
+
+    // Then the small request is granted first and the large one keeps waiting:
+    sync.await();
+    assertThat(rm.getWaitCount()).isEqualTo(1);
+
+    // And the large request is granted once the small one is done.
+    sync.await();
+    smallRequest.joinAndAssertState(10000);
+    largeRequest.joinAndAssertState(10000);
+    assertThat(rm.inUse()).isFalse();
+  }
+
+  @Test
+  public void testWaitingRequestsThatFitTogetherAreGrantedInOnePass() throws Exception {
+    assertThat(rm.inUse()).isFalse();
+    CyclicBarrier granted = new CyclicBarrier(3);
+
+    // Given all RAM is acquired:
+    acquire(1000, 0, 0);
+
+    TestThread largeRequest =
+        new TestThread() {
+          @Override
+          public void runTest() throws Exception {
+            acquire(600, 0, 0);
+            granted.await();
+            granted.await();
+            release(600, 0, 0);
+          }
+        };
+    TestThread smallRequest =
+        new TestThread() {
+          @Override
+          public void runTest() throws Exception {
+            acquire(300, 0, 0);
+            granted.await();
+            granted.await();
+            release(300, 0, 0);
+          }
+        };
+
+    // When two requests that fit together are waiting,
+    largeRequest.start();
+    while (rm.getWaitCount() < 1) {
+      Thread.yield();
+    }
+    smallRequest.start();
+    while (rm.getWaitCount() < 2) {
+      Thread.yield();
+    }
+
+    // And the RAM is released,
+    release(1000, 0, 0);
+
+    // Then both are granted.
+    granted.await(TestUtils.WAIT_TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS);
+    assertThat(rm.getWaitCount()).isEqualTo(0);
+    granted.await();
+    largeRequest.joinAndAssertState(TestUtils.WAIT_TIMEOUT_MILLISECONDS);
+    smallRequest.joinAndAssertState(TestUtils.WAIT_TIMEOUT_MILLISECONDS);
+    assertThat(rm.inUse()).isFalse();
+  }
+
   private static class ResourceOwnerStub implements ActionExecutionMetadata {
 
     @Override
@@ -0,0 +1,248 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.buildeventservice;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.devtools.build.lib.buildeventservice.BuildEventServiceUploader.UploadStatistics;
+import com.google.devtools.build.lib.buildeventservice.client.BuildEventServiceClient;
+import com.google.devtools.build.lib.buildeventstream.ArtifactGroupNamer;
+import com.google.devtools.build.lib.buildeventstream.BuildEvent.LocalFile;
+import com.google.devtools.build.lib.buildeventstream.BuildEventArtifactUploader;
+import com.google.devtools.build.lib.buildeventstream.BuildEventId;
+import com.google.devtools.build.lib.buildeventstream.BuildEventProtocolOptions;
+import com.google.devtools.build.lib.buildeventstream.GenericBuildEvent;
+import com.google.devtools.build.lib.buildeventstream.PathConverter;
+import com.google.devtools.build.lib.testutil.ManualClock;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.v1.PublishBuildToolEventStreamRequest;
+import com.google.devtools.build.v1.PublishBuildToolEventStreamResponse;
+import com.google.devtools.build.v1.PublishLifecycleEventRequest;
+import com.google.devtools.common.options.Options;
+import io.grpc.Status;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link BuildEventServiceUploader}. */
+@RunWith(JUnit4.class)
+public class BuildEventServiceUploaderTest {
+  private final ManualClock clock = new ManualClock();
+  private final FakeBuildEventServiceClient besClient = new FakeBuildEventServiceClient();
+  private final FakeArtifactUploader artifactUploader = new FakeArtifactUploader();
+
+  @Test
+  public void eventsAreUploadedAndAcked() throws Exception {
+    BuildEventServiceUploader uploader = createUploader();
+
+    uploader.enqueueEvent(progressEvent(0));
+    uploader.enqueueEvent(progressEvent(1));
+    uploader.close().get();
+
+    assertThat(besClient.sentSequenceNumbers).containsExactly(1L, 2L, 3L).inOrder();
+    assertThat(uploader.getUploadStatistics().getAcksReceived()).isEqualTo(3);
+    assertThat(besClient.lifecycleEvents).hasSize(4);
+  }
+
+  @Test
+  public void ackLatencyAndQueueSizesAreRecorded() throws Exception {
+    BuildEventServiceUploader uploader = createUploader();
+    BlockingUploadFuture firstUpload = new BlockingUploadFuture();
+    artifactUploader.uploads.add(firstUpload);
+
+    // The upload thread blocks on the first event until the other events have been enqueued.
+    uploader.enqueueEvent(progressEvent(0));
+    assertThat(firstUpload.getCalled.await(10, TimeUnit.SECONDS)).isTrue();
+    clock.advanceMillis(100);
+    uploader.enqueueEvent(progressEvent(1));
+    uploader.enqueueEvent(progressEvent(2));
+    ListenableFuture<Void> closeFuture = uploader.close();
+    firstUpload.set(PathConverter.NO_CONVERSION);
+    closeFuture.get();
+
+    // All events are ACKed at time 100 when the stream is half closed. The first event was
+    // enqueued at time 0, the others at time 100.
+    UploadStatistics statistics = uploader.getUploadStatistics();
+    assertThat(statistics.getAcksReceived()).isEqualTo(4);
+    assertThat(statistics.getMaxAckLatencyMillis()).isEqualTo(100);
+    assertThat(statistics.getAverageAckLatencyMillis()).isEqualTo(25);
+    // No ACKs are received before all events have been sent, and then the four ACKs and the
+    // stream completion are queued at once.
+    assertThat(statistics.getMaxAckQueueSize()).isEqualTo(4);
+    assertThat(statistics.getMaxEventQueueSize()).isEqualTo(5);
+  }
+
+  @Test
+  public void unackedEventsAreResentOnRetry() throws Exception {
+    BuildEventServiceUploader uploader = createUploader();
+    besClient.failFirstStream = true;
+
+    uploader.enqueueEvent(progressEvent(0));
+    uploader.close().get();
+
+    assertThat(besClient.sentSequenceNumbers).containsExactly(1L, 1L, 2L).inOrder();
+    assertThat(uploader.getUploadStatistics().getAcksReceived()).isEqualTo(2);
+  }
+
+  private BuildEventServiceUploader createUploader() {
+    return new BuildEventServiceUploader.Builder()
+        .besClient(besClient)
+        .localFileUploader(artifactUploader)
+        .besProtoUtil(
+            new BuildEventServiceProtoUtil.Builder()
+                .buildRequestId("build-request-id")
+                .invocationId("invocation-id")
+                .projectId("project-id")
+                .commandName("build")
+                .keywords(ImmutableSet.of())
+                .build())
+        .bepOptions(Options.getDefaults(BuildEventProtocolOptions.class))
+        .publishLifecycleEvents(true)
+        .closeTimeout(Duration.ZERO)
+        .abruptExitCallback(
+            e -> {
+              throw new AssertionError("unexpected abrupt exit", e);
+            })
+        .sleeper(millis -> {})
+        .clock(clock)
+        .artifactGroupNamer(mock(ArtifactGroupNamer.class))
+        .eventBus(new EventBus())
+        .build();
+  }
+
+  private static GenericBuildEvent progressEvent(int count) {
+    return new GenericBuildEvent(
+        BuildEventId.progressId(count), ImmutableList.of(BuildEventId.progressId(count + 1)));
+  }
+
+  /**
+   * A fake BES backend that ACKs all events of a stream, in order, when the stream is half closed.
+   * Calls on a stream that has already completed are ignored.
+   */
+  private static final class FakeBuildEventServiceClient implements BuildEventServiceClient {
+    private final List<Long> sentSequenceNumbers =
+        Collections.synchronizedList(new ArrayList<>());
+    private final List<PublishLifecycleEventRequest> lifecycleEvents =
+        Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean failFirstStream;
+
+    @Override
+    public void publish(PublishLifecycleEventRequest lifecycleEvent) {
+      lifecycleEvents.add(lifecycleEvent);
+    }
+
+    @Override
+    public StreamContext openStream(AckCallback callback) {
+      SettableFuture<Status> status = SettableFuture.create();
+      List<Long> streamSequenceNumbers = new ArrayList<>();
+      return new StreamContext() {
+        @Override
+        public ListenableFuture<Status> getStatus() {
+          return status;
+        }
+
+        @Override
+        public void sendOverStream(PublishBuildToolEventStreamRequest buildEvent) {
+          if (status.isDone()) {
+            return;
+          }
+          long sequenceNumber = buildEvent.getOrderedBuildEvent().getSequenceNumber();
+          sentSequenceNumbers.add(sequenceNumber);
+          streamSequenceNumbers.add(sequenceNumber);
+          if (failFirstStream) {
+            failFirstStream = false;
+            status.set(Status.UNAVAILABLE);
+          }
+        }
+
+        @Override
+        public void halfCloseStream() {
+          if (status.isDone()) {
+            return;
+          }
+          for (long sequenceNumber : streamSequenceNumbers) {
+            callback.apply(
+                PublishBuildToolEventStreamResponse.newBuilder()
+                    .setSequenceNumber(sequenceNumber)
+                    .build());
+          }
+          status.set(Status.OK);
+        }
+
+        @Override
+        public void abortStream(Status abortStatus) {
+          status.set(abortStatus);
+        }
+      };
+    }
+
+    @Override
+    public void shutdown() {}
+
+    @Override
+    public String userReadableError(Throwable t) {
+      return t.getMessage();
+    }
+  }
+
+  /**
+   * Returns the queued upload futures in order, and an immediate future once the queue is empty.
+   */
+  private static final class FakeArtifactUploader implements BuildEventArtifactUploader {
+    private final Queue<ListenableFuture<PathConverter>> uploads = new ArrayDeque<>();
+
+    @Override
+    public synchronized ListenableFuture<PathConverter> upload(Map<Path, LocalFile> files) {
+      ListenableFuture<PathConverter> upload = uploads.poll();
+      return upload != null ? upload : Futures.immediateFuture(PathConverter.NO_CONVERSION);
+    }
+
+    @Override
+    public void shutdown() {}
+  }
+
+  /** An upload that signals when the upload thread starts waiting for it. */
+  private static final class BlockingUploadFuture extends AbstractFuture<PathConverter> {
+    private final CountDownLatch getCalled = new CountDownLatch(1);
+
+    @Override
+    public PathConverter get() throws InterruptedException, ExecutionException {
+      getCalled.countDown();
+      return super.get();
+    }
+
+    @Override
+    public boolean set(PathConverter value) {
+      return super.set(value);
+    }
+  }
+}
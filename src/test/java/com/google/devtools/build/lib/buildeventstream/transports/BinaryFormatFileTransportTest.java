@@ -24,6 +24,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.devtools.build.lib.buildeventstream.ArtifactGroupNamer;
 import com.google.devtools.build.lib.buildeventstream.BuildEvent;
 import com.google.devtools.build.lib.buildeventstream.BuildEvent.LocalFile;
@@ -43,16 +44,22 @@ import com.google.devtools.build.lib.buildeventstream.PathConverter.FileUriPathC
 import com.google.devtools.build.lib.vfs.Path;
 import com.google.devtools.common.options.Options;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPInputStream;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -129,6 +136,200 @@ public class BinaryFormatFileTransportTest {
     }
   }
 
+  @Test
+  public void testReportsBytesWrittenAndQueueDepth() throws Exception {
+    File output = tmp.newFile();
+    BufferedOutputStream outputStream =
+        new BufferedOutputStream(Files.newOutputStream(Paths.get(output.getAbsolutePath())));
+
+    BuildEventStreamProtos.BuildEvent started =
+        BuildEventStreamProtos.BuildEvent.newBuilder()
+            .setStarted(BuildStarted.newBuilder().setCommand("build"))
+            .build();
+    when(buildEvent.asStreamProto(Matchers.<BuildEventContext>any())).thenReturn(started);
+    BinaryFormatFileTransport transport =
+        new BinaryFormatFileTransport(
+            outputStream,
+            defaultOpts,
+            new LocalFilesArtifactUploader(),
+            NO_OP_EXIT_CALLBACK,
+            artifactGroupNamer);
+    for (int i = 0; i < 100; i++) {
+      transport.sendBuildEvent(buildEvent);
+    }
+
+    transport.close().get();
+    assertThat(transport.getBytesWritten()).isEqualTo(output.length());
+    assertThat(transport.getBytesWritten()).isEqualTo(100L * started.toByteArray().length + 100);
+    assertThat(transport.getMaxQueueDepth()).isAtLeast(1);
+  }
+
+  @Test
+  public void testWritesGzipFile() throws Exception {
+    File output = tmp.newFile();
+    BufferedOutputStream outputStream =
+        FileTransport.newOutputStream(output.getAbsolutePath(), /*gzip=*/ true);
+
+    BuildEventStreamProtos.BuildEvent started =
+        BuildEventStreamProtos.BuildEvent.newBuilder()
+            .setStarted(BuildStarted.newBuilder().setCommand("build"))
+            .build();
+    when(buildEvent.asStreamProto(Matchers.<BuildEventContext>any())).thenReturn(started);
+    BinaryFormatFileTransport transport =
+        new BinaryFormatFileTransport(
+            outputStream,
+            defaultOpts,
+            new LocalFilesArtifactUploader(),
+            NO_OP_EXIT_CALLBACK,
+            artifactGroupNamer);
+    transport.sendBuildEvent(buildEvent);
+
+    BuildEventStreamProtos.BuildEvent progress =
+        BuildEventStreamProtos.BuildEvent.newBuilder().setProgress(Progress.newBuilder()).build();
+    when(buildEvent.asStreamProto(Matchers.<BuildEventContext>any())).thenReturn(progress);
+    transport.sendBuildEvent(buildEvent);
+
+    transport.close().get();
+    try (InputStream in = new GZIPInputStream(new FileInputStream(output))) {
+      assertThat(BuildEventStreamProtos.BuildEvent.parseDelimitedFrom(in)).isEqualTo(started);
+      assertThat(BuildEventStreamProtos.BuildEvent.parseDelimitedFrom(in)).isEqualTo(progress);
+      assertThat(in.read()).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void testSendersDoNotBlockAfterWriterFailedWhileQueueIsFull() throws Exception {
+    CountDownLatch writeStarted = new CountDownLatch(1);
+    CountDownLatch failWrites = new CountDownLatch(1);
+    // The first write blocks until the test lets it fail.
+    BufferedOutputStream outputStream =
+        new BufferedOutputStream(
+            new OutputStream() {
+              @Override
+              public void write(int b) {
+                write(new byte[] {(byte) b}, 0, 1);
+              }
+
+              @Override
+              public void write(byte[] b, int off, int len) {
+                writeStarted.countDown();
+                Uninterruptibles.awaitUninterruptibly(failWrites);
+                throw new IllegalStateException("write failed");
+              }
+            },
+            /*size=*/ 1);
+
+    BuildEventStreamProtos.BuildEvent started =
+        BuildEventStreamProtos.BuildEvent.newBuilder()
+            .setStarted(BuildStarted.newBuilder().setCommand("build"))
+            .build();
+    when(buildEvent.asStreamProto(Matchers.<BuildEventContext>any())).thenReturn(started);
+    BinaryFormatFileTransport transport =
+        new BinaryFormatFileTransport(
+            outputStream,
+            defaultOpts,
+            new LocalFilesArtifactUploader(),
+            NO_OP_EXIT_CALLBACK,
+            artifactGroupNamer);
+    transport.sendBuildEvent(buildEvent);
+    writeStarted.await();
+
+    Thread sender =
+        new Thread(
+            () -> {
+              for (int i = 0; i < FileTransport.SequentialWriter.MAX_PENDING_WRITES + 1; i++) {
+                transport.sendBuildEvent(buildEvent);
+              }
+            });
+    sender.start();
+    while (transport.writer.pendingWrites.remainingCapacity() > 0
+        || sender.getState() != Thread.State.TIMED_WAITING) {
+      Thread.sleep(10);
+    }
+
+    // The writer thread dies from the exception, and the sender gives up on its event.
+    failWrites.countDown();
+    sender.join(10_000);
+    assertThat(sender.isAlive()).isFalse();
+    transport.close().get();
+  }
+
+  @Test
+  public void testSendersBlockWhileQueueIsFull() throws Exception {
+    CountDownLatch writeStarted = new CountDownLatch(1);
+    CountDownLatch unblockWrites = new CountDownLatch(1);
+    ByteArrayOutputStream written = new ByteArrayOutputStream();
+    // Every write goes straight to the stream, which blocks until the test lets it proceed.
+    BufferedOutputStream outputStream =
+        new BufferedOutputStream(
+            new OutputStream() {
+              @Override
+              public void write(int b) {
+                write(new byte[] {(byte) b}, 0, 1);
+              }
+
+              @Override
+              public void write(byte[] b, int off, int len) {
+                writeStarted.countDown();
+                Uninterruptibles.awaitUninterruptibly(unblockWrites);
+                written.write(b, off, len);
+              }
+            },
+            /*size=*/ 1);
+
+    BuildEventStreamProtos.BuildEvent started =
+        BuildEventStreamProtos.BuildEvent.newBuilder()
+            .setStarted(BuildStarted.newBuilder().setCommand("build"))
+            .build();
+    when(buildEvent.asStreamProto(Matchers.<BuildEventContext>any())).thenReturn(started);
+    BinaryFormatFileTransport transport =
+        new BinaryFormatFileTransport(
+            outputStream,
+            defaultOpts,
+            new LocalFilesArtifactUploader(),
+            NO_OP_EXIT_CALLBACK,
+            artifactGroupNamer);
+    // The writer takes the first event and blocks writing it.
+    transport.sendBuildEvent(buildEvent);
+    writeStarted.await();
+
+    int events = FileTransport.SequentialWriter.MAX_PENDING_WRITES + 1;
+    AtomicBoolean interruptedAfterSending = new AtomicBoolean();
+    Thread sender =
+        new Thread(
+            () -> {
+              for (int i = 0; i < events; i++) {
+                transport.sendBuildEvent(buildEvent);
+              }
+              interruptedAfterSending.set(Thread.currentThread().isInterrupted());
+            });
+    sender.start();
+    while (transport.writer.pendingWrites.remainingCapacity() > 0
+        || sender.getState() != Thread.State.TIMED_WAITING) {
+      Thread.sleep(10);
+    }
+    // An interrupt neither unblocks the sender nor drops its event.
+    sender.interrupt();
+    sender.join(100);
+    assertThat(sender.isAlive()).isTrue();
+    assertThat(transport.writer.pendingWrites)
+        .hasSize(FileTransport.SequentialWriter.MAX_PENDING_WRITES);
+
+    unblockWrites.countDown();
+    sender.join();
+    transport.close().get();
+    assertThat(interruptedAfterSending.get()).isTrue();
+    assertThat(transport.getMaxQueueDepth())
+        .isEqualTo(FileTransport.SequentialWriter.MAX_PENDING_WRITES);
+    int parsed = 0;
+    try (InputStream in = new ByteArrayInputStream(written.toByteArray())) {
+      while (BuildEventStreamProtos.BuildEvent.parseDelimitedFrom(in) != null) {
+        parsed++;
+      }
+    }
+    assertThat(parsed).isEqualTo(events + 1);
+  }
+
   @Test
   public void testCancelledUpload() throws Exception {
     Path file1 = Mockito.mock(Path.class);
@@ -0,0 +1,79 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.collect.nestedset;
+
+import com.google.caliper.AfterExperiment;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures flattening every level of a deep chain of diamond-shaped nested sets, as happens when
+ * each action of a dependency chain flattens its transitive inputs, with and without the {@link
+ * NestedSetFlattenCache}.
+ */
+public class NestedSetFlattenBenchmark {
+  @Param({"10", "100"})
+  int depth;
+
+  @Param({"10", "100"})
+  int elementsPerSet;
+
+  @Param({"0", "10000000"})
+  long cacheSize;
+
+  @Param({"1", "4"})
+  int parallelism;
+
+  private final List<NestedSet<String>> levels = new ArrayList<>();
+
+  @BeforeExperiment
+  void setUp() {
+    NestedSetFlattenCache.configure(cacheSize, elementsPerSet, parallelism);
+    NestedSet<String> left = NestedSetBuilder.<String>stableOrder().build();
+    NestedSet<String> right = left;
+    for (int i = 0; i < depth; i++) {
+      NestedSetBuilder<String> newLeft =
+          NestedSetBuilder.<String>stableOrder().addTransitive(left).addTransitive(right);
+      NestedSetBuilder<String> newRight =
+          NestedSetBuilder.<String>stableOrder().addTransitive(right).addTransitive(left);
+      for (int j = 0; j < elementsPerSet; j++) {
+        newLeft.add("left" + i + "_" + j);
+        newRight.add("right" + i + "_" + j);
+      }
+      left = newLeft.build();
+      right = newRight.build();
+      levels.add(left);
+      levels.add(right);
+    }
+  }
+
+  @AfterExperiment
+  void tearDown() {
+    NestedSetFlattenCache.configure(0, 0, 1);
+  }
+
+  @Benchmark
+  int flattenEveryLevel(int reps) {
+    int size = 0;
+    for (int i = 0; i < reps; i++) {
+      for (NestedSet<String> level : levels) {
+        size += level.toList().size();
+      }
+    }
+    return size;
+  }
+}
@@ -0,0 +1,120 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.collect.nestedset;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link NestedSetFlattenCache}. */
+@RunWith(JUnit4.class)
+public class NestedSetFlattenCacheTest {
+
+  @After
+  public void disableCache() {
+    NestedSetFlattenCache.configure(0, 0, 1);
+  }
+
+  /**
+   * Builds a chain of diamonds {@code depth} levels deep: every level has two sets that both
+   * include both sets of the level below, plus one element of their own.
+   */
+  private static NestedSet<String> diamond(Order order, int depth) {
+    NestedSet<String> left = new NestedSetBuilder<String>(order).add("left0").add("x").build();
+    NestedSet<String> right = new NestedSetBuilder<String>(order).add("right0").add("x").build();
+    for (int i = 1; i < depth; i++) {
+      NestedSet<String> newLeft =
+          new NestedSetBuilder<String>(order)
+              .add("left" + i)
+              .addTransitive(left)
+              .addTransitive(right)
+              .build();
+      NestedSet<String> newRight =
+          new NestedSetBuilder<String>(order)
+              .add("right" + i)
+              .addTransitive(right)
+              .addTransitive(left)
+              .build();
+      left = newLeft;
+      right = newRight;
+    }
+    return new NestedSetBuilder<String>(order).addTransitive(left).addTransitive(right).build();
+  }
+
+  @Test
+  public void cachedResultIsReturnedAgain() {
+    NestedSetFlattenCache.configure(1000, 4, 1);
+    NestedSet<String> set = diamond(Order.STABLE_ORDER, 5);
+
+    List<String> first = set.toList();
+    assertThat(set.toList()).isSameAs(first);
+    assertThat(NestedSetFlattenCache.getCacheStats().hitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void smallSetsAreNotCached() {
+    NestedSetFlattenCache.configure(1000, 100, 1);
+    NestedSet<String> set = diamond(Order.STABLE_ORDER, 3);
+
+    set.toList();
+    set.toList();
+    assertThat(NestedSetFlattenCache.getCacheStats().hitCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void disabledByDefault() {
+    assertThat(NestedSetFlattenCache.getCacheStats()).isNull();
+  }
+
+  @Test
+  public void cachedAndParallelFlatteningPreserveOrder() {
+    for (Order order : Order.values()) {
+      List<String> expected = diamond(order, 6).toList();
+
+      NestedSetFlattenCache.configure(1000, 4, 1);
+      assertThat(diamond(order, 6).toList()).containsExactlyElementsIn(expected).inOrder();
+
+      NestedSetFlattenCache.configure(1000, 4, 4, /*parallelFlattenThreshold=*/ 0);
+      NestedSet<String> set = diamond(order, 6);
+      assertThat(set.toList()).containsExactlyElementsIn(expected).inOrder();
+      assertThat(set.toList()).containsExactlyElementsIn(expected).inOrder();
+
+      NestedSetFlattenCache.configure(0, 0, 1);
+    }
+  }
+
+  @Test
+  public void parallelFlatteningReusesCachedSubsets() {
+    NestedSetFlattenCache.configure(1000, 2, 4, /*parallelFlattenThreshold=*/ 0);
+    NestedSet<String> a = NestedSetBuilder.<String>stableOrder().add("a1").add("a2").build();
+    NestedSet<String> b = NestedSetBuilder.<String>stableOrder().add("b1").add("a1").build();
+    NestedSet<String> sub =
+        NestedSetBuilder.<String>stableOrder().add("s").addTransitive(a).addTransitive(b).build();
+    List<String> subList = sub.toList();
+    NestedSet<String> top =
+        NestedSetBuilder.<String>stableOrder()
+            .add("t")
+            .addTransitive(sub)
+            .addTransitive(b)
+            .build();
+
+    assertThat(subList).containsExactly("a1", "a2", "b1", "s").inOrder();
+    assertThat(top.toList()).containsExactly("a1", "a2", "b1", "s", "t").inOrder();
+    assertThat(NestedSetFlattenCache.getCacheStats().hitCount()).isAtLeast(1L);
+  }
+}
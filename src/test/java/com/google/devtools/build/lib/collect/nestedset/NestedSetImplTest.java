@@ -20,6 +20,9 @@ import com.google.common.collect.Lists;
 import com.google.common.testing.EqualsTester;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -233,6 +236,33 @@ public class NestedSetImplTest {
     }
   }
 
+  @Test
+  public void forEachVisitsElementsInListOrder() {
+    for (Order order : Order.values()) {
+      NestedSet<String> shared = new NestedSetBuilder<String>(order).add("s1").add("s2").build();
+      NestedSet<String> left =
+          new NestedSetBuilder<String>(order).add("l").add("s2").addTransitive(shared).build();
+      NestedSet<String> right =
+          new NestedSetBuilder<String>(order).addTransitive(shared).add("r1").add("r2").build();
+
+      // Visit the set before and after it is first expanded, and visit a leaf set.
+      for (NestedSet<String> set :
+          Arrays.asList(
+              new NestedSetBuilder<String>(order).add("a").addTransitive(left).build(),
+              new NestedSetBuilder<String>(order).addTransitive(left).addTransitive(right).build(),
+              shared,
+              new NestedSetBuilder<String>(order).add("single").build())) {
+        List<String> visited = new ArrayList<>();
+        set.forEach(visited::add);
+        assertThat(visited).containsExactlyElementsIn(set.toList()).inOrder();
+
+        visited.clear();
+        set.forEach(visited::add);
+        assertThat(visited).containsExactlyElementsIn(set.toList()).inOrder();
+      }
+    }
+  }
+
   private NestedSet<Integer> createNestedSet(Order order, int numDirects, int numTransitives,
       Order transitiveOrder) {
     NestedSetBuilder<Integer> builder = new NestedSetBuilder<>(order);
@@ -0,0 +1,116 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.dynamic;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.devtools.build.lib.actions.BaseSpawn;
+import com.google.devtools.build.lib.actions.ResourceSet;
+import com.google.devtools.build.lib.actions.Spawn;
+import com.google.devtools.build.lib.actions.util.ActionsTestUtil.NullAction;
+import com.google.devtools.build.lib.dynamic.DynamicExecutionHistory.Decision;
+import com.google.devtools.build.lib.dynamic.DynamicSpawnStrategy.StrategyIdentifier;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link DynamicExecutionHistory}. */
+@RunWith(JUnit4.class)
+public class DynamicExecutionHistoryTest {
+  private final DynamicExecutionHistory history = new DynamicExecutionHistory();
+  private final Spawn spawn =
+      new BaseSpawn(
+          ImmutableList.of(),
+          ImmutableMap.of(),
+          ImmutableMap.of(),
+          new NullAction(),
+          ResourceSet.ZERO);
+
+  private void recordWins(StrategyIdentifier winner, int times) {
+    for (int i = 0; i < times; i++) {
+      history.recordWinner(spawn, winner);
+    }
+  }
+
+  @Test
+  public void racesWithoutEnoughHistory() {
+    recordWins(StrategyIdentifier.REMOTE, 3);
+
+    assertThat(history.predict(spawn, /*minSamples=*/ 5, /*skipPercentage=*/ 95).decision())
+        .isEqualTo(Decision.RACE);
+  }
+
+  @Test
+  public void skipsSideThatAlwaysLoses() {
+    recordWins(StrategyIdentifier.REMOTE, 10);
+
+    assertThat(history.predict(spawn, /*minSamples=*/ 5, /*skipPercentage=*/ 95).decision())
+        .isEqualTo(Decision.REMOTE_ONLY);
+  }
+
+  @Test
+  public void delaysSideThatUsuallyLoses() {
+    recordWins(StrategyIdentifier.REMOTE, 2);
+    recordWins(StrategyIdentifier.LOCAL, 8);
+
+    assertThat(history.predict(spawn, /*minSamples=*/ 5, /*skipPercentage=*/ 95).decision())
+        .isEqualTo(Decision.DELAY_REMOTE);
+  }
+
+  @Test
+  public void racesAgainPeriodicallyWhenSkipping() {
+    recordWins(StrategyIdentifier.LOCAL, 10);
+
+    boolean raced = false;
+    for (int i = 0; i < 100; i++) {
+      Decision decision =
+          history.predict(spawn, /*minSamples=*/ 5, /*skipPercentage=*/ 95).decision();
+      assertThat(decision).isAnyOf(Decision.LOCAL_ONLY, Decision.RACE);
+      raced |= decision == Decision.RACE;
+    }
+    assertThat(raced).isTrue();
+  }
+
+  @Test
+  public void maxMinSamplesIsReachable() {
+    recordWins(StrategyIdentifier.REMOTE, 1000);
+
+    assertThat(
+            history
+                .predict(
+                    spawn,
+                    /*minSamples=*/ DynamicExecutionHistory.MAX_MIN_SAMPLES,
+                    /*skipPercentage=*/ 95)
+                .decision())
+        .isEqualTo(Decision.REMOTE_ONLY);
+    assertThat(
+            history
+                .predict(
+                    spawn,
+                    /*minSamples=*/ DynamicExecutionHistory.MAX_MIN_SAMPLES + 1,
+                    /*skipPercentage=*/ 95)
+                .decision())
+        .isEqualTo(Decision.RACE);
+  }
+
+  @Test
+  public void ignoresRacesWithoutWinner() {
+    recordWins(StrategyIdentifier.NONE, 10);
+
+    assertThat(history.predict(spawn, /*minSamples=*/ 1, /*skipPercentage=*/ 95).decision())
+        .isEqualTo(Decision.RACE);
+  }
+}
@@ -40,6 +40,9 @@ import com.google.devtools.build.lib.actions.SpawnResult;
 import com.google.devtools.build.lib.actions.UserExecException;
 import com.google.devtools.build.lib.actions.util.ActionsTestUtil;
 import com.google.devtools.build.lib.actions.util.ActionsTestUtil.NullAction;
+import com.google.devtools.build.lib.dynamic.DynamicExecutionHistory.Decision;
+import com.google.devtools.build.lib.dynamic.DynamicExecutionHistory.Prediction;
+import com.google.devtools.build.lib.dynamic.DynamicSpawnStrategy.StrategyIdentifier;
 import com.google.devtools.build.lib.exec.ExecutionPolicy;
 import com.google.devtools.build.lib.testutil.TestThread;
 import com.google.devtools.build.lib.testutil.TestUtils;
@@ -79,6 +82,7 @@ public class DynamicSpawnStrategyTest {
   private FileOutErr outErr;
   private ActionExecutionContext actionExecutionContext;
   private DynamicExecutionOptions options;
+  private DynamicExecutionHistory history;
   private final ActionKeyContext actionKeyContext = new ActionKeyContext();
 
   abstract static class MockSpawnStrategy implements SandboxedSpawnActionContext {
@@ -220,8 +224,9 @@ public class DynamicSpawnStrategyTest {
     public DynamicSpawnStrategyUnderTest(
         ExecutorService executorService,
         DynamicExecutionOptions options,
-        Function<Spawn, ExecutionPolicy> executionPolicy) {
-      super(executorService, options, executionPolicy);
+        Function<Spawn, ExecutionPolicy> executionPolicy,
+        DynamicExecutionHistory history) {
+      super(executorService, options, executionPolicy, history);
     }
   }
 
@@ -256,8 +261,10 @@ public class DynamicSpawnStrategyTest {
     options.dynamicWorkerStrategy = "mock-local";
     options.internalSpawnScheduler = true;
     options.localExecutionDelay = 0;
+    history = new DynamicExecutionHistory();
     dynamicSpawnStrategy =
-        new DynamicSpawnStrategyUnderTest(executorService, options, this::getExecutionPolicy);
+        new DynamicSpawnStrategyUnderTest(
+            executorService, options, this::getExecutionPolicy, history);
     dynamicSpawnStrategy.executorCreated(ImmutableList.of(localStrategy, remoteStrategy));
   }
 
@@ -438,6 +445,79 @@ public class DynamicSpawnStrategyTest {
     assertThat(remoteStrategy.succeeded()).isFalse();
   }
 
+  private void learnWinners() {
+    options.learnWinners = true;
+    options.learnMinSamples = 5;
+    options.skipLoserPercentage = 95;
+  }
+
+  private void recordWins(Spawn spawn, StrategyIdentifier winner, int times) {
+    for (int i = 0; i < times; i++) {
+      history.recordWinner(spawn, winner);
+    }
+  }
+
+  @Test
+  public void learnsWinnerOfFairRace() throws Exception {
+    Spawn spawn = getSpawnForTest(false, false);
+    createSpawnStrategy(/*localDelay=*/ 2000, /*remoteDelay=*/ 0);
+    learnWinners();
+
+    dynamicSpawnStrategy.exec(spawn, actionExecutionContext);
+
+    assertThat(remoteStrategy.succeeded()).isTrue();
+    assertThat(history.predict(spawn, /*minSamples=*/ 1, /*skipPercentage=*/ 95).decision())
+        .isEqualTo(Decision.REMOTE_ONLY);
+  }
+
+  @Test
+  public void skipsSideThatAlwaysLost() throws Exception {
+    Spawn spawn = getSpawnForTest(false, false);
+    createSpawnStrategy(0, 0);
+    learnWinners();
+    recordWins(spawn, StrategyIdentifier.LOCAL, 10);
+
+    dynamicSpawnStrategy.exec(spawn, actionExecutionContext);
+
+    assertThat(localStrategy.succeeded()).isTrue();
+    assertThat(remoteStrategy.getExecutedSpawn()).isNull();
+  }
+
+  @Test
+  public void doesNotLearnFromLossOfDelayedSide() throws Exception {
+    Spawn spawn = getSpawnForTest(false, false);
+    createSpawnStrategy(0, 0);
+    learnWinners();
+    options.localExecutionDelay = 2000;
+    recordWins(spawn, StrategyIdentifier.LOCAL, 3);
+    recordWins(spawn, StrategyIdentifier.REMOTE, 7);
+    Prediction before = history.predict(spawn, options.learnMinSamples, 95);
+    assertThat(before.decision()).isEqualTo(Decision.DELAY_LOCAL);
+
+    dynamicSpawnStrategy.exec(spawn, actionExecutionContext);
+
+    // Remote won because local was held back, which says nothing about which side is faster.
+    assertThat(remoteStrategy.succeeded()).isTrue();
+    assertThat(history.predict(spawn, options.learnMinSamples, 95)).isEqualTo(before);
+  }
+
+  @Test
+  public void learnsWinOfDelayedSide() throws Exception {
+    Spawn spawn = getSpawnForTest(false, false);
+    createSpawnStrategy(/*localDelay=*/ 0, /*remoteDelay=*/ 2000);
+    learnWinners();
+    options.localExecutionDelay = 1;
+    recordWins(spawn, StrategyIdentifier.LOCAL, 3);
+    recordWins(spawn, StrategyIdentifier.REMOTE, 7);
+    Prediction before = history.predict(spawn, options.learnMinSamples, 95);
+    assertThat(before.decision()).isEqualTo(Decision.DELAY_LOCAL);
+
+    dynamicSpawnStrategy.exec(spawn, actionExecutionContext);
+
+    assertThat(localStrategy.succeeded()).isTrue();
+    assertThat(history.predict(spawn, options.learnMinSamples, 95)).isNotEqualTo(before);
+  }
+
   @Test
   public void noDeadlockWithSingleThreadedExecutor() throws Exception {
     final Spawn spawn = getSpawnForTest(/*forceLocal=*/ false, /*forceRemote=*/ false);
@@ -0,0 +1,213 @@
+// Copyright 2019 The Bazel Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.exec;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.devtools.build.lib.actions.ActionInput;
+import com.google.devtools.build.lib.actions.ActionInputHelper;
+import com.google.devtools.build.lib.actions.Artifact;
+import com.google.devtools.build.lib.actions.Artifact.SpecialArtifact;
+import com.google.devtools.build.lib.actions.Artifact.SpecialArtifactType;
+import com.google.devtools.build.lib.actions.ArtifactOwner;
+import com.google.devtools.build.lib.actions.ArtifactRoot;
+import com.google.devtools.build.lib.actions.MetadataProvider;
+import com.google.devtools.build.lib.actions.Spawn;
+import com.google.devtools.build.lib.actions.SpawnResult;
+import com.google.devtools.build.lib.actions.SpawnResult.Status;
+import com.google.devtools.build.lib.collect.nestedset.NestedSet;
+import com.google.devtools.build.lib.collect.nestedset.NestedSetBuilder;
+import com.google.devtools.build.lib.exec.Protos.ExecLogEntry;
+import com.google.devtools.build.lib.exec.util.FakeOwner;
+import com.google.devtools.build.lib.testutil.Scratch;
+import com.google.devtools.build.lib.util.io.MessageOutputStream;
+import com.google.devtools.build.lib.vfs.FileSystem;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.PathFragment;
+import com.google.devtools.build.lib.vfs.Root;
+import com.google.devtools.build.lib.vfs.inmemoryfs.InMemoryFileSystem;
+import com.google.protobuf.Message;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link CompactSpawnLogContext}. */
+@RunWith(JUnit4.class)
+public class CompactSpawnLogContextTest {
+  private static final SpawnResult RESULT =
+      new SpawnResult.Builder().setStatus(Status.SUCCESS).setRunnerName("runner").build();
+
+  private final FileSystem fs = new InMemoryFileSystem();
+  private final Path execRoot = fs.getPath("/execroot");
+  private final List<ExecLogEntry> entries = new ArrayList<>();
+  private final MetadataProvider metadataProvider = mock(MetadataProvider.class);
+  private Scratch scratch;
+  private ArtifactRoot rootDir;
+  private CompactSpawnLogContext context;
+
+  @Before
+  public final void setUp() throws Exception {
+    scratch = new Scratch(fs);
+    rootDir = ArtifactRoot.asSourceRoot(Root.fromPath(scratch.dir("/execroot")));
+    context =
+        new CompactSpawnLogContext(
+            execRoot,
+            new MessageOutputStream() {
+              @Override
+              public void write(Message m) {
+                entries.add((ExecLogEntry) m);
+              }
+
+              @Override
+              public void close() {}
+            });
+  }
+
+  @Test
+  public void logsEachInputOnce() throws Exception {
+    Artifact a = createArtifact("a");
+    Artifact b = createArtifact("b");
+    SpecialArtifact tree = createTreeArtifact("tree");
+    Artifact treeFile1 = createTreeFileArtifact(tree, "f1");
+    Artifact treeFile2 = createTreeFileArtifact(tree, "f2");
+    Artifact runfile = createArtifact("runfile");
+    NestedSet<ActionInput> shared = NestedSetBuilder.<ActionInput>stableOrder().add(a).build();
+    NestedSet<ActionInput> inputs =
+        NestedSetBuilder.<ActionInput>stableOrder().addTransitive(shared).add(b).add(tree).build();
+
+    SortedMap<PathFragment, ActionInput> inputMap = new TreeMap<>();
+    for (Artifact input : ImmutableList.of(a, b, treeFile1, treeFile2)) {
+      inputMap.put(input.getExecPath(), input);
+    }
+    inputMap.put(PathFragment.create("bin.runfiles/runfile"), runfile);
+    context.logSpawn(
+        createSpawn(inputs), metadataProvider, inputMap, Duration.ZERO, RESULT);
+
+    assertThat(readInputs(entries.size() - 1))
+        .containsExactly("a", "b", "tree/f1", "tree/f2", "runfile");
+    assertThat(loggedPaths()).containsExactly("a", "b", "tree/f1", "tree/f2", "runfile");
+  }
+
+  @Test
+  public void reusesSharedInputSets() throws Exception {
+    Artifact a = createArtifact("a");
+    Artifact b = createArtifact("b");
+    NestedSet<ActionInput> shared = NestedSetBuilder.<ActionInput>stableOrder().add(a).build();
+    NestedSet<ActionInput> inputs1 =
+        NestedSetBuilder.<ActionInput>stableOrder().addTransitive(shared).build();
+    NestedSet<ActionInput> inputs2 =
+        NestedSetBuilder.<ActionInput>stableOrder().addTransitive(shared).add(b).build();
+
+    context.logSpawn(
+        createSpawn(inputs1), metadataProvider, inputMap(a), Duration.ZERO, RESULT);
+    int firstSpawnIndex = entries.size() - 1;
+    context.logSpawn(
+        createSpawn(inputs2), metadataProvider, inputMap(a, b), Duration.ZERO, RESULT);
+
+    assertThat(readInputs(firstSpawnIndex)).containsExactly("a");
+    assertThat(readInputs(entries.size() - 1)).containsExactly("a", "b");
+    assertThat(loggedPaths()).containsExactly("a", "b");
+  }
+
+  private Artifact createArtifact(String name) throws Exception {
+    return new Artifact(scratch.file("/execroot/" + name, name), rootDir);
+  }
+
+  private SpecialArtifact createTreeArtifact(String name) throws Exception {
+    scratch.dir("/execroot/" + name);
+    return new SpecialArtifact(
+        rootDir,
+        PathFragment.create(name),
+        ArtifactOwner.NullArtifactOwner.INSTANCE,
+        SpecialArtifactType.TREE);
+  }
+
+  private Artifact createTreeFileArtifact(SpecialArtifact tree, String name) throws Exception {
+    scratch.file("/execroot/" + tree.getExecPathString() + "/" + name, name);
+    return ActionInputHelper.treeFileArtifact(tree, name);
+  }
+
+  private static SortedMap<PathFragment, ActionInput> inputMap(Artifact... inputs) {
+    SortedMap<PathFragment, ActionInput> inputMap = new TreeMap<>();
+    for (Artifact input : inputs) {
+      inputMap.put(input.getExecPath(), input);
+    }
+    return inputMap;
+  }
+
+  private static Spawn createSpawn(NestedSet<ActionInput> inputs) {
+    Spawn spawn = mock(Spawn.class);
+    when(spawn.getArguments()).thenReturn(ImmutableList.of("/bin/true"));
+    when(spawn.getEnvironment()).thenReturn(ImmutableMap.of());
+    when(spawn.getExecutionInfo()).thenReturn(ImmutableMap.of());
+    when(spawn.getInputFiles()).thenAnswer(invocation -> inputs);
+    when(spawn.getOutputFiles()).thenAnswer(invocation -> ImmutableList.of());
+    when(spawn.getResourceOwner()).thenReturn(new FakeOwner("Mnemonic", "progress message"));
+    when(spawn.getMnemonic()).thenReturn("Mnemonic");
+    return spawn;
+  }
+
+  /** Returns the paths of all File entries, in the order in which they were logged. */
+  private List<String> loggedPaths() {
+    List<String> paths = new ArrayList<>();
+    for (ExecLogEntry entry : entries) {
+      if (entry.hasFile()) {
+        paths.add(entry.getFile().getPath());
+      }
+    }
+    return paths;
+  }
+
+  /** Reads back the input paths of the spawn entry at the given index, as a reader would. */
+  private List<String> readInputs(int spawnIndex) {
+    Map<Integer, ExecLogEntry> byId = new HashMap<>();
+    for (ExecLogEntry entry : entries.subList(0, spawnIndex)) {
+      byId.put(entry.getId(), entry);
+    }
+    ExecLogEntry spawn = entries.get(spawnIndex);
+    assertThat(spawn.hasSpawn()).isTrue();
+    List<String> paths = new ArrayList<>();
+    addInputs(byId, spawn.getSpawn().getInputSetId(), paths);
+    return paths;
+  }
+
+  private static void addInputs(Map<Integer, ExecLogEntry> byId, int setId, List<String> paths) {
+    ExecLogEntry.InputSet set = byId.get(setId).getInputSet();
+    for (int id : set.getDirectEntryIdsList()) {
+      ExecLogEntry entry = byId.get(id);
+      if (entry.hasFile()) {
+        paths.add(entry.getFile().getPath());
+      } else {
+        for (Protos.File file : entry.getDirectory().getFilesList()) {
+          paths.add(file.getPath());
+        }
+      }
+    }
+    for (int id : set.getTransitiveSetIdsList()) {
+      addInputs(byId, id, paths);
+    }
+  }
+}
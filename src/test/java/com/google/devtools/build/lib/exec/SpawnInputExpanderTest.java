@@ -314,6 +314,37 @@ public class SpawnInputExpanderTest {
     assertThat(inputMappings).containsEntry(PathFragment.create("treeArtifact/file2"), file2);
   }
 
+  @Test
+  public void testNonArtifactInputTakesPrecedenceOverArtifactInInputs() throws Exception {
+    SpecialArtifact treeArtifact = createTreeArtifact("treeArtifact");
+    TreeFileArtifact file1 = ActionInputHelper.treeFileArtifact(treeArtifact, "file1");
+    TreeFileArtifact file2 = ActionInputHelper.treeFileArtifact(treeArtifact, "file2");
+    ArtifactExpander artifactExpander =
+        (Artifact artifact, Collection<? super Artifact> output) -> {
+          if (artifact.equals(treeArtifact)) {
+            output.addAll(Arrays.asList(file1, file2));
+          }
+        };
+    ActionInput virtualFile1 = ActionInputHelper.fromPath("treeArtifact/file1");
+
+    Spawn spawn =
+        new SpawnBuilder("/bin/echo", "Hello World")
+            .withInput(treeArtifact)
+            .withInput(virtualFile1)
+            .build();
+    inputMappings =
+        expander.getInputMapping(
+            spawn,
+            artifactExpander,
+            ArtifactPathResolver.IDENTITY,
+            new FakeActionInputFileCache(),
+            true);
+    assertThat(inputMappings).hasSize(2);
+    assertThat(inputMappings)
+        .containsEntry(PathFragment.create("treeArtifact/file1"), virtualFile1);
+    assertThat(inputMappings).containsEntry(PathFragment.create("treeArtifact/file2"), file2);
+  }
+
   private SpecialArtifact createTreeArtifact(String relPath) throws IOException {
     Path outputDir = fs.getPath("/root");
     Path outputPath = execRoot.getRelative(relPath);
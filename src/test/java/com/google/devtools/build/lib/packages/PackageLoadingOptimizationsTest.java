@@ -20,6 +20,8 @@ import com.google.devtools.build.lib.cmdline.Label;
 import com.google.devtools.build.lib.cmdline.PackageIdentifier;
 import com.google.devtools.build.lib.events.NullEventHandler;
 import com.google.devtools.build.lib.packages.util.PackageLoadingTestCase;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -53,4 +55,31 @@ public class PackageLoadingOptimizationsTest extends PackageLoadingTestCase {
       assertThat(allLists.get(i)).isSameAs(firstList);
     }
   }
+
+  @Test
+  public void attributeStringValuesAreDedupedIntraPackage() throws Exception {
+    scratch.file(
+        "foo/BUILD",
+        "[sh_library(name = 't' + str(i), tags = ['manual', 'tag' + str(i)],",
+        "    deprecation = 'do' + ' not use') for i in range(10)]");
+
+    Package fooPkg =
+        getPackageManager()
+            .getPackage(NullEventHandler.INSTANCE, PackageIdentifier.createInMainRepo("foo"));
+
+    List<String> manualTags = new ArrayList<>();
+    List<String> deprecations = new ArrayList<>();
+    for (Rule ruleInstance : fooPkg.getTargets(Rule.class)) {
+      @SuppressWarnings("unchecked")
+      List<String> tags = (List<String>) ruleInstance.getAttributeContainer().getAttr("tags");
+      // The lists differ, but their common elements are shared.
+      manualTags.add(tags.get(0));
+      deprecations.add((String) ruleInstance.getAttributeContainer().getAttr("deprecation"));
+    }
+    assertThat(manualTags).hasSize(10);
+    for (int i = 1; i < manualTags.size(); i++) {
+      assertThat(manualTags.get(i)).isSameAs(manualTags.get(0));
+      assertThat(deprecations.get(i)).isSameAs(deprecations.get(0));
+    }
+  }
 }
@@ -90,6 +90,26 @@ public class RuleTest {
                                + "another name for the rule");
   }
 
+  @Test
+  public void testOutputFileMap() throws Exception {
+    Path buildFile = scratch.file("x/BUILD",
+        "genrule(name = 'gen',",
+        "        outs = ['b.txt', 'a.txt'],",
+        "        cmd = 'touch $(OUTS)')",
+        "genrule(name = 'gen2',",
+        "        srcs = ['b.txt'],",
+        "        outs = [],",
+        "        cmd = 'true')");
+    Package pkg = packages.createPackage("x", RootedPath.toRootedPath(root, buildFile));
+
+    Rule gen = pkg.getRule("gen");
+    assertThat(gen.getOutputFileMap().keySet()).containsExactly("outs");
+    assertThat(gen.getOutputFileMap().get("outs"))
+        .containsExactly(pkg.getTarget("b.txt"), pkg.getTarget("a.txt"))
+        .inOrder();
+    assertThat(pkg.getRule("gen2").getOutputFileMap()).isEmpty();
+  }
+
   @Test
   public void testIsLocalTestRuleForLocalEquals1() throws Exception {
     Path buildFile = scratch.file("x/BUILD",
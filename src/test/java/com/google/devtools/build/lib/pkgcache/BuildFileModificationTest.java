@@ -27,7 +27,9 @@ import com.google.devtools.build.lib.analysis.util.AnalysisMock;
 import com.google.devtools.build.lib.analysis.util.DefaultBuildOptionsForTesting;
 import com.google.devtools.build.lib.cmdline.PackageIdentifier;
 import com.google.devtools.build.lib.packages.NoSuchPackageException;
+import com.google.devtools.build.lib.packages.NonconfigurableAttributeMapper;
 import com.google.devtools.build.lib.packages.Package;
+import com.google.devtools.build.lib.packages.Rule;
 import com.google.devtools.build.lib.packages.StarlarkSemanticsOptions;
 import com.google.devtools.build.lib.rules.repository.RepositoryDelegatorFunction;
 import com.google.devtools.build.lib.skyframe.BazelSkyframeExecutorConstants;
@@ -36,6 +38,7 @@ import com.google.devtools.build.lib.skyframe.PrecomputedValue;
 import com.google.devtools.build.lib.skyframe.SequencedSkyframeExecutor;
 import com.google.devtools.build.lib.skyframe.SkyValueDirtinessChecker;
 import com.google.devtools.build.lib.skyframe.SkyframeExecutor;
+import com.google.devtools.build.lib.syntax.Type;
 import com.google.devtools.build.lib.testutil.FoundationTestCase;
 import com.google.devtools.build.lib.testutil.ManualClock;
 import com.google.devtools.build.lib.testutil.TestConstants;
@@ -216,7 +219,7 @@ public class BuildFileModificationTest extends FoundationTestCase {
   }
 
   @Test
-  public void testTouchedBuildFileCausesReloadAfterSync() throws Exception {
+  public void testTouchedBuildFileReusesEquivalentPackageAfterSync() throws Exception {
     Path path = scratch.file("pkg/BUILD",
                              "cc_library(name = 'foo')");
 
@@ -228,7 +231,32 @@ public class BuildFileModificationTest extends FoundationTestCase {
 
     invalidatePackages();
 
+    // The package is loaded again, but it is equivalent to the old one, which is kept.
+    Package newPkg = getPackage("pkg");
+    assertThat(newPkg).isSameAs(oldPkg);
+  }
+
+  @Test
+  public void testReorderedDictIsNotReused() throws Exception {
+    Path path =
+        scratch.file(
+            "pkg/BUILD",
+            "config_setting(name = 'foo', values = {'cpu': 'k8', 'compilation_mode': 'opt'})");
+    Package oldPkg = getPackage("pkg");
+
+    // Same length and attribute locations, only the order of the dict entries changes.
+    clock.advanceMillis(1);
+    FileSystemUtils.writeContent(
+        path,
+        "config_setting(name = 'foo', values = {'compilation_mode': 'opt', 'cpu': 'k8'})"
+            .getBytes(StandardCharsets.ISO_8859_1));
+    invalidatePackages();
+
     Package newPkg = getPackage("pkg");
     assertThat(newPkg).isNotSameAs(oldPkg);
+    Rule rule = (Rule) newPkg.getTarget("foo");
+    assertThat(NonconfigurableAttributeMapper.of(rule).get("values", Type.STRING_DICT).keySet())
+        .containsExactly("compilation_mode", "cpu")
+        .inOrder();
   }
 }
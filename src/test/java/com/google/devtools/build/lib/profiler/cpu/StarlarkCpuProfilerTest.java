@@ -0,0 +1,194 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.profiler.cpu;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.devtools.build.lib.testutil.MoreAsserts.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.build.lib.events.Location;
+import com.google.devtools.build.lib.events.Location.LineAndColumn;
+import com.google.devtools.build.lib.syntax.ASTNode;
+import com.google.devtools.build.lib.syntax.BaseFunction;
+import com.google.devtools.build.lib.syntax.Callstack;
+import com.google.devtools.build.lib.syntax.SyntaxTreeVisitor;
+import com.google.devtools.build.lib.vfs.PathFragment;
+import com.google.perftools.profiles.ProfileProto.Function;
+import com.google.perftools.profiles.ProfileProto.Profile;
+import com.google.perftools.profiles.ProfileProto.Sample;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link StarlarkCpuProfiler}. */
+@RunWith(JUnit4.class)
+public class StarlarkCpuProfilerTest {
+
+  private StarlarkCpuProfiler profiler;
+
+  static class TestNode extends ASTNode {
+    TestNode(String file, int line) {
+      setLocation(location(file, line));
+    }
+
+    @Override
+    public void prettyPrint(Appendable buffer, int indentLevel) throws IOException {}
+
+    @Override
+    public void accept(SyntaxTreeVisitor visitor) {}
+  }
+
+  static class TestFunction extends BaseFunction {
+    TestFunction(String file, String name, int line) {
+      super(name);
+      this.location = location(file, line);
+    }
+  }
+
+  @Before
+  public void setup() {
+    profiler = new StarlarkCpuProfiler(Duration.ofMillis(10));
+  }
+
+  @After
+  public void tearDown() {
+    Callstack.resetStateForTest();
+  }
+
+  @Test
+  public void testSamplesAreAggregatedByCallstack() {
+    List<Object> callstack =
+        ImmutableList.of(
+            new TestNode("fileB", 5),
+            new TestFunction("fileA", "fnA", 120),
+            new TestNode("fileA", 10),
+            new TestNode("fileA", 12));
+    profiler.sample(callstack, 100);
+    profiler.sample(callstack, 50);
+    profiler.sample(ImmutableList.of(new TestNode("fileB", 7)), 30);
+
+    Profile profile = profiler.buildProfile();
+    assertThat(profile.getSampleList()).hasSize(2);
+    for (Sample sample : profile.getSampleList()) {
+      List<String> frames = sampleToCallstack(profile, sample);
+      if (frames.size() == 2) {
+        assertThat(frames).containsExactly("fileA:fnA:12", "fileB:<toplevel>:5").inOrder();
+        assertThat(sample.getValueList()).containsExactly(2L, 150L).inOrder();
+      } else {
+        assertThat(frames).containsExactly("fileB:<toplevel>:7");
+        assertThat(sample.getValueList()).containsExactly(1L, 30L).inOrder();
+      }
+    }
+  }
+
+  @Test
+  public void testNativeFunction() {
+    profiler.sample(
+        ImmutableList.of(
+            new TestFunction("fileA", "fnA", 120),
+            new TestNode("fileA", 10),
+            new TestFunction("<native>", "glob", -1)),
+        10);
+
+    Profile profile = profiler.buildProfile();
+    assertThat(profile.getSampleList()).hasSize(1);
+    assertThat(sampleToCallstack(profile, profile.getSample(0)))
+        .containsExactly("<native>:glob:-1", "fileA:fnA:10")
+        .inOrder();
+  }
+
+  @Test
+  public void testCallstackIsSampledAfterTick() {
+    Callstack.setSampler(profiler);
+    Callstack.push(new TestFunction("fileA", "fnA", 120));
+    Callstack.push(new TestNode("fileA", 10));
+    Callstack.tick();
+    Callstack.push(new TestNode("fileA", 11));
+    // Only the first push after a tick takes a sample.
+    Callstack.push(new TestNode("fileA", 12));
+    Callstack.pop();
+    Callstack.pop();
+    Callstack.pop();
+    Callstack.pop();
+    Callstack.setSampler(null);
+
+    Profile profile = profiler.buildProfile();
+    assertThat(profile.getSampleList()).hasSize(1);
+    assertThat(sampleToCallstack(profile, profile.getSample(0))).containsExactly("fileA:fnA:11");
+    assertThat(profile.getSample(0).getValue(0)).isEqualTo(1L);
+  }
+
+  @Test
+  public void testCallstackIsSampledOnPopAfterTick() {
+    Callstack.setSampler(profiler);
+    Callstack.push(new TestFunction("fileA", "fnA", 120));
+    Callstack.push(new TestFunction("<native>", "glob", -1));
+    // A tick while a leaf runs is attributed to the leaf when it returns.
+    Callstack.tick();
+    Callstack.pop();
+    Callstack.pop();
+    Callstack.setSampler(null);
+
+    Profile profile = profiler.buildProfile();
+    assertThat(profile.getSampleList()).hasSize(1);
+    assertThat(sampleToCallstack(profile, profile.getSample(0)))
+        .containsExactly("<native>:glob:-1", "fileA:fnA:120")
+        .inOrder();
+  }
+
+  @Test
+  public void testPopOnEmptyCallstackFails() {
+    assertThrows(IllegalStateException.class, Callstack::pop);
+  }
+
+  @Test
+  public void testNoSamplesWithoutSampler() {
+    Callstack.push(new TestFunction("fileA", "fnA", 120));
+    Callstack.tick();
+    Callstack.push(new TestNode("fileA", 10));
+    Callstack.pop();
+    Callstack.pop();
+
+    assertThat(profiler.buildProfile().getSampleList()).isEmpty();
+  }
+
+  /** Formats a callstack as (file):(method name):(line) */
+  private List<String> sampleToCallstack(Profile profile, Sample sample) {
+    List<String> result = new ArrayList<>();
+    for (long locationId : sample.getLocationIdList()) {
+      com.google.perftools.profiles.ProfileProto.Location location =
+          profile.getLocation((int) locationId - 1);
+      assertThat(location.getLineList()).hasSize(1);
+      long functionId = location.getLine(0).getFunctionId();
+      long line = location.getLine(0).getLine();
+      Function function = profile.getFunction((int) functionId - 1);
+      String file = profile.getStringTable((int) function.getFilename());
+      String method = profile.getStringTable((int) function.getName());
+      result.add(String.format("%s:%s:%d", file, method, line));
+    }
+    return result;
+  }
+
+  private static Location location(String path, int line) {
+    return Location.fromPathAndStartColumn(
+        PathFragment.create(path), 0, 0, new LineAndColumn(line, 0));
+  }
+}
@@ -25,6 +25,8 @@ import com.google.devtools.build.lib.profiler.memory.AllocationTracker.RuleBytes
 import com.google.devtools.build.lib.syntax.ASTNode;
 import com.google.devtools.build.lib.syntax.BaseFunction;
 import com.google.devtools.build.lib.syntax.Callstack;
+import com.google.devtools.build.lib.syntax.SkylarkDict;
+import com.google.devtools.build.lib.syntax.SkylarkList.MutableList;
 import com.google.devtools.build.lib.syntax.SyntaxTreeVisitor;
 import com.google.devtools.build.lib.vfs.PathFragment;
 import com.google.perftools.profiles.ProfileProto.Function;
@@ -184,6 +186,54 @@ public class AllocationTrackerTest {
         .containsExactly("proto_library", new RuleBytes("proto_library").addBytes(128L));
   }
 
+  @Test
+  public void testStarlarkValuesOnly() {
+    AllocationTracker tracker = AllocationTracker.forStarlarkValues(1, 0, /*maxOverhead=*/ 0);
+    MutableList<Integer> list = MutableList.of(null, 1, 2, 3);
+    SkylarkDict<String, String> dict = SkylarkDict.of(null, "a", "b");
+    Object other = new Object();
+    Callstack.push(new TestFunction("fileA", "fnA", 120));
+    Callstack.push(new TestNode("fileA", 10));
+    tracker.sampleAllocation(1, "", list, 16);
+    tracker.sampleAllocation(1, "", other, 16);
+    Callstack.pop();
+    Callstack.push(new TestNode("fileA", 11));
+    tracker.sampleAllocation(1, "", dict, 24);
+    Callstack.pop();
+    Callstack.pop();
+
+    Profile profile = tracker.buildMemoryProfile();
+    assertThat(profile.getSampleTypeList()).hasSize(2);
+    assertThat(profile.getStringTable((int) profile.getSampleType(0).getType()))
+        .isEqualTo("inuse_objects");
+    assertThat(profile.getStringTable((int) profile.getSampleType(1).getType()))
+        .isEqualTo("inuse_space");
+    Map<String, Sample> samplesByType = new HashMap<>();
+    for (Sample sample : profile.getSampleList()) {
+      assertThat(sample.getLabelList()).hasSize(1);
+      samplesByType.put(profile.getStringTable((int) sample.getLabel(0).getStr()), sample);
+    }
+    assertThat(samplesByType.keySet()).containsExactly("MutableList", "SkylarkDict");
+    Sample listSample = samplesByType.get("MutableList");
+    assertThat(sampleToCallstack(profile, listSample)).containsExactly("fileA:fnA:10");
+    assertThat(listSample.getValue(0)).isEqualTo(1);
+    // The retained size grows with the number of elements.
+    assertThat(listSample.getValue(1)).isGreaterThan(16L + 3 * 8);
+    assertThat(sampleToCallstack(profile, samplesByType.get("SkylarkDict")))
+        .containsExactly("fileA:fnA:11");
+  }
+
+  @Test
+  public void testSamplePeriodIsRaisedWhenOverBudget() {
+    AllocationTracker tracker = AllocationTracker.forStarlarkValues(1, 0, /*maxOverhead=*/ 1e-12);
+    Callstack.push(new TestFunction("fileA", "fnA", 120));
+    tracker.sampleAllocation(1, "", "foo", 24);
+    tracker.sampleAllocation(1, "", "bar", 24);
+    Callstack.pop();
+
+    assertThat(tracker.getSamplePeriod()).isGreaterThan(1);
+  }
+
   /** Formats a callstack as (file):(method name):(line) */
   private List<String> sampleToCallstack(Profile profile, Sample sample) {
     List<String> result = new ArrayList<>();
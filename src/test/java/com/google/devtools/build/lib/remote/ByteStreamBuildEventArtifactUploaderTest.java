@@ -15,12 +15,19 @@ package com.google.devtools.build.lib.remote;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import build.bazel.remote.execution.v2.Digest;
 import com.google.bytestream.ByteStreamProto.WriteRequest;
 import com.google.bytestream.ByteStreamProto.WriteResponse;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListeningScheduledExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.devtools.build.lib.buildeventstream.BuildEvent.LocalFile;
@@ -34,6 +41,7 @@ import com.google.devtools.build.lib.remote.util.TestUtils;
 import com.google.devtools.build.lib.remote.util.TracingMetadataUtils;
 import com.google.devtools.build.lib.vfs.DigestHashFunction;
 import com.google.devtools.build.lib.vfs.FileSystem;
+import com.google.devtools.build.lib.vfs.FileSystemUtils;
 import com.google.devtools.build.lib.vfs.Path;
 import com.google.devtools.build.lib.vfs.inmemoryfs.InMemoryFileSystem;
 import io.grpc.Context;
@@ -44,8 +52,12 @@ import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
 import io.grpc.stub.StreamObserver;
 import io.grpc.util.MutableHandlerRegistry;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.ExecutionException;
@@ -176,6 +188,144 @@ public class ByteStreamBuildEventArtifactUploaderTest {
     artifactUploader.shutdown();
   }
 
+  @Test
+  public void onlyMissingBlobsAreUploaded() throws Exception {
+    Path present = fs.getPath("/present");
+    FileSystemUtils.writeContentAsLatin1(present, "present");
+    Path missing = fs.getPath("/missing");
+    FileSystemUtils.writeContentAsLatin1(missing, "missing");
+    Path duplicate = fs.getPath("/duplicate");
+    FileSystemUtils.writeContentAsLatin1(duplicate, "missing");
+    Digest missingDigest = DIGEST_UTIL.compute(missing);
+    Map<Path, LocalFile> filesToUpload = new HashMap<>();
+    for (Path file : ImmutableList.of(present, missing, duplicate)) {
+      filesToUpload.put(file, new LocalFile(file, LocalFileType.OUTPUT));
+    }
+    List<Iterable<Digest>> queries = new ArrayList<>();
+    ByteStreamUploader uploader = mock(ByteStreamUploader.class);
+    List<Digest> uploadedDigests = recordUploadedDigests(uploader);
+    ByteStreamBuildEventArtifactUploader artifactUploader =
+        new ByteStreamBuildEventArtifactUploader(
+            uploader,
+            "localhost",
+            withEmptyMetadata,
+            "instance",
+            /* maxUploadThreads= */ 100,
+            digests -> {
+              queries.add(digests);
+              return ImmutableSet.of(missingDigest);
+            });
+
+    PathConverter pathConverter = artifactUploader.upload(filesToUpload).get();
+
+    assertThat(queries).hasSize(1);
+    assertThat(queries.get(0))
+        .containsExactly(DIGEST_UTIL.compute(present), missingDigest);
+    assertThat(uploadedDigests).containsExactly(missingDigest);
+    for (Path file : filesToUpload.keySet()) {
+      Digest digest = DIGEST_UTIL.compute(file);
+      assertThat(pathConverter.apply(file))
+          .isEqualTo(
+              "bytestream://localhost/instance/blobs/"
+                  + digest.getHash()
+                  + "/"
+                  + digest.getSizeBytes());
+    }
+    artifactUploader.shutdown();
+  }
+
+  @Test
+  public void allBlobsAreUploadedIfFindingMissingBlobsFails() throws Exception {
+    Path a = fs.getPath("/a");
+    FileSystemUtils.writeContentAsLatin1(a, "a");
+    Path b = fs.getPath("/b");
+    FileSystemUtils.writeContentAsLatin1(b, "b");
+    Map<Path, LocalFile> filesToUpload = new HashMap<>();
+    for (Path file : ImmutableList.of(a, b)) {
+      filesToUpload.put(file, new LocalFile(file, LocalFileType.OUTPUT));
+    }
+    ByteStreamUploader uploader = mock(ByteStreamUploader.class);
+    List<Digest> uploadedDigests = recordUploadedDigests(uploader);
+    ByteStreamBuildEventArtifactUploader artifactUploader =
+        new ByteStreamBuildEventArtifactUploader(
+            uploader,
+            "localhost",
+            withEmptyMetadata,
+            "instance",
+            /* maxUploadThreads= */ 100,
+            digests -> {
+              throw new IOException("unavailable");
+            });
+
+    artifactUploader.upload(filesToUpload).get();
+
+    assertThat(uploadedDigests).containsExactly(DIGEST_UTIL.compute(a), DIGEST_UTIL.compute(b));
+    artifactUploader.shutdown();
+  }
+
+  @Test
+  public void singleBlobIsUploadedWithoutFindingMissingBlobs() throws Exception {
+    Path file = fs.getPath("/file");
+    FileSystemUtils.writeContentAsLatin1(file, "file");
+    Path duplicate = fs.getPath("/duplicate");
+    FileSystemUtils.writeContentAsLatin1(duplicate, "file");
+    Map<Path, LocalFile> filesToUpload = new HashMap<>();
+    for (Path path : ImmutableList.of(file, duplicate)) {
+      filesToUpload.put(path, new LocalFile(path, LocalFileType.OUTPUT));
+    }
+    ByteStreamUploader uploader = mock(ByteStreamUploader.class);
+    List<Digest> uploadedDigests = recordUploadedDigests(uploader);
+    ByteStreamBuildEventArtifactUploader artifactUploader =
+        new ByteStreamBuildEventArtifactUploader(
+            uploader,
+            "localhost",
+            withEmptyMetadata,
+            "instance",
+            /* maxUploadThreads= */ 100,
+            digests -> {
+              throw new AssertionError("unexpected lookup of " + digests);
+            });
+
+    artifactUploader.upload(filesToUpload).get();
+
+    assertThat(uploadedDigests).containsExactly(DIGEST_UTIL.compute(file));
+    artifactUploader.shutdown();
+  }
+
+  @Test
+  public void missingBlobsAreLookedUpInBatches() throws Exception {
+    int numFiles = 2 * ByteStreamBuildEventArtifactUploader.MAX_DIGESTS_PER_LOOKUP + 2;
+    Map<Path, LocalFile> filesToUpload = new HashMap<>();
+    for (int i = 0; i < numFiles; i++) {
+      Path file = fs.getPath("/file" + i);
+      FileSystemUtils.writeContentAsLatin1(file, "content" + i);
+      filesToUpload.put(file, new LocalFile(file, LocalFileType.OUTPUT));
+    }
+    List<Integer> querySizes = Collections.synchronizedList(new ArrayList<>());
+    ByteStreamUploader uploader = mock(ByteStreamUploader.class);
+    List<Digest> uploadedDigests = recordUploadedDigests(uploader);
+    ByteStreamBuildEventArtifactUploader artifactUploader =
+        new ByteStreamBuildEventArtifactUploader(
+            uploader,
+            "localhost",
+            withEmptyMetadata,
+            "instance",
+            /* maxUploadThreads= */ 100,
+            digests -> {
+              querySizes.add(Iterables.size(digests));
+              return ImmutableSet.copyOf(digests);
+            });
+
+    artifactUploader.upload(filesToUpload).get();
+
+    assertThat(querySizes).hasSize(3);
+    assertThat(querySizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(numFiles);
+    assertThat(Collections.max(querySizes))
+        .isAtMost(ByteStreamBuildEventArtifactUploader.MAX_DIGESTS_PER_LOOKUP);
+    assertThat(uploadedDigests).hasSize(numFiles);
+    artifactUploader.shutdown();
+  }
+
   @Test
   public void someUploadsFail() throws Exception {
     // Test that if one of multiple file uploads fails, the upload future fails and that the
@@ -246,4 +396,15 @@ public class ByteStreamBuildEventArtifactUploaderTest {
     assertThat(uploader.refCnt()).isEqualTo(0);
     assertThat(refCntChannel.isShutdown()).isTrue();
   }
+
+  private static List<Digest> recordUploadedDigests(ByteStreamUploader uploader) {
+    List<Digest> uploadedDigests = Collections.synchronizedList(new ArrayList<>());
+    when(uploader.uploadBlobAsync(any(Chunker.class), anyBoolean()))
+        .thenAnswer(
+            invocation -> {
+              uploadedDigests.add(((Chunker) invocation.getArguments()[0]).digest());
+              return Futures.immediateFuture(null);
+            });
+    return uploadedDigests;
+  }
 }
@@ -33,6 +33,7 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.devtools.build.lib.actions.ActionInputHelper;
 import com.google.devtools.build.lib.clock.JavaClock;
 import com.google.devtools.build.lib.remote.blobstore.ConcurrentMapBlobStore;
+import com.google.devtools.build.lib.remote.blobstore.OnDiskBlobStore;
 import com.google.devtools.build.lib.remote.util.DigestUtil;
 import com.google.devtools.build.lib.remote.util.DigestUtil.ActionKey;
 import com.google.devtools.build.lib.remote.util.TracingMetadataUtils;
@@ -462,4 +463,41 @@ public class SimpleBlobStoreActionCacheTest {
             () -> getFromFuture(client.downloadFile(fs.getPath("/exec/root/foo"), digest)));
     assertThat(e).hasMessageThat().contains(digest.getHash());
   }
+
+  @Test
+  public void testDownloadFileFromDiskCache() throws Exception {
+    Path cacheDir = fs.getPath("/cache");
+    cacheDir.createDirectoryAndParents();
+    Digest digest = DIGEST_UTIL.computeAsUtf8("foo-contents");
+    FileSystemUtils.writeContentAsLatin1(cacheDir.getChild(digest.getHash()), "foo-contents");
+    SimpleBlobStoreActionCache client =
+        new SimpleBlobStoreActionCache(
+            Options.getDefaults(RemoteOptions.class), new OnDiskBlobStore(cacheDir), DIGEST_UTIL);
+
+    Path file = execRoot.getRelative("a/foo");
+    getFromFuture(client.downloadFile(file, digest));
+    assertThat(FileSystemUtils.readContent(file, UTF_8)).isEqualTo("foo-contents");
+
+    Digest missingDigest = DIGEST_UTIL.computeAsUtf8("bar-contents");
+    assertThrows(
+        CacheNotFoundException.class,
+        () -> getFromFuture(client.downloadFile(execRoot.getRelative("a/bar"), missingDigest)));
+  }
+
+  @Test
+  public void testDownloadFileFromDiskCacheFailsOnDigestMismatch() throws Exception {
+    Path cacheDir = fs.getPath("/cache");
+    cacheDir.createDirectoryAndParents();
+    Digest digest = DIGEST_UTIL.computeAsUtf8("hello");
+    FileSystemUtils.writeContentAsLatin1(cacheDir.getChild(digest.getHash()), "world");
+    SimpleBlobStoreActionCache client =
+        new SimpleBlobStoreActionCache(
+            Options.getDefaults(RemoteOptions.class), new OnDiskBlobStore(cacheDir), DIGEST_UTIL);
+
+    IOException e =
+        assertThrows(
+            IOException.class,
+            () -> getFromFuture(client.downloadFile(execRoot.getRelative("foo"), digest)));
+    assertThat(e).hasMessageThat().contains(digest.getHash());
+  }
 }
@@ -35,6 +35,7 @@ import com.google.devtools.build.lib.actions.Artifact;
 import com.google.devtools.build.lib.actions.ArtifactRoot;
 import com.google.devtools.build.lib.actions.RunningActionEvent;
 import com.google.devtools.build.lib.actions.SchedulingActionEvent;
+import com.google.devtools.build.lib.actions.SpawnMetrics;
 import com.google.devtools.build.lib.analysis.ConfiguredTarget;
 import com.google.devtools.build.lib.bazel.repository.downloader.DownloadProgressEvent;
 import com.google.devtools.build.lib.buildeventstream.AnnounceBuildEventTransportsEvent;
@@ -59,6 +60,7 @@ import com.google.devtools.build.lib.vfs.Root;
 import com.google.devtools.build.lib.view.test.TestStatus.BlazeTestStatus;
 import java.io.IOException;
 import java.net.URL;
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -1089,6 +1091,36 @@ public class ExperimentalStateTrackerTest extends FoundationTestCase {
     assertThat(output, containsString("30 fetches"));
   }
 
+  @Test
+  public void testCriticalPathShown() throws IOException {
+    ManualClock clock = new ManualClock();
+    ExperimentalStateTracker stateTracker = new ExperimentalStateTracker(clock);
+    Action action = mockAction("Linking foo", "bin/foo");
+    when(action.prettyPrint()).thenReturn("action 'Linking foo'");
+    stateTracker.actionStarted(new ActionStartedEvent(action, clock.nanoTime()));
+    stateTracker.criticalPathUpdate(
+        new CriticalPathUpdateEvent(
+            new AggregatedCriticalPath(
+                Duration.ofSeconds(12),
+                new SpawnMetrics.Builder()
+                    .setRemoteQueueTime(Duration.ofSeconds(2))
+                    .setExecutionWallTime(Duration.ofSeconds(9))
+                    .build(),
+                ImmutableList.of(new CriticalPathComponent(0, action, clock.nanoTime())))));
+
+    LoggingTerminalWriter terminalWriter = new LoggingTerminalWriter(/*discardHighlight=*/ true);
+    stateTracker.writeProgressBar(terminalWriter);
+    String output = terminalWriter.getTranscript();
+    assertThat(output, containsString("Critical path so far 12.00s"));
+    assertThat(output, containsString("queue 2.00s"));
+    assertThat(output, containsString("process 9.00s"));
+    assertThat(output, containsString("ending with action 'Linking foo'"));
+
+    terminalWriter = new LoggingTerminalWriter(/*discardHighlight=*/ true);
+    stateTracker.writeProgressBar(terminalWriter, /* shortVersion=*/ true);
+    assertThat(terminalWriter.getTranscript(), not(containsString("Critical path")));
+  }
+
   private static class FetchEvent implements FetchProgress {
     private final String id;
 
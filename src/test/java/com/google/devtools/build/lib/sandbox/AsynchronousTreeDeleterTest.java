@@ -0,0 +1,72 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.sandbox;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.devtools.build.lib.testutil.TestUtils;
+import com.google.devtools.build.lib.vfs.FileSystem;
+import com.google.devtools.build.lib.vfs.FileSystemUtils;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.inmemoryfs.InMemoryFileSystem;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link AsynchronousTreeDeleter}. */
+@RunWith(JUnit4.class)
+public class AsynchronousTreeDeleterTest {
+  private Path testRoot;
+  private Path trashBase;
+
+  @Before
+  public final void setupTestDirs() throws IOException {
+    FileSystem fileSystem = new InMemoryFileSystem();
+    testRoot = fileSystem.getPath(TestUtils.tmpDir());
+    testRoot.createDirectoryAndParents();
+    trashBase = testRoot.getRelative("trash");
+    trashBase.createDirectory();
+  }
+
+  private static void createTree(Path dir) throws IOException {
+    dir.getRelative("a/b").createDirectoryAndParents();
+    FileSystemUtils.createEmptyFile(dir.getRelative("a/b/file"));
+    FileSystemUtils.createEmptyFile(dir.getRelative("file"));
+  }
+
+  @Test
+  public void deletedTreeIsGoneRightAwayAndTrashIsEmptiedEventually() throws Exception {
+    AsynchronousTreeDeleter deleter = new AsynchronousTreeDeleter(trashBase, 2);
+    Path first = testRoot.getRelative("first");
+    Path second = testRoot.getRelative("second");
+    createTree(first);
+    createTree(second);
+
+    deleter.deleteTree(first);
+    deleter.deleteTree(second);
+
+    assertThat(first.exists()).isFalse();
+    assertThat(second.exists()).isFalse();
+    // The paths can be reused right away.
+    createTree(first);
+
+    deleter.shutdown();
+
+    assertThat(trashBase.getDirectoryEntries()).isEmpty();
+    assertThat(first.getRelative("a/b/file").exists()).isTrue();
+  }
+}
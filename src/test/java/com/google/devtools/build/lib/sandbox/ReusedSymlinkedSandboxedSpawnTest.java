@@ -0,0 +1,133 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.sandbox;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.devtools.build.lib.sandbox.SandboxHelpers.SandboxOutputs;
+import com.google.devtools.build.lib.testutil.TestUtils;
+import com.google.devtools.build.lib.vfs.FileSystem;
+import com.google.devtools.build.lib.vfs.FileSystemUtils;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.PathFragment;
+import com.google.devtools.build.lib.vfs.Symlinks;
+import com.google.devtools.build.lib.vfs.inmemoryfs.InMemoryFileSystem;
+import java.io.IOException;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ReusedSymlinkedSandboxedSpawn} and {@link SandboxStash}. */
+@RunWith(JUnit4.class)
+public class ReusedSymlinkedSandboxedSpawnTest {
+  private Path workspaceDir;
+  private SandboxStash stash;
+
+  @Before
+  public final void setupTestDirs() throws IOException {
+    FileSystem fileSystem = new InMemoryFileSystem();
+    Path testRoot = fileSystem.getPath(TestUtils.tmpDir());
+    testRoot.createDirectoryAndParents();
+
+    workspaceDir = testRoot.getRelative("workspace");
+    workspaceDir.createDirectory();
+    stash = new SandboxStash(testRoot.getRelative("stash"));
+  }
+
+  private ReusedSymlinkedSandboxedSpawn createSpawn(String mnemonic, Map<PathFragment, Path> inputs)
+      throws IOException {
+    Path sandboxPath = stash.take(mnemonic);
+    Path execRoot = sandboxPath.getRelative("execroot");
+    execRoot.createDirectory();
+    return new ReusedSymlinkedSandboxedSpawn(
+        sandboxPath,
+        execRoot,
+        ImmutableList.of("/bin/true"),
+        ImmutableMap.of(),
+        inputs,
+        SandboxOutputs.create(
+            ImmutableSet.of(PathFragment.create("very/output.txt")), ImmutableSet.of()),
+        ImmutableSet.of(),
+        new SynchronousTreeDeleter(),
+        stash,
+        mnemonic);
+  }
+
+  @Test
+  public void reusesSandboxOfSameMnemonic() throws Exception {
+    Path a = workspaceDir.getRelative("a.txt");
+    Path b = workspaceDir.getRelative("b.txt");
+    Path c = workspaceDir.getRelative("c.txt");
+    FileSystemUtils.createEmptyFile(a);
+    FileSystemUtils.createEmptyFile(b);
+    FileSystemUtils.createEmptyFile(c);
+
+    ReusedSymlinkedSandboxedSpawn first =
+        createSpawn(
+            "Javac",
+            ImmutableMap.of(
+                PathFragment.create("in/a.txt"), a, PathFragment.create("in/b.txt"), b));
+    first.createFileSystem();
+    Path execRoot = first.getSandboxExecRoot();
+    FileSystemUtils.createEmptyFile(execRoot.getRelative("very/output.txt"));
+    FileSystemUtils.createEmptyFile(execRoot.getRelative("in/garbage.txt"));
+    first.markSuccessful();
+    first.delete();
+
+    ReusedSymlinkedSandboxedSpawn second =
+        createSpawn(
+            "Javac",
+            ImmutableMap.of(
+                PathFragment.create("in/b.txt"), c, PathFragment.create("other/c.txt"), c));
+    assertThat(second.getSandboxExecRoot()).isEqualTo(execRoot);
+    second.createFileSystem();
+
+    assertThat(execRoot.getRelative("in/a.txt").exists(Symlinks.NOFOLLOW)).isFalse();
+    assertThat(execRoot.getRelative("in/garbage.txt").exists(Symlinks.NOFOLLOW)).isFalse();
+    assertThat(execRoot.getRelative("very/output.txt").exists(Symlinks.NOFOLLOW)).isFalse();
+    assertThat(execRoot.getRelative("very").isDirectory()).isTrue();
+    assertThat(execRoot.getRelative("in/b.txt").resolveSymbolicLinks()).isEqualTo(c);
+    assertThat(execRoot.getRelative("other/c.txt").resolveSymbolicLinks()).isEqualTo(c);
+  }
+
+  @Test
+  public void doesNotShareSandboxBetweenMnemonics() throws Exception {
+    ReusedSymlinkedSandboxedSpawn first = createSpawn("Javac", ImmutableMap.of());
+    first.markSuccessful();
+    first.delete();
+
+    ReusedSymlinkedSandboxedSpawn second = createSpawn("CppCompile", ImmutableMap.of());
+
+    assertThat(second.getSandboxExecRoot()).isNotEqualTo(first.getSandboxExecRoot());
+  }
+
+  @Test
+  public void deletesSandboxOfUnsuccessfulSpawn() throws Exception {
+    ReusedSymlinkedSandboxedSpawn first = createSpawn("Javac", ImmutableMap.of());
+    first.createFileSystem();
+    Path execRoot = first.getSandboxExecRoot();
+    FileSystemUtils.createEmptyFile(execRoot.getRelative("very/output.txt"));
+    first.delete();
+
+    assertThat(execRoot.getParentDirectory().exists()).isFalse();
+    ReusedSymlinkedSandboxedSpawn second = createSpawn("Javac", ImmutableMap.of());
+    assertThat(second.getSandboxExecRoot()).isNotEqualTo(execRoot);
+  }
+}
@@ -0,0 +1,120 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.sandbox;
+
+import com.google.caliper.AfterExperiment;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.devtools.build.lib.sandbox.SandboxHelpers.SandboxOutputs;
+import com.google.devtools.build.lib.testutil.TestUtils;
+import com.google.devtools.build.lib.vfs.DigestHashFunction;
+import com.google.devtools.build.lib.vfs.FileSystemUtils;
+import com.google.devtools.build.lib.vfs.JavaIoFileSystem;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.PathFragment;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the time it takes to set up and tear down a symlinked sandbox, depending on the number
+ * of inputs, with and without reusing sandbox directories. Consecutive spawns share 95% of their
+ * inputs, like consecutive actions with the same mnemonic usually do.
+ */
+public class SymlinkedSandboxedSpawnBenchmark {
+  @Param({"100", "1000", "20000"})
+  int inputCount;
+
+  @Param({"false", "true"})
+  boolean reuse;
+
+  private Path testRoot;
+  private SandboxStash stash;
+  private final TreeDeleter treeDeleter = new SynchronousTreeDeleter();
+  private List<Map<PathFragment, Path>> inputSets;
+
+  @BeforeExperiment
+  void setUp() throws Exception {
+    testRoot =
+        new JavaIoFileSystem(DigestHashFunction.MD5)
+            .getPath(TestUtils.tmpDir())
+            .getRelative("sandbox_benchmark");
+    testRoot.createDirectoryAndParents();
+    Path workspace = testRoot.getRelative("workspace");
+    workspace.createDirectory();
+    Map<PathFragment, Path> first = new HashMap<>();
+    Map<PathFragment, Path> second = new HashMap<>();
+    for (int i = 0; i < inputCount; i++) {
+      Path file = workspace.getRelative("file" + i);
+      FileSystemUtils.createEmptyFile(file);
+      // Spread the inputs over a few directories, like the sources of a real action.
+      PathFragment execPath = PathFragment.create("pkg" + (i % 50) + "/file" + i);
+      if (i % 20 == 0) {
+        first.put(execPath, file);
+        second.put(execPath.replaceName("other" + i), file);
+      } else {
+        first.put(execPath, file);
+        second.put(execPath, file);
+      }
+    }
+    inputSets = ImmutableList.of(first, second);
+    stash = new SandboxStash(testRoot.getRelative("stash"));
+  }
+
+  @AfterExperiment
+  void tearDown() throws Exception {
+    testRoot.deleteTree();
+  }
+
+  @Benchmark
+  void createAndDeleteSandbox(int reps) throws Exception {
+    for (int i = 0; i < reps; i++) {
+      Path sandboxPath = reuse ? stash.take("Benchmark") : testRoot.getRelative("sandbox" + i);
+      sandboxPath.createDirectoryAndParents();
+      Path execRoot = sandboxPath.getRelative("execroot");
+      execRoot.createDirectory();
+      Map<PathFragment, Path> inputs = inputSets.get(i % 2);
+      SandboxOutputs outputs = SandboxOutputs.create(ImmutableSet.of(), ImmutableSet.of());
+      SandboxedSpawn sandbox =
+          reuse
+              ? new ReusedSymlinkedSandboxedSpawn(
+                  sandboxPath,
+                  execRoot,
+                  ImmutableList.of("/bin/true"),
+                  ImmutableMap.of(),
+                  inputs,
+                  outputs,
+                  ImmutableSet.of(),
+                  treeDeleter,
+                  stash,
+                  "Benchmark")
+              : new SymlinkedSandboxedSpawn(
+                  sandboxPath,
+                  execRoot,
+                  ImmutableList.of("/bin/true"),
+                  ImmutableMap.of(),
+                  inputs,
+                  outputs,
+                  ImmutableSet.of(),
+                  treeDeleter);
+      sandbox.createFileSystem();
+      sandbox.delete();
+    }
+  }
+}
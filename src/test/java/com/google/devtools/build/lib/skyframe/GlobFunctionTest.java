@@ -18,12 +18,15 @@ import static org.junit.Assert.fail;
 
 import com.google.common.base.Functions;
 import com.google.common.base.Optional;
+import com.google.common.collect.ConcurrentHashMultiset;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
 import com.google.common.testing.EqualsTester;
 import com.google.devtools.build.lib.actions.FileStateValue;
 import com.google.devtools.build.lib.actions.FileValue;
@@ -64,12 +67,15 @@ import com.google.devtools.build.skyframe.RecordingDifferencer;
 import com.google.devtools.build.skyframe.SequencedRecordingDifferencer;
 import com.google.devtools.build.skyframe.SequentialBuildDriver;
 import com.google.devtools.build.skyframe.SkyFunction;
+import com.google.devtools.build.skyframe.SkyFunctionException;
 import com.google.devtools.build.skyframe.SkyFunctionName;
 import com.google.devtools.build.skyframe.SkyKey;
 import com.google.devtools.build.skyframe.SkyValue;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.Nullable;
@@ -114,6 +120,7 @@ public abstract class GlobFunctionTest {
   private Path outputBase;
   private Path pkgPath;
   private AtomicReference<PathPackageLocator> pkgLocator;
+  private final Multiset<SkyKey> globComputations = ConcurrentHashMultiset.create();
 
   private static final PackageIdentifier PKG_ID = PackageIdentifier.createInMainRepo("pkg");
 
@@ -160,7 +167,22 @@ public abstract class GlobFunctionTest {
             directories);
 
     Map<SkyFunctionName, SkyFunction> skyFunctions = new HashMap<>();
-    skyFunctions.put(SkyFunctions.GLOB, new GlobFunction(alwaysUseDirListing()));
+    GlobFunction globFunction = new GlobFunction(alwaysUseDirListing());
+    skyFunctions.put(
+        SkyFunctions.GLOB,
+        new SkyFunction() {
+          @Override
+          public SkyValue compute(SkyKey skyKey, Environment env)
+              throws SkyFunctionException, InterruptedException {
+            globComputations.add(skyKey);
+            return globFunction.compute(skyKey, env);
+          }
+
+          @Override
+          public String extractTag(SkyKey skyKey) {
+            return globFunction.extractTag(skyKey);
+          }
+        });
     skyFunctions.put(
         SkyFunctions.DIRECTORY_LISTING_STATE,
         new DirectoryListingStateFunction(
@@ -773,6 +795,39 @@ public abstract class GlobFunctionTest {
     assertThat(errorInfo.getException()).hasMessageThat().contains(expectedMessage);
   }
 
+  @Test
+  public void testDoubleStarDoesNotReadSubpackageDirectories() throws Exception {
+    // a2/b2 is another package, so a failure to list it must not fail the glob.
+    fs.stubReaddirError(pkgPath.getRelative("a2/b2"));
+    assertGlobMatches("a2/**", "a2");
+    // The parent glob finds that a2/b2 is a package, and requests no glob for it.
+    assertThat(
+            globComputations.count(
+                GlobValue.internalKey(
+                    PKG_ID,
+                    Root.fromPath(root),
+                    PathFragment.create("a2/b2"),
+                    "**",
+                    /*excludeDirs=*/ false)))
+        .isEqualTo(0);
+  }
+
+  @Test
+  public void testSubdirectoryGlobRestarts() throws Exception {
+    assertGlobMatches("foo/bar/**", "foo/bar/wiz", "foo/bar/wiz/file", "foo/bar");
+    // The parent glob did the package lookup of the subdirectory in its batch with the other
+    // values it needed, so the subdirectory glob restarts only once, for the directory listing.
+    assertThat(
+            globComputations.count(
+                GlobValue.internalKey(
+                    PKG_ID,
+                    Root.fromPath(root),
+                    PathFragment.create("foo/bar/wiz"),
+                    "**",
+                    /*excludeDirs=*/ false)))
+        .isEqualTo(2);
+  }
+
   @Test
   public void testSymlinks() throws Exception {
     FileSystemUtils.createDirectoryAndParents(pkgPath.getRelative("symlinks"));
@@ -785,6 +840,7 @@ public abstract class GlobFunctionTest {
   private static final class CustomInMemoryFs extends InMemoryFileSystem {
 
     private Map<Path, FileStatus> stubbedStats = Maps.newHashMap();
+    private Set<Path> readdirErrors = Sets.newHashSet();
 
     public CustomInMemoryFs(ManualClock manualClock) {
       super(manualClock);
@@ -794,6 +850,10 @@ public abstract class GlobFunctionTest {
       stubbedStats.put(path, stubbedResult);
     }
 
+    public void stubReaddirError(Path path) {
+      readdirErrors.add(path);
+    }
+
     @Override
     public FileStatus statIfFound(Path path, boolean followSymlinks) throws IOException {
       if (stubbedStats.containsKey(path)) {
@@ -801,5 +861,13 @@ public abstract class GlobFunctionTest {
       }
       return super.statIfFound(path, followSymlinks);
     }
+
+    @Override
+    protected Collection<Dirent> readdir(Path path, boolean followSymlinks) throws IOException {
+      if (readdirErrors.contains(path)) {
+        throw new IOException("readdir failed: " + path);
+      }
+      return super.readdir(path, followSymlinks);
+    }
   }
 }
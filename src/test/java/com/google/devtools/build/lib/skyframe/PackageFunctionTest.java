@@ -348,6 +348,40 @@ public class PackageFunctionTest extends BuildViewTestCase {
     assertSrcs(validPackage(skyKey), "foo", "//foo:a.config", "//foo:b.txt");
   }
 
+  @Test
+  public void testEquivalentPackageIsReused() throws Exception {
+    scratch.file("foo/BUILD", "sh_library(name = 'foo', srcs = glob(['*.txt']))");
+    scratch.file("foo/b.txt");
+    preparePackageLoading(rootDirectory);
+    SkyKey skyKey = PackageValue.key(PackageIdentifier.parse("@//foo"));
+    PackageValue value = validPackage(skyKey);
+
+    // A file that does not match the glob and a trailing comment do not change the package.
+    scratch.file("foo/a.config");
+    scratch.overwriteFile(
+        "foo/BUILD", "sh_library(name = 'foo', srcs = glob(['*.txt'])) # comment");
+    getSkyframeExecutor()
+        .invalidateFilesUnderPathForTesting(
+            reporter,
+            ModifiedFileSet.builder()
+                .modify(PathFragment.create("foo/a.config"))
+                .modify(PathFragment.create("foo/BUILD"))
+                .build(),
+            Root.fromPath(rootDirectory));
+    PackageValue unchangedValue = validPackage(skyKey);
+    assertThat(unchangedValue.getPackage()).isSameAs(value.getPackage());
+
+    scratch.file("foo/c.txt");
+    getSkyframeExecutor()
+        .invalidateFilesUnderPathForTesting(
+            reporter,
+            ModifiedFileSet.builder().modify(PathFragment.create("foo/c.txt")).build(),
+            Root.fromPath(rootDirectory));
+    PackageValue changedValue = validPackage(skyKey);
+    assertThat(changedValue.getPackage()).isNotSameAs(value.getPackage());
+    assertSrcs(changedValue, "foo", "//foo:b.txt", "//foo:c.txt");
+  }
+
   /**
    * Tests that a symlink to a file outside of the package root is handled consistently. If the
    * default behavior of Bazel was changed from {@code
@@ -0,0 +1,169 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.skyframe;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.Hashing;
+import com.google.devtools.build.lib.events.EventCollector;
+import com.google.devtools.build.lib.events.EventKind;
+import com.google.devtools.build.lib.syntax.ParseResultCodec;
+import com.google.devtools.build.lib.syntax.Parser;
+import com.google.devtools.build.lib.syntax.Parser.ParseResult;
+import com.google.devtools.build.lib.syntax.ParserInputSource;
+import com.google.devtools.build.lib.testutil.ManualClock;
+import com.google.devtools.build.lib.vfs.FileSystemUtils;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.PathFragment;
+import com.google.devtools.build.lib.vfs.inmemoryfs.InMemoryFileSystem;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link PersistentParseCache}. */
+@RunWith(JUnit4.class)
+public class PersistentParseCacheTest {
+
+  private static final PathFragment BUILD_FILE = PathFragment.create("/workspace/pkg/BUILD");
+  private static final long MAX_SIZE = 1 << 20;
+
+  private final ManualClock clock = new ManualClock();
+  private Path cacheDir;
+  private PersistentParseCache cache;
+  private EventCollector events;
+
+  @Before
+  public final void setUp() throws Exception {
+    cacheDir = new InMemoryFileSystem(clock).getPath("/output_base/parse_cache/install_md5");
+    cache = new PersistentParseCache(cacheDir);
+    events = new EventCollector(EventKind.ALL_EVENTS);
+  }
+
+  private List<Path> cacheEntries() throws Exception {
+    List<Path> entries = new ArrayList<>();
+    if (cacheDir.exists()) {
+      for (Path dir : cacheDir.getDirectoryEntries()) {
+        entries.addAll(dir.getDirectoryEntries());
+      }
+    }
+    return entries;
+  }
+
+  @Test
+  public void testDisabledCacheWritesNothing() throws Exception {
+    ParseResult result = cache.parse("x = 1".getBytes(UTF_8), BUILD_FILE, events);
+
+    assertThat(result.statements).hasSize(1);
+    assertThat(cacheEntries()).isEmpty();
+  }
+
+  @Test
+  public void testSecondParseIsReadFromDisk() throws Exception {
+    cache.setEnabled(true, MAX_SIZE);
+    byte[] bytes = "x = [1, 2]\ny = x + [3]".getBytes(UTF_8);
+    ParseResult parsed = cache.parse(bytes, BUILD_FILE, events);
+    assertThat(cacheEntries()).hasSize(1);
+    assertThat(cache.parse(bytes, BUILD_FILE, events).statements.toString())
+        .isEqualTo(parsed.statements.toString());
+
+    // Replace the entry with another result, to show that the second parse comes from disk.
+    Path entry = cacheEntries().get(0);
+    ParseResult other =
+        Parser.parseFile(
+            ParserInputSource.create("z = 1".getBytes(UTF_8), BUILD_FILE), events);
+    FileSystemUtils.writeContent(entry, ParseResultCodec.encode(other));
+
+    ParseResult restored = cache.parse(bytes, BUILD_FILE, events);
+
+    assertThat(restored.statements.toString()).isEqualTo(other.statements.toString());
+  }
+
+  @Test
+  public void testCorruptEntryFallsBackToParsing() throws Exception {
+    cache.setEnabled(true, MAX_SIZE);
+    byte[] bytes = "x = 1".getBytes(UTF_8);
+    cache.parse(bytes, BUILD_FILE, events);
+    Path entry = cacheEntries().get(0);
+    FileSystemUtils.writeContent(entry, new byte[] {1, 2, 3});
+
+    ParseResult result = cache.parse(bytes, BUILD_FILE, events);
+
+    assertThat(result.containsErrors).isFalse();
+    assertThat(result.statements).hasSize(1);
+    // The corrupt entry is replaced.
+    assertThat(FileSystemUtils.readContent(entry).length).isGreaterThan(3);
+  }
+
+  @Test
+  public void testResultsWithErrorsAreNotStored() throws Exception {
+    cache.setEnabled(true, MAX_SIZE);
+    ParseResult result = cache.parse("x = (".getBytes(UTF_8), BUILD_FILE, events);
+
+    assertThat(result.containsErrors).isTrue();
+    assertThat(events.count()).isGreaterThan(0);
+    assertThat(cacheEntries()).isEmpty();
+  }
+
+  @Test
+  public void testCacheWithoutDirectoryCannotBeEnabled() throws Exception {
+    PersistentParseCache noCache = new PersistentParseCache(null);
+    noCache.setEnabled(true, MAX_SIZE);
+
+    assertThat(noCache.isEnabled()).isFalse();
+    assertThat(noCache.parse("x = 1".getBytes(UTF_8), BUILD_FILE, events).statements).hasSize(1);
+  }
+
+  @Test
+  public void testGarbageCollectionDeletesLeastRecentlyUsedEntries() throws Exception {
+    cache.setEnabled(true, MAX_SIZE);
+    byte[] first = "x = 1".getBytes(UTF_8);
+    byte[] second = "y = 2".getBytes(UTF_8);
+    byte[] third = "z = 3".getBytes(UTF_8);
+    cache.parse(first, BUILD_FILE, events);
+    clock.advanceMillis(1000);
+    cache.parse(second, BUILD_FILE, events);
+    clock.advanceMillis(1000);
+    cache.parse(third, BUILD_FILE, events);
+    clock.advanceMillis(1000);
+    // Reading the first entry makes the second one the least recently used.
+    cache.parse(first, BUILD_FILE, events);
+    long entrySize = cacheEntries().get(0).getFileSize();
+
+    cache.collectGarbage(2 * entrySize);
+
+    assertThat(cacheEntries()).hasSize(2);
+    String staleKey = Hashing.sha256().hashBytes(second).toString();
+    assertThat(cacheDir.getRelative(staleKey.substring(0, 2)).getRelative(staleKey).exists())
+        .isFalse();
+  }
+
+  @Test
+  public void testGarbageCollectionDeletesCachesOfOtherBinaries() throws Exception {
+    Path otherCache = cacheDir.getParentDirectory().getRelative("other_md5");
+    otherCache.getRelative("ab").createDirectoryAndParents();
+    cacheDir.getRelative("ab").createDirectoryAndParents();
+    FileSystemUtils.writeContent(otherCache.getRelative("ab/abcd"), new byte[] {1});
+    FileSystemUtils.writeContent(cacheDir.getRelative("ab/abcd.tmp1"), new byte[] {1});
+
+    cache.setEnabled(true, MAX_SIZE);
+
+    assertThat(otherCache.exists()).isFalse();
+    assertThat(cacheEntries()).isEmpty();
+  }
+}
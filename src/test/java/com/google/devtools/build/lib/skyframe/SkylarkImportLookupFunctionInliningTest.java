@@ -0,0 +1,187 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.skyframe;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.devtools.build.lib.testutil.MoreAsserts.assertThrows;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.devtools.build.lib.actions.InconsistentFilesystemException;
+import com.google.devtools.build.lib.analysis.BlazeDirectories;
+import com.google.devtools.build.lib.analysis.util.AnalysisMock;
+import com.google.devtools.build.lib.analysis.util.BuildViewTestCase;
+import com.google.devtools.build.lib.cmdline.Label;
+import com.google.devtools.build.lib.skyframe.SkylarkImportLookupFunction.SkylarkImportFailedException;
+import com.google.devtools.build.lib.skyframe.util.SkyframeExecutorTestUtils;
+import com.google.devtools.build.skyframe.EvaluationResult;
+import com.google.devtools.build.skyframe.SkyFunction;
+import com.google.devtools.build.skyframe.SkyFunctionName;
+import com.google.devtools.build.skyframe.SkyKey;
+import com.google.devtools.build.skyframe.SkyValue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.Nullable;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link SkylarkImportLookupFunction#computeWithInlineCalls}. */
+@RunWith(JUnit4.class)
+public class SkylarkImportLookupFunctionInliningTest extends BuildViewTestCase {
+  private static final SkyFunctionName INLINE_IMPORT_FUNCTION =
+      SkyFunctionName.createHermetic("INLINE_IMPORT_FUNCTION");
+
+  private final ExecutorService executorService = Executors.newFixedThreadPool(4);
+  private Executor inlineEvaluationExecutor = executorService;
+
+  /** An {@link AnalysisMock} that injects {@link InlineImportFunction}. */
+  private final class AnalysisMockWithInlineImportFunction extends AnalysisMock.Delegate {
+    AnalysisMockWithInlineImportFunction() {
+      super(AnalysisMock.get());
+    }
+
+    @Override
+    public ImmutableMap<SkyFunctionName, SkyFunction> getSkyFunctions(
+        BlazeDirectories directories) {
+      return ImmutableMap.<SkyFunctionName, SkyFunction>builder()
+          .putAll(super.getSkyFunctions(directories))
+          .put(INLINE_IMPORT_FUNCTION, new InlineImportFunction())
+          .build();
+    }
+  }
+
+  @Override
+  protected AnalysisMock getAnalysisMock() {
+    return new AnalysisMockWithInlineImportFunction();
+  }
+
+  @After
+  public final void shutDownExecutor() {
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void testDiamondLoadIsEvaluatedOnce() throws Exception {
+    scratch.file("pkg/BUILD");
+    scratch.file("pkg/a.bzl", "load(':b.bzl', 'b')", "load(':c.bzl', 'c')", "a = b + c");
+    scratch.file("pkg/b.bzl", "load(':d.bzl', 'd')", "b = d");
+    scratch.file("pkg/c.bzl", "load(':d.bzl', 'd')", "c = d");
+    scratch.file("pkg/d.bzl", "print('evaluating d')", "d = 1");
+
+    assertThat(evaluate("//pkg:a.bzl").error).isNull();
+    assertContainsEventWithFrequency("evaluating d", 1);
+  }
+
+  @Test
+  public void testFirstFailureInLoadOrderIsReported() throws Exception {
+    scratch.file("pkg/BUILD");
+    scratch.file("pkg/a.bzl", "load(':b.bzl', 'b')", "load(':c.bzl', 'c')");
+    // b.bzl comes first in load order but takes longer to fail than c.bzl.
+    scratch.file(
+        "pkg/b.bzl",
+        "def busy():",
+        "  return len([i for i in range(200000)])",
+        "print('evaluating b')",
+        "b = busy()",
+        "fail('b failed')");
+    scratch.file("pkg/c.bzl", "print('evaluating c')", "fail('c failed')");
+    reporter.removeHandler(failFastHandler);
+
+    assertThat(evaluate("//pkg:a.bzl").error).isEqualTo("Extension file 'pkg/b.bzl' has errors");
+    assertContainsEvent("evaluating b");
+    assertContainsEvent("b failed");
+    assertDoesNotContainEvent("evaluating c");
+    assertDoesNotContainEvent("c failed");
+  }
+
+  @Test
+  public void testInterruptIsPropagated() throws Exception {
+    scratch.file("pkg/BUILD");
+    scratch.file("pkg/a.bzl", "load(':b.bzl', 'b')", "load(':c.bzl', 'c')");
+    scratch.file("pkg/b.bzl", "b = 1");
+    scratch.file("pkg/c.bzl", "c = 1");
+    // Never runs the evaluation, and interrupts the thread that waits for it.
+    inlineEvaluationExecutor = command -> Thread.currentThread().interrupt();
+
+    assertThrows(InterruptedException.class, () -> evaluate("//pkg:a.bzl"));
+  }
+
+  private InlineImportValue evaluate(String label) throws InterruptedException {
+    SkyKey key =
+        new InlineImportKey(SkylarkImportLookupValue.key(Label.parseAbsoluteUnchecked(label)));
+    EvaluationResult<InlineImportValue> result =
+        SkyframeExecutorTestUtils.evaluate(skyframeExecutor, key, /*keepGoing=*/ false, reporter);
+    assertThat(result.hasError()).isFalse();
+    return result.get(key);
+  }
+
+  private static final class InlineImportKey implements SkyKey {
+    private final SkyKey importKey;
+
+    InlineImportKey(SkyKey importKey) {
+      this.importKey = importKey;
+    }
+
+    @Override
+    public SkyFunctionName functionName() {
+      return INLINE_IMPORT_FUNCTION;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof InlineImportKey && ((InlineImportKey) obj).importKey.equals(importKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return importKey.hashCode();
+    }
+  }
+
+  private static final class InlineImportValue implements SkyValue {
+    @Nullable private final String error;
+
+    InlineImportValue(@Nullable String error) {
+      this.error = error;
+    }
+  }
+
+  /** Loads the file of an {@link InlineImportKey} with all its imports inlined. */
+  private final class InlineImportFunction implements SkyFunction {
+    @Nullable
+    @Override
+    public SkyValue compute(SkyKey skyKey, Environment env) throws InterruptedException {
+      SkylarkImportLookupFunction function =
+          new SkylarkImportLookupFunction(
+              getRuleClassProvider(), getPackageFactory(), inlineEvaluationExecutor);
+      function.resetCache();
+      try {
+        if (function.computeWithInlineCalls(((InlineImportKey) skyKey).importKey, env) == null) {
+          return null;
+        }
+        return new InlineImportValue(null);
+      } catch (SkylarkImportFailedException | InconsistentFilesystemException e) {
+        return new InlineImportValue(e.getMessage());
+      }
+    }
+
+    @Nullable
+    @Override
+    public String extractTag(SkyKey skyKey) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.syntax;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import com.google.devtools.build.lib.events.EventHandler;
+import com.google.devtools.build.lib.events.EventKind;
+import com.google.devtools.build.lib.events.PrintingEventHandler;
+import com.google.devtools.build.lib.packages.BazelLibrary;
+
+/**
+ * Measures the evaluation of a .bzl file whose functions do the kind of work macros and rule
+ * implementations usually do: many small calls, loops over lists, string formatting and dict
+ * building. Compares functions whose local variables were resolved to slots by {@link
+ * ValidationEnvironment} with functions that look their variables up by name.
+ */
+public class FunctionCallBenchmark {
+  private static final String[] BZL = {
+    "def _label(pkg, name):",
+    "  if name.startswith(':'):",
+    "    name = name[1:]",
+    "  return '//%s:%s' % (pkg, name)",
+    "",
+    "def _merge(base, extra):",
+    "  result = dict(base)",
+    "  for key, value in extra.items():",
+    "    if key in result:",
+    "      result[key] = result[key] + value",
+    "    else:",
+    "      result[key] = value",
+    "  return result",
+    "",
+    "def _target(pkg, i, deps):",
+    "  name = 'lib%d' % i",
+    "  srcs = [name + '_' + str(j) + '.cc' for j in range(5)]",
+    "  copts = ['-DNAME=' + name]",
+    "  attrs = _merge({'srcs': srcs, 'copts': copts}, {'copts': ['-O2']})",
+    "  attrs['deps'] = [_label(pkg, d) for d in deps]",
+    "  attrs['name'] = name",
+    "  return attrs",
+    "",
+    "def main(pkg, count):",
+    "  targets = []",
+    "  deps = []",
+    "  for i in range(count):",
+    "    targets.append(_target(pkg, i, deps))",
+    "    deps = deps[-3:] + [':lib%d' % i]",
+    "  total = 0",
+    "  for t in targets:",
+    "    total += len(t['srcs']) + len(t['deps'])",
+    "  return total",
+    "",
+    "result = main('foo/bar', 200)",
+  };
+
+  @Param({"false", "true"})
+  boolean resolved;
+
+  private final EventHandler eventHandler =
+      new PrintingEventHandler(EventKind.ERRORS_AND_WARNINGS_AND_OUTPUT);
+  private BuildFileAST ast;
+
+  private Environment newEnvironment(Mutability mutability) {
+    return Environment.builder(mutability)
+        .useDefaultSemantics()
+        .setGlobals(BazelLibrary.GLOBALS)
+        .setEventHandler(eventHandler)
+        .build();
+  }
+
+  @BeforeExperiment
+  void setUp() throws Exception {
+    ast = BuildFileAST.parseString(eventHandler, BZL);
+    if (resolved) {
+      try (Mutability mutability = Mutability.create("validation")) {
+        ValidationEnvironment.validateAst(newEnvironment(mutability), ast.getStatements());
+      }
+    }
+  }
+
+  @Benchmark
+  void evaluate(int reps) throws Exception {
+    for (int i = 0; i < reps; i++) {
+      try (Mutability mutability = Mutability.create("benchmark")) {
+        if (!ast.exec(newEnvironment(mutability), eventHandler)) {
+          throw new IllegalStateException("evaluation failed");
+        }
+      }
+    }
+  }
+}
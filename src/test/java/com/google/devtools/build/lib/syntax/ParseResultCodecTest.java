@@ -0,0 +1,139 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.syntax;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.devtools.build.lib.testutil.MoreAsserts.assertThrows;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Joiner;
+import com.google.devtools.build.lib.events.EventCollector;
+import com.google.devtools.build.lib.events.EventKind;
+import com.google.devtools.build.lib.syntax.Parser.ParseResult;
+import com.google.devtools.build.lib.vfs.PathFragment;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ParseResultCodec}. */
+@RunWith(JUnit4.class)
+public class ParseResultCodecTest {
+
+  private static final PathFragment PATH = PathFragment.create("/a/b/foo.bzl");
+
+  private static ParseResult parse(String... lines) throws IOException {
+    EventCollector events = new EventCollector(EventKind.ALL_EVENTS);
+    byte[] bytes = Joiner.on("\n").join(lines).getBytes(UTF_8);
+    return Parser.parseFile(ParserInputSource.create(bytes, PATH), events);
+  }
+
+  private static ParseResult roundTrip(ParseResult result, PathFragment path) throws IOException {
+    return ParseResultCodec.decode(ParseResultCodec.encode(result), path);
+  }
+
+  /**
+   * Returns the class and start and end positions of every node in the result, in visiting order.
+   */
+  private static List<String> nodeLocations(ParseResult result) {
+    List<String> locations = new ArrayList<>();
+    new SyntaxTreeVisitor() {
+      @Override
+      public void visit(ASTNode node) {
+        locations.add(
+            node.getClass().getSimpleName()
+                + "@"
+                + node.getLocation().getStartLineAndColumn()
+                + "-"
+                + node.getLocation().getEndLineAndColumn());
+        super.visit(node);
+      }
+    }.visitAll(result.statements);
+    return locations;
+  }
+
+  private static void assertRoundTrips(String... lines) throws IOException {
+    ParseResult original = parse(lines);
+    assertThat(original.containsErrors).isFalse();
+    ParseResult decoded = roundTrip(original, PATH);
+
+    assertThat(decoded.containsErrors).isFalse();
+    assertThat(decoded.statements.toString()).isEqualTo(original.statements.toString());
+    assertThat(decoded.comments.toString()).isEqualTo(original.comments.toString());
+    assertThat(nodeLocations(decoded)).isEqualTo(nodeLocations(original));
+    assertThat(decoded.location.getStartOffset()).isEqualTo(original.location.getStartOffset());
+    assertThat(decoded.location.getEndOffset()).isEqualTo(original.location.getEndOffset());
+  }
+
+  @Test
+  public void testDefinitions() throws Exception {
+    assertRoundTrips(
+        "load(':foo.bzl', 'a', b = 'c')",
+        "# A comment",
+        "def f(x, y = 1, *args, z, w = [], **kwargs):",
+        "  '''Docstring.'''",
+        "  x += y",
+        "  if x and not y:",
+        "    pass",
+        "  elif x > 3 or -y in [1, 2]:",
+        "    return",
+        "  else:",
+        "    for i, j in kwargs.items():",
+        "      if i == None:",
+        "        continue",
+        "      break",
+        "  return x[1:2:3], args[-1], f(*args, **kwargs)",
+        "",
+        "def g(*, a):",
+        "  return a if a else None",
+        "",
+        "x = [y * 2 for y in range(10) if y % 2 for z in []]",
+        "d = {k: v for k, v in {'a': 1, 'b': (2,)}.items()}",
+        "s = 'a' + \"b\" + 'x %s' % 1",
+        "x[0], d.y = 1, 2");
+  }
+
+  @Test
+  public void testEmptyFile() throws Exception {
+    assertRoundTrips("");
+  }
+
+  @Test
+  public void testLocationsUseDecodingPath() throws Exception {
+    PathFragment other = PathFragment.create("/c/d/other.bzl");
+    ParseResult decoded = roundTrip(parse("x = 1", "", "y = 2"), other);
+
+    assertThat(decoded.statements.get(1).getLocation().getPath()).isEqualTo(other);
+    assertThat(decoded.statements.get(1).getLocation().getStartLine()).isEqualTo(3);
+    assertThat(decoded.location.getPath()).isEqualTo(other);
+  }
+
+  @Test
+  public void testResultWithErrorsIsRejected() throws Exception {
+    ParseResult result = parse("x = (");
+    assertThat(result.containsErrors).isTrue();
+    assertThrows(IllegalArgumentException.class, () -> ParseResultCodec.encode(result));
+  }
+
+  @Test
+  public void testCorruptInputIsRejected() throws Exception {
+    byte[] bytes = ParseResultCodec.encode(parse("x = [1, 2, 3]"));
+    byte[] truncated = new byte[bytes.length / 2];
+    System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+    assertThrows(IOException.class, () -> ParseResultCodec.decode(truncated, PATH));
+  }
+}
@@ -537,6 +537,17 @@ public class SkylarkEvaluationTest extends EvaluationTest {
     }
   }
 
+  @SkylarkModule(name = "MockWithSameMethodName", doc = "")
+  static final class MockWithSameMethodName {
+    @SkylarkCallable(
+        name = "value_of",
+        parameters = {@Param(name = "str", type = String.class)},
+        documented = false)
+    public String valueOf(String str) {
+      return "other " + str;
+    }
+  }
+
   @SkylarkModule(name = "MockClassObject", documented = false, doc = "")
   static final class MockClassObject implements ClassObject {
     @Override
@@ -1031,6 +1042,18 @@ public class SkylarkEvaluationTest extends EvaluationTest {
         .testLookup("b", Boolean.FALSE);
   }
 
+  @Test
+  public void testJavaCallSiteWithReceiversOfDifferentClasses() throws Exception {
+    new SkylarkTest()
+        .update("mock", new Mock())
+        .update("other", new MockWithSameMethodName())
+        .setUp(
+            "def value_of(x):",
+            "  return x.value_of('1')",
+            "a = [value_of(mock), value_of(other), value_of(mock), 'x'.upper()]")
+        .testEval("a", "[1, 'other 1', 1, 'X']");
+  }
+
   @Test
   public void testJavaCallsOnInterface() throws Exception {
     new SkylarkTest()
@@ -17,6 +17,7 @@ import static com.google.common.truth.Truth.assertThat;
 
 import com.google.devtools.build.lib.events.Event;
 import com.google.devtools.build.lib.syntax.util.EvaluationTestCase;
+import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -267,6 +268,34 @@ public class ValidationTest extends EvaluationTestCase {
         "fct(1, *[2], a=3)");
   }
 
+  @Test
+  public void testFunctionLocalsAreAssignedToSlots() throws Exception {
+    List<Statement> statements =
+        parseFile(
+            "g = 1",
+            "def f(a, b):",
+            "  c = [x for x in a]",
+            "  x = b + g",
+            "  return c");
+    assertNoWarningsOrErrors();
+
+    FunctionDefStatement def = (FunctionDefStatement) statements.get(1);
+    FrameLayout layout = def.getFrameLayout();
+    assertThat(layout.size()).isEqualTo(4);
+    assertThat(layout.getSlot("a")).isEqualTo(0);
+    assertThat(layout.getSlot("b")).isEqualTo(1);
+    // The loop variable of the comprehension shares the slot of the local variable 'x'.
+    assertThat(layout.getName(layout.getSlot("x"))).isEqualTo("x");
+    assertThat(layout.getSlot("g")).isEqualTo(-1);
+
+    AssignmentStatement assignment = (AssignmentStatement) def.getStatements().get(1);
+    assertThat(((Identifier) assignment.getLValue().getExpression()).getSlot())
+        .isEqualTo(layout.getSlot("x"));
+    BinaryOperatorExpression sum = (BinaryOperatorExpression) assignment.getExpression();
+    assertThat(((Identifier) sum.getLhs()).getSlot()).isEqualTo(1);
+    assertThat(((Identifier) sum.getRhs()).getSlot()).isEqualTo(-1);
+  }
+
   private void parse(String... lines) {
     parseFile(lines);
     assertNoWarningsOrErrors();
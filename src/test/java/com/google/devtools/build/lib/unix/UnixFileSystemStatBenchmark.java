@@ -0,0 +1,81 @@
+// Copyright 2019 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.unix;
+
+import com.google.caliper.AfterExperiment;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import com.google.devtools.build.lib.testutil.TestUtils;
+import com.google.devtools.build.lib.vfs.DigestHashFunction;
+import com.google.devtools.build.lib.vfs.FileSystemUtils;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.Symlinks;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares stat()ing the files of a large tree one path at a time with stat()ing them in a single
+ * batch through {@link UnixFileSystem#statIfFound(List, boolean)}.
+ */
+public class UnixFileSystemStatBenchmark {
+  @Param({"1000", "100000"})
+  int fileCount;
+
+  private Path testRoot;
+  private UnixFileSystem fileSystem;
+  private final List<Path> paths = new ArrayList<>();
+
+  @BeforeExperiment
+  void setUp() throws Exception {
+    fileSystem = new UnixFileSystem(DigestHashFunction.MD5);
+    testRoot = fileSystem.getPath(TestUtils.tmpDir()).getRelative("stat_benchmark");
+    testRoot.createDirectoryAndParents();
+    for (int i = 0; i < fileCount; i++) {
+      // Spread the files over a tree of directories, like the outputs of a real build.
+      Path dir = testRoot.getRelative("dir" + (i % 100)).getRelative("sub" + (i % 7));
+      dir.createDirectoryAndParents();
+      Path file = dir.getRelative("file" + i);
+      FileSystemUtils.createEmptyFile(file);
+      paths.add(file);
+    }
+  }
+
+  @AfterExperiment
+  void tearDown() throws Exception {
+    testRoot.deleteTree();
+  }
+
+  @Benchmark
+  int statEachPath(int reps) throws Exception {
+    int found = 0;
+    for (int i = 0; i < reps; i++) {
+      for (Path path : paths) {
+        if (path.statIfFound(Symlinks.NOFOLLOW) != null) {
+          found++;
+        }
+      }
+    }
+    return found;
+  }
+
+  @Benchmark
+  int statBatch(int reps) throws Exception {
+    int found = 0;
+    for (int i = 0; i < reps; i++) {
+      found += fileSystem.statIfFound(paths, /*followSymlinks=*/ false).size();
+    }
+    return found;
+  }
+}
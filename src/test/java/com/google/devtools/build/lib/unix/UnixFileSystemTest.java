@@ -15,14 +15,25 @@ package com.google.devtools.build.lib.unix;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeNoException;
 
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import com.google.devtools.build.lib.vfs.DigestHashFunction;
+import com.google.devtools.build.lib.vfs.FileStatus;
 import com.google.devtools.build.lib.vfs.FileSystem;
 import com.google.devtools.build.lib.vfs.FileSystemUtils;
 import com.google.devtools.build.lib.vfs.Path;
 import com.google.devtools.build.lib.vfs.SymlinkAwareFileSystemTest;
 import com.google.devtools.build.lib.vfs.Symlinks;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 import org.junit.Test;
 
 /** Tests for the {@link com.google.devtools.build.lib.unix.UnixFileSystem} class. */
@@ -75,4 +86,122 @@ public class UnixFileSystemTest extends SymlinkAwareFileSystemTest {
     assertThat(fifo.stat().isFile()).isTrue();
     assertThat(fifo.stat().isSpecialFile()).isTrue();
   }
+
+  @Test
+  public void testBatchStatIfFound() throws Exception {
+    Path link = absolutize("link");
+    link.createSymbolicLink(xFile);
+    List<Path> paths =
+        ImmutableList.of(
+            xFile, xNonEmptyDirectory, link, xNothing, xFile.getRelative("under-a-file"));
+
+    List<FileStatus> followed = ((UnixFileSystem) testFS).statIfFound(paths, true);
+    List<FileStatus> notFollowed = ((UnixFileSystem) testFS).statIfFound(paths, false);
+
+    assertThat(followed.get(0).isFile()).isTrue();
+    assertThat(followed.get(1).isDirectory()).isTrue();
+    assertThat(followed.get(2).isFile()).isTrue();
+    assertThat(followed.get(2).getNodeId()).isEqualTo(xFile.stat().getNodeId());
+    assertThat(notFollowed.get(2).isSymbolicLink()).isTrue();
+    assertThat(followed.subList(3, 5)).containsExactly(null, null);
+    assertThat(notFollowed.subList(3, 5)).containsExactly(null, null);
+  }
+
+  @Test
+  public void testBatchStatIfFoundMatchesSingleStats() throws Exception {
+    // Large enough to be split between native threads.
+    List<Path> paths = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      Path file = absolutize("file" + i);
+      FileSystemUtils.writeContentAsLatin1(file, Strings.repeat("x", i));
+      paths.add(file);
+    }
+
+    List<FileStatus> stats = ((UnixFileSystem) testFS).statIfFound(paths, true);
+
+    assertThat(stats).hasSize(paths.size());
+    for (int i = 0; i < paths.size(); i++) {
+      assertThat(stats.get(i).getSize()).isEqualTo(i);
+      assertThat(stats.get(i).getNodeId()).isEqualTo(paths.get(i).stat().getNodeId());
+    }
+  }
+
+  @Test
+  public void testBatchStatIfFoundThrowsOnCircularSymlink() throws Exception {
+    Path linkA = absolutize("link-a");
+    Path linkB = absolutize("link-b");
+    linkA.createSymbolicLink(linkB);
+    linkB.createSymbolicLink(linkA);
+    try {
+      ((UnixFileSystem) testFS).statIfFound(ImmutableList.of(xFile, linkA), true);
+      fail();
+    } catch (IOException expected) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testCopyContentsOfLargeFile() throws Exception {
+    // Spans many pages and is not a multiple of the page size.
+    byte[] content = new byte[5 * 1024 * 1024 + 17];
+    new Random(42).nextBytes(content);
+    FileSystemUtils.writeContent(xFile, content);
+    xFile.copyContentsTo(xNothing);
+    assertThat(FileSystemUtils.readContent(xNothing)).isEqualTo(content);
+  }
+
+  @Test
+  public void testCopyContentsOfFileLargerThanItsContents() throws Exception {
+    // sysfs files report a size of a page, but hold fewer bytes; the kernel may copy none of them.
+    Path source = testFS.getPath("/sys/devices/system/cpu/online");
+    byte[] content;
+    try {
+      content = FileSystemUtils.readContent(source);
+    } catch (IOException e) {
+      assumeNoException(e);
+      return;
+    }
+    assertThat(source.getFileSize()).isGreaterThan((long) content.length);
+    source.copyContentsTo(xNothing);
+    assertThat(FileSystemUtils.readContent(xNothing)).isEqualTo(content);
+  }
+
+  @Test
+  public void testCopyContentsOfFileWithZeroReportedSize() throws Exception {
+    // procfs files report a size of zero, but have contents.
+    Path source = testFS.getPath("/proc/version");
+    byte[] content;
+    try {
+      content = FileSystemUtils.readContent(source);
+    } catch (IOException e) {
+      assumeNoException(e);
+      return;
+    }
+    assertThat(source.getFileSize()).isEqualTo(0);
+    assertThat(content).isNotEmpty();
+    source.copyContentsTo(xNothing);
+    assertThat(FileSystemUtils.readContent(xNothing)).isEqualTo(content);
+  }
+
+  @Test
+  public void testFastDigestFromExtendedAttribute() throws Exception {
+    byte[] digest = digestHashFunction.getHashFunction().hashInt(42).asBytes();
+    UserDefinedFileAttributeView view =
+        Files.getFileAttributeView(
+            Paths.get(xFile.getPathString()), UserDefinedFileAttributeView.class);
+    try {
+      view.write("digest", ByteBuffer.wrap(digest));
+    } catch (IOException e) {
+      assumeNoException("user extended attributes are not supported", e);
+    }
+
+    FileSystem fs = new UnixFileSystem(digestHashFunction, "user.digest");
+    assertThat(fs.getPath(xFile.getPathString()).getFastDigest()).isEqualTo(digest);
+    assertThat(fs.getPath(xEmptyDirectory.getPathString()).getFastDigest()).isNull();
+    assertThat(testFS.getPath(xFile.getPathString()).getFastDigest()).isNull();
+
+    // Attributes that can't be a digest in this hash function are ignored.
+    view.write("digest", ByteBuffer.wrap(new byte[] {1, 2, 3}));
+    assertThat(fs.getPath(xFile.getPathString()).getFastDigest()).isNull();
+  }
 }
@@ -1132,6 +1132,37 @@ public abstract class FileSystemTest {
     }
   }
 
+  // Test copying
+  @Test
+  public void testCopyContentsToUnusedName() throws Exception {
+    FileSystemUtils.writeContentAsLatin1(xFile, "hello, world!");
+    xFile.copyContentsTo(xNothing);
+    assertThat(new String(FileSystemUtils.readContentAsLatin1(xNothing)))
+        .isEqualTo("hello, world!");
+    assertThat(new String(FileSystemUtils.readContentAsLatin1(xFile))).isEqualTo("hello, world!");
+  }
+
+  @Test
+  public void testCopyContentsToTruncatesExistingFile() throws Exception {
+    Path otherFile = absolutize("otherFile");
+    FileSystemUtils.writeContentAsLatin1(otherFile, "some much longer old content");
+    FileSystemUtils.writeContentAsLatin1(xFile, "new");
+    xFile.copyContentsTo(otherFile);
+    assertThat(new String(FileSystemUtils.readContentAsLatin1(otherFile))).isEqualTo("new");
+  }
+
+  @Test
+  public void testCopyContentsOfEmptyFile() throws Exception {
+    xFile.copyContentsTo(xNothing);
+    assertThat(xNothing.isFile()).isTrue();
+    assertThat(xNothing.getFileSize()).isEqualTo(0);
+  }
+
+  @Test
+  public void testCopyContentsOfMissingFileThrows() throws Exception {
+    MoreAsserts.assertThrows(FileNotFoundException.class, () -> xNothing.copyContentsTo(xFile));
+  }
+
   // Test renaming
   @Test
   public void testCanRenameToUnusedName() throws Exception {
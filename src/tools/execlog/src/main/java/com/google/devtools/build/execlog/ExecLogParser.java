@@ -16,6 +16,8 @@ package com.google.devtools.build.execlog;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.devtools.build.lib.exec.Protos.ExecLogEntry;
+import com.google.devtools.build.lib.exec.Protos.File;
 import com.google.devtools.build.lib.exec.Protos.SpawnExec;
 import com.google.devtools.common.options.OptionsParser;
 import java.io.BufferedWriter;
@@ -28,10 +30,13 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.ArrayDeque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * A tool to inspect and parse the Bazel execution log.
@@ -70,6 +75,108 @@ final class ExecLogParser {
     }
   }
 
+  /**
+   * Reads a log in the compact format written with --experimental_execution_log_compact_file and
+   * returns its spawns as {@link SpawnExec}s, in the same form as in the full execution log.
+   *
+   * <p>The log is processed as a stream: only the files, directories and input sets are kept in
+   * memory, since later spawns may refer to them, but not the spawns themselves.
+   */
+  @VisibleForTesting
+  static class CompactLogParser implements Parser {
+    final InputStream in;
+    final String restrictToRunner;
+
+    private final Map<Integer, File> files = new HashMap<>();
+    private final Map<Integer, List<File>> directories = new HashMap<>();
+    private final Map<Integer, ExecLogEntry.InputSet> inputSets = new HashMap<>();
+
+    CompactLogParser(InputStream in, String restrictToRunner) {
+      this.in = in;
+      this.restrictToRunner = restrictToRunner;
+    }
+
+    @Override
+    public SpawnExec getNext() throws IOException {
+      while (in.available() > 0) {
+        ExecLogEntry entry = ExecLogEntry.parseDelimitedFrom(in);
+        switch (entry.getTypeCase()) {
+          case FILE:
+            files.put(
+                entry.getId(),
+                File.newBuilder()
+                    .setPath(entry.getFile().getPath())
+                    .setDigest(entry.getFile().getDigest())
+                    .build());
+            break;
+          case DIRECTORY:
+            directories.put(entry.getId(), entry.getDirectory().getFilesList());
+            break;
+          case INPUT_SET:
+            inputSets.put(entry.getId(), entry.getInputSet());
+            break;
+          case SPAWN:
+            if (restrictToRunner == null
+                || restrictToRunner.equals(entry.getSpawn().getRunner())) {
+              return toSpawnExec(entry.getSpawn());
+            }
+            break;
+          default:
+            throw new IOException("Unknown entry type in compact execution log: " + entry);
+        }
+      }
+      return null;
+    }
+
+    private SpawnExec toSpawnExec(ExecLogEntry.Spawn spawn) {
+      // Inputs are sorted by path, like in the full execution log.
+      TreeMap<String, File> inputs = new TreeMap<>();
+      if (spawn.getInputSetId() != 0) {
+        addInputs(spawn.getInputSetId(), inputs, new HashSet<>());
+      }
+      SpawnExec.Builder builder = SpawnExec.newBuilder();
+      if (spawn.hasPlatform()) {
+        builder.setPlatform(spawn.getPlatform());
+      }
+      return builder
+          .addAllCommandArgs(spawn.getCommandArgsList())
+          .addAllEnvironmentVariables(spawn.getEnvironmentVariablesList())
+          .addAllInputs(inputs.values())
+          .addAllListedOutputs(spawn.getListedOutputsList())
+          .setRemotable(spawn.getRemotable())
+          .setCacheable(spawn.getCacheable())
+          .setTimeoutMillis(spawn.getTimeoutMillis())
+          .setProgressMessage(spawn.getProgressMessage())
+          .setMnemonic(spawn.getMnemonic())
+          .addAllActualOutputs(spawn.getActualOutputsList())
+          .setRunner(spawn.getRunner())
+          .setRemoteCacheHit(spawn.getRemoteCacheHit())
+          .setStatus(spawn.getStatus())
+          .setExitCode(spawn.getExitCode())
+          .build();
+    }
+
+    private void addInputs(int inputSetId, Map<String, File> inputs, Set<Integer> visited) {
+      if (!visited.add(inputSetId)) {
+        return;
+      }
+      ExecLogEntry.InputSet inputSet = inputSets.get(inputSetId);
+      for (int id : inputSet.getDirectEntryIdsList()) {
+        File file = files.get(id);
+        if (file != null) {
+          inputs.put(file.getPath(), file);
+        } else {
+          for (File child : directories.get(id)) {
+            inputs.put(child.getPath(), child);
+          }
+        }
+      }
+      for (int id : inputSet.getTransitiveSetIdsList()) {
+        addInputs(id, inputs, visited);
+      }
+    }
+  }
+
   static String getFirstOutput(SpawnExec e) {
     if (e.getListedOutputsCount() > 0) {
       return e.getListedOutputs(0);
@@ -168,6 +275,12 @@ final class ExecLogParser {
     }
   }
 
+  private static Parser createParser(InputStream in, ParserOptions options) {
+    return options.compact
+        ? new CompactLogParser(in, options.restrictToRunner)
+        : new FilteringLogParser(in, options.restrictToRunner);
+  }
+
   public static void main(String[] args) throws Exception {
     OptionsParser op = OptionsParser.newOptionsParser(ParserOptions.class);
     op.parseAndExitUponError(args);
@@ -219,7 +332,7 @@ final class ExecLogParser {
     }
 
     try (InputStream input = new FileInputStream(logPath)) {
-      Parser parser = new FilteringLogParser(input, options.restrictToRunner);
+      Parser parser = createParser(input, options);
 
       if (output1 == null) {
         output(parser, System.out, golden);
@@ -233,7 +346,7 @@ final class ExecLogParser {
     if (secondPath != null) {
       try (InputStream file2 = new FileInputStream(secondPath);
           OutputStream output = new FileOutputStream(output2)) {
-        Parser parser = new FilteringLogParser(file2, options.restrictToRunner);
+        Parser parser = createParser(file2, options);
         // ReorderingParser will read the whole golden on initialization,
         // so it is safe to close after.
         parser = new ReorderingParser(golden, parser);
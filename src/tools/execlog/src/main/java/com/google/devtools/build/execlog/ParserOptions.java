@@ -60,4 +60,16 @@ public class ParserOptions extends OptionsBase {
       effectTags = {OptionEffectTag.UNKNOWN},
       help = "If set, only output the executions that used the given runner.")
   public String restrictToRunner;
+
+  @Option(
+      name = "compact",
+      defaultValue = "false",
+      category = "logging",
+      documentationCategory = OptionDocumentationCategory.UNCATEGORIZED,
+      effectTags = {OptionEffectTag.UNKNOWN},
+      help =
+          "If set, the logs are read in the compact format written with "
+              + "--experimental_execution_log_compact_file. The output is the same as for a log "
+              + "written with --experimental_execution_log_file.")
+  public boolean compact;
 }
@@ -15,9 +15,13 @@ package com.google.devtools.build.execlog;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import com.google.devtools.build.execlog.ExecLogParser.CompactLogParser;
 import com.google.devtools.build.execlog.ExecLogParser.FilteringLogParser;
 import com.google.devtools.build.execlog.ExecLogParser.Parser;
 import com.google.devtools.build.execlog.ExecLogParser.ReorderingParser;
+import com.google.devtools.build.lib.exec.Protos.Digest;
+import com.google.devtools.build.lib.exec.Protos.ExecLogEntry;
+import com.google.devtools.build.lib.exec.Protos.File;
 import com.google.devtools.build.lib.exec.Protos.SpawnExec;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -308,5 +312,59 @@ public final class ExecLogParserTest {
     assertThat(p.getNext()).isEqualTo(c);
     assertThat(p.getNext()).isNull();
   }
-}
 
+  @Test
+  public void compactLogResolvesSharedInputs() throws Exception {
+    Digest digest = Digest.newBuilder().setHash("abc").setSizeBytes(3).build();
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    ExecLogEntry.newBuilder()
+        .setId(1)
+        .setFile(ExecLogEntry.File.newBuilder().setPath("b.h").setDigest(digest))
+        .build()
+        .writeDelimitedTo(bos);
+    ExecLogEntry.newBuilder()
+        .setId(2)
+        .setDirectory(
+            ExecLogEntry.Directory.newBuilder()
+                .setPath("dir")
+                .addFiles(File.newBuilder().setPath("dir/a.h").setDigest(digest)))
+        .build()
+        .writeDelimitedTo(bos);
+    ExecLogEntry.newBuilder()
+        .setId(3)
+        .setInputSet(ExecLogEntry.InputSet.newBuilder().addDirectEntryIds(1).addDirectEntryIds(2))
+        .build()
+        .writeDelimitedTo(bos);
+    ExecLogEntry.newBuilder()
+        .setId(4)
+        .setInputSet(
+            ExecLogEntry.InputSet.newBuilder().addDirectEntryIds(1).addTransitiveSetIds(3))
+        .build()
+        .writeDelimitedTo(bos);
+    for (String runner : Arrays.asList("local", "remote")) {
+      ExecLogEntry.newBuilder()
+          .setSpawn(
+              ExecLogEntry.Spawn.newBuilder()
+                  .addCommandArgs("cc")
+                  .setInputSetId(4)
+                  .addListedOutputs("out-" + runner)
+                  .setRunner(runner))
+          .build()
+          .writeDelimitedTo(bos);
+    }
+
+    CompactLogParser p =
+        new CompactLogParser(new ByteArrayInputStream(bos.toByteArray()), "remote");
+
+    assertThat(p.getNext())
+        .isEqualTo(
+            SpawnExec.newBuilder()
+                .addCommandArgs("cc")
+                .addInputs(File.newBuilder().setPath("b.h").setDigest(digest))
+                .addInputs(File.newBuilder().setPath("dir/a.h").setDigest(digest))
+                .addListedOutputs("out-remote")
+                .setRunner("remote")
+                .build());
+    assertThat(p.getNext()).isNull();
+  }
+}